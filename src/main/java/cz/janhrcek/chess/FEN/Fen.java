@@ -8,9 +8,9 @@ import cz.janhrcek.chess.model.api.Chessboard;
 import cz.janhrcek.chess.model.impl.PositionImpl;
 import cz.janhrcek.chess.model.impl.ChessboardImpl;
 import static java.lang.String.format;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.EnumSet;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.regex.Pattern;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,7 +23,7 @@ import static java.util.Objects.requireNonNull;
 public class Fen {
 
     public Fen(String fenString) throws InvalidFenException {
-        log.info("Parsing: \"{}\"", fenString);
+        log.debug("Parsing: \"{}\"", fenString);
         String[] fields = splitIntoFields(requireNonNull(fenString, "Fen string must not be null!"));
 
         position = parsePiecePlacement(fields[0]);
@@ -60,19 +60,8 @@ public class Fen {
      * @return the FEN string representation of position
      */
     public static String positionToFen(Position position) {
-        log.info("Converting position to FEN");
-        StringBuilder sb = new StringBuilder(50);
-        Square ep = position.getEnPassantTarget();
-        sb.append(piecePlacementToFen(position.getChessboard()))
-                .append(position.isWhiteToMove() ? " w " : " b ")
-                .append(Castling.toFenCastlingSubstring(position.getCastlings()))
-                .append(" ")
-                .append(ep == null ? "-" : ep.toString().toLowerCase())
-                .append(" ")
-                .append(position.getHalfmoveClock())
-                .append(" ")
-                .append(position.getFullmoveNumber());
-        return sb.toString();
+        log.debug("Converting position to FEN");
+        return appendFen(position, new StringBuilder(FEN_CAPACITY)).toString();
     }
 
     /**
@@ -82,30 +71,82 @@ public class Fen {
      * record)
      */
     public static String piecePlacementToFen(Chessboard board) {
-        StringBuilder sb = new StringBuilder(64);
-        int counter = 0;
-        for (Square sq : Square.values()) {
-            Piece p = board.getPiece(sq);
-            if (p != null) {
-                if (counter != 0) { //empty the counter before each piece
-                    sb.append(counter);
-                    counter = 0;
-                }
-                sb.append(p.getFenLetter());
-            } else {
-                counter++;
-            }
-            if (sq.getFile() == 7) {
-                if (counter != 0) { //empty the counter before each rank
-                    sb.append(counter);
-                    counter = 0;
-                }
-                if (sq.getRank() != 0) {
-                    sb.append("/");
-                }
-            }
+        return appendPiecePlacement(board, new StringBuilder(64)).toString();
+    }
+
+    /**
+     * Appends FEN string representing given position to given StringBuilder.
+     * Apart from eventual growing of the builder, no objects are allocated.
+     *
+     * @param position the position to convert
+     * @param sb the builder to append the FEN to
+     * @return the builder passed as argument
+     */
+    public static StringBuilder appendFen(Position position, StringBuilder sb) {
+        try {
+            appendFen(position, (Appendable) sb);
+        } catch (IOException ioe) {
+            throw new AssertionError("StringBuilder should never throw IOException", ioe);
+        }
+        return sb;
+    }
+
+    /**
+     * Appends FEN string representing given position to given Appendable,
+     * without allocating any intermediate objects.
+     *
+     * @param position the position to convert
+     * @param out the destination to append the FEN to
+     * @throws IOException if the Appendable throws it
+     */
+    public static void appendFen(Position position, Appendable out) throws IOException {
+        writeFen(position, out, TO_APPENDABLE);
+    }
+
+    /**
+     * Appends piece placement field of FEN representing given chessboard to
+     * given StringBuilder.
+     *
+     * @param board the chessboard to convert
+     * @param sb the builder to append the piece placement to
+     * @return the builder passed as argument
+     */
+    public static StringBuilder appendPiecePlacement(Chessboard board, StringBuilder sb) {
+        try {
+            appendPiecePlacement(board, (Appendable) sb);
+        } catch (IOException ioe) {
+            throw new AssertionError("StringBuilder should never throw IOException", ioe);
+        }
+        return sb;
+    }
+
+    /**
+     * Appends piece placement field of FEN representing given chessboard to
+     * given Appendable, without allocating any intermediate objects.
+     *
+     * @param board the chessboard to convert
+     * @param out the destination to append the piece placement to
+     * @throws IOException if the Appendable throws it
+     */
+    public static void appendPiecePlacement(Chessboard board, Appendable out) throws IOException {
+        writePiecePlacement(board, out, TO_APPENDABLE);
+    }
+
+    /**
+     * Writes FEN string representing given position as ASCII bytes into given
+     * buffer, starting at its current position. No objects are allocated.
+     *
+     * @param position the position to convert
+     * @param buffer the buffer to write the FEN to
+     * @throws java.nio.BufferOverflowException if there is not enough space
+     * remaining in the buffer
+     */
+    public static void writeFen(Position position, ByteBuffer buffer) {
+        try {
+            writeFen(position, buffer, TO_BUFFER);
+        } catch (IOException ioe) {
+            throw new AssertionError("ByteBuffer should never throw IOException", ioe);
         }
-        return sb.toString();
     }
 
     /**
@@ -153,7 +194,7 @@ public class Fen {
         }
 
         //Check, that there are only correct characters (piece FEN names + digits 0-8 and slashes "/"
-        if (!piecePlacementSubstring.matches("^[pnbrqkPNBRQK1-8/]+$")) {
+        if (!PIECE_PLACEMENT_PATTERN.matcher(piecePlacementSubstring).matches()) {
             throw new InvalidFenException("piecePlacement must only contain the"
                     + " following charasters: pnbrqkPNBRQK12345678 - but yours"
                     + " contained something else: " + piecePlacementSubstring);
@@ -170,16 +211,17 @@ public class Fen {
         }
 
         //Everything seems OK, initialize the position using the info from piece-placement substring
-        Map<Square, Piece> piecePlacement = new HashMap<>();
+        Piece[] piecePlacement = new Piece[64];
         for (int rankIdx = 7; rankIdx >= 0; rankIdx--) {
+            String rank = ranks[7 - rankIdx];
             int colIdx = 0;
-            for (char c : ranks[7 - rankIdx].toCharArray()) {
+            for (int i = 0; i < rank.length(); i++) {
+                char c = rank.charAt(i);
                 if (Character.isLetter(c)) { //it is letter -> put corresponding piece on
-                    //LOG.debug("Putting {} on {}", Piece.getPiece(c), Square.getSquare(colIdx, rankIdx));
-                    piecePlacement.put(Square.getSquare(colIdx, rankIdx), Piece.getPiece(c));
+                    piecePlacement[Square.index(colIdx, rankIdx)] = Piece.fromCode(Piece.codeOf(c));
                     colIdx++;
                 } else { //it is number --> move 'c' columns to the right
-                    colIdx += Character.getNumericValue(c);
+                    colIdx += c - '0';
                 }
             }
         }
@@ -219,11 +261,108 @@ public class Fen {
     private static final String COUNTERS_FILED_MSG = "The 5th and 6th fen fields must be valid decimal digits, but yours were: %d and %d";
     //Patterns for checking valid values for FEN string fields
     private static final Pattern DIGIT_PATTERN = Pattern.compile("^\\d+$");
+    private static final Pattern PIECE_PLACEMENT_PATTERN = Pattern.compile("^[pnbrqkPNBRQK1-8/]+$");
     private static final Pattern CASTLING_AVAILABILITY_PATTERN = Pattern.compile("^KQ?k?q?$|^K?Qk?q?$|^K?Q?kq?$|^K?Q?k?q$|^-$"); //Means either one or more of the mentioned, or "-", NOT the empty string
     private static final Pattern EN_PASSANT_PATTERN = Pattern.compile("^[abcdefgh][36]$|^-$");
     //
     public static final String INITIAL_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
 
+    private static final int FEN_CAPACITY = 90; //longest possible FEN record
+    private static final Castling[] CASTLINGS = Castling.values();
+
+    /**
+     * Destination of the characters of FEN record. The sinks are stateless
+     * (the destination is passed to them), so that the same code writes FEN
+     * to Appendables and ByteBuffers without allocating anything.
+     */
+    private abstract static class Sink<T> {
+
+        abstract void put(T destination, char c) throws IOException;
+    }
+    private static final Sink<Appendable> TO_APPENDABLE = new Sink<Appendable>() {
+        @Override
+        void put(Appendable destination, char c) throws IOException {
+            destination.append(c);
+        }
+    };
+    /**
+     * Writes the characters as ASCII bytes.
+     */
+    private static final Sink<ByteBuffer> TO_BUFFER = new Sink<ByteBuffer>() {
+        @Override
+        void put(ByteBuffer destination, char c) {
+            destination.put((byte) c);
+        }
+    };
+
+    private static <T> void writeFen(Position position, T out, Sink<T> sink) throws IOException {
+        writePiecePlacement(position.getChessboard(), out, sink);
+        sink.put(out, ' ');
+        sink.put(out, position.isWhiteToMove() ? 'w' : 'b');
+        sink.put(out, ' ');
+        EnumSet<Castling> castlings = position.getCastlings();
+        if (castlings.isEmpty()) {
+            sink.put(out, '-');
+        } else {
+            for (Castling ca : CASTLINGS) { //not iterating the set to avoid allocation of iterator
+                if (castlings.contains(ca)) {
+                    sink.put(out, ca.getFenName());
+                }
+            }
+        }
+        sink.put(out, ' ');
+        Square ep = position.getEnPassantTarget();
+        if (ep == null) {
+            sink.put(out, '-');
+        } else {
+            sink.put(out, (char) ('a' + ep.getFile()));
+            sink.put(out, (char) ('1' + ep.getRank()));
+        }
+        sink.put(out, ' ');
+        writeNumber(position.getHalfmoveClock(), out, sink);
+        sink.put(out, ' ');
+        writeNumber(position.getFullmoveNumber(), out, sink);
+    }
+
+    private static <T> void writePiecePlacement(Chessboard board, T out, Sink<T> sink) throws IOException {
+        int counter = 0;
+        for (int sq = 63; sq >= 0; sq--) { //square indices in FEN order A8, B8, ... H1
+            Piece p = board.getPiece(sq);
+            if (p != null) {
+                if (counter != 0) { //empty the counter before each piece
+                    sink.put(out, (char) ('0' + counter));
+                    counter = 0;
+                }
+                sink.put(out, p.getFenLetter());
+            } else {
+                counter++;
+            }
+            if ((sq & 7) == 0) { //H file
+                if (counter != 0) { //empty the counter before each rank
+                    sink.put(out, (char) ('0' + counter));
+                    counter = 0;
+                }
+                if (sq != 0) {
+                    sink.put(out, '/');
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes decimal representation of non-negative number digit by digit
+     * (Appendable has no method for appending numbers).
+     */
+    private static <T> void writeNumber(int number, T out, Sink<T> sink) throws IOException {
+        int divisor = 1;
+        while (number / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            sink.put(out, (char) ('0' + (number / divisor) % 10));
+        }
+    }
+
     private boolean parsePlayerToMove(String playerFenField) throws InvalidFenException {
         if (!"w".equals(playerFenField) && !"b".equals(playerFenField)) {
             throw new InvalidFenException(format(PLAYER_FIELD_MSG, playerFenField));
@@ -0,0 +1,461 @@
+package cz.janhrcek.chess.FEN;
+
+import cz.janhrcek.chess.model.api.Position;
+import cz.janhrcek.chess.model.api.enums.Castling;
+import static cz.janhrcek.chess.model.api.enums.Castling.*;
+import cz.janhrcek.chess.model.api.enums.Piece;
+import static cz.janhrcek.chess.model.api.enums.Piece.*;
+import cz.janhrcek.chess.model.api.enums.Square;
+import cz.janhrcek.chess.model.impl.ChessboardImpl;
+import cz.janhrcek.chess.model.impl.PositionImpl;
+import java.util.Arrays;
+import java.util.EnumSet;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Fast, lenient FEN reader intended for bulk processing of FEN records coming
+ * from many different sources. Unlike {@link Fen} it reads the record in a
+ * single pass directly from {@link CharSequence} (no splitting, no regular
+ * expressions) and in addition to the syntax it also checks basic semantics of
+ * the position: <ul> <li>each side has exactly one king</li> <li>each side
+ * has at most 16 pieces, of which at most 8 are pawns</li> <li>there are no
+ * pawns on the 1st and 8th rank</li> <li>the en-passant target square (if
+ * any) is on the rank corresponding to the player to move, with the pawn that
+ * has just made the double step in front of it and both squares it passed
+ * empty</li> </ul>
+ *
+ * The reader accepts some variations commonly found in the wild and
+ * normalises them: fields may be separated by any run of spaces or tabs,
+ * castling letters may come in any order, the counters may be missing (EPD
+ * style records - defaulting to "0 1"), full-move number 0 is read as 1 and
+ * castling rights whose king or rook are not on their initial squares are
+ * dropped.
+ *
+ * Instances keep reusable scratch state and are NOT thread safe - use one
+ * instance per thread. The methods {@link #tryParse(CharSequence)} and
+ * {@link #tryNormalize(CharSequence)} report problems via
+ * {@link #getLastError()} instead of throwing exception, which makes them
+ * suitable for hot loops over lots of possibly malformed input.
+ *
+ * @author jhrcek
+ */
+public final class FenParser {
+
+    /**
+     * Parses given FEN record into Position.
+     *
+     * @param fen the FEN record to parse
+     * @return the position described by the FEN record
+     * @throws InvalidFenException if the record is syntactically or
+     * semantically invalid
+     */
+    public Position parse(CharSequence fen) throws InvalidFenException {
+        Position result = tryParse(requireNonNull(fen, "Fen string must not be null!"));
+        if (result == null) {
+            throw new InvalidFenException(lastError + " (FEN: \"" + fen + "\")");
+        }
+        return result;
+    }
+
+    /**
+     * Parses given FEN record into Position without throwing exceptions.
+     *
+     * @param fen the FEN record to parse
+     * @return the position described by the FEN record or null if the record
+     * was invalid (the reason is then available via {@link #getLastError()})
+     */
+    public Position tryParse(CharSequence fen) {
+        if (!scan(fen)) {
+            return null;
+        }
+        return new PositionImpl(new ChessboardImpl(board), whiteToMove,
+                castlings(), epSquare, halfmoveClock, fullmoveNumber);
+    }
+
+    /**
+     * Converts given FEN record into its normalised form, i.e. the form
+     * produced by {@link Fen#positionToFen(Position)} for the position the
+     * record describes. The normalised record is written directly from the
+     * state of the reader, no Position is created.
+     *
+     * @param fen the FEN record to normalise
+     * @return the normalised FEN record
+     * @throws InvalidFenException if the record is syntactically or
+     * semantically invalid
+     */
+    public String normalize(CharSequence fen) throws InvalidFenException {
+        String result = tryNormalize(requireNonNull(fen, "Fen string must not be null!"));
+        if (result == null) {
+            throw new InvalidFenException(lastError + " (FEN: \"" + fen + "\")");
+        }
+        return result;
+    }
+
+    /**
+     * Same as {@link #normalize(CharSequence)}, but returns null instead of
+     * throwing exception when the input is invalid.
+     */
+    public String tryNormalize(CharSequence fen) {
+        if (!scan(fen)) {
+            return null;
+        }
+        normalized.setLength(0);
+        appendNormalized(normalized);
+        return normalized.toString();
+    }
+
+    /**
+     * @return description of the problem found by the last parsing attempt or
+     * null if the last attempt succeeded
+     */
+    public String getLastError() {
+        return lastError;
+    }
+//--------------------------- PRIVATE IMPLEMENTATION ---------------------------
+    private static final int MAX_COUNTER_DIGITS = 9; //to prevent int overflow
+    //scratch state of the current record
+    private final Piece[] board = new Piece[64]; //indexed by Square.index()
+    private final int[] pieceCounts = new int[Piece.values().length];
+    private boolean whiteToMove;
+    private int castlingBits;
+    private Square epSquare;
+    private int halfmoveClock;
+    private int fullmoveNumber;
+    private String lastError;
+    private final StringBuilder normalized = new StringBuilder(90);
+    //reading position within the record
+    private CharSequence input;
+    private int pos;
+    private int end;
+
+    /**
+     * Reads the whole record, storing the results into scratch fields.
+     *
+     * @return true if the record was valid, false otherwise (with lastError
+     * set)
+     */
+    private boolean scan(CharSequence fen) {
+        if (fen == null) {
+            return fail("Fen string must not be null!");
+        }
+        input = fen;
+        pos = 0;
+        end = fen.length();
+        lastError = null;
+        while (end > 0 && isBlank(fen.charAt(end - 1))) {
+            end--;
+        }
+        skipBlanks();
+        return scanPiecePlacement()
+                && separator("side to move")
+                && scanSideToMove()
+                && separator("castling availability")
+                && scanCastlings()
+                && separator("en-passant target square")
+                && scanEnPassant()
+                && scanCounters()
+                && checkSemantics();
+    }
+
+    private boolean scanPiecePlacement() {
+        Arrays.fill(board, null);
+        Arrays.fill(pieceCounts, 0);
+        int rank = 0; //index of rank in FEN order (0 = 8th rank)
+        int file = 0;
+        while (pos < end && !isBlank(input.charAt(pos))) {
+            char c = input.charAt(pos++);
+            if (c == '/') {
+                if (file != 8) {
+                    return fail("Each rank in piece placement must sum up to 8 squares, but rank " + (8 - rank) + " had " + file);
+                }
+                if (++rank > 7) {
+                    return fail("Piece placement must have exactly 8 ranks separated by \"/\"");
+                }
+                file = 0;
+            } else if (c >= '1' && c <= '8') {
+                file += c - '0';
+                if (file > 8) {
+                    return fail("Each rank in piece placement must sum up to 8 squares, but rank " + (8 - rank) + " had more");
+                }
+            } else {
+                int code = Piece.codeOf(c);
+                if (code == Piece.NONE) {
+                    return fail("Piece placement must only contain characters pnbrqkPNBRQK12345678/ but contained '" + c + "'");
+                }
+                if (file > 7) {
+                    return fail("Each rank in piece placement must sum up to 8 squares, but rank " + (8 - rank) + " had more");
+                }
+                board[63 - (rank * 8 + file++)] = Piece.fromCode(code);
+                pieceCounts[code]++;
+            }
+        }
+        if (rank != 7 || file != 8) {
+            return fail("Piece placement must have exactly 8 ranks, each summing up to 8 squares");
+        }
+        return true;
+    }
+
+    private boolean scanSideToMove() {
+        char c = input.charAt(pos++);
+        if ((c != 'w' && c != 'b') || !atFieldEnd()) {
+            return fail("The 2nd field of FEN must be either letter w or b");
+        }
+        whiteToMove = c == 'w';
+        return true;
+    }
+
+    private boolean scanCastlings() {
+        castlingBits = 0;
+        if (input.charAt(pos) == '-') {
+            pos++;
+            return atFieldEnd() || fail("The 3rd field of FEN must be either - or consist of letters KQkq");
+        }
+        while (pos < end && !isBlank(input.charAt(pos))) {
+            char c = input.charAt(pos++);
+            int bit;
+            switch (c) {
+                case 'K':
+                    bit = 1 << WHITE_KINGSIDE.ordinal();
+                    break;
+                case 'Q':
+                    bit = 1 << WHITE_QUEENSIDE.ordinal();
+                    break;
+                case 'k':
+                    bit = 1 << BLACK_KINGSIDE.ordinal();
+                    break;
+                case 'q':
+                    bit = 1 << BLACK_QUEENSIDE.ordinal();
+                    break;
+                default:
+                    return fail("The 3rd field of FEN must be either - or consist of letters KQkq, but contained '" + c + "'");
+            }
+            if ((castlingBits & bit) != 0) {
+                return fail("The 3rd field of FEN must not contain duplicate letter '" + c + "'");
+            }
+            castlingBits |= bit;
+        }
+        return true;
+    }
+
+    private boolean scanEnPassant() {
+        char c = input.charAt(pos++);
+        if (c == '-') {
+            epSquare = null;
+            return atFieldEnd() || fail("The 4th field of FEN must be either - or en-passant target square");
+        }
+        if (c < 'a' || c > 'h' || pos >= end) {
+            return fail("The 4th field of FEN must be either - or en-passant target square");
+        }
+        char r = input.charAt(pos++);
+        if ((r != '3' && r != '6') || !atFieldEnd()) {
+            return fail("The en-passant target square must be on 3rd or 6th rank");
+        }
+        epSquare = Square.getSquare(c - 'a', r - '1');
+        return true;
+    }
+
+    private boolean scanCounters() {
+        skipBlanks();
+        if (pos == end) { //EPD-style record without counters
+            halfmoveClock = 0;
+            fullmoveNumber = 1;
+            return true;
+        }
+        halfmoveClock = scanNumber();
+        if (halfmoveClock < 0 || pos == end || !isBlank(input.charAt(pos))) {
+            return fail("The 5th and 6th fields of FEN must be decimal numbers");
+        }
+        skipBlanks();
+        fullmoveNumber = scanNumber();
+        if (fullmoveNumber < 0 || pos != end) {
+            return fail("The 5th and 6th fields of FEN must be decimal numbers followed by nothing else");
+        }
+        if (fullmoveNumber == 0) {
+            fullmoveNumber = 1;
+        }
+        return true;
+    }
+
+    /**
+     * @return the value of number starting at current position or -1 if there
+     * is no (reasonably small) number
+     */
+    private int scanNumber() {
+        int start = pos;
+        int value = 0;
+        while (pos < end && pos - start < MAX_COUNTER_DIGITS) {
+            char c = input.charAt(pos);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            value = value * 10 + (c - '0');
+            pos++;
+        }
+        if (pos == start || (pos < end && input.charAt(pos) >= '0' && input.charAt(pos) <= '9')) {
+            return -1;
+        }
+        return value;
+    }
+
+    private boolean checkSemantics() {
+        if (pieceCounts[WHITE_KING.ordinal()] != 1 || pieceCounts[BLACK_KING.ordinal()] != 1) {
+            return fail("Each side must have exactly one king");
+        }
+        if (pieceCounts[WHITE_PAWN.ordinal()] > 8 || pieceCounts[BLACK_PAWN.ordinal()] > 8) {
+            return fail("Each side can have at most 8 pawns");
+        }
+        int white = 0;
+        int black = 0;
+        for (Piece p : PIECES) {
+            if (p.isWhite()) {
+                white += pieceCounts[p.ordinal()];
+            } else {
+                black += pieceCounts[p.ordinal()];
+            }
+        }
+        if (white > 16 || black > 16) {
+            return fail("Each side can have at most 16 pieces");
+        }
+        for (int file = 0; file < 8; file++) {
+            if (isPawn(board[file]) || isPawn(board[56 + file])) {
+                return fail("There must be no pawns on the 1st and 8th rank");
+            }
+        }
+        if (epSquare != null && !isPossibleEnPassant()) {
+            return fail("En-passant target square " + epSquare + " is impossible in this position");
+        }
+        dropImpossibleCastlings();
+        return true;
+    }
+
+    /**
+     * En passant target square must lie behind the pawn of the player who has
+     * just moved, which made double step from its initial square.
+     */
+    private boolean isPossibleEnPassant() {
+        int file = epSquare.getFile();
+        int epRank = epSquare.getRank();
+        if (whiteToMove) { //black pawn made double step 7th -> 5th rank
+            return epRank == 5
+                    && board[Square.index(file, 4)] == BLACK_PAWN
+                    && board[Square.index(file, 5)] == null
+                    && board[Square.index(file, 6)] == null;
+        } else { //white pawn made double step 2nd -> 4th rank
+            return epRank == 2
+                    && board[Square.index(file, 3)] == WHITE_PAWN
+                    && board[Square.index(file, 2)] == null
+                    && board[Square.index(file, 1)] == null;
+        }
+    }
+
+    private void dropImpossibleCastlings() {
+        if (board[Square.index(4, 0)] != WHITE_KING) {
+            castlingBits &= ~((1 << WHITE_KINGSIDE.ordinal()) | (1 << WHITE_QUEENSIDE.ordinal()));
+        }
+        if (board[Square.index(7, 0)] != WHITE_ROOK) {
+            castlingBits &= ~(1 << WHITE_KINGSIDE.ordinal());
+        }
+        if (board[Square.index(0, 0)] != WHITE_ROOK) {
+            castlingBits &= ~(1 << WHITE_QUEENSIDE.ordinal());
+        }
+        if (board[Square.index(4, 7)] != BLACK_KING) {
+            castlingBits &= ~((1 << BLACK_KINGSIDE.ordinal()) | (1 << BLACK_QUEENSIDE.ordinal()));
+        }
+        if (board[Square.index(7, 7)] != BLACK_ROOK) {
+            castlingBits &= ~(1 << BLACK_KINGSIDE.ordinal());
+        }
+        if (board[Square.index(0, 7)] != BLACK_ROOK) {
+            castlingBits &= ~(1 << BLACK_QUEENSIDE.ordinal());
+        }
+    }
+
+    /**
+     * Appends the record read last in the form produced by
+     * {@link Fen#positionToFen(Position)}.
+     */
+    private void appendNormalized(StringBuilder sb) {
+        int empty = 0;
+        for (int sq = 63; sq >= 0; sq--) { //square indices in FEN order A8, B8, ... H1
+            Piece p = board[sq];
+            if (p == null) {
+                empty++;
+            } else {
+                if (empty != 0) {
+                    sb.append((char) ('0' + empty));
+                    empty = 0;
+                }
+                sb.append(p.getFenLetter());
+            }
+            if ((sq & 7) == 0) { //H file
+                if (empty != 0) {
+                    sb.append((char) ('0' + empty));
+                    empty = 0;
+                }
+                if (sq != 0) {
+                    sb.append('/');
+                }
+            }
+        }
+        sb.append(' ').append(whiteToMove ? 'w' : 'b').append(' ');
+        if (castlingBits == 0) {
+            sb.append('-');
+        } else {
+            for (Castling ca : CASTLINGS) {
+                if ((castlingBits & (1 << ca.ordinal())) != 0) {
+                    sb.append(ca.getFenName());
+                }
+            }
+        }
+        sb.append(' ');
+        if (epSquare == null) {
+            sb.append('-');
+        } else {
+            sb.append((char) ('a' + epSquare.getFile())).append((char) ('1' + epSquare.getRank()));
+        }
+        sb.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+    }
+
+    private EnumSet<Castling> castlings() {
+        EnumSet<Castling> result = EnumSet.noneOf(Castling.class);
+        for (Castling ca : CASTLINGS) {
+            if ((castlingBits & (1 << ca.ordinal())) != 0) {
+                result.add(ca);
+            }
+        }
+        return result;
+    }
+
+    private boolean separator(String nextField) {
+        if (pos == end || !isBlank(input.charAt(pos))) {
+            return fail("FEN must have at least 4 fields separated by spaces, but " + nextField + " is missing");
+        }
+        skipBlanks();
+        return pos < end || fail("FEN must have at least 4 fields separated by spaces, but " + nextField + " is missing");
+    }
+
+    private boolean atFieldEnd() {
+        return pos == end || isBlank(input.charAt(pos));
+    }
+
+    private void skipBlanks() {
+        while (pos < end && isBlank(input.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private boolean fail(String message) {
+        lastError = message;
+        return false;
+    }
+
+    private static boolean isBlank(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    private static boolean isPawn(Piece p) {
+        return p == WHITE_PAWN || p == BLACK_PAWN;
+    }
+
+    private static final Piece[] PIECES = Piece.values();
+    private static final Castling[] CASTLINGS = Castling.values();
+}
@@ -0,0 +1,171 @@
+package cz.janhrcek.chess.FEN;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static java.util.Objects.requireNonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Validates and normalises large amounts of FEN records (one record per line)
+ * in parallel. Lines are read in batches, each batch is processed by
+ * {@link FenParser} on a worker thread and the normalised records are written
+ * to the output in the same order in which they were read. Invalid records
+ * are left out from the output and reported to the {@link ErrorHandler} (if
+ * there is any). Empty lines are skipped.
+ *
+ * @author jhrcek
+ */
+public class FenPipeline {
+
+    /**
+     * Gets notified about each invalid FEN record. It is always called from
+     * the thread that called {@link FenPipeline#process}, in the order of
+     * input lines.
+     */
+    public interface ErrorHandler {
+
+        void invalidFen(long lineNumber, String line, String reason);
+    }
+
+    /**
+     * Creates pipeline using as many worker threads as there are available
+     * processors.
+     */
+    public FenPipeline() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param threads number of worker threads
+     * @param batchSize number of lines processed by worker at once
+     */
+    public FenPipeline(int threads, int batchSize) {
+        if (threads < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Number of threads and batch size must be positive, but were: " + threads + ", " + batchSize);
+        }
+        this.threads = threads;
+        this.batchSize = batchSize;
+    }
+
+    public void setErrorHandler(ErrorHandler errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Reads all the lines from input, normalises them and writes the valid
+     * ones to the output (each followed by new line character). The streams
+     * are not closed by this method.
+     *
+     * @param input source of FEN records, one per line
+     * @param output destination of normalised FEN records
+     * @return the number of valid records written to the output
+     * @throws IOException if reading or writing fails
+     */
+    public long process(BufferedReader input, Writer output) throws IOException {
+        requireNonNull(input, "input must not be null!");
+        requireNonNull(output, "output must not be null!");
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Deque<Future<Batch>> inFlight = new ArrayDeque<>();
+        long valid = 0;
+        long lineNumber = 1;
+        try {
+            Batch batch;
+            while ((batch = readBatch(input, lineNumber)) != null) {
+                lineNumber += batch.lines.size();
+                inFlight.addLast(executor.submit(batch));
+                if (inFlight.size() >= 2 * threads) { //bound the memory used by batches read ahead
+                    valid += write(inFlight.removeFirst(), output);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                valid += write(inFlight.removeFirst(), output);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        log.debug("Processed {} lines, {} valid FEN records", lineNumber - 1, valid);
+        return valid;
+    }
+//--------------------------- PRIVATE IMPLEMENTATION ---------------------------
+    private static final Logger log = LoggerFactory.getLogger(FenPipeline.class);
+    private static final int DEFAULT_BATCH_SIZE = 4096;
+    private final int threads;
+    private final int batchSize;
+    private ErrorHandler errorHandler;
+
+    private Batch readBatch(BufferedReader input, long firstLineNumber) throws IOException {
+        List<String> lines = new ArrayList<>(batchSize);
+        String line;
+        while (lines.size() < batchSize && (line = input.readLine()) != null) {
+            lines.add(line);
+        }
+        return lines.isEmpty() ? null : new Batch(lines, firstLineNumber);
+    }
+
+    private long write(Future<Batch> future, Writer output) throws IOException {
+        Batch batch;
+        try {
+            batch = future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for FEN batch to be processed", ex);
+        } catch (ExecutionException ex) {
+            throw new IOException("Processing of FEN batch failed", ex.getCause());
+        }
+        long valid = 0;
+        for (int i = 0; i < batch.results.length; i++) {
+            String result = batch.results[i];
+            if (result != null) {
+                output.write(result);
+                output.write('\n');
+                valid++;
+            } else if (batch.errors[i] != null && errorHandler != null) {
+                errorHandler.invalidFen(batch.firstLineNumber + i, batch.lines.get(i), batch.errors[i]);
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Lines read from input together with the results of their processing.
+     */
+    private static class Batch implements Callable<Batch> {
+
+        private final List<String> lines;
+        private final long firstLineNumber;
+        private final String[] results;
+        private final String[] errors;
+
+        public Batch(List<String> lines, long firstLineNumber) {
+            this.lines = lines;
+            this.firstLineNumber = firstLineNumber;
+            this.results = new String[lines.size()];
+            this.errors = new String[lines.size()];
+        }
+
+        @Override
+        public Batch call() {
+            FenParser parser = new FenParser();
+            for (int i = 0; i < results.length; i++) {
+                String line = lines.get(i);
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                results[i] = parser.tryNormalize(line);
+                errors[i] = parser.getLastError();
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package cz.janhrcek.chess.FEN;
+
+import cz.janhrcek.chess.model.api.Chessboard;
+import cz.janhrcek.chess.model.api.Position;
+import cz.janhrcek.chess.model.api.enums.Castling;
+import cz.janhrcek.chess.model.api.enums.Piece;
+import cz.janhrcek.chess.model.api.enums.Square;
+import cz.janhrcek.chess.model.impl.ChessboardImpl;
+import cz.janhrcek.chess.model.impl.PositionImpl;
+import java.nio.ByteBuffer;
+import java.util.EnumSet;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Compact fixed-width binary encoding of {@link Position} ("packed FEN").
+ * Every position is encoded into exactly {@link #ENCODED_SIZE} bytes with the
+ * following layout (multi-byte values are big-endian):
+ * <pre>
+ *  bytes  0 - 7   occupancy bitboard (bit 8*rank + (7-file) set for each
+ *                 occupied square - the same mapping as in BitboardManager)
+ *  bytes  8 - 23  4 bits per occupied square: ordinal of the piece, in the
+ *                 order of squares A8, B8, ... H1 (high nibble first), padded
+ *                 with zeros
+ *  byte  24       bit 4: black to move, bits 0-3: castling availabilities
+ *                 (bit i set = Castling with ordinal i available)
+ *  byte  25       file index of en-passant target square + 1 (0 = none)
+ *  bytes 26 - 27  half-move clock
+ *  bytes 28 - 29  full-move number
+ * </pre> The encoding is canonical (equal positions have equal encodings), so
+ * encoded positions can be compared byte by byte, e.g. when used as keys in
+ * sorted files or off-heap maps (see {@link #compare(ByteBuffer, ByteBuffer)}).
+ * All the methods taking ByteBuffer expect it to use the default (big-endian)
+ * byte order.
+ *
+ * @author jhrcek
+ */
+public final class PositionCodec {
+
+    /**
+     * The number of bytes of each encoded position.
+     */
+    public static final int ENCODED_SIZE = 30;
+
+    /**
+     * Encodes given position into new array of {@link #ENCODED_SIZE} bytes.
+     *
+     * @param position the position to encode
+     * @return the encoded position
+     */
+    public static byte[] encode(Position position) {
+        byte[] result = new byte[ENCODED_SIZE];
+        encode(position, ByteBuffer.wrap(result));
+        return result;
+    }
+
+    /**
+     * Writes encoded position into given buffer, starting at its current
+     * position (which is advanced by {@link #ENCODED_SIZE}).
+     *
+     * @param position the position to encode
+     * @param buffer the buffer to write to
+     * @throws IllegalArgumentException if the position has more than 32
+     * pieces or counters that don't fit into 16 bits
+     */
+    public static void encode(Position position, ByteBuffer buffer) {
+        requireNonNull(position, "position must not be null!");
+        int halfmoveClock = position.getHalfmoveClock();
+        int fullmoveNumber = position.getFullmoveNumber();
+        if (halfmoveClock < 0 || halfmoveClock > 0xFFFF || fullmoveNumber < 0 || fullmoveNumber > 0xFFFF) {
+            throw new IllegalArgumentException("Counters must be between 0 and 65535, but were: " + halfmoveClock + ", " + fullmoveNumber);
+        }
+        Chessboard board = position.getChessboard();
+        long occupancy = 0;
+        long high = 0; //nibbles of first 16 pieces
+        long low = 0; //nibbles of the other 16 pieces
+        int pieceCount = 0;
+        for (int sq = 63; sq >= 0; sq--) { //square indices in FEN order A8, B8, ... H1
+            Piece p = board.getPiece(sq);
+            if (p != null) {
+                if (pieceCount == 32) {
+                    throw new IllegalArgumentException("Position with more than 32 pieces can't be encoded");
+                }
+                occupancy |= 1L << sq;
+                if (pieceCount < 16) {
+                    high |= (long) p.code() << (60 - 4 * pieceCount);
+                } else {
+                    low |= (long) p.code() << (60 - 4 * (pieceCount - 16));
+                }
+                pieceCount++;
+            }
+        }
+        int flags = position.isWhiteToMove() ? 0 : 0x10;
+        for (Castling ca : position.getCastlings()) {
+            flags |= 1 << ca.ordinal();
+        }
+        Square ep = position.getEnPassantTarget();
+        buffer.putLong(occupancy)
+                .putLong(high)
+                .putLong(low)
+                .put((byte) flags)
+                .put((byte) (ep == null ? 0 : ep.getFile() + 1))
+                .putShort((short) halfmoveClock)
+                .putShort((short) fullmoveNumber);
+    }
+
+    /**
+     * Reads encoded position from given buffer, starting at its current
+     * position (which is advanced by {@link #ENCODED_SIZE}).
+     *
+     * @param buffer the buffer to read from
+     * @return the decoded position
+     * @throws IllegalArgumentException if the bytes are not valid encoded
+     * position
+     */
+    public static Position decode(ByteBuffer buffer) {
+        long occupancy = buffer.getLong();
+        long high = buffer.getLong();
+        long low = buffer.getLong();
+        int flags = buffer.get() & 0xFF;
+        int epFile = buffer.get() & 0xFF;
+        int halfmoveClock = buffer.getShort() & 0xFFFF;
+        int fullmoveNumber = buffer.getShort() & 0xFFFF;
+        if (Long.bitCount(occupancy) > 32 || (flags & ~0x1F) != 0 || epFile > 8) {
+            throw new IllegalArgumentException("The bytes don't represent valid encoded position");
+        }
+
+        Piece[] piecePlacement = new Piece[64];
+        int pieceCount = 0;
+        for (int sq = 63; sq >= 0; sq--) {
+            if ((occupancy & (1L << sq)) != 0) {
+                int nibble = pieceCount < 16
+                        ? (int) (high >>> (60 - 4 * pieceCount)) & 0xF
+                        : (int) (low >>> (60 - 4 * (pieceCount - 16))) & 0xF;
+                if (nibble > 11) {
+                    throw new IllegalArgumentException("The bytes don't represent valid encoded position: " + nibble + " is not piece");
+                }
+                piecePlacement[sq] = Piece.fromCode(nibble);
+                pieceCount++;
+            }
+        }
+        EnumSet<Castling> castlings = EnumSet.noneOf(Castling.class);
+        for (Castling ca : CASTLINGS) {
+            if ((flags & (1 << ca.ordinal())) != 0) {
+                castlings.add(ca);
+            }
+        }
+        boolean whiteToMove = (flags & 0x10) == 0;
+        Square ep = epFile == 0 ? null : Square.getSquare(epFile - 1, whiteToMove ? 5 : 2);
+        return new PositionImpl(new ChessboardImpl(piecePlacement), whiteToMove, castlings, ep, halfmoveClock, fullmoveNumber);
+    }
+
+    /**
+     * Compares two encoded positions byte by byte (bytes being treated as
+     * unsigned), starting at current positions of the buffers. The positions
+     * of the buffers are not changed.
+     *
+     * @return negative number, zero or positive number if the first encoded
+     * position is less than, equal to or greater than the second
+     */
+    public static int compare(ByteBuffer first, ByteBuffer second) {
+        int i = first.position();
+        int j = second.position();
+        int k = 0;
+        for (; k + 8 <= ENCODED_SIZE; k += 8) { //compare long by long ...
+            long a = first.getLong(i + k);
+            long b = second.getLong(j + k);
+            if (a != b) {
+                return (a ^ Long.MIN_VALUE) < (b ^ Long.MIN_VALUE) ? -1 : 1; //unsigned comparison
+            }
+        }
+        for (; k < ENCODED_SIZE; k++) { //... and the rest byte by byte
+            int a = first.get(i + k) & 0xFF;
+            int b = second.get(j + k) & 0xFF;
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Compares two encoded positions stored in byte arrays.
+     *
+     * @see #compare(ByteBuffer, ByteBuffer)
+     */
+    public static int compare(byte[] first, byte[] second) {
+        return compare(ByteBuffer.wrap(first), ByteBuffer.wrap(second));
+    }
+//--------------------------- PRIVATE IMPLEMENTATION ---------------------------
+    private static final Castling[] CASTLINGS = Castling.values();
+
+    /**
+     * This is utility class, and should not be instantiated.
+     */
+    private PositionCodec() {
+    }
+}
@@ -9,6 +9,7 @@ import zzz.to.delete.OldMutablePosition;
 import cz.janhrcek.chess.model.api.Promotion;
 import cz.janhrcek.chess.model.api.enums.Square;
 import cz.janhrcek.chess.rules.BitboardManager;
+import cz.janhrcek.chess.rules.Bitboards;
 import zzz.to.delete.OldFIDERules;
 import zzz.to.delete.OldRuleChecker;
 import java.io.BufferedReader;
@@ -400,58 +401,41 @@ public class PGNReader {
         }
 
         Square from = null;
-        ArrayList<Square> squaresWithPiece = new ArrayList<Square>();
-        Square[] potentFromSquares = Square.getSquares(
-                BitboardManager.getReachableSquaresBB(piece, to));
-
         OldMutablePosition currBoard = currentGame.getChessboard();
 
         if (piece.equals(WHITE_PAWN) || piece.equals(BLACK_PAWN)) {
             int fileIdx = (int) sanMove.charAt(0) - 97;
-            for (Square s : Square.values()) {
-                if (s.getFile() == fileIdx) {
-                    if (piece.equals(currBoard.getPiece(s))
-                            && ruleChecker.checkMove(currentGame, new Move(piece, s, to)).isLegal()) {
-                        from = s;
-                        break;
-                    }
+            for (int rankIdx = 7; rankIdx >= 0; rankIdx--) { //only squares of the pawn's file
+                Square s = Square.fromIndex(Square.index(fileIdx, rankIdx));
+                if (piece.equals(currBoard.getPiece(s))
+                        && ruleChecker.checkMove(currentGame, new Move(piece, s, to)).isLegal()) {
+                    from = s;
+                    break;
                 }
             }
         } else {
-            for (Square s : potentFromSquares) { //najdem vsechny vyskyty piecu
+            //bitboard of squares from which the piece can legally move to "to"
+            long candidates = 0L;
+            for (long bb = BitboardManager.getReachableSquaresBB(piece, to); bb != 0L; bb = Bitboards.withoutFirst(bb)) {
+                Square s = Square.fromIndex(Bitboards.first(bb));
                 if (piece.equals(currBoard.getPiece(s)) //je-li na nem dany piece
                         //a pritom ten piece muze v tom stavy hry legalne tahnou na "to"
                         && ruleChecker.checkMove(currentGame, new Move(piece, s, to)).isLegal()) {
-                    //System.out.println("Piece: " + piece + " potent from " + s + " to " + to);
-                    squaresWithPiece.add(s);
+                    candidates |= Bitboards.square(s.index());
                 }
             }
-            if (squaresWithPiece.size() == 1) {
-                from = squaresWithPiece.get(0);
-            } else {
+            if (Bitboards.hasMoreThanOne(candidates)) {
                 //ziskame desambiguacni info
                 char desambigChar = sanMove.charAt(1);
-                //System.out.println("Desambig Char = " + desambigChar);
                 if (Character.isDigit(desambigChar)) {
-                    int rankIdx = Character.digit(desambigChar, 10) - 1;
-                    //System.out.println("desambiguace urcila rank s idx " + rankIdx);
-                    for (Square s : squaresWithPiece) {
-                        if (s.getRank() == rankIdx) {
-                            from = s;
-                            break;
-                        }
-                    }
+                    candidates &= Bitboards.rank(Character.digit(desambigChar, 10) - 1);
                 } else {
-                    int fileIdx = desambigChar - 97;
-                    //System.out.println("desambiguace urcila file s idx " + fileIdx);
-                    for (Square s : squaresWithPiece) {
-                        if (s.getFile() == (fileIdx)) {
-                            from = s;
-                            break;
-                        }
-                    }
+                    candidates &= Bitboards.file(desambigChar - 97);
                 }
             }
+            if (candidates != 0L) {
+                from = Square.fromIndex(Bitboards.last(candidates)); //the first one in A8 ... H1 order
+            }
         }
 
         return from;
@@ -1,9 +1,11 @@
 package cz.janhrcek.chess.gui;
 
+import cz.janhrcek.chess.model.api.Chessboard;
 import cz.janhrcek.chess.model.api.GameBrowser;
 import cz.janhrcek.chess.model.api.GameBrowserChangedEvent;
 import cz.janhrcek.chess.model.api.GameListener;
 import cz.janhrcek.chess.model.api.Move;
+import cz.janhrcek.chess.model.api.Position;
 import cz.janhrcek.chess.model.api.Promotion;
 import static cz.janhrcek.chess.model.api.enums.Piece.*;
 import cz.janhrcek.chess.model.api.enums.Piece;
@@ -11,10 +13,17 @@ import cz.janhrcek.chess.model.api.enums.Square;
 import java.awt.AWTEvent;
 import java.awt.Color;
 import java.awt.Component;
+import java.awt.Font;
+import java.awt.FontMetrics;
 import java.awt.Graphics;
+import java.awt.GraphicsEnvironment;
+import java.awt.Image;
+import java.awt.Rectangle;
 import java.awt.event.ComponentEvent;
 import java.awt.event.MouseEvent;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Objects;
@@ -22,6 +31,8 @@ import javax.swing.ImageIcon;
 import javax.swing.JComponent;
 import javax.swing.JOptionPane;
 import javax.swing.border.LineBorder;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,6 +42,12 @@ import org.slf4j.LoggerFactory;
  * resizeable (resizing it will cause change of the size of the chessboard).
  * This component enables user to select moves by clicking on it.
  *
+ * The squares are rendered into cached image of the board (accelerated
+ * {@link VolatileImage}, where available). When the focused position changes,
+ * only the squares, whose contents changed, are redrawn into the image and
+ * only their area of the component is repainted, so browsing the game costs
+ * few square blits instead of painting the whole board.
+ *
  * @author Jan Hrcek
  */
 public final class ChessboardComponent extends JComponent implements GameListener {
@@ -43,8 +60,26 @@ public final class ChessboardComponent extends JComponent implements GameListene
      * @param gameBrowser Browser that provides a window into underlying game
      */
     public ChessboardComponent(GameBrowser gameBrowser) {
+        this(gameBrowser, new SquareImageFactory(10));
+    }
+
+    /**
+     * Creates new instance of ChessboardComponent, which paints the squares
+     * using images from given factory.
+     *
+     * @param gameBrowser Browser that provides a window into underlying game
+     * @param squareImages the factory of images of squares
+     */
+    ChessboardComponent(GameBrowser gameBrowser, SquareImageFactory squareImages) {
+        this.squareImages = Objects.requireNonNull(squareImages, "squareImages must not be null!");
         enableEvents(AWTEvent.MOUSE_EVENT_MASK | AWTEvent.COMPONENT_EVENT_MASK);
         setBorder(new LineBorder(Color.BLACK, 1));
+        squareImages.addChangeListener(new ChangeListener() {
+            @Override
+            public void stateChanged(ChangeEvent e) {
+                invalidateBoard(); //the images of the new size are ready
+            }
+        });
         setGameBrowser(gameBrowser);
     }
 
@@ -52,7 +87,8 @@ public final class ChessboardComponent extends JComponent implements GameListene
         this.gameBrowser = Objects.requireNonNull(gameBrowser, "gameBrowser must not be null!");
         gameBrowser.addGameListener(this); //To make ChessboardComponent listen to GameBrowserChanged events
         addMoveSelectedListener((MoveListener) gameBrowser); //To make GameBrowser listen to MoveSelected events
-        repaint();
+        displayedPosition = gameBrowser.getFocusedPosition();
+        invalidateBoard();
     }
 
     /**
@@ -97,8 +133,8 @@ public final class ChessboardComponent extends JComponent implements GameListene
         //BORDER = g.getFontMetrics().getHeight() + 4;
 
         if (sizeOfSquare >= 8) {
-            paintCaptions(g, sizeOfSquare, deltaX, deltaY);
-            paintSquares(g, sizeOfSquare, deltaX, deltaY);
+            paintCaptions(g);
+            paintSquares(g);
         }
     }
 
@@ -150,7 +186,7 @@ public final class ChessboardComponent extends JComponent implements GameListene
 
     private void setAndHighlightFromSquare(Square s) {
         selectedFromSquare = s;
-        paintRedBorderAroundSquare(s);
+        repaint(getSquareBounds(s)); //the red border is painted over the square
     }
 
     private void unhighlightFromSquare() {
@@ -160,12 +196,13 @@ public final class ChessboardComponent extends JComponent implements GameListene
         // again or clicking elsewhere on the chessboard component)
         Square tmpSq = selectedFromSquare;
         selectedFromSquare = null;
-        repaintSquare(tmpSq);
+        repaint(getSquareBounds(tmpSq));
     }
 
     /**
-     * Loads images of pieces of appropriate size, whenever this component is
-     * resized.
+     * Requests images of pieces of appropriate size, whenever this component
+     * is resized (until they are created in background, scaled images of the
+     * previous size are painted).
      *
      * @param ce component event which will be processed by this method (we only
      * process ComponentEvent.COMPONENT_RESIZED events)
@@ -183,9 +220,10 @@ public final class ChessboardComponent extends JComponent implements GameListene
         sizeOfSquare = (Math.min(source.getWidth(), source.getHeight()) - 2 * BORDER) / 8;
         deltaX = (source.getWidth() - (sizeOfSquare * 8)) / 2;
         deltaY = (source.getHeight() - (sizeOfSquare * 8)) / 2;
+        captionsFont = null; //the captions move with the board
         if (sizeOfSquare > 8) {
             squareImages.setImageSize(sizeOfSquare);
-            repaint(); //repaints component with new pieces icons
+            invalidateBoard(); //repaints component with the (possibly scaled) pieces icons
         }
     }
 
@@ -210,8 +248,14 @@ public final class ChessboardComponent extends JComponent implements GameListene
     public void gameChanged(GameBrowserChangedEvent event) {
         log.info("ChessboardComponent caught {}, updating state...", event.getClass());
 
-        for (Square changedSquare : event.getChangedSquares()) {
-            repaintSquare(changedSquare);
+        //the events may lag behind the browser (when delivered asynchronously), so the board shows the position of the last event
+        displayedPosition = event.getCurrentPosition();
+        long changed = event.getChangedSquaresMask();
+        if (renderedPosition != null) { //in case the event doesn't continue from the last one
+            changed |= getDifferentSquares(renderedPosition, displayedPosition);
+        }
+        for (; changed != 0L; changed &= changed - 1) {
+            repaintSquare(Square.fromIndex(Long.numberOfTrailingZeros(changed)));
         }
         if (selectedFromSquare != null) { //if position is changed by other means (e.g. by going to the initial position using some button, we need to cancel selected from Square
             unhighlightFromSquare();
@@ -221,6 +265,9 @@ public final class ChessboardComponent extends JComponent implements GameListene
 //------------------------PRIVATE IMPLEMENTATION--------------------------
 //------------------------------------------------------------------------
     private static final Logger log = LoggerFactory.getLogger(ChessboardComponent.class);
+    private static final long ALL_SQUARES = -1L;
+    private static final String[] FILE_CAPTIONS = {"A", "B", "C", "D", "E", "F", "G", "H"};
+    private static final String[] RANK_CAPTIONS = {"1", "2", "3", "4", "5", "6", "7", "8"};
     /**
      * Number of pixels from the edge of chessboard to the edge of the component
      * in which there are captions displayed.
@@ -253,7 +300,42 @@ public final class ChessboardComponent extends JComponent implements GameListene
      */
     private Collection<MoveListener> listeners =
             new HashSet<>();
-    private SquareImageFactory squareImages = new SquareImageFactory(10);
+    private final SquareImageFactory squareImages;
+    /**
+     * Cached image of the squares of the board (without the highlighting of
+     * selected square) - either VolatileImage or BufferedImage.
+     */
+    private Image boardImage;
+    /**
+     * Mask of squares (bit i stands for square with index i), which must be
+     * redrawn into the board image before it is painted.
+     */
+    private long dirtySquares = ALL_SQUARES;
+    /**
+     * The number of squares redrawn into the board image so far.
+     */
+    private int redrawnSquareCount;
+    /**
+     * The position displayed by the component - the current position of the
+     * last event received (the browser may be ahead of it).
+     */
+    private Position displayedPosition;
+    /**
+     * The position, from which the squares of the board image were last
+     * drawn (null if no square was drawn yet).
+     */
+    private Position renderedPosition;
+    /**
+     * The font, for which the positions of captions were computed (null if
+     * they must be computed again).
+     */
+    private Font captionsFont;
+    private final int[] fileCaptionX = new int[8];
+    private final int[] rankCaptionY = new int[8];
+    private final int[] rankCaptionX = new int[8];
+    private int topCaptionY;
+    private int bottomCaptionY;
+    private int rightCaptionX;
     /**
      * Instance of GameBrowser, from which we can get all information
      * (displayable on chessboard) about the state of the game.
@@ -261,108 +343,174 @@ public final class ChessboardComponent extends JComponent implements GameListene
     private GameBrowser gameBrowser;
 
     /**
-     * Paint the squares of the chessboard, which this component represents.
+     * Paints the squares of the chessboard, which this component represents,
+     * by copying the part of the board image within the clip of the graphics.
      *
      * @param g Graphics object with which the squares will be painted
-     * @param cellSize The size in pixels of the square on the resulting
-     * chessboard
-     * @param deltaX Number of pixels from left edge of the component to the
-     * left edge of the chessboard
-     * @param deltaY Number of pixels from top edge of the component to the top
-     * edge of the chessboard
-     */
-    private void paintSquares(Graphics g, int cellSize, int deltaX, int deltaY) {
+     */
+    private void paintSquares(Graphics g) {
         log.debug("  Calling paintSquares()");
-        for (Square sq : Square.values()) {
-            //Piece pieceOnSqare = model.getChessboard().getPiece(sq);
-            Piece pieceOnSqare = gameBrowser.getFocusedPosition().getChessboard().getPiece(sq);
-            squareImages.getSquareImage(pieceOnSqare, sq.isLight()).paintIcon(this, g,
-                    deltaX + sq.getFile() * cellSize,
-                    deltaY + (7 - sq.getRank()) * cellSize);
+        int boardSize = 8 * sizeOfSquare;
+        Rectangle area = new Rectangle(deltaX, deltaY, boardSize, boardSize);
+        Rectangle clip = g.getClipBounds();
+        if (clip != null) {
+            area = area.intersection(clip);
         }
+        do {
+            renderBoard(boardSize);
+            if (!area.isEmpty()) {
+                int sx = area.x - deltaX;
+                int sy = area.y - deltaY;
+                g.drawImage(boardImage, area.x, area.y, area.x + area.width, area.y + area.height,
+                        sx, sy, sx + area.width, sy + area.height, null);
+            }
+        } while (boardImage instanceof VolatileImage && ((VolatileImage) boardImage).contentsLost());
 
         //nakresli cerneny obdelnik kolem selectedFromSquare
         //(pokud nejaky vybrany je)
         if (selectedFromSquare != null) {
-            g.setColor(Color.RED);
-            g.drawRect(deltaX + selectedFromSquare.getFile() * cellSize,
-                    deltaY + (7 - selectedFromSquare.getRank()) * cellSize,
-                    cellSize - 1,
-                    cellSize - 1);
-            g.drawRect(deltaX + selectedFromSquare.getFile() * cellSize + 1,
-                    deltaY + (7 - selectedFromSquare.getRank()) * cellSize + 1,
-                    cellSize - 3,
-                    cellSize - 3);
+            paintRedBorderAroundSquare(g, selectedFromSquare);
         }
 
         //nakresli cerny obdelnik kolem sacovnice
         g.setColor(Color.BLACK);
-        g.drawRect(deltaX, deltaY, cellSize * 8, cellSize * 8);
+        g.drawRect(deltaX, deltaY, boardSize, boardSize);
+    }
+
+    /**
+     * Makes sure the board image has given size and redraws the dirty squares
+     * into it (all of them, if the image was recreated or its contents lost).
+     */
+    private void renderBoard(int boardSize) {
+        if (boardImage == null || boardImage.getWidth(null) != boardSize) {
+            boardImage = createBoardImage(boardSize);
+        } else if (boardImage instanceof VolatileImage) {
+            int status = ((VolatileImage) boardImage).validate(getGraphicsConfiguration());
+            if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+                boardImage = createBoardImage(boardSize);
+            } else if (status == VolatileImage.IMAGE_RESTORED) {
+                dirtySquares = ALL_SQUARES;
+            }
+        }
+        if (dirtySquares == 0L) {
+            return;
+        }
+        Chessboard chessboard = displayedPosition.getChessboard();
+        Graphics g = boardImage.getGraphics();
+        try {
+            for (long dirty = dirtySquares; dirty != 0L; dirty &= dirty - 1) {
+                Square sq = Square.fromIndex(Long.numberOfTrailingZeros(dirty));
+                squareImages.getSquareImage(chessboard.getPiece(sq), sq.isLight()).paintIcon(this, g,
+                        sq.getFile() * sizeOfSquare,
+                        (7 - sq.getRank()) * sizeOfSquare);
+                redrawnSquareCount++;
+            }
+        } finally {
+            g.dispose();
+        }
+        dirtySquares = 0L;
+        renderedPosition = displayedPosition;
     }
 
     /**
-     * Paints captions (names of files and ranks) around the chessboard.
+     * @return mask of squares with different pieces in given positions
+     */
+    private static long getDifferentSquares(Position first, Position second) {
+        if (first == second) {
+            return 0L;
+        }
+        long mask = 0L;
+        for (Piece piece : Piece.values()) {
+            mask |= first.getChessboard().getBitboard(piece) ^ second.getChessboard().getBitboard(piece);
+        }
+        return mask;
+    }
+
+    /**
+     * Creates the board image - accelerated one, if possible.
+     */
+    private Image createBoardImage(int boardSize) {
+        log.debug("Creating board image of size {}", boardSize);
+        dirtySquares = ALL_SQUARES;
+        Image image = GraphicsEnvironment.isHeadless() ? null : createVolatileImage(boardSize, boardSize);
+        return image != null ? image : new BufferedImage(boardSize, boardSize, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * Marks all squares as dirty and repaints the whole component.
+     */
+    private void invalidateBoard() {
+        dirtySquares = ALL_SQUARES;
+        repaint();
+    }
+
+    /**
+     * @return the number of squares redrawn into the board image so far
+     */
+    int getRedrawnSquareCount() {
+        return redrawnSquareCount;
+    }
+
+    /**
+     * Paints captions (names of files and ranks) around the chessboard. Their
+     * positions are computed only when the size of the board or the font
+     * changes.
      *
      * @param g Graphics object with which the squares will be painted
-     * @param cellSize The size in pixels of the square on the resulting
-     * chessboard
-     * @param deltaX Number of pixels from left edge of the component to the
-     * left edge of the chessboard
-     * @param deltaY Number of pixels from top edge of the component to the top
-     * edge of the chessboard
-     */
-    private void paintCaptions(Graphics g, int cellSize, int deltaX, int deltaY) {
+     */
+    private void paintCaptions(Graphics g) {
         log.debug("  Calling paintCaptions()");
+        if (!g.getFont().equals(captionsFont)) {
+            layOutCaptions(g);
+        }
+        for (int i = 0; i < 8; i++) {
+            g.drawString(FILE_CAPTIONS[i], fileCaptionX[i], topCaptionY);
+            g.drawString(FILE_CAPTIONS[i], fileCaptionX[i], bottomCaptionY);
+            g.drawString(RANK_CAPTIONS[i], rankCaptionX[i], rankCaptionY[i]);
+            g.drawString(RANK_CAPTIONS[i], rightCaptionX, rankCaptionY[i]);
+        }
+    }
+
+    private void layOutCaptions(Graphics g) {
+        FontMetrics metrics = g.getFontMetrics();
+        topCaptionY = -2 + deltaY;
+        bottomCaptionY = sizeOfSquare * 8 + deltaY + metrics.getHeight();
+        rightCaptionX = deltaX + 4 + sizeOfSquare * 8;
         for (int i = 0; i < 8; i++) {
             // column
-            String letter = String.valueOf((char) ('A' + i));
-            double letterWidth = g.getFontMetrics().getStringBounds(
-                    letter, g).getWidth();
-            int offsetX = (int) (i * cellSize + deltaX
-                    + (cellSize - letterWidth) / 2);
-            g.drawString(letter, offsetX, -2 + deltaY);
-            g.drawString(letter, offsetX, cellSize * 8 + deltaY
-                    + g.getFontMetrics().getHeight());
+            double letterWidth = metrics.getStringBounds(FILE_CAPTIONS[i], g).getWidth();
+            fileCaptionX[i] = (int) (i * sizeOfSquare + deltaX + (sizeOfSquare - letterWidth) / 2);
             // row
-            letter = String.valueOf(i + 1);
-            Rectangle2D letterBounds = g.getFontMetrics().getStringBounds(
-                    letter, g);
-            int offsetY = (int) ((8 - i) * cellSize + deltaY
-                    - (cellSize - letterBounds.getHeight()) / 2);
-            g.drawString(letter,
-                    deltaX - (int) letterBounds.getWidth() - 4,
-                    offsetY);
-            g.drawString(letter,
-                    deltaX + 4 + cellSize * 8,
-                    offsetY);
+            Rectangle2D letterBounds = metrics.getStringBounds(RANK_CAPTIONS[i], g);
+            rankCaptionY[i] = (int) ((8 - i) * sizeOfSquare + deltaY - (sizeOfSquare - letterBounds.getHeight()) / 2);
+            rankCaptionX[i] = deltaX - (int) letterBounds.getWidth() - 4;
         }
+        captionsFont = g.getFont();
     }
 
     /**
-     * Repaints rectangle that corresponds to given square on the chessboard.
+     * Redraws given square into the board image and repaints the rectangle
+     * that corresponds to it.
      *
      * @param s the square which we want to repaint
      */
     private void repaintSquare(Square s) {
         log.debug("Repaint square {}", s);
-        Graphics g = getGraphics();
-        Piece pieceOnSq = gameBrowser.getFocusedPosition().getChessboard().getPiece(s);
-
-        squareImages.getSquareImage(pieceOnSq, s.isLight()).paintIcon(this, g,
-                deltaX + s.getFile() * sizeOfSquare,
-                deltaY + (7 - s.getRank()) * sizeOfSquare);
-
-        if (s.equals(selectedFromSquare)) {
-            paintRedBorderAroundSquare(s);
-        }
+        dirtySquares |= 1L << s.index();
+        repaint(getSquareBounds(s));
+    }
 
-        //prekresli cerny obdelnik kolem sachovnice
-        g.setColor(Color.BLACK);
-        g.drawRect(deltaX, deltaY, sizeOfSquare * 8, sizeOfSquare * 8);
+    /**
+     * @return the rectangle of the component occupied by given square
+     */
+    private Rectangle getSquareBounds(Square s) {
+        return new Rectangle(deltaX + s.getFile() * sizeOfSquare,
+                deltaY + (7 - s.getRank()) * sizeOfSquare,
+                sizeOfSquare,
+                sizeOfSquare);
     }
 
-    private void paintRedBorderAroundSquare(Square s) {
-        Graphics g = getGraphics();
+    private void paintRedBorderAroundSquare(Graphics g, Square s) {
         Color previousColor = g.getColor(); //set to restore the color after painting
         g.setColor(Color.RED);
         g.drawRect(deltaX + s.getFile() * sizeOfSquare,
@@ -1,69 +1,250 @@
 package cz.janhrcek.chess.gui;
 
-import cz.janhrcek.chess.model.api.GameBrowser;
 import cz.janhrcek.chess.model.api.GameBrowserChangedEvent;
 import cz.janhrcek.chess.model.api.GameListener;
-import java.util.Enumeration;
-import java.util.Objects;
-import javax.swing.JEditorPane;
-import javax.swing.event.HyperlinkEvent;
-import javax.swing.event.HyperlinkListener;
-import javax.swing.text.html.HTMLEditorKit;
-import javax.swing.text.html.StyleSheet;
+import cz.janhrcek.chess.model.impl.CompactGameTree;
+import cz.janhrcek.chess.model.impl.GameImpl;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.Arrays;
+import javax.swing.JTextPane;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.Position;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.StyledDocument;
+import static java.util.Objects.requireNonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Displays the tree of moves of a game: the main line followed by variations
+ * in parentheses, with the focused move highlighted. Clicking a move focuses
+ * it.
+ *
+ * The view is updated incrementally: the text of a move added to the game is
+ * inserted into the document at the place where it belongs and focus change
+ * just moves the highlight from one move to another. The document is rebuilt
+ * only when new game is set. Each move is remembered by {@link Position}
+ * pointing to the start of its text in the document, so locating a move does
+ * not depend on the number of moves in the game.
  *
  * @author jhrcek
  */
-public final class GameTreeDisplayer extends JEditorPane implements GameListener {
-
-    private static final Logger log = LoggerFactory.getLogger(GameTreeDisplayer.class);
-    private GameBrowser gameBrowser;
-
-    //The purpose of this getter is to provide up-to-date reference to HyperLinkListener in case that gameBrowser changes
-    private GameBrowser getGameBrowser() {
-        return gameBrowser;
-    }
+public final class GameTreeDisplayer extends JTextPane implements GameListener {
 
-    public GameTreeDisplayer(final GameBrowser gameBrowser) {
-        setGameBrowser(gameBrowser); //Make this listen to GameBrowserChangedEvents
-        setContentType("text/html");
-        setupStylesheet();
+    public GameTreeDisplayer(GameImpl game) {
         setEditable(false);
-        addHyperlinkListener(new HyperlinkListener() {
+        addMouseListener(new MouseAdapter() {
             @Override
-            public void hyperlinkUpdate(HyperlinkEvent e) {
-                if (e.getEventType() == HyperlinkEvent.EventType.ACTIVATED) {
-                    log.info("User clicked link with id = {}", e.getDescription());
-                    getGameBrowser().focusPositionWithId(Integer.valueOf(e.getDescription()));
+            @SuppressWarnings("deprecation") //viewToModel2D replacing it is not available on Java 7
+            public void mouseClicked(MouseEvent e) {
+                int offset = viewToModel(e.getPoint());
+                if (offset < 0) {
+                    return;
+                }
+                Object id = getStyledDocument().getCharacterElement(offset).getAttributes().getAttribute(NODE_ID);
+                if (id != null) {
+                    log.info("User clicked move with id = {}", id);
+                    getGame().getBrowser().focusPositionWithId((Integer) id);
                 }
             }
         });
+        setGame(game);
+    }
+
+    /**
+     * Makes this displayer show (and listen to the changes of) given game
+     * instead of the current one.
+     */
+    public void setGame(GameImpl game) {
+        requireNonNull(game, "game must not be null!");
+        if (this.game != null) {
+            this.game.getBrowser().removeGameListener(this);
+        }
+        this.game = game;
+        game.getBrowser().addGameListener(this);
+        rebuild();
     }
 
-    public void setGameBrowser(GameBrowser gameBrowser) {
-        this.gameBrowser = Objects.requireNonNull(gameBrowser, "gameBrowser must not be null!");
-        this.gameBrowser.addGameListener(this);
-        setText(gameBrowser.toString());
+    public GameImpl getGame() {
+        return game;
     }
 
     @Override
     public void gameChanged(GameBrowserChangedEvent event) {
-        setText(gameBrowser.toString());
+        CompactGameTree tree = game.getTree();
+        while (rendered < tree.size()) {
+            insertNode(getStyledDocument(), tree, rendered);
+        }
+        highlight(game.getFocusedNode());
+    }
+//--------------------------- PRIVATE IMPLEMENTATION ---------------------------
+    private static final Logger log = LoggerFactory.getLogger(GameTreeDisplayer.class);
+    /**
+     * The attribute of the text of a move, whose value is the id of the node
+     * the move leads to.
+     */
+    private static final Object NODE_ID = new Object() {
+        @Override
+        public String toString() {
+            return "nodeId";
+        }
+    };
+    private static final SimpleAttributeSet PLAIN = new SimpleAttributeSet();
+    private static final SimpleAttributeSet FOCUSED = new SimpleAttributeSet();
+    private static final SimpleAttributeSet UNFOCUSED = new SimpleAttributeSet();
+
+    static {
+        StyleConstants.setBold(FOCUSED, true);
+        StyleConstants.setUnderline(FOCUSED, true);
+        StyleConstants.setBold(UNFOCUSED, false);
+        StyleConstants.setUnderline(UNFOCUSED, false);
+    }
+    private GameImpl game;
+    /**
+     * The number of nodes of the game tree shown in the document (nodes are
+     * added to the tree in the order of their ids, so these are the nodes with
+     * ids 0 .. rendered - 1).
+     */
+    private int rendered;
+    /**
+     * The start of the text of each shown node (space and the move, followed
+     * by line break after black's move).
+     */
+    private Position[] starts = new Position[0];
+    private int[] lengths = new int[0];
+    /**
+     * The length of the move itself in the text of each shown node.
+     */
+    private int[] moveLengths = new int[0];
+    private int highlighted;
+    private final StringBuilder text = new StringBuilder();
+
+    private void rebuild() {
+        StyledDocument document = new DefaultStyledDocument();
+        CompactGameTree tree = game.getTree();
+        rendered = 0;
+        starts = new Position[tree.size()];
+        lengths = new int[tree.size()];
+        moveLengths = new int[tree.size()];
+        while (rendered < tree.size()) {
+            insertNode(document, tree, rendered);
+        }
+        highlighted = CompactGameTree.ROOT;
+        setStyledDocument(document);
+        highlight(game.getFocusedNode());
+    }
+
+    /**
+     * Inserts the text of given node (which must be the next node not shown
+     * yet) into the document. The text of a main line move follows the text
+     * of its parent, variations follow the main line of their parent in
+     * parentheses, separated by semicolons.
+     */
+    private void insertNode(StyledDocument document, CompactGameTree tree, int node) {
+        text.setLength(0);
+        int offset;
+        int moveOffset;
+        boolean variation = false;
+        boolean firstVariation = false;
+        if (node == CompactGameTree.ROOT) {
+            offset = 0;
+            moveOffset = 1;
+            text.append(" Start");
+        } else {
+            int parent = tree.getParent(node);
+            int sibling = tree.getFirstChild(parent);
+            if (sibling == node) { //new main line
+                offset = end(parent);
+            } else {
+                variation = true;
+                while (tree.getNextSibling(sibling) != node) {
+                    sibling = tree.getNextSibling(sibling);
+                }
+                if (sibling == tree.getFirstChild(parent)) {
+                    firstVariation = true;
+                    offset = subtreeEnd(tree, sibling);
+                    text.append('(');
+                } else { //behind the ';' of the previous variation
+                    offset = subtreeEnd(tree, sibling) + 1;
+                }
+            }
+            moveOffset = text.length() + 1;
+            text.append(' ');
+            game.appendMove(node, text);
+        }
+        int moveLength = text.length() - moveOffset;
+        boolean whiteToMove = game.getPosition(CompactGameTree.ROOT).isWhiteToMove() == (tree.getPly(node) % 2 == 0);
+        if (node == CompactGameTree.ROOT || whiteToMove) { //line break after black's move
+            text.append('\n');
+        }
+        int length = text.length() - moveOffset + 1;
+        if (variation) {
+            text.append(firstVariation ? ";)" : ";");
+        }
+        try {
+            document.insertString(offset, text.toString(), PLAIN);
+            document.setCharacterAttributes(offset + moveOffset, moveLength, linkAttributes(node), true);
+            if (node == starts.length) {
+                int capacity = starts.length + (starts.length >> 1) + 1;
+                starts = Arrays.copyOf(starts, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                moveLengths = Arrays.copyOf(moveLengths, capacity);
+            }
+            starts[node] = document.createPosition(offset + moveOffset - 1);
+        } catch (BadLocationException ex) {
+            throw new IllegalStateException("The view of the game tree is inconsistent", ex);
+        }
+        lengths[node] = length;
+        moveLengths[node] = moveLength;
+        rendered++;
     }
 
-    private void setupStylesheet() {
-        //Remove all style rules ...
-        StyleSheet sheet = ((HTMLEditorKit) getEditorKit()).getStyleSheet();
-        Enumeration rules = sheet.getStyleNames();
-        while (rules.hasMoreElements()) {
-            String name = (String) rules.nextElement();
-            sheet.removeStyle(name);
+    /**
+     * @return offset just behind the text of given node
+     */
+    private int end(int node) {
+        return starts[node].getOffset() + lengths[node];
+    }
+
+    /**
+     * @return offset just behind the text of the shown part of the subtree of
+     * given node (including its variations)
+     */
+    private int subtreeEnd(CompactGameTree tree, int node) {
+        int closingParentheses = 0;
+        while (true) {
+            int mainLine = tree.getFirstChild(node);
+            if (mainLine == CompactGameTree.NONE || mainLine >= rendered) {
+                return end(node) + closingParentheses;
+            }
+            int last = mainLine;
+            for (int sibling = tree.getNextSibling(mainLine);
+                    sibling != CompactGameTree.NONE && sibling < rendered;
+                    sibling = tree.getNextSibling(sibling)) {
+                last = sibling;
+            }
+            if (last != mainLine) { //the text of the last variation is followed by ";)"
+                closingParentheses += 2;
+            }
+            node = last;
         }
-        //and add only rules for displaying "a" html tag
-        sheet.addRule("a.focus {font-weight:bold;text-decoration:underline;}");
-        sheet.addRule("a {color:black;}");
+    }
+
+    private void highlight(int node) {
+        StyledDocument document = getStyledDocument();
+        document.setCharacterAttributes(starts[highlighted].getOffset() + 1, moveLengths[highlighted], UNFOCUSED, false);
+        document.setCharacterAttributes(starts[node].getOffset() + 1, moveLengths[node], FOCUSED, false);
+        highlighted = node;
+        setCaretPosition(starts[node].getOffset()); //scrolls the focused move into view
+    }
+
+    private static AttributeSet linkAttributes(int node) {
+        SimpleAttributeSet attributes = new SimpleAttributeSet();
+        attributes.addAttribute(NODE_ID, node);
+        return attributes;
     }
 }
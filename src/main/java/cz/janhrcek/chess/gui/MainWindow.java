@@ -2,7 +2,6 @@ package cz.janhrcek.chess.gui;
 
 import cz.janhrcek.chess.FEN.Fen;
 import cz.janhrcek.chess.FEN.InvalidFenException;
-import cz.janhrcek.chess.model.api.Game;
 import cz.janhrcek.chess.model.api.GameBrowser;
 import cz.janhrcek.chess.model.impl.GameImpl;
 import java.awt.FlowLayout;
@@ -10,6 +9,7 @@ import java.awt.GridLayout;
 import java.awt.HeadlessException;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
 import javax.swing.AbstractAction;
 import javax.swing.JButton;
@@ -21,6 +21,7 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JSplitPane;
+import javax.swing.SwingUtilities;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,7 +45,7 @@ public class MainWindow {
 //TODO - untangle the way model objects and components are intertwined - to enable set new game, when new instance of game (browser) will be injected into the components
         //GUI components
         chessboardComponent = new ChessboardComponent(gameBrowser);
-        gameTreeDisplayer = new GameTreeDisplayer(gameBrowser);
+        gameTreeDisplayer = new GameTreeDisplayer(currentGame);
         positionInfoDisplayer = new PositionInfoDisplayer(gameBrowser);
 
         JScrollPane scrollableGameTreeDisplay = new JScrollPane(gameTreeDisplayer);
@@ -131,7 +132,7 @@ public class MainWindow {
     //Main window
     private JFrame frame;
     //Model (Browser providing view on chess game)
-    private Game currentGame;
+    private GameImpl currentGame;
     private GameBrowser gameBrowser;
     //Gui providing view into model
     private ChessboardComponent chessboardComponent;
@@ -139,21 +140,29 @@ public class MainWindow {
     private PositionInfoDisplayer positionInfoDisplayer;
     //
     private static final Logger log = LoggerFactory.getLogger(MainWindow.class);
+    private static final Executor EVENT_DISPATCH_THREAD = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            SwingUtilities.invokeLater(command);
+        }
+    };
 
-    private Game createNewGameModel() throws InvalidFenException {
+    private GameImpl createNewGameModel() throws InvalidFenException {
         return createNewGameModel(Fen.INITIAL_POSITION);
     }
 
-    private Game createNewGameModel(String fen) throws InvalidFenException {
-        return new GameImpl(fen);
+    private GameImpl createNewGameModel(String fen) throws InvalidFenException {
+        GameImpl game = new GameImpl(fen);
+        game.setEventExecutor(EVENT_DISPATCH_THREAD); //coalesces bursts of focus changes (e.g. held arrow key)
+        return game;
     }
 
-    private void injectNewGameIntoGuiComponents(Game game) {
+    private void injectNewGameIntoGuiComponents(GameImpl game) {
         chessboardComponent.removeMoveSelectedEventListener((MoveListener) gameBrowser); //first remove the association ChessboardComponent->gameBrowser
         //get new GB and inject it into components
         gameBrowser = game.getBrowser();
         chessboardComponent.setGameBrowser(gameBrowser);
-        gameTreeDisplayer.setGameBrowser(gameBrowser);
+        gameTreeDisplayer.setGame(game);
         positionInfoDisplayer.setGameBrowser(gameBrowser);
     }
 
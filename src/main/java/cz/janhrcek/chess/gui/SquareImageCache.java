@@ -0,0 +1,131 @@
+package cz.janhrcek.chess.gui;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+import static java.util.Objects.requireNonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of rasterised images of squares on disk, so that the images don't have
+ * to be transcoded from SVG on every start. The images of one size are stored
+ * as single PNG sprite sheet (the images side by side), whose name contains
+ * the size and a hash of the SVG files, so editing the SVGs invalidates the
+ * cache. The sheets are read by plain {@link ImageIO}. Failures to read or
+ * write the cache are logged and treated as cache misses.
+ *
+ * @author jhrcek
+ */
+public final class SquareImageCache {
+
+    /**
+     * Creates cache storing the images in given directory (created when
+     * needed).
+     *
+     * @param directory the directory to store the images in
+     */
+    public SquareImageCache(Path directory) {
+        this.directory = requireNonNull(directory, "directory must not be null!");
+    }
+
+    /**
+     * @return cache in the user's cache directory (given by XDG_CACHE_HOME,
+     * LOCALAPPDATA on Windows, or ~/.cache)
+     */
+    public static SquareImageCache inUserCacheDirectory() {
+        String base = System.getenv("XDG_CACHE_HOME");
+        if (base == null || base.isEmpty()) {
+            base = System.getenv("LOCALAPPDATA");
+        }
+        Path root = base == null || base.isEmpty() ? Paths.get(System.getProperty("user.home"), ".cache") : Paths.get(base);
+        return new SquareImageCache(root.resolve("cz.janhrcek.chess").resolve("squares"));
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Loads the images of given size.
+     *
+     * @param sizeInPixels the width of the images
+     * @param svgHash the hash of the SVG files, the images were created from
+     * @param count the number of images
+     * @return the images or null, if they are not in the cache
+     */
+    public ImageIcon[] load(int sizeInPixels, String svgHash, int count) {
+        Path file = file(sizeInPixels, svgHash);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            BufferedImage sheet = ImageIO.read(file.toFile());
+            if (sheet == null || sheet.getWidth() != sizeInPixels * count) {
+                log.warn("Ignoring invalid cached images {}", file);
+                return null;
+            }
+            ImageIcon[] icons = new ImageIcon[count];
+            for (int i = 0; i < count; i++) {
+                icons[i] = new ImageIcon(sheet.getSubimage(i * sizeInPixels, 0, sizeInPixels, sheet.getHeight()));
+            }
+            log.info("Loaded images of size {} from {}", sizeInPixels, file);
+            return icons;
+        } catch (IOException ex) {
+            log.warn("Reading cached images " + file + " failed", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the images of given size (all must have the same height).
+     *
+     * @param sizeInPixels the width of the images
+     * @param svgHash the hash of the SVG files, the images were created from
+     * @param icons the images
+     */
+    public void store(int sizeInPixels, String svgHash, ImageIcon[] icons) {
+        int height = 0;
+        for (ImageIcon icon : icons) {
+            if (icon == null || icon.getIconWidth() != sizeInPixels) {
+                return; //don't cache incomplete sets
+            }
+            height = Math.max(height, icon.getIconHeight());
+        }
+        BufferedImage sheet = new BufferedImage(sizeInPixels * icons.length, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics g = sheet.createGraphics();
+        for (int i = 0; i < icons.length; i++) {
+            g.drawImage(icons[i].getImage(), i * sizeInPixels, 0, null);
+        }
+        g.dispose();
+        Path file = file(sizeInPixels, svgHash);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(directory);
+            if (!ImageIO.write(sheet, "png", tmp.toFile())) {
+                throw new IOException("No PNG writer available");
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            log.warn("Writing cached images " + file + " failed", ex);
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+//--------------------------- PRIVATE IMPLEMENTATION ---------------------------
+    private static final Logger log = LoggerFactory.getLogger(SquareImageCache.class);
+    private final Path directory;
+
+    private Path file(int sizeInPixels, String svgHash) {
+        return directory.resolve("squares-" + sizeInPixels + "-" + svgHash + ".png");
+    }
+}
@@ -1,18 +1,27 @@
 package cz.janhrcek.chess.gui;
 
 import cz.janhrcek.chess.model.api.enums.Piece;
-import java.io.ByteArrayOutputStream;
-import java.io.FileNotFoundException;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.util.HashMap;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.swing.ImageIcon;
-import org.apache.batik.transcoder.SVGAbstractTranscoder;
-import org.apache.batik.transcoder.TranscoderException;
-import org.apache.batik.transcoder.TranscoderInput;
-import org.apache.batik.transcoder.TranscoderOutput;
-import org.apache.batik.transcoder.image.PNGTranscoder;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.EventListenerList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -20,93 +29,300 @@ import org.slf4j.LoggerFactory;
  * Manages creation of appropriately sized images of squares (either empty
  * squares or with an image of piece on them) to be displayed on the chessboard.
  *
+ * Transcoding the SVG images takes long, so only the images of the initial
+ * size are created synchronously. When the size changes, the images of the new
+ * size are created in background thread once the size stops changing for a
+ * while. Until they are ready, the images of the last size available are
+ * scaled to the new size. Images of few recently used sizes are cached, so
+ * switching back to them is immediate. Listeners registered by
+ * {@link #addChangeListener(ChangeListener)} are notified, when the images of
+ * the requested size are ready. Except for the constructor, the methods must
+ * be called from the event dispatch thread.
+ *
+ * The transcoded images are also stored in {@link SquareImageCache} on disk,
+ * so the images of sizes used before are just read from PNG files on the next
+ * start (and Batik is not even loaded).
+ *
  * @author jhrcek
  */
 public class SquareImageFactory {
 
-    private static final Logger log = LoggerFactory.getLogger(SquareImageFactory.class);
     /**
-     * Map for storing images (icons) of pieces on squares, which are used to
-     * create image of the whole board.
+     * The default time (in milliseconds), for which the size must stay the
+     * same, before the images of that size are created.
      */
-    private Map<String, ImageIcon> images =
-            new HashMap<>(26); //6 piece kinds * 2 piece colors * 2 background colors + 2 empty 
+    public static final int DEFAULT_DEBOUNCE_MILLIS = 150;
 
     public SquareImageFactory(int initialSizeOfImages) {
-        generateNewIcons(initialSizeOfImages);
+        this(initialSizeOfImages, DEFAULT_DEBOUNCE_MILLIS, SquareImageCache.inUserCacheDirectory());
+    }
+
+    /**
+     * Creates new factory with images of given size.
+     *
+     * @param initialSizeOfImages the size (in pixels) of the initial images
+     * @param debounceMillis the time (in milliseconds), for which the size must
+     * stay the same, before the images of that size are created
+     * @param diskCache the cache of transcoded images on disk or null to
+     * transcode the images every time
+     * @throws IllegalArgumentException if the size is not between 1 and 1000
+     */
+    public SquareImageFactory(int initialSizeOfImages, int debounceMillis, SquareImageCache diskCache) {
+        checkSize(initialSizeOfImages);
+        this.diskCache = diskCache;
+        this.svgHash = diskCache == null ? null : hashSvgs();
+        requestedSize = initialSizeOfImages;
+        images = createIcons(initialSizeOfImages);
+        rasterized = images;
+        cache.put(initialSizeOfImages, images);
+        debounce = new Timer(debounceMillis, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                rasterizeInBackground(requestedSize);
+            }
+        });
+        debounce.setRepeats(false);
     }
 
     public ImageIcon getSquareImage(Piece piece, boolean isBackgroundLight) {
-        return images.get(piece + (isBackgroundLight ? "_L" : "_D"));
+        return images[index(piece, isBackgroundLight)];
     }
 
+    /**
+     * Requests images of given size. If they are not cached, the images of the
+     * last size available are scaled to given size and used until the new
+     * images are created.
+     *
+     * @param sizeInPixels the size (in pixels) of the images
+     * @throws IllegalArgumentException if the size is not between 1 and 1000
+     */
     public void setImageSize(int sizeInPixels) {
-        generateNewIcons(sizeInPixels);
+        checkSize(sizeInPixels);
+        if (sizeInPixels == requestedSize) {
+            return;
+        }
+        requestedSize = sizeInPixels;
+        ImageIcon[] cached = cache.get(sizeInPixels);
+        if (cached != null) {
+            debounce.stop();
+            images = cached;
+            rasterized = cached;
+        } else {
+            images = scale(rasterized, sizeInPixels);
+            debounce.restart();
+        }
     }
 
     /**
-     * This method converts images of all pieces stored in svg files to images
-     * in of given width in png format.
+     * @return the size (in pixels) of the images requested last
+     */
+    public int getImageSize() {
+        return requestedSize;
+    }
+
+    /**
+     * Registers listener notified (in the event dispatch thread), when the
+     * images of requested size replace the scaled ones.
      *
-     * @param sizeInPixels width (in pixels) of png icons to be generated from
-     * svg input
+     * @param listener the listener to register
+     */
+    public void addChangeListener(ChangeListener listener) {
+        listeners.add(ChangeListener.class, listener);
+    }
+
+    public void removeChangeListener(ChangeListener listener) {
+        listeners.remove(ChangeListener.class, listener);
+    }
+
+    /**
+     * @return true if the images of given size are cached
+     */
+    boolean isCached(int sizeInPixels) {
+        return cache.containsKey(sizeInPixels);
+    }
+
+//--------------------------- PRIVATE IMPLEMENTATION ---------------------------
+    private static final Logger log = LoggerFactory.getLogger(SquareImageFactory.class);
+    /**
+     * The number of sizes, whose images are cached.
+     */
+    private static final int RECENT_SIZES = 4;
+    /**
+     * The index of the images of empty squares.
+     */
+    private static final int EMPTY = Piece.values().length;
+    /**
+     * The number of images (6 piece kinds * 2 piece colors * 2 background
+     * colors + 2 empty).
+     */
+    static final int IMAGE_COUNT = 2 * (EMPTY + 1);
+    /**
+     * Images (icons) of pieces on squares, which are used to create image of
+     * the whole board, indexed by {@link #index(Piece, boolean)}.
+     */
+    private ImageIcon[] images;
+    /**
+     * The images of the last size, that was actually created from the SVGs
+     * (the scaled images are created from them).
      */
-    private void generateNewIcons(int sizeInPixels) {
+    private ImageIcon[] rasterized;
+    private volatile int requestedSize;
+    private final Map<Integer, ImageIcon[]> cache = new LinkedHashMap<Integer, ImageIcon[]>(RECENT_SIZES + 1, 1f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, ImageIcon[]> eldest) {
+            return size() > RECENT_SIZES;
+        }
+    };
+    private final Timer debounce;
+    private final EventListenerList listeners = new EventListenerList();
+    private final ThreadPoolExecutor rasterizer = createRasterizer();
+    private final SquareImageCache diskCache;
+    /**
+     * The hash of the SVG files (part of the key of the images in the disk
+     * cache) or null, if the disk cache is not used.
+     */
+    private final String svgHash;
+
+    /**
+     * @return the index of the image of given piece (null for empty square) on
+     * square of given color
+     */
+    static int index(Piece piece, boolean isBackgroundLight) {
+        return 2 * (piece == null ? EMPTY : piece.ordinal()) + (isBackgroundLight ? 0 : 1);
+    }
+
+    /**
+     * @return the name of the SVG file (on the classpath) with the image of
+     * given piece (null for empty square) on square of given color
+     */
+    static String svgName(Piece piece, boolean isBackgroundLight) {
+        return (piece == null ? "null" : piece.toString()) + (isBackgroundLight ? "_L.svg" : "_D.svg");
+    }
+
+    private static void checkSize(int sizeInPixels) {
         if (sizeInPixels < 1 || sizeInPixels > 1000) {
             throw new IllegalArgumentException("width of output images must"
                     + " be between 1 and 1000 (in pixels)");
         }
-        log.info("Generating new set of piece icons with size {} pixels", sizeInPixels);
-
-        //vytvorime transcoder, ktery prevede svg soubory na pgn
-        PNGTranscoder transcoder = new PNGTranscoder();
-        // ... a nastavime pozadovany rozmer vystupnich pgnek
-        transcoder.addTranscodingHint(SVGAbstractTranscoder.KEY_WIDTH,
-                Float.valueOf((float) sizeInPixels));
-
-        //vsechny svgcka postupne prevedem na png
-        for (String suffix : new String[]{"_L.svg", "_D.svg"}) {
-            for (Piece piece : Piece.values()) {
-                String inputImageName = piece + suffix; //piece-on-square icons on the classpath
-                loadIcon(inputImageName, transcoder);
+    }
+
+    private static ThreadPoolExecutor createRasterizer() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "SquareImageFactory rasterizer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Creates the images of given size in the background thread, unless
+     * another size is requested before the thread gets to it.
+     */
+    private void rasterizeInBackground(final int sizeInPixels) {
+        if (cache.containsKey(sizeInPixels)) {
+            return;
+        }
+        rasterizer.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (sizeInPixels != requestedSize) {
+                    log.debug("Skipping images of size {}, the size has changed meanwhile", sizeInPixels);
+                    return;
+                }
+                final ImageIcon[] icons = createIcons(sizeInPixels);
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        cache.put(sizeInPixels, icons);
+                        if (sizeInPixels == requestedSize) {
+                            images = icons;
+                            rasterized = icons;
+                            fireStateChanged();
+                        }
+                    }
+                });
             }
-            String inputImageName = "null" + suffix;
-            loadIcon(inputImageName, transcoder);
+        });
+    }
+
+    /**
+     * Reads the images of given size from the disk cache or transcodes them
+     * from the SVGs (and stores them to the cache).
+     */
+    private ImageIcon[] createIcons(int sizeInPixels) {
+        if (diskCache == null || svgHash == null) {
+            return SvgRasterizer.rasterize(sizeInPixels);
+        }
+        ImageIcon[] icons = diskCache.load(sizeInPixels, svgHash, IMAGE_COUNT);
+        if (icons == null) {
+            icons = SvgRasterizer.rasterize(sizeInPixels);
+            diskCache.store(sizeInPixels, svgHash, icons);
         }
+        return icons;
     }
 
     /**
-     * This method loads .svg file with given name, transforms it to PGN and
-     * stores it to this class' "images" map, which holds the images of pieces
-     * on squares.
-     *
-     * @param inputSVGName name of the input svg file
-     * @param t the transcoder with which the svg file will be transcoded into
-     * bitmap
+     * @return hexadecimal SHA-1 hash of the contents of all the SVG files or
+     * null, if some of them can't be read
      */
-    private void loadIcon(String inputSVGName, PNGTranscoder t) {
+    private static String hashSvgs() {
         try {
-            // create the transcoder input
-            String svgURI = SquareImageFactory.class.getResource(inputSVGName).toString();
-            TranscoderInput input = new TranscoderInput(svgURI);
-            try (ByteArrayOutputStream ostream = new ByteArrayOutputStream()) {
-                TranscoderOutput output = new TranscoderOutput(ostream);
-
-                //save the image to byte array as png
-                t.transcode(input, output);
-                ImageIcon icon = new ImageIcon(ostream.toByteArray());
-                log.info("loading piece image {} ", inputSVGName.substring(0, inputSVGName.length() - 4));
-                images.put(inputSVGName.substring(0, inputSVGName.length() - 4), icon);
-                ostream.flush();
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] buffer = new byte[8192];
+            for (boolean isBackgroundLight : new boolean[]{true, false}) {
+                for (int i = 0; i <= EMPTY; i++) {
+                    String name = svgName(i == EMPTY ? null : Piece.values()[i], isBackgroundLight);
+                    try (InputStream in = SquareImageFactory.class.getResourceAsStream(name)) {
+                        if (in == null) {
+                            throw new IOException("Missing " + name);
+                        }
+                        for (int read; (read = in.read(buffer)) != -1;) {
+                            digest.update(buffer, 0, read);
+                        }
+                    }
+                }
+            }
+            StringBuilder hash = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hash.append(String.format("%02x", b));
+            }
+            return hash.toString();
+        } catch (IOException | NoSuchAlgorithmException ex) {
+            log.warn("Can't hash the SVG images, the disk cache won't be used", ex);
+            return null;
+        }
+    }
+
+    private void fireStateChanged() {
+        ChangeEvent event = new ChangeEvent(this);
+        for (ChangeListener listener : listeners.getListeners(ChangeListener.class)) {
+            listener.stateChanged(event);
+        }
+    }
+
+    /**
+     * Scales the images to given size (to be displayed until the images of
+     * that size are created).
+     */
+    private static ImageIcon[] scale(ImageIcon[] icons, int sizeInPixels) {
+        ImageIcon[] scaled = new ImageIcon[icons.length];
+        for (int i = 0; i < icons.length; i++) {
+            if (icons[i] == null) {
+                continue;
             }
-        } catch (MalformedURLException mue) {
-            log.error("There was something wrong with the url of some svg file", mue);
-        } catch (FileNotFoundException fnfe) {
-            log.error("Exception when loading piece icons", fnfe);
-        } catch (TranscoderException te) {
-            log.error("There was an exception during transcoding of piece icon file", te);
-        } catch (IOException ioe) {
-            log.error("Exception when loading icon", ioe);
+            int height = Math.max(1, icons[i].getIconHeight() * sizeInPixels / icons[i].getIconWidth());
+            BufferedImage image = new BufferedImage(sizeInPixels, height, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = image.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(icons[i].getImage(), 0, 0, sizeInPixels, height, null);
+            g.dispose();
+            scaled[i] = new ImageIcon(image);
         }
+        return scaled;
     }
 }
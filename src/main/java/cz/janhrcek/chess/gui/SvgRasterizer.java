@@ -0,0 +1,94 @@
+package cz.janhrcek.chess.gui;
+
+import cz.janhrcek.chess.model.api.enums.Piece;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import javax.swing.ImageIcon;
+import org.apache.batik.transcoder.SVGAbstractTranscoder;
+import org.apache.batik.transcoder.TranscoderException;
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.TranscoderOutput;
+import org.apache.batik.transcoder.image.PNGTranscoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates images of squares from the SVG files using Batik. Kept apart from
+ * {@link SquareImageFactory}, so that Batik is loaded only when the images
+ * are not found in {@link SquareImageCache}.
+ *
+ * @author jhrcek
+ */
+final class SvgRasterizer {
+
+    private SvgRasterizer() {
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(SvgRasterizer.class);
+
+    /**
+     * This method converts images of all pieces stored in svg files to images
+     * in of given width in png format.
+     *
+     * @param sizeInPixels width (in pixels) of png icons to be generated from
+     * svg input
+     * @return the images indexed by
+     * {@link SquareImageFactory#index(Piece, boolean)}
+     */
+    static ImageIcon[] rasterize(int sizeInPixels) {
+        log.info("Generating new set of piece icons with size {} pixels", sizeInPixels);
+
+        //vytvorime transcoder, ktery prevede svg soubory na pgn
+        PNGTranscoder transcoder = new PNGTranscoder();
+        // ... a nastavime pozadovany rozmer vystupnich pgnek
+        transcoder.addTranscodingHint(SVGAbstractTranscoder.KEY_WIDTH,
+                Float.valueOf((float) sizeInPixels));
+
+        //vsechny svgcka postupne prevedem na png
+        ImageIcon[] icons = new ImageIcon[SquareImageFactory.IMAGE_COUNT];
+        for (boolean isBackgroundLight : new boolean[]{true, false}) {
+            for (Piece piece : Piece.values()) {
+                String inputImageName = SquareImageFactory.svgName(piece, isBackgroundLight); //piece-on-square icons on the classpath
+                icons[SquareImageFactory.index(piece, isBackgroundLight)] = loadIcon(inputImageName, transcoder);
+            }
+            icons[SquareImageFactory.index(null, isBackgroundLight)] = loadIcon(SquareImageFactory.svgName(null, isBackgroundLight), transcoder);
+        }
+        return icons;
+    }
+
+    /**
+     * This method loads .svg file with given name and transforms it to PGN
+     * image of a piece on square.
+     *
+     * @param inputSVGName name of the input svg file
+     * @param t the transcoder with which the svg file will be transcoded into
+     * bitmap
+     * @return the image or null, if it could not be loaded
+     */
+    private static ImageIcon loadIcon(String inputSVGName, PNGTranscoder t) {
+        try {
+            // create the transcoder input
+            String svgURI = SvgRasterizer.class.getResource(inputSVGName).toString();
+            TranscoderInput input = new TranscoderInput(svgURI);
+            try (ByteArrayOutputStream ostream = new ByteArrayOutputStream()) {
+                TranscoderOutput output = new TranscoderOutput(ostream);
+
+                //save the image to byte array as png
+                t.transcode(input, output);
+                log.debug("loading piece image {} ", inputSVGName.substring(0, inputSVGName.length() - 4));
+                return new ImageIcon(ostream.toByteArray());
+            }
+        } catch (MalformedURLException mue) {
+            log.error("There was something wrong with the url of some svg file", mue);
+        } catch (FileNotFoundException fnfe) {
+            log.error("Exception when loading piece icons", fnfe);
+        } catch (TranscoderException te) {
+            log.error("There was an exception during transcoding of piece icon file", te);
+        } catch (IOException ioe) {
+            log.error("Exception when loading icon", ioe);
+        }
+        return null;
+    }
+}
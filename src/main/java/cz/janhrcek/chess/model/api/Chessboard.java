@@ -13,5 +13,30 @@ public interface Chessboard {
 
     Piece getPiece(Square square);
 
+    /**
+     * @param squareIndex index of the square (see {@link Square#index()})
+     * @return the piece on the square with given index or null if the square
+     * is empty
+     */
+    Piece getPiece(int squareIndex);
+
+    /**
+     * @param piece the piece
+     * @return bitboard of the squares occupied by given piece (see
+     * {@link cz.janhrcek.chess.rules.Bitboards})
+     */
+    long getBitboard(Piece piece);
+
+    /**
+     * @return bitboard of all the occupied squares
+     */
+    long getOccupancy();
+
+    /**
+     * @param white the colour of the pieces
+     * @return bitboard of the squares occupied by pieces of given colour
+     */
+    long getOccupancy(boolean white);
+
     Chessboard createNewPositionUsing(Move move);
 }
@@ -1,51 +1,62 @@
 package cz.janhrcek.chess.model.api;
 
+import cz.janhrcek.chess.model.api.enums.Piece;
 import cz.janhrcek.chess.model.api.enums.Square;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * This event represents change of the browser state (either focus change or
  * addition of Position (via making of move) to the game).
  *
+ * The squares changed between the two positions are computed only when they
+ * are asked for, by comparing bitboards of the pieces of the two positions.
+ *
  * @author jhrcek
  */
 public class GameBrowserChangedEvent {
 
-    /**
-     * The list of squares in the position, whose contents changed (either
-     * pieces were put on them or removed from them).
-     */
-    private final List<Square> changedSquares;
-    private final Position previous;
-    private final Position current;
-    private static final Logger log = LoggerFactory.getLogger(GameBrowserChangedEvent.class);
-
     public GameBrowserChangedEvent(Position previous, Position current) {
         this.previous = previous;
         this.current = current;
-
-        Chessboard oreviousBoard = previous.getChessboard();
-        Chessboard currentBoard = current.getChessboard();
-        changedSquares = new ArrayList<>(64);
-        for (Square square : Square.values()) {
-            if (oreviousBoard.getPiece(square) != currentBoard.getPiece(square)) {
-                changedSquares.add(square);
-            }
-        }
-        log.debug("Squares changed by the event: {}", changedSquares);
     }
 
     /**
      * This method returns list of squares on the chessboard which changed
      * (pieces were put on them or removed from them).
      *
-     * @return the squares that changes since the last GameModelEvent was fired
+     * @return unmodifiable list of the squares that changed, in the order of
+     * {@link Square#values()}
      */
     public List<Square> getChangedSquares() {
-        return changedSquares;
+        List<Square> squares = changedSquares;
+        if (squares == null) {
+            squares = Collections.unmodifiableList(Arrays.asList(Square.getSquares(getChangedSquaresMask())));
+            changedSquares = squares;
+        }
+        return squares;
+    }
+
+    /**
+     * Returns bitboard of the squares on the chessboard which changed (pieces
+     * were put on them or removed from them). The bit of square with index i
+     * (see {@link Square#index()}) is 1L &lt;&lt; i.
+     *
+     * @return bitboard of the squares that changed
+     */
+    public long getChangedSquaresMask() {
+        if (!maskComputed) {
+            Chessboard previousBoard = previous.getChessboard();
+            Chessboard currentBoard = current.getChessboard();
+            long mask = 0L;
+            for (Piece piece : PIECES) {
+                mask |= previousBoard.getBitboard(piece) ^ currentBoard.getBitboard(piece);
+            }
+            changedMask = mask;
+            maskComputed = true;
+        }
+        return changedMask;
     }
 
     public Position getPreviousPosition() {
@@ -55,4 +66,13 @@ public class GameBrowserChangedEvent {
     public Position getCurrentPosition() {
         return current;
     }
+//--------------------------- PRIVATE IMPLEMENTATION ---------------------------
+    private static final Piece[] PIECES = Piece.values();
+    private final Position previous;
+    private final Position current;
+    //lazily computed values (computing them more than once is harmless),
+    //the mask is published by the volatile write of the flag
+    private long changedMask;
+    private volatile boolean maskComputed;
+    private volatile List<Square> changedSquares;
 }
@@ -74,6 +74,104 @@ public class Move {
         return to;
     }
 
+    /**
+     * Packs information about this move into single int. The bits of the
+     * result are: <ul> <li>0-5: index of from square (bit of the square in
+     * bitboards, i.e. 8*rank + (7-file))</li> <li>6-11: index of to
+     * square</li> <li>12-15: ordinal of the moving piece</li> <li>16-19:
+     * ordinal of the promotion piece (for promotions)</li> <li>20: set for
+     * promotions</li> </ul> Packed move is never 0, so 0 can be used to
+     * represent "no move".
+     *
+     * @return this move packed into int
+     * @see #unpack(int)
+     */
+    public int pack() {
+        if (this instanceof Promotion) {
+            return pack(from.index(), to.index(), piece.code(), ((Promotion) this).getPromoPiece().code());
+        }
+        return pack(from.index(), to.index(), piece.code());
+    }
+
+    /**
+     * Packs move into int without creating Move instance.
+     *
+     * @param from index of from square (see {@link Square#index()})
+     * @param to index of to square
+     * @param pieceCode code of the moving piece (see {@link Piece#code()})
+     * @return the packed move
+     * @see #pack()
+     */
+    public static int pack(int from, int to, int pieceCode) {
+        return from | (to << 6) | (pieceCode << 12);
+    }
+
+    /**
+     * Packs promotion into int without creating Promotion instance.
+     *
+     * @param from index of from square (see {@link Square#index()})
+     * @param to index of to square
+     * @param pieceCode code of the promoting pawn (see {@link Piece#code()})
+     * @param promoCode code of the piece the pawn is promoted to
+     * @return the packed promotion
+     * @see #pack()
+     */
+    public static int pack(int from, int to, int pieceCode, int promoCode) {
+        return from | (to << 6) | (pieceCode << 12) | (promoCode << 16) | PROMOTION_FLAG;
+    }
+
+    /**
+     * @return index of from square of the packed move
+     */
+    public static int fromOf(int packed) {
+        return packed & 0x3F;
+    }
+
+    /**
+     * @return index of to square of the packed move
+     */
+    public static int toOf(int packed) {
+        return (packed >>> 6) & 0x3F;
+    }
+
+    /**
+     * @return code of the piece moving in the packed move
+     */
+    public static int pieceOf(int packed) {
+        return (packed >>> 12) & 0xF;
+    }
+
+    /**
+     * @return true if the packed move is promotion
+     */
+    public static boolean isPromotion(int packed) {
+        return (packed & PROMOTION_FLAG) != 0;
+    }
+
+    /**
+     * @return code of the promotion piece of the packed move (meaningful
+     * only for promotions)
+     */
+    public static int promoPieceOf(int packed) {
+        return (packed >>> 16) & 0xF;
+    }
+
+    /**
+     * Creates move from its packed representation.
+     *
+     * @param packed the move packed by {@link #pack()}
+     * @return the move (instance of {@link Promotion} for promotions)
+     */
+    public static Move unpack(int packed) {
+        Square from = Square.fromIndex(fromOf(packed));
+        Square to = Square.fromIndex(toOf(packed));
+        Piece piece = Piece.fromCode(pieceOf(packed));
+        if (isPromotion(packed)) {
+            return new Promotion(piece, from, to, Piece.fromCode(promoPieceOf(packed)));
+        }
+        return new Move(piece, from, to);
+    }
+
     /**
      * Returns String representation of the move
      *
@@ -118,4 +216,5 @@ public class Move {
         }
         return true;
     }
+    private static final int PROMOTION_FLAG = 1 << 20;
 }
@@ -2,6 +2,7 @@ package cz.janhrcek.chess.model.api;
 
 import cz.janhrcek.chess.model.api.enums.Castling;
 import cz.janhrcek.chess.model.api.enums.Square;
+import cz.janhrcek.chess.rules.AttackInfo;
 import java.util.EnumSet;
 
 /**
@@ -24,4 +25,10 @@ public interface Position {
     Square getEnPassantTarget();
 
     int getFullmoveNumber();
+
+    /**
+     * @return information about attacked squares, checks and pins in this
+     * position, computed lazily and cached with the position
+     */
+    AttackInfo getAttackInfo();
 }
@@ -1,8 +1,6 @@
 package cz.janhrcek.chess.model.api.enums;
 
 import java.util.EnumSet;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.regex.Pattern;
 
 /**
@@ -21,10 +19,18 @@ public enum Castling {
     }
 
     public static Castling getCastling(char fenName) {
-        if ("kqKQ".indexOf(fenName) == -1) {
-            throw new IllegalArgumentException("fenName must be one of characters kqKQ; Your input: " + fenName);
+        switch (fenName) {
+            case 'K':
+                return WHITE_KINGSIDE;
+            case 'Q':
+                return WHITE_QUEENSIDE;
+            case 'k':
+                return BLACK_KINGSIDE;
+            case 'q':
+                return BLACK_QUEENSIDE;
+            default:
+                throw new IllegalArgumentException("fenName must be one of characters kqKQ; Your input: " + fenName);
         }
-        return fen2ca.get(fenName);
     }
 
     /**
@@ -60,12 +66,5 @@ public enum Castling {
         this.fenName = fenName;
     }
     private final char fenName;
-    private static final Map<Character, Castling> fen2ca = new HashMap<>();
     private static final Pattern CASTLING_AVAILABILITY_PATTERN = Pattern.compile("^K?Q?k?q?$|^-$");
-
-    static {
-        for (Castling ca : Castling.values()) {
-            fen2ca.put(ca.getFenName(), ca);
-        }
-    }
 }
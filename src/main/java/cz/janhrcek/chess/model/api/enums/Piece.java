@@ -1,13 +1,18 @@
 package cz.janhrcek.chess.model.api.enums;
 
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Represents standard chess pieces, which can be found in the usual chess set.
  * That is: white and black pawns, knights, bishops, rooks, queens and kings.
  *
+ * Each piece also has code between 0-11 (see {@link #code()}), which enables
+ * performance sensitive code to work with primitive ints instead of Piece
+ * instances. White pieces have even codes, black pieces odd codes, and the
+ * code divided by 2 determines the kind of the piece (0 = pawn, 1 = knight, 2
+ * = bishop, 3 = rook, 4 = queen and 5 = king).
+ *
  * @author Jan Hrcek
  */
 public enum Piece implements Comparable<Piece> {
@@ -110,12 +115,60 @@ public enum Piece implements Comparable<Piece> {
      * @return the piece whose FEN name is given by the argument
      */
     public static Piece getPiece(char fenLetter) {
-        if ("pbnrqkPBNRQK".indexOf(fenLetter) == -1) {
+        int code = codeOf(fenLetter);
+        if (code == NONE) {
             throw new IllegalArgumentException("fenName must be non-null string "
                     + "that has length 1 and contains exactly 1 of the following "
                     + "characters: pbnrqkPBNRQK; Your input: " + fenLetter);
         }
-        return fen2Piece.get(fenLetter);
+        return BY_CODE[code];
+    }
+
+    /**
+     * Returns code of this piece - number in the range 0-11 (equal to the
+     * ordinal of the piece).
+     *
+     * @return code of this piece
+     */
+    public int code() {
+        return ordinal();
+    }
+
+    /**
+     * @param code the code of the piece (between 0-11)
+     * @return the piece with given code
+     */
+    public static Piece fromCode(int code) {
+        return BY_CODE[code];
+    }
+
+    /**
+     * Returns code of the piece with given FEN letter, without throwing
+     * exception when the letter is invalid.
+     *
+     * @param fenLetter the FEN name of the piece (one of: pbnrqkPBNRQK)
+     * @return code of the piece or {@link #NONE} if the letter does not
+     * represent any piece
+     */
+    public static int codeOf(char fenLetter) {
+        return fenLetter < CODE_BY_LETTER.length ? CODE_BY_LETTER[fenLetter] : NONE;
+    }
+
+    /**
+     * @param code the code of the piece (between 0-11)
+     * @return true if the piece with given code is white
+     */
+    public static boolean isWhite(int code) {
+        return (code & 1) == 0;
+    }
+
+    /**
+     * @param code the code of the piece (between 0-11)
+     * @return the kind of the piece (one of {@link #PAWN}, {@link #KNIGHT},
+     * {@link #BISHOP}, {@link #ROOK}, {@link #QUEEN} and {@link #KING})
+     */
+    public static int kindOf(int code) {
+        return code >>> 1;
     }
 
     /**
@@ -135,12 +188,27 @@ public enum Piece implements Comparable<Piece> {
     public int getOrdinal() {
         return ordinal;
     }
-    //
-    private static final Map<Character, Piece> fen2Piece = new HashMap<>();
+    /**
+     * Code representing "no piece" (e.g. empty square).
+     */
+    public static final int NONE = -1;
+    //kinds of pieces (see kindOf)
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+    private static final Piece[] BY_CODE = values();
+    /**
+     * Codes of pieces indexed by their FEN letters (NONE for other chars).
+     */
+    private static final byte[] CODE_BY_LETTER = new byte['z' + 1];
 
     static {
-        for (Piece p : Piece.values()) {
-            fen2Piece.put(p.fenLetter, p);
+        Arrays.fill(CODE_BY_LETTER, (byte) NONE);
+        for (Piece p : BY_CODE) {
+            CODE_BY_LETTER[p.fenLetter] = (byte) p.ordinal();
         }
     }
     public static final Comparator<Piece> COMPARATOR = new Comparator<Piece>() {
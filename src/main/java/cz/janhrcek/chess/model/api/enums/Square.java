@@ -36,6 +36,11 @@ package cz.janhrcek.chess.model.api.enums;
  * getFile() and int getRank(). These methods return indices of file and rank
  * respectively, on which the square lies.
  *
+ * Each square also has index between 0-63 (see {@link #index()}), which is the
+ * number of the bit representing the square in bitboards. Performance
+ * sensitive code can work with these indices instead of Square instances,
+ * using the static methods of this class to convert between them.
+ *
  * @author Jan Hrcek
  */
 public enum Square {
@@ -66,19 +71,21 @@ public enum Square {
      */
     private final int rank;
     /**
-     * Auxiliary 2d array for easy indexing of squares in a way, that
-     * corresponds their position on the board. That is s = SQUARES[i][j] <=>
-     * s.getFile() == i && s.getRank() == j.
-     */
-    private static final Square[][] SQUARES = {
-        {A1, A2, A3, A4, A5, A6, A7, A8},
-        {B1, B2, B3, B4, B5, B6, B7, B8},
-        {C1, C2, C3, C4, C5, C6, C7, C8},
-        {D1, D2, D3, D4, D5, D6, D7, D8},
-        {E1, E2, E3, E4, E5, E6, E7, E8},
-        {F1, F2, F3, F4, F5, F6, F7, F8},
-        {G1, G2, G3, G4, G5, G6, G7, G8},
-        {H1, H2, H3, H4, H5, H6, H7, H8},};
+     * Index of the square - number between 0-63 equal to 8 * rank + (7 -
+     * file).
+     */
+    private final int index;
+    /**
+     * Flat array of squares indexed by square index: s = BY_INDEX[i] <=>
+     * s.index() == i.
+     */
+    private static final Square[] BY_INDEX = new Square[64];
+
+    static {
+        for (Square s : values()) {
+            BY_INDEX[s.index] = s;
+        }
+    }
 
     /**
      * Sets file and rank indices of the square.
@@ -89,6 +96,7 @@ public enum Square {
     private Square(int file, int rank) {
         this.file = file;
         this.rank = rank;
+        this.index = 8 * rank + (7 - file);
     }
 
     /**
@@ -113,6 +121,62 @@ public enum Square {
         return rank;
     }
 
+    /**
+     * Returns index of this square, i.e. number of the bit representing this
+     * square in bitboards (number in the range 0-63). The index is equal to 8
+     * * rank + (7 - file), so for example H1 has index 0, A1 has index 7 and
+     * A8 has index 63.
+     *
+     * @return index of this square
+     */
+    public int index() {
+        return index;
+    }
+
+    /**
+     * Returns square with given index.
+     *
+     * @param index the index of the square (between 0-63)
+     * @return the square with given index
+     * @see #index()
+     */
+    public static Square fromIndex(int index) {
+        return BY_INDEX[index];
+    }
+
+    /**
+     * @param fileIdx the index of the file (between 0-7)
+     * @param rankIdx the index of the rank (between 0-7)
+     * @return index of the square with given file and rank indices
+     */
+    public static int index(int fileIdx, int rankIdx) {
+        return 8 * rankIdx + (7 - fileIdx);
+    }
+
+    /**
+     * @param index the index of the square (between 0-63)
+     * @return index of the file on which the square with given index lies
+     */
+    public static int fileOf(int index) {
+        return 7 - (index & 7);
+    }
+
+    /**
+     * @param index the index of the square (between 0-63)
+     * @return index of the rank on which the square with given index lies
+     */
+    public static int rankOf(int index) {
+        return index >>> 3;
+    }
+
+    /**
+     * @param index the index of the square (between 0-63)
+     * @return true, if the square with given index is light
+     */
+    public static boolean isLight(int index) {
+        return ((index >>> 3) + (index & 7) & 1) == 0; //rank + file is odd <=> rank + (7 - file) is even
+    }
+
     /**
      * Returns square with given file and rank indices.
      *
@@ -125,7 +189,7 @@ public enum Square {
             throw new IllegalArgumentException("file and rank indices must"
                     + " be between 0 and 7, but you had: file=" + fileIdx + ", rank=" + rankIdx);
         }
-        return SQUARES[fileIdx][rankIdx];
+        return BY_INDEX[8 * rankIdx + (7 - fileIdx)];
     }
 
     /**
@@ -149,19 +213,10 @@ public enum Square {
      * @return the array containing squares selected in bitboard
      */
     public static Square[] getSquares(final long bitboard) {
-        int numOfOnes = 0; //kolik poli bude ve vyberu?
-        int citac = 0;
-        for (int i = 0; i < 64; i++) {
-            if (((1L << i) & bitboard) != 0L) {
-                numOfOnes++;
-            }
-        }
-
-        Square[] result = new Square[numOfOnes];
-        for (Square s : Square.values()) {
-            if (((1L << (8 * s.getRank() + (7 - s.getFile()))) & bitboard) != 0L) {
-                result[citac++] = s;
-            }
+        Square[] result = new Square[Long.bitCount(bitboard)];
+        int count = 0;
+        for (long bb = bitboard; bb != 0L; bb ^= Long.highestOneBit(bb)) { //from A8 to H1
+            result[count++] = BY_INDEX[63 - Long.numberOfLeadingZeros(bb)];
         }
         return result;
     }
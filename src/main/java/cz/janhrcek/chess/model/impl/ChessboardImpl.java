@@ -7,9 +7,8 @@ import cz.janhrcek.chess.model.api.enums.Piece;
 import cz.janhrcek.chess.model.api.enums.Square;
 import static cz.janhrcek.chess.model.api.enums.Piece.*;
 import static cz.janhrcek.chess.model.api.enums.Square.*;
-import java.util.EnumMap;
+import java.util.Arrays;
 import java.util.Map;
-import java.util.Objects;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -19,39 +18,90 @@ import static java.util.Objects.requireNonNull;
 public class ChessboardImpl implements Chessboard {
 
     public ChessboardImpl() {
-        piecePlacement = new EnumMap<>(INIT_PIECE_PLACEMENT);
+        squares = INIT_PIECE_PLACEMENT.clone();
     }
 
     public ChessboardImpl(Map<Square, Piece> piecePlacement) {
         requireNonNull(piecePlacement, "PiecePlacement map must not be null!");
-        this.piecePlacement = new EnumMap<>(piecePlacement);
+        squares = new Piece[64];
+        for (Map.Entry<Square, Piece> entry : piecePlacement.entrySet()) {
+            squares[entry.getKey().index()] = entry.getValue();
+        }
+    }
+
+    /**
+     * Creates chessboard with given piece placement.
+     *
+     * @param squares array of 64 pieces indexed by square index (see
+     * {@link Square#index()}), null representing empty square. The array is
+     * copied.
+     */
+    public ChessboardImpl(Piece[] squares) {
+        requireNonNull(squares, "squares must not be null!");
+        if (squares.length != 64) {
+            throw new IllegalArgumentException("squares must have exactly 64 elements, but had " + squares.length);
+        }
+        this.squares = squares.clone();
     }
 
     @Override
     public Piece getPiece(Square square) {
         requireNonNull(square, "Square must not be null!");
-        return piecePlacement.get(square);
+        return squares[square.index()];
+    }
+
+    @Override
+    public Piece getPiece(int squareIndex) {
+        return squares[squareIndex];
+    }
+
+    @Override
+    public long getBitboard(Piece piece) {
+        requireNonNull(piece, "Piece must not be null!");
+        return bitboards()[piece.code()];
+    }
+
+    @Override
+    public long getOccupancy() {
+        long[] bbs = bitboards();
+        return bbs[WHITE_OCCUPANCY] | bbs[BLACK_OCCUPANCY];
+    }
+
+    @Override
+    public long getOccupancy(boolean white) {
+        return bitboards()[white ? WHITE_OCCUPANCY : BLACK_OCCUPANCY];
     }
 
     @Override
     public Chessboard createNewPositionUsing(Move move) {
         requireNonNull(move, "Move must note be null!");
-        Map<Square, Piece> newPiecePlacement = new EnumMap<>(piecePlacement); //1) Copy curent piece placement
-        Square from = move.getFrom();
-        if (newPiecePlacement.containsKey(from)) { //There is some piece on "from" square
-            if (move instanceof Promotion) { //2) Put the piece on "to" square
-                newPiecePlacement.put(move.getTo(), ((Promotion) move).getPromoPiece());
-            } else {
-                newPiecePlacement.put(move.getTo(), newPiecePlacement.get(from));
-            }
-            newPiecePlacement.remove(from); //3) Remove piece from "from" square
-        } else { //There was not piece on "from" square
+        int from = move.getFrom().index();
+        if (squares[from] == null) { //There was not piece on "from" square
             throw new IllegalStateException(String.format("Request to create new"
                     + " position from \n %s \n using %s cannot be satisfied, "
                     + "because there is no piece on the from square %s!",
-                    this.toString(), move, from));
+                    this.toString(), move, move.getFrom()));
+        }
+        int to = move.getTo().index();
+        Piece piece = squares[from];
+        Piece[] newSquares = squares.clone(); //1) Copy curent piece placement
+        if (move instanceof Promotion) { //2) Put the piece on "to" square
+            newSquares[to] = ((Promotion) move).getPromoPiece();
+        } else {
+            newSquares[to] = piece;
         }
-        return new ChessboardImpl(newPiecePlacement);
+        newSquares[from] = null; //3) Remove piece from "from" square
+        if ((piece == WHITE_KING || piece == BLACK_KING) && Math.abs(from - to) == 2) {
+            //4a) castling - move the rook to the other side of the king
+            int rookFrom = to < from ? (from & ~7) : (from | 7);
+            newSquares[(from + to) / 2] = newSquares[rookFrom];
+            newSquares[rookFrom] = null;
+        } else if ((piece == WHITE_PAWN || piece == BLACK_PAWN) && squares[to] == null
+                && ((from ^ to) & 7) != 0) {
+            //4b) en passant - pawn moved diagonally to empty square, remove the captured pawn
+            newSquares[(from & ~7) | (to & 7)] = null;
+        }
+        return new ChessboardImpl(newSquares, false);
     }
 
     /**
@@ -69,7 +119,7 @@ public class ChessboardImpl implements Chessboard {
             if (s.getFile() == 0) { //beginning of rank
                 sb.append("  |");
             }
-            Piece piece = piecePlacement.get(s);
+            Piece piece = squares[s.index()];
             if (piece == null) {
                 sb.append("   |");
             } else {
@@ -85,49 +135,90 @@ public class ChessboardImpl implements Chessboard {
 
     @Override
     public int hashCode() {
-        int hash = 5;
-        hash = 17 * hash + Objects.hashCode(this.piecePlacement);
-        return hash;
+        int h = hash;
+        if (h == 0) { //computed lazily - instances are immutable
+            h = 5;
+            h = 17 * h + Arrays.hashCode(this.squares);
+            hash = h;
+        }
+        return h;
     }
 
     @Override
     public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
         if (other == null || getClass() != other.getClass()) {
             return false;
         }
         ChessboardImpl otherPos = (ChessboardImpl) other;
-        if (!Objects.equals(this.piecePlacement, otherPos.piecePlacement)) {
+        if (hashCode() != otherPos.hashCode() || !Arrays.equals(this.squares, otherPos.squares)) {
             return false;
         }
         return true;
     }
 //------------------------- PRIVATE IMPLEMENTATION -----------------------------
-    private final Map<Square, Piece> piecePlacement;
-    private static final Map<Square, Piece> INIT_PIECE_PLACEMENT;
+    /**
+     * Pieces indexed by square index, null for empty squares.
+     */
+    private final Piece[] squares;
+    private int hash;
+    /**
+     * Bitboards of the 12 pieces (indexed by piece code) followed by
+     * occupancy of white and black pieces, computed lazily.
+     */
+    private volatile long[] bitboards;
+    private static final int WHITE_OCCUPANCY = 12;
+    private static final int BLACK_OCCUPANCY = 13;
+    private static final Piece[] INIT_PIECE_PLACEMENT;
+
+    private long[] bitboards() {
+        long[] bbs = bitboards;
+        if (bbs == null) { //computed lazily - instances are immutable
+            bbs = new long[14];
+            for (int sq = 0; sq < 64; sq++) {
+                Piece p = squares[sq];
+                if (p != null) {
+                    bbs[p.code()] |= 1L << sq;
+                    bbs[p.isWhite() ? WHITE_OCCUPANCY : BLACK_OCCUPANCY] |= 1L << sq;
+                }
+            }
+            bitboards = bbs;
+        }
+        return bbs;
+    }
+
+    /**
+     * Creates chessboard using given array without copying it.
+     */
+    private ChessboardImpl(Piece[] squares, boolean copy) {
+        this.squares = copy ? squares.clone() : squares;
+    }
 
     static {
-        INIT_PIECE_PLACEMENT = new EnumMap<>(Square.class);
-        INIT_PIECE_PLACEMENT.put(A8, BLACK_ROOK);
-        INIT_PIECE_PLACEMENT.put(B8, BLACK_KNIGHT);
-        INIT_PIECE_PLACEMENT.put(C8, BLACK_BISHOP);
-        INIT_PIECE_PLACEMENT.put(D8, BLACK_QUEEN);
-        INIT_PIECE_PLACEMENT.put(E8, BLACK_KING);
-        INIT_PIECE_PLACEMENT.put(F8, BLACK_BISHOP);
-        INIT_PIECE_PLACEMENT.put(G8, BLACK_KNIGHT);
-        INIT_PIECE_PLACEMENT.put(H8, BLACK_ROOK);
-        INIT_PIECE_PLACEMENT.put(A1, WHITE_ROOK);
-        INIT_PIECE_PLACEMENT.put(B1, WHITE_KNIGHT);
-        INIT_PIECE_PLACEMENT.put(C1, WHITE_BISHOP);
-        INIT_PIECE_PLACEMENT.put(D1, WHITE_QUEEN);
-        INIT_PIECE_PLACEMENT.put(E1, WHITE_KING);
-        INIT_PIECE_PLACEMENT.put(F1, WHITE_BISHOP);
-        INIT_PIECE_PLACEMENT.put(G1, WHITE_KNIGHT);
-        INIT_PIECE_PLACEMENT.put(H1, WHITE_ROOK);
+        INIT_PIECE_PLACEMENT = new Piece[64];
+        INIT_PIECE_PLACEMENT[A8.index()] = BLACK_ROOK;
+        INIT_PIECE_PLACEMENT[B8.index()] = BLACK_KNIGHT;
+        INIT_PIECE_PLACEMENT[C8.index()] = BLACK_BISHOP;
+        INIT_PIECE_PLACEMENT[D8.index()] = BLACK_QUEEN;
+        INIT_PIECE_PLACEMENT[E8.index()] = BLACK_KING;
+        INIT_PIECE_PLACEMENT[F8.index()] = BLACK_BISHOP;
+        INIT_PIECE_PLACEMENT[G8.index()] = BLACK_KNIGHT;
+        INIT_PIECE_PLACEMENT[H8.index()] = BLACK_ROOK;
+        INIT_PIECE_PLACEMENT[A1.index()] = WHITE_ROOK;
+        INIT_PIECE_PLACEMENT[B1.index()] = WHITE_KNIGHT;
+        INIT_PIECE_PLACEMENT[C1.index()] = WHITE_BISHOP;
+        INIT_PIECE_PLACEMENT[D1.index()] = WHITE_QUEEN;
+        INIT_PIECE_PLACEMENT[E1.index()] = WHITE_KING;
+        INIT_PIECE_PLACEMENT[F1.index()] = WHITE_BISHOP;
+        INIT_PIECE_PLACEMENT[G1.index()] = WHITE_KNIGHT;
+        INIT_PIECE_PLACEMENT[H1.index()] = WHITE_ROOK;
         for (Square s : Square.values()) {
             if (s.getRank() == 6) {
-                INIT_PIECE_PLACEMENT.put(s, BLACK_PAWN);
+                INIT_PIECE_PLACEMENT[s.index()] = BLACK_PAWN;
             } else if (s.getRank() == 1) {
-                INIT_PIECE_PLACEMENT.put(s, WHITE_PAWN);
+                INIT_PIECE_PLACEMENT[s.index()] = WHITE_PAWN;
             }
         }
     }
@@ -0,0 +1,362 @@
+package cz.janhrcek.chess.model.impl;
+
+import cz.janhrcek.chess.model.api.Move;
+import cz.janhrcek.chess.model.api.Position;
+import cz.janhrcek.chess.model.api.PositionFactory;
+import cz.janhrcek.chess.rules.IllegalMoveException;
+import cz.janhrcek.chess.rules.MoveFormatter;
+import java.util.Arrays;
+import java.util.Map;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Tree of moves of a game (with variations), stored as struct of arrays: each
+ * node is identified by int id (ids are assigned in the order, in which the
+ * nodes are added, starting with {@link #ROOT}) and its parent, first child,
+ * next sibling, packed move (see
+ * {@link cz.janhrcek.chess.model.api.Move#pack()}) and ply are stored in
+ * growable int arrays at index equal to the id. Looking up node by id is just
+ * array access and a node takes about 20 bytes (plus reference to its
+ * position, if the node is a checkpoint), so trees with millions of nodes fit
+ * into memory easily.
+ *
+ * Positions are kept only for nodes added as checkpoints (always for the
+ * root); it is up to the user of the tree to reconstruct positions of other
+ * nodes by replaying the moves. Checkpoints can be set or dropped later to
+ * trade memory for time. The first child of a node is its main line,
+ * other children are variations in the order, in which they were added.
+ * Instances are not thread safe, but {@link #snapshot()} creates read-only
+ * view of the tree, which can be read by other threads while nodes are added
+ * to the tree.
+ *
+ * @author jhrcek
+ */
+public final class CompactGameTree {
+
+    /**
+     * The id of the root node (the initial position of the game).
+     */
+    public static final int ROOT = 0;
+    /**
+     * Returned instead of id, when there is no such node.
+     */
+    public static final int NONE = -1;
+
+    /**
+     * Creates tree containing just the root node.
+     *
+     * @param rootPosition the position of the root node
+     */
+    public CompactGameTree(Position rootPosition) {
+        this(rootPosition, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates tree containing just the root node.
+     *
+     * @param rootPosition the position of the root node
+     * @param initialCapacity the number of nodes the tree can hold before it
+     * has to grow its arrays
+     */
+    public CompactGameTree(Position rootPosition, int initialCapacity) {
+        requireNonNull(rootPosition, "rootPosition must not be null!");
+        if (initialCapacity < 1) {
+            throw new IllegalArgumentException("initialCapacity must be positive, but was " + initialCapacity);
+        }
+        parents = new int[initialCapacity];
+        firstChildren = new int[initialCapacity];
+        nextSiblings = new int[initialCapacity];
+        moves = new int[initialCapacity];
+        plies = new int[initialCapacity];
+        checkpoints = new Position[initialCapacity];
+        parents[ROOT] = NONE;
+        firstChildren[ROOT] = NONE;
+        nextSiblings[ROOT] = NONE;
+        checkpoints[ROOT] = rootPosition;
+        checkpointCount = 1;
+        size = 1;
+        readOnly = false;
+    }
+
+    /**
+     * Adds new node as the last child of given node.
+     *
+     * @param parent the id of the parent node
+     * @param move the packed move leading from parent to the new node
+     * @param checkpoint the position of the new node or null, if the position
+     * should not be kept
+     * @return the id of the new node
+     */
+    public int addChild(int parent, int move, Position checkpoint) {
+        checkWritable();
+        checkId(parent);
+        if (size == moves.length) {
+            grow();
+        }
+        int id = size++;
+        parents[id] = parent;
+        firstChildren[id] = NONE;
+        nextSiblings[id] = NONE;
+        moves[id] = move;
+        plies[id] = plies[parent] + 1;
+        checkpoints[id] = checkpoint;
+        if (checkpoint != null) {
+            checkpointCount++;
+        }
+        int child = firstChildren[parent];
+        if (child == NONE) {
+            firstChildren[parent] = id;
+        } else {
+            while (nextSiblings[child] != NONE) {
+                child = nextSiblings[child];
+            }
+            nextSiblings[child] = id;
+        }
+        return id;
+    }
+
+    /**
+     * @param parent the id of the parent node
+     * @param move the packed move
+     * @return the id of the child of given node, reached by given move or
+     * {@link #NONE} if there is no such child
+     */
+    public int findChild(int parent, int move) {
+        checkId(parent);
+        for (int child = visible(firstChildren[parent]); child != NONE; child = visible(nextSiblings[child])) {
+            if (moves[child] == move) {
+                return child;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * @return the number of nodes in the tree
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return id of the parent of given node or {@link #NONE} for the root
+     */
+    public int getParent(int id) {
+        checkId(id);
+        return parents[id];
+    }
+
+    /**
+     * @return id of the first child (main line) of given node or
+     * {@link #NONE} if the node has no children
+     */
+    public int getFirstChild(int id) {
+        checkId(id);
+        return visible(firstChildren[id]);
+    }
+
+    /**
+     * @return id of the next sibling of given node or {@link #NONE} if the
+     * node is the last child of its parent
+     */
+    public int getNextSibling(int id) {
+        checkId(id);
+        return visible(nextSiblings[id]);
+    }
+
+    /**
+     * @return the number of children of given node
+     */
+    public int getChildCount(int id) {
+        checkId(id);
+        int count = 0;
+        for (int child = visible(firstChildren[id]); child != NONE; child = visible(nextSiblings[child])) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return the packed move leading to given node (0 for the root)
+     */
+    public int getMove(int id) {
+        checkId(id);
+        return moves[id];
+    }
+
+    /**
+     * @return the number of moves between the root and given node
+     */
+    public int getPly(int id) {
+        checkId(id);
+        return plies[id];
+    }
+
+    /**
+     * @return the position of given node if it was added as checkpoint, null
+     * otherwise
+     */
+    public Position getCheckpoint(int id) {
+        checkId(id);
+        return checkpoints[id];
+    }
+
+    /**
+     * Sets or clears the position kept for given node.
+     *
+     * @param id the id of the node
+     * @param checkpoint the position of the node or null, if the position
+     * should not be kept any more
+     * @throws IllegalArgumentException if the node is the root and the
+     * position is null (the position of the root is always kept)
+     */
+    public void setCheckpoint(int id, Position checkpoint) {
+        checkWritable();
+        checkId(id);
+        if (id == ROOT && checkpoint == null) {
+            throw new IllegalArgumentException("The position of the root must be kept");
+        }
+        if (checkpoints[id] == null && checkpoint != null) {
+            checkpointCount++;
+        } else if (checkpoints[id] != null && checkpoint == null) {
+            checkpointCount--;
+        }
+        checkpoints[id] = checkpoint;
+    }
+
+    /**
+     * @return the number of nodes, whose positions are kept
+     */
+    public int getCheckpointCount() {
+        return checkpointCount;
+    }
+
+    /**
+     * @return the id of the last node of the main line continuing from given
+     * node
+     */
+    public int getLastInMainLine(int id) {
+        checkId(id);
+        for (int child = visible(firstChildren[id]); child != NONE; child = visible(firstChildren[id])) {
+            id = child;
+        }
+        return id;
+    }
+
+    /**
+     * Creates read-only view of the tree as it is now. The view shares the
+     * arrays with the tree: adding nodes to the tree fills the arrays beyond
+     * the nodes of the view (or replaces the arrays, when they grow) and the
+     * links to the new nodes are hidden by the view, so the view doesn't
+     * change. Once published safely (e.g. by volatile write), the view can be
+     * read by any number of threads while the tree is being extended by
+     * {@link #addChild(int, int, Position)} - but not while checkpoints of
+     * its nodes are changed by {@link #setCheckpoint(int, Position)}.
+     *
+     * @return the read-only view of the tree
+     */
+    public CompactGameTree snapshot() {
+        return new CompactGameTree(this);
+    }
+
+    /**
+     * Returns position of given node - either its checkpoint or position
+     * reconstructed by replaying the moves from the nearest checkpoint (or
+     * position found in given cache) above it. The reconstructed position is
+     * put to the cache.
+     *
+     * @param id the id of the node
+     * @param recentPositions cache of positions of nodes, which are not
+     * checkpoints
+     * @param positionFactory the factory used to replay the moves
+     * @return the position of the node
+     * @throws IllegalStateException if some move of the tree can't be replayed
+     */
+    Position reconstructPosition(int id, Map<Integer, Position> recentPositions, PositionFactory positionFactory) {
+        Position position = getCheckpoint(id);
+        if (position != null) {
+            return position;
+        }
+        position = recentPositions.get(id);
+        if (position != null) {
+            return position;
+        }
+        int[] path = new int[INITIAL_PATH_LENGTH];
+        int length = 0;
+        int ancestor = id;
+        while ((position = checkpoints[ancestor]) == null && (position = recentPositions.get(ancestor)) == null) {
+            if (length == path.length) {
+                path = Arrays.copyOf(path, 2 * length);
+            }
+            path[length++] = ancestor;
+            ancestor = parents[ancestor];
+        }
+        while (length > 0) {
+            int move = moves[path[--length]];
+            try {
+                position = positionFactory.create(position, Move.unpack(move));
+            } catch (PieceNotPresentException | IllegalMoveException ex) {
+                throw new IllegalStateException("Move " + MoveFormatter.toUci(move) + " of the game can't be replayed", ex);
+            }
+        }
+        recentPositions.put(id, position);
+        return position;
+    }
+//--------------------------- PRIVATE IMPLEMENTATION ---------------------------
+    private static final int DEFAULT_CAPACITY = 256;
+    private static final int INITIAL_PATH_LENGTH = 16;
+    private int[] parents;
+    private int[] firstChildren;
+    private int[] nextSiblings;
+    private int[] moves;
+    private int[] plies;
+    private Position[] checkpoints;
+    private int checkpointCount;
+    private int size;
+    private final boolean readOnly;
+
+    /**
+     * Creates read-only view of given tree.
+     */
+    private CompactGameTree(CompactGameTree tree) {
+        parents = tree.parents;
+        firstChildren = tree.firstChildren;
+        nextSiblings = tree.nextSiblings;
+        moves = tree.moves;
+        plies = tree.plies;
+        checkpoints = tree.checkpoints;
+        checkpointCount = tree.checkpointCount;
+        size = tree.size;
+        readOnly = true;
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException("There is no node with id " + id + " in the tree of " + size + " nodes");
+        }
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("The snapshot of the tree is read-only");
+        }
+    }
+
+    /**
+     * Links in the arrays shared with the tree point also to nodes added after
+     * the snapshot was taken, which must not be visible.
+     */
+    private int visible(int link) {
+        return link < size ? link : NONE;
+    }
+
+    private void grow() {
+        int capacity = moves.length + (moves.length >> 1) + 1;
+        parents = Arrays.copyOf(parents, capacity);
+        firstChildren = Arrays.copyOf(firstChildren, capacity);
+        nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        moves = Arrays.copyOf(moves, capacity);
+        plies = Arrays.copyOf(plies, capacity);
+        checkpoints = Arrays.copyOf(checkpoints, capacity);
+    }
+}
@@ -0,0 +1,224 @@
+package cz.janhrcek.chess.model.impl;
+
+import cz.janhrcek.chess.FEN.InvalidFenException;
+import cz.janhrcek.chess.model.api.Game;
+import cz.janhrcek.chess.model.api.GameBrowser;
+import cz.janhrcek.chess.model.api.GameListener;
+import cz.janhrcek.chess.model.api.Move;
+import cz.janhrcek.chess.model.api.Position;
+import cz.janhrcek.chess.model.api.PositionFactory;
+import cz.janhrcek.chess.rules.IllegalMoveException;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import static java.util.Objects.requireNonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Game tree, which can be browsed by many threads while moves are being added
+ * to it. The moves are added to {@link CompactGameTree} and after each move
+ * its read-only {@link CompactGameTree#snapshot()} is published via volatile
+ * write. Readers never lock or wait - they read the current snapshot and see
+ * the tree exactly as it was when the snapshot was published (links to nodes
+ * added later are hidden by the snapshot).
+ *
+ * Moves are added by {@link #addMove(int, Move)} (or makeMove of any browser);
+ * concurrent additions are serialized. Each thread browsing the game should
+ * use its own browser created by {@link #newBrowser()} - the browsers have
+ * independent focus, listeners and caches of recently used positions, and are
+ * not thread safe themselves. The listeners of a browser are notified in the
+ * thread, which changed its focus, unless the browser was created with an
+ * executor for its events.
+ *
+ * @author jhrcek
+ */
+public class ConcurrentGame implements Game {
+
+    public ConcurrentGame(String initialPositionfen) throws InvalidFenException {
+        this(initialPositionfen, new PositionFactoryImpl(new FIDERuleChecker()));
+    }
+
+    /**
+     * @param initialPositionfen FEN of the initial position of the game
+     * @param positionFactory the factory used to create positions of the game
+     * (it is used by many threads, so it must be thread safe)
+     * @throws InvalidFenException if the FEN is invalid
+     */
+    public ConcurrentGame(String initialPositionfen, PositionFactory positionFactory) throws InvalidFenException {
+        this(initialPositionfen, positionFactory, 1);
+    }
+
+    /**
+     * @param initialPositionfen FEN of the initial position of the game
+     * @param positionFactory the factory used to create positions of the game
+     * (it is used by many threads, so it must be thread safe)
+     * @param checkpointInterval the number of plies between positions, which
+     * are kept in memory (see {@link GameImpl})
+     * @throws InvalidFenException if the FEN is invalid
+     * @throws IllegalArgumentException if the checkpointInterval is not
+     * positive
+     */
+    public ConcurrentGame(String initialPositionfen, PositionFactory positionFactory, int checkpointInterval) throws InvalidFenException {
+        if (checkpointInterval < 1) {
+            throw new IllegalArgumentException("checkpointInterval must be positive, but was " + checkpointInterval);
+        }
+        this.positionFactory = requireNonNull(positionFactory, "positionFactory must not be null!");
+        this.checkpointInterval = checkpointInterval;
+        Position initialPosition = positionFactory.create(initialPositionfen);
+        log.info("Creating new instance of ConcurrentGame using initial position \"{}\"", initialPositionfen);
+        tree = new CompactGameTree(initialPosition);
+        snapshot = tree.snapshot();
+        browser = newBrowser();
+    }
+
+    /**
+     * @return the browser of the game created together with the game (e.g.
+     * for the thread adding moves), other threads should use their own
+     * browsers created by {@link #newBrowser()}
+     */
+    @Override
+    public GameBrowser getBrowser() {
+        return browser;
+    }
+
+    /**
+     * Creates new browser of this game, focused on the initial position.
+     *
+     * @return the new browser
+     */
+    public GameBrowser newBrowser() {
+        return new Cursor();
+    }
+
+    /**
+     * Creates new browser of this game, focused on the initial position,
+     * whose listeners are notified by given executor (see
+     * {@link GameEventDispatcher}).
+     *
+     * @param eventExecutor the executor used to notify the listeners of the
+     * browser
+     * @return the new browser
+     */
+    public GameBrowser newBrowser(Executor eventExecutor) {
+        Cursor cursor = new Cursor();
+        cursor.dispatcher.setExecutor(requireNonNull(eventExecutor, "eventExecutor must not be null!"));
+        return cursor;
+    }
+
+    /**
+     * @return read-only snapshot of the current state of the game tree
+     */
+    public CompactGameTree getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Adds the move as the last child of given node, unless the node already
+     * has child reached by the move.
+     *
+     * @param parent the id of the node in which the move is made
+     * @param move the move
+     * @return the id of the node reached by the move
+     * @throws PieceNotPresentException if the move is not possible
+     * @throws IllegalMoveException if the move is illegal
+     */
+    public synchronized int addMove(int parent, Move move) throws PieceNotPresentException, IllegalMoveException {
+        int packed = move.pack();
+        int child = tree.findChild(parent, packed);
+        if (child != CompactGameTree.NONE) {
+            return child;
+        }
+        Position positionAfterMove = positionFactory.create(tree.reconstructPosition(parent, writerPositions, positionFactory), move);
+        boolean checkpoint = (tree.getPly(parent) + 1) % checkpointInterval == 0;
+        child = tree.addChild(parent, packed, checkpoint ? positionAfterMove : null);
+        if (!checkpoint) {
+            writerPositions.put(child, positionAfterMove);
+        }
+        snapshot = tree.snapshot();
+        return child;
+    }
+//--------------------------- PRIVATE IMPLEMENTATION ---------------------------
+    /**
+     * The number of recently used positions cached by each browser (and the
+     * writer).
+     */
+    private static final int RECENT_POSITIONS = 16;
+    private static final Logger log = LoggerFactory.getLogger(ConcurrentGame.class);
+    private final PositionFactory positionFactory;
+    private final int checkpointInterval;
+    private final GameBrowser browser;
+    //guarded by this
+    private final CompactGameTree tree;
+    //guarded by this
+    private final Map<Integer, Position> writerPositions = new PositionInterner.LruMap<>(RECENT_POSITIONS);
+    private volatile CompactGameTree snapshot;
+
+    /**
+     * Browser with its own focus, used by single thread.
+     */
+    private class Cursor implements GameBrowser {
+
+        private int focusedNode = CompactGameTree.ROOT;
+        private final GameEventDispatcher dispatcher = new GameEventDispatcher();
+        private final Map<Integer, Position> recentPositions = new PositionInterner.LruMap<>(RECENT_POSITIONS);
+
+        @Override
+        public Position getFocusedPosition() {
+            return snapshot.reconstructPosition(focusedNode, recentPositions, positionFactory);
+        }
+
+        @Override
+        public void makeMove(Move m) throws PieceNotPresentException, IllegalMoveException {
+            focusedNode = addMove(focusedNode, m);
+        }
+
+        @Override
+        public void addGameListener(GameListener gl) {
+            dispatcher.addListener(gl);
+        }
+
+        @Override
+        public void removeGameListener(GameListener gl) {
+            dispatcher.removeListener(gl);
+        }
+
+        @Override
+        public void focusInitialPosition() {
+            focus(CompactGameTree.ROOT);
+        }
+
+        @Override
+        public void focusNextPosition() {
+            int mainLine = snapshot.getFirstChild(focusedNode);
+            if (mainLine != CompactGameTree.NONE) {
+                focus(mainLine);
+            }
+        }
+
+        @Override
+        public void focusPreviousPosition() {
+            if (focusedNode != CompactGameTree.ROOT) {
+                focus(snapshot.getParent(focusedNode));
+            }
+        }
+
+        @Override
+        public void focusLastPosition() {
+            focus(snapshot.getLastInMainLine(focusedNode));
+        }
+
+        @Override
+        public void focusPositionWithId(int id) {
+            snapshot.getParent(id); //fails for unknown ids
+            focus(id);
+        }
+
+        private void focus(int id) {
+            int previous = focusedNode;
+            focusedNode = id;
+            if (previous != id && dispatcher.getListenerCount() > 0) {
+                dispatcher.fire(snapshot.reconstructPosition(previous, recentPositions, positionFactory), getFocusedPosition());
+            }
+        }
+    }
+}
@@ -4,7 +4,10 @@ import cz.janhrcek.chess.model.api.Position;
 import cz.janhrcek.chess.rules.IllegalMoveException;
 import cz.janhrcek.chess.model.api.Move;
 import cz.janhrcek.chess.model.api.RuleChecker;
-import java.util.Collections;
+import cz.janhrcek.chess.rules.Legality;
+import cz.janhrcek.chess.rules.MoveBuffer;
+import cz.janhrcek.chess.rules.MoveGenerator;
+import cz.janhrcek.chess.rules.MoveValidator;
 import java.util.List;
 
 /**
@@ -16,13 +19,30 @@ public class FIDERuleChecker implements RuleChecker {
     public FIDERuleChecker() {
     }
 
+    /**
+     * Checks legality of the move directly (see {@link MoveValidator}),
+     * without generating other moves of the position.
+     *
+     * @throws IllegalMoveException if the move is illegal, with the reason
+     * available via {@link IllegalMoveException#getReason()}
+     */
     @Override
     public boolean checkLegality(Move m, Position position) throws IllegalMoveException {
+        Legality legality = MoveValidator.check(position, m);
+        if (legality != Legality.LEGAL) {
+            throw new IllegalMoveException(legality, m);
+        }
         return true;
     }
 
+    /**
+     * Generates all legal moves of given position. Consumers that don't need
+     * all the moves at once can use {@link MoveGenerator} directly.
+     */
     @Override
     public List<Move> generateLegal(Position position) {
-        return Collections.emptyList();
+        MoveBuffer moves = new MoveBuffer();
+        new MoveGenerator().generateAll(position, moves);
+        return moves.toMoves();
     }
 }
@@ -0,0 +1,180 @@
+package cz.janhrcek.chess.model.impl;
+
+import cz.janhrcek.chess.model.api.GameBrowserChangedEvent;
+import cz.janhrcek.chess.model.api.GameListener;
+import cz.janhrcek.chess.model.api.Position;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Delivers {@link GameBrowserChangedEvent}s to {@link GameListener}s of a game
+ * browser.
+ *
+ * Without executor the listeners are notified synchronously, in the thread
+ * which changed the browser. When executor is set (e.g. one running tasks in
+ * Swing's event dispatch thread), the listeners are notified by tasks run by
+ * the executor and bursts of changes are coalesced: changes made before the
+ * pending task runs are delivered as single event, from the previous position
+ * of the first change to the current position of the last one. The event is
+ * not created at all when there are no listeners. The events are delivered in
+ * the order of the changes only if the executor runs its tasks one by one in
+ * the order of submission (e.g. single-threaded executor) - with executor
+ * running the tasks in parallel, the listeners may be notified concurrently
+ * and out of order.
+ *
+ * Adding and removing listeners is lock-free (the listeners are kept in
+ * copy-on-write array) and listeners may add or remove listeners while being
+ * notified. Instances are thread safe.
+ *
+ * @author jhrcek
+ */
+public final class GameEventDispatcher {
+
+    /**
+     * Creates dispatcher, which notifies the listeners synchronously.
+     */
+    public GameEventDispatcher() {
+    }
+
+    /**
+     * @param executor the executor used to notify the listeners or null to
+     * notify them synchronously (it should run the tasks one by one, see class
+     * description)
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @return the executor used to notify the listeners or null if they are
+     * notified synchronously
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public void addListener(GameListener listener) {
+        requireNonNull(listener, "listener must not be null!");
+        GameListener[] current;
+        GameListener[] updated;
+        do {
+            current = listeners.get();
+            updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = listener;
+        } while (!listeners.compareAndSet(current, updated));
+    }
+
+    /**
+     * Removes one registration of the listener (if it is registered).
+     */
+    public void removeListener(GameListener listener) {
+        GameListener[] current;
+        GameListener[] updated;
+        do {
+            current = listeners.get();
+            int index = Arrays.asList(current).indexOf(listener);
+            if (index < 0) {
+                return;
+            }
+            updated = new GameListener[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(current, index + 1, updated, index, updated.length - index);
+        } while (!listeners.compareAndSet(current, updated));
+    }
+
+    /**
+     * @return the number of registered listeners
+     */
+    public int getListenerCount() {
+        return listeners.get().length;
+    }
+
+    /**
+     * Notifies the listeners (now or later, see class description) about
+     * change of the focused position.
+     *
+     * @param previous the position focused before the change
+     * @param current the position focused after the change
+     */
+    public void fire(Position previous, Position current) {
+        Executor exec = executor;
+        if (exec == null) {
+            deliver(previous, current);
+            return;
+        }
+        Change pending;
+        Change updated;
+        do {
+            pending = this.pending.get();
+            updated = new Change(pending == null ? previous : pending.previous, current);
+        } while (!this.pending.compareAndSet(pending, updated));
+        if (pending == null) { //otherwise the task delivering the pending change was already submitted
+            submitDrain(exec, updated);
+        }
+    }
+//--------------------------- PRIVATE IMPLEMENTATION ---------------------------
+    private static final GameListener[] NO_LISTENERS = new GameListener[0];
+    private final AtomicReference<GameListener[]> listeners = new AtomicReference<>(NO_LISTENERS);
+    /**
+     * The change, which was not delivered yet (null if there is none).
+     */
+    private final AtomicReference<Change> pending = new AtomicReference<>();
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            Change change = pending.getAndSet(null);
+            if (change != null) {
+                deliver(change.previous, change.current);
+            }
+        }
+    };
+    private volatile Executor executor;
+
+    /**
+     * Submits the task delivering the pending change. If the executor rejects
+     * it, only the change of this thread is dropped: changes merged into it
+     * by other threads meanwhile (which rely on this task) are submitted
+     * again.
+     */
+    private void submitDrain(Executor exec, Change submitted) {
+        while (true) {
+            try {
+                exec.execute(drain);
+                return;
+            } catch (RejectedExecutionException ex) {
+                if (pending.compareAndSet(submitted, null)) {
+                    throw ex;
+                }
+                submitted = pending.get();
+                if (submitted == null) {
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    private void deliver(Position previous, Position current) {
+        GameListener[] snapshot = listeners.get();
+        if (snapshot.length == 0) {
+            return;
+        }
+        GameBrowserChangedEvent event = new GameBrowserChangedEvent(previous, current);
+        for (GameListener listener : snapshot) {
+            listener.gameChanged(event);
+        }
+    }
+
+    private static final class Change {
+
+        private final Position previous;
+        private final Position current;
+
+        public Change(Position previous, Position current) {
+            this.previous = previous;
+            this.current = current;
+        }
+    }
+}
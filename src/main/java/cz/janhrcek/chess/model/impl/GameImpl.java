@@ -5,18 +5,20 @@ import cz.janhrcek.chess.FEN.InvalidFenException;
 import cz.janhrcek.chess.gui.MoveListener;
 import cz.janhrcek.chess.model.api.Game;
 import cz.janhrcek.chess.model.api.GameBrowser;
-import cz.janhrcek.chess.model.api.GameBrowserChangedEvent;
 import cz.janhrcek.chess.model.api.GameListener;
 import cz.janhrcek.chess.model.api.Position;
 import cz.janhrcek.chess.model.api.PositionFactory;
 import cz.janhrcek.chess.rules.IllegalMoveException;
+import cz.janhrcek.chess.rules.MoveFormatter;
 import cz.janhrcek.chess.model.api.Move;
-import cz.janhrcek.chess.model.api.Promotion;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Executor;
+import static java.util.Objects.requireNonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,19 +29,282 @@ import org.slf4j.LoggerFactory;
 public class GameImpl implements Game {
 
     public GameImpl(String initialPositionfen) throws InvalidFenException {
-        Position initialPosition = new Fen(initialPositionfen).toPosition();
+        this(initialPositionfen, new PositionFactoryImpl(new FIDERuleChecker()));
+    }
+
+    /**
+     * Creates new game, whose positions will be created by given factory.
+     * Sharing single factory (e.g. one with {@link PositionInterner}) among
+     * many games enables them to share equal positions.
+     *
+     * @param initialPositionfen FEN of the initial position of the game
+     * @param positionFactory the factory used to create positions of the game
+     * @throws InvalidFenException if the FEN is invalid
+     */
+    public GameImpl(String initialPositionfen, PositionFactory positionFactory) throws InvalidFenException {
+        this(initialPositionfen, positionFactory, 1);
+    }
+
+    /**
+     * Creates new game, which keeps full positions only in every
+     * checkpointInterval-th ply of the game tree. The nodes in between keep
+     * just the move leading to them and their positions are reconstructed on
+     * demand by replaying the moves from the nearest checkpoint above them.
+     * Few recently used positions are cached, so browsing the game back and
+     * forth replays at most one move per step. Larger interval means less
+     * memory and slower access to positions that were not used recently.
+     *
+     * @param initialPositionfen FEN of the initial position of the game
+     * @param positionFactory the factory used to create positions of the game
+     * @param checkpointInterval the number of plies between positions, which
+     * are kept in memory (1 means all the positions are kept)
+     * @throws InvalidFenException if the FEN is invalid
+     * @throws IllegalArgumentException if the checkpointInterval is not
+     * positive
+     */
+    public GameImpl(String initialPositionfen, PositionFactory positionFactory, int checkpointInterval) throws InvalidFenException {
+        if (checkpointInterval < 1) {
+            throw new IllegalArgumentException("checkpointInterval must be positive, but was " + checkpointInterval);
+        }
+        this.positionFactory = requireNonNull(positionFactory, "positionFactory must not be null!");
+        this.checkpointInterval = checkpointInterval;
+        Position initialPosition = positionFactory.create(initialPositionfen);
         log.info("Creating new instance of Game using initial position \"{}\"", initialPositionfen);
-        rootNode = new Node(null, null, initialPosition, NODE_ID_GENERATOR.getAndIncrement());
-        browser = new GameBrowserImpl(new PositionFactoryImpl(new FIDERuleChecker()));
-        id2Node = new HashMap<>();
-        id2Node.put(rootNode.getId(), rootNode);
+        tree = new CompactGameTree(initialPosition);
+        browser = new GameBrowserImpl();
+        formatter = new MoveFormatter(positionFactory);
+    }
+
+    /**
+     * @return the number of plies between positions kept in memory
+     */
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    /**
+     * Sets the limit of memory used by the game tree. When the estimated
+     * usage (see {@link #getEstimatedMemoryUsage()}) exceeds the budget, the
+     * positions kept in the variations, that were visited least recently, are
+     * dropped and the variations are marked as collapsed. The main line and
+     * the line leading to the focused node are never collapsed. Positions in
+     * collapsed variations are recomputed by replaying the moves, when
+     * needed, and the positions of whole variation are kept again once the
+     * browser focuses some node in it (collapsing other variations, if that
+     * exceeds the budget).
+     *
+     * Only positions are released, the nodes themselves stay in the tree
+     * (their ids are used by the journal and the browsers), so the budget is
+     * exceeded when the nodes together with the positions of the lines, that
+     * are never collapsed, don't fit into it. The tree is then searched for
+     * variations to collapse again only after some variation becomes
+     * collapsible (it is added or restored, or the focus leaves it).
+     *
+     * @param bytes the budget in bytes ({@link Long#MAX_VALUE} means no limit,
+     * which is the default)
+     * @throws IllegalArgumentException if the budget is negative
+     */
+    public void setMemoryBudget(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Memory budget must not be negative, but was " + bytes);
+        }
+        memoryBudget = bytes;
+        evictIfNeeded(CompactGameTree.ROOT);
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * @return rough estimate of the number of bytes taken by the nodes of the
+     * game tree and the positions kept in them
+     */
+    public long getEstimatedMemoryUsage() {
+        return (long) tree.size() * NODE_BYTES + (long) tree.getCheckpointCount() * POSITION_BYTES;
+    }
+
+    /**
+     * @param id the id of the node
+     * @return true if the node is the first node of variation, whose
+     * positions were dropped to keep the memory budget (see
+     * {@link #setMemoryBudget(long)})
+     */
+    public boolean isCollapsed(int id) {
+        tree.getParent(id); //fails for unknown ids
+        return collapsed.get(id);
+    }
+
+    /**
+     * @return the number of times the tree was searched for variations to
+     * collapse (to enable monitoring of the cost of the memory budget)
+     */
+    public int getEvictionPassCount() {
+        return evictionPasses;
+    }
+
+    /**
+     * Sets the executor used to notify the listeners of the game's browser.
+     * With executor the listeners are notified asynchronously and bursts of
+     * focus changes are coalesced into single event (see
+     * {@link GameEventDispatcher}).
+     *
+     * @param executor the executor (e.g. one running the tasks in Swing's
+     * event dispatch thread) or null to notify the listeners synchronously
+     */
+    public void setEventExecutor(Executor executor) {
+        browser.dispatcher.setExecutor(executor);
+    }
+
+    /**
+     * Returns the tree of moves of this game. The ids of its nodes are the ids
+     * accepted by {@link GameBrowser#focusPositionWithId(int)}. The tree must
+     * not be modified - moves should be added via the browser.
+     *
+     * @return the tree of moves of this game
+     */
+    public CompactGameTree getTree() {
+        return tree;
+    }
+
+    /**
+     * Returns the position of given node of the game tree, reconstructing it
+     * if the node is not a checkpoint.
+     *
+     * @param id the id of the node
+     * @return the position of the node
+     */
+    public Position getPosition(int id) {
+        return tree.reconstructPosition(id, recentPositions, positionFactory);
+    }
+
+    /**
+     * Adds move to the game tree without changing the focus of the browser
+     * (unless the move is already there). The added move is recorded by the
+     * journal of the game (if it has one).
+     *
+     * @param parent the id of the node, from which the move is played
+     * @param move the packed move (see {@link Move#pack()})
+     * @return the id of the node reached by the move (the existing one, if the
+     * move was already played from the parent node)
+     * @throws PieceNotPresentException if the move has problem
+     * @throws IllegalMoveException if the move is illegal
+     * @throws IllegalStateException if the journal of the game can't record
+     * the move (it is closed or writing to it failed) - the game tree is not
+     * changed then
+     */
+    public int addMove(int parent, int move) throws PieceNotPresentException, IllegalMoveException {
+        int child = tree.findChild(parent, move);
+        if (child != CompactGameTree.NONE) {
+            return child;
+        }
+        Position positionAfterMove = positionFactory.create(getPosition(parent), Move.unpack(move));
+        if (journal != null) { //before changing the tree, so that a failing journal leaves it unchanged
+            journal.append(parent, move);
+        }
+        boolean checkpoint = (tree.getPly(parent) + 1) % checkpointInterval == 0;
+        child = tree.addChild(parent, move, checkpoint ? positionAfterMove : null);
+        if (!checkpoint) {
+            recentPositions.put(child, positionAfterMove);
+        }
+        if (isVariation(child) && !isInCollapsedVariation(child)) {
+            variationCount++; //otherwise it is counted when the collapsed variation is restored by visit
+        }
+        visit(child);
+        evictIfNeeded(child);
+        return child;
+    }
+
+    /**
+     * Sets the journal, which records each move added to the game tree (see
+     * {@link GameJournal}).
+     *
+     * @param journal the journal or null to stop recording the moves
+     */
+    public void setJournal(GameJournal journal) {
+        this.journal = journal;
+    }
+
+    public GameJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * @return the id of the node of the game tree focused by the game's
+     * browser
+     */
+    public int getFocusedNode() {
+        return browser.getFocusedNode();
+    }
+
+    /**
+     * Appends the move, that led to given node in Long Algebraic Notation
+     * (LAN), preceded by move number for white's moves.
+     *
+     * @param id the id of the node (other than {@link CompactGameTree#ROOT})
+     * @param sb the builder to append the move to
+     * @throws IllegalArgumentException if the node is the root (there is no
+     * move leading to it)
+     */
+    public void appendMove(int id, StringBuilder sb) {
+        if (id == CompactGameTree.ROOT) {
+            throw new IllegalArgumentException("There is no move leading to the root node");
+        }
+        appendLan(id, getPosition(tree.getParent(id)), getPosition(id), sb);
+    }
+
+    /**
+     * Returns the position of given node of the game tree, given the position
+     * of its parent. Unlike {@link #getPosition(int)} this replays at most one
+     * move and does not touch the cache of recently used positions, so it can
+     * be used by many threads at once (e.g. when walking the tree, see
+     * {@link GameTreeWalker}).
+     *
+     * @param parentPosition the position of the parent of the node
+     * @param child the id of the node
+     * @return the position of the node
+     */
+    public Position getChildPosition(Position parentPosition, int child) {
+        Position checkpoint = tree.getCheckpoint(child);
+        return checkpoint != null ? checkpoint : replay(parentPosition, tree.getMove(child));
     }
 
     @Override
     public String toString() {
-        StringBuilder result = new StringBuilder();
+        final StringBuilder result = new StringBuilder();
         result.append("<html><body>");
-        nodeToString(rootNode, result);
+        new GameTreeWalker(this).walk(CompactGameTree.ROOT, new GameTreeVisitor() {
+            private final Deque<Position> path = new ArrayDeque<>(); //positions of the ancestors of the node
+
+            @Override
+            public boolean enterNode(int node, Position position) {
+                int parent = tree.getParent(node);
+                if (parent != CompactGameTree.NONE && tree.getNextSibling(tree.getFirstChild(parent)) == node) {
+                    result.append("(");                         //variations follow the main line of their parent
+                }
+                String startTag = node == browser.getFocusedNode() ? "&nbsp;<a class=\"focus\" href=\"" : "&nbsp;<a href=\""; //We want to highlight the focused move
+                result.append(startTag).append(node);
+                if (node != CompactGameTree.ROOT) {
+                    result.append("\">");
+                    appendLan(node, path.peek(), position, result);
+                    result.append("</a>")
+                            .append(position.isWhiteToMove() ? "<br/>" : ""); //line break after black's move
+                } else { //Case for root node (= initial position)- has no parent
+                    result.append("\">Start</a><br/>");
+                }
+                path.push(position);
+                return true;
+            }
+
+            @Override
+            public void leaveNode(int node, Position position) {
+                path.pop();
+                int parent = tree.getParent(node);
+                if (parent != CompactGameTree.NONE && tree.getFirstChild(parent) != node) {
+                    result.append(tree.getNextSibling(node) == CompactGameTree.NONE ? ";)" : ";");
+                }
+            }
+        });
         result.append("</body></html>");
         return result.toString();
     }
@@ -49,49 +314,286 @@ public class GameImpl implements Game {
         return browser;
     }
 
+    /**
+     * Writes FEN records of all positions in the game tree to given
+     * destination, one record per line. Positions are written in pre-order:
+     * each position is followed by the main line continuing from it and then
+     * by its variations.
+     *
+     * @param out the destination to write the FEN records to
+     * @throws IOException if writing to the destination fails
+     */
+    public void appendFenLines(Appendable out) throws IOException {
+        Deque<Position> parentPositions = new ArrayDeque<>(); //positions of the ancestors of the node
+        int node = CompactGameTree.ROOT;
+        Position position = tree.getCheckpoint(node);
+        while (true) {
+            Fen.appendFen(position, out);
+            out.append('\n');
+            int child = tree.getFirstChild(node);
+            if (child != CompactGameTree.NONE) { //main line goes first
+                parentPositions.push(position);
+                node = child;
+            } else { //then the variations of the deepest node, which has some left
+                while (node != CompactGameTree.ROOT && tree.getNextSibling(node) == CompactGameTree.NONE) {
+                    node = tree.getParent(node);
+                    parentPositions.pop();
+                }
+                if (node == CompactGameTree.ROOT) {
+                    return;
+                }
+                node = tree.getNextSibling(node);
+            }
+            position = getChildPosition(parentPositions.peek(), node);
+        }
+    }
+
 //--------------------------- PRIVATE IMPLEMENTATION ---------------------------
-    private void nodeToString(Node node, StringBuilder sb) { //TODO - fix order of displaying variations
-        String startTag = node.equals(browser.getFocusedNode()) ? "&nbsp;<a class=\"focus\" href=\"" : "&nbsp;<a href=\""; //We want to highlight the focused move
-        sb.append(startTag).append(node.getId());
-
-        if (node.getMove() != null) {
-            sb.append("\">")
-                    .append(node.toLan())
-                    .append("</a>")
-                    .append(node.getPosition().isWhiteToMove() ? "<br/>" : ""); //line break after black's move
-        } else { //Case for root node (= initial position)- has no parent
-            sb.append("\">Start</a><br/>");
-        }
-
-        if (node.getChildren().size() >= 1) {
-            nodeToString(node.getChildren().get(0), sb);       //1) Main line
-        }
-        if (node.getChildren().size() > 1) {
-            sb.append("(");                                        //2) Variations
-            for (int i = 1; i < node.getChildren().size(); i++) {
-                nodeToString(node.getChildren().get(i), sb);
-                sb.append(";");
+    /**
+     * Records that the browser focused given node. Moving the focus changes
+     * the lines, which are never collapsed, so the budget is checked again.
+     */
+    private void focusChanged(int node) {
+        visit(node);
+        evictIfNeeded(node);
+    }
+
+    /**
+     * Records that the node was used just now. If the node lies in collapsed
+     * variation, the positions of the variation are restored and other
+     * variations are collapsed, if that exceeds the budget.
+     */
+    private void visit(int node) {
+        if (node >= visits.length) {
+            visits = Arrays.copyOf(visits, Math.max(node + 1, visits.length * 3 / 2));
+        }
+        visits[node] = ++clock;
+        if (collapsed.isEmpty()) {
+            return;
+        }
+        int outermost = CompactGameTree.NONE;
+        for (int ancestor = node; ancestor != CompactGameTree.NONE; ancestor = tree.getParent(ancestor)) {
+            if (collapsed.get(ancestor)) {
+                outermost = ancestor;
             }
-            sb.append(")");
+        }
+        if (outermost != CompactGameTree.NONE) { //restoring it restores the nested ones too
+            restore(outermost);
+            evictIfNeeded(node);
         }
     }
+
+    /**
+     * Recomputes the checkpoints of collapsed variation starting with given
+     * node (including the variations nested in it), which is not nested in
+     * another collapsed variation.
+     */
+    private void restore(int variation) {
+        log.debug("Restoring positions of collapsed variation starting with node {}", variation);
+        new GameTreeWalker(this).walk(variation, new GameTreeVisitor() {
+            @Override
+            public boolean enterNode(int node, Position position) {
+                collapsed.clear(node);
+                if (isVariation(node)) {
+                    variationCount++;
+                }
+                if (tree.getPly(node) % checkpointInterval == 0) {
+                    tree.setCheckpoint(node, position);
+                }
+                return true;
+            }
+
+            @Override
+            public void leaveNode(int node, Position position) {
+            }
+        });
+    }
+
+    /**
+     * Collapses the variations visited least recently, until the estimated
+     * memory usage drops well below the budget. The lines leading to the
+     * focused node and to the given node are kept. The tree is searched only
+     * if some variation can be collapsed at all, so when just the nodes
+     * exceed the budget, browsing doesn't search the tree on every move.
+     */
+    private void evictIfNeeded(int keptNode) {
+        if (getEstimatedMemoryUsage() <= memoryBudget || variationCount == countKeptVariations(keptNode)) {
+            return;
+        }
+        evictionPasses++;
+        int size = tree.size();
+        int[] lastVisits = Arrays.copyOf(visits, size); //the most recent visit of any node in the subtree
+        for (int id = size - 1; id > CompactGameTree.ROOT; id--) { //children have greater ids than their parents
+            int parent = tree.getParent(id);
+            lastVisits[parent] = Math.max(lastVisits[parent], lastVisits[id]);
+        }
+        BitSet kept = new BitSet(size);
+        for (int node : new int[]{browser.getFocusedNode(), keptNode}) {
+            for (; node != CompactGameTree.NONE; node = tree.getParent(node)) {
+                kept.set(node);
+            }
+        }
+        BitSet hidden = new BitSet(size); //the nodes of collapsed variations
+        long[] candidates = new long[variationCount]; //last visit in the upper half, id in the lower half
+        int count = 0;
+        for (int id = CompactGameTree.ROOT + 1; id < size; id++) {
+            if (collapsed.get(id) || hidden.get(tree.getParent(id))) {
+                hidden.set(id);
+            } else if (isVariation(id) && !kept.get(id)) {
+                candidates[count++] = ((long) lastVisits[id] << 32) | id;
+            }
+        }
+        Arrays.sort(candidates, 0, count);
+        long target = memoryBudget / 4 * 3;
+        int evicted = 0;
+        for (int i = 0; i < count && getEstimatedMemoryUsage() > target; i++) {
+            int variation = (int) candidates[i];
+            if (!isInCollapsedVariation(variation)) { //an enclosing variation visited as recently may be collapsed already
+                collapse(variation);
+                evicted++;
+            }
+        }
+        log.debug("Collapsed {} variation(s), estimated memory usage is {} bytes", evicted, getEstimatedMemoryUsage());
+    }
+
+    /**
+     * Drops the checkpoints of all nodes in the subtree of given variation
+     * (skipping the variations nested in it, which are collapsed already).
+     */
+    private void collapse(int variation) {
+        int node = variation;
+        while (true) {
+            tree.setCheckpoint(node, null);
+            if (isVariation(node)) {
+                variationCount--;
+            }
+            int child = tree.getFirstChild(node);
+            while (child != CompactGameTree.NONE && collapsed.get(child)) {
+                child = tree.getNextSibling(child);
+            }
+            if (child != CompactGameTree.NONE) {
+                node = child;
+                continue;
+            }
+            while (node != variation && nextUncollapsedSibling(node) == CompactGameTree.NONE) {
+                node = tree.getParent(node);
+            }
+            if (node == variation) {
+                break;
+            }
+            node = nextUncollapsedSibling(node);
+        }
+        collapsed.set(variation);
+    }
+
+    private int nextUncollapsedSibling(int node) {
+        int sibling = tree.getNextSibling(node);
+        while (sibling != CompactGameTree.NONE && collapsed.get(sibling)) {
+            sibling = tree.getNextSibling(sibling);
+        }
+        return sibling;
+    }
+
+    /**
+     * @return true if the node is the first node of variation (i.e. not the
+     * main line continuation of its parent)
+     */
+    private boolean isVariation(int node) {
+        return node != CompactGameTree.ROOT && tree.getFirstChild(tree.getParent(node)) != node;
+    }
+
+    private boolean isInCollapsedVariation(int node) {
+        if (collapsed.isEmpty()) {
+            return false;
+        }
+        for (; node != CompactGameTree.NONE; node = tree.getParent(node)) {
+            if (collapsed.get(node)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of variations on the lines leading to the focused
+     * node and to given node (which are never collapsed)
+     */
+    private int countKeptVariations(int keptNode) {
+        int count = 0;
+        int focused = browser.getFocusedNode();
+        while (focused != keptNode) { //up to their common ancestor
+            if (tree.getPly(focused) >= tree.getPly(keptNode)) {
+                count += isVariation(focused) ? 1 : 0;
+                focused = tree.getParent(focused);
+            } else {
+                count += isVariation(keptNode) ? 1 : 0;
+                keptNode = tree.getParent(keptNode);
+            }
+        }
+        for (; focused != CompactGameTree.NONE; focused = tree.getParent(focused)) {
+            count += isVariation(focused) ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Appends the move, that led to given node in Long Algebraic Notation
+     * (LAN), preceded by move number for white's moves.
+     */
+    private void appendLan(int node, Position parentPosition, Position position, StringBuilder sb) {
+        if (!position.isWhiteToMove()) {
+            sb.append(position.getFullmoveNumber()).append('.');
+        }
+        formatter.appendLan(parentPosition, tree.getMove(node), position, sb);
+    }
+
+    private Position replay(Position position, int move) {
+        try {
+            return positionFactory.create(position, Move.unpack(move));
+        } catch (PieceNotPresentException | IllegalMoveException ex) {
+            throw new IllegalStateException("Move " + MoveFormatter.toUci(move) + " of the game can't be replayed", ex);
+        }
+    }
+    /**
+     * The number of recently used positions, which are kept even if they are
+     * not checkpoints.
+     */
+    private static final int RECENT_POSITIONS = 16;
+    /**
+     * Rough estimate of the memory taken by single node of the game tree and
+     * by single position (the chessboard with its bitboards, castling rights
+     * etc.).
+     */
+    private static final int NODE_BYTES = 28;
+    private static final int POSITION_BYTES = 512;
     private static final Logger log = LoggerFactory.getLogger(GameImpl.class);
-    private final Node rootNode;
+    private final PositionFactory positionFactory;
+    private final int checkpointInterval;
+    private final Map<Integer, Position> recentPositions = new PositionInterner.LruMap<>(RECENT_POSITIONS);
+    private final CompactGameTree tree;
     private final GameBrowserImpl browser;
-    private final Map<Integer, Node> id2Node;
-    private final AtomicInteger NODE_ID_GENERATOR = new AtomicInteger(0);
+    private final MoveFormatter formatter;
+    private GameJournal journal;
+    private long memoryBudget = Long.MAX_VALUE;
+    private int[] visits = new int[64]; //the "time" of the last visit of each node
+    private int clock;
+    private final BitSet collapsed = new BitSet(); //the first nodes of collapsed variations
+    /**
+     * The number of variations, which are neither collapsed nor nested in
+     * collapsed variation (i.e. which may be collapsed, unless they are kept).
+     */
+    private int variationCount;
+    private int evictionPasses;
 
     private class GameBrowserImpl implements GameBrowser, MoveListener {
 
-        private Node focusedNode;
+        private int focusedNode;
 
-        public GameBrowserImpl(PositionFactory positionFactory) {
-            this.positionFactory = positionFactory;
-            gameListeners = new ArrayList<>();
-            focusedNode = GameImpl.this.rootNode;
+        public GameBrowserImpl() {
+            focusedNode = CompactGameTree.ROOT;
         }
 
-        public Node getFocusedNode() {
+        public int getFocusedNode() {
             return focusedNode;
         }
 
@@ -99,7 +601,7 @@ public class GameImpl implements Game {
         public void moveSelected(Move move) {
             log.info("Got notification from GUI - move selected: {}", move);
             try {
-                Node previous = focusedNode;
+                int previous = focusedNode;
                 makeMove(move);
                 notifyListenersOfPositionChange(previous);
             } catch (IllegalMoveException ex) {
@@ -113,41 +615,39 @@ public class GameImpl implements Game {
         public void makeMove(Move newMove) throws PieceNotPresentException, IllegalMoveException {
             log.info("Trying to add {} to the game", newMove);
 
-            //if currently focused node already has a child preceded by move in the node, just move the gocus     
-            for (Node childNode : focusedNode.getChildren()) {
-                if (childNode.getMove().equals(newMove)) {
-                    log.debug("There is already a child with move {} -> just switching focus to that child, not adding the move", newMove);
-                    focusedNode = childNode;
-                    return;
-                }
+            //if currently focused node already has a child preceded by move in the node, just move the gocus
+            int packed = newMove.pack();
+            int child = tree.findChild(focusedNode, packed);
+            if (child != CompactGameTree.NONE) {
+                log.debug("There is already a child with move {} -> just switching focus to that child, not adding the move", newMove);
+                focusedNode = child;
+                focusChanged(child);
+                return;
             }
             log.debug("Adding new Position using {}", newMove);
-            Position positionAfterMove = positionFactory.create(getFocusedPosition(), newMove);
-            Node newFocusedNode = new Node(focusedNode, newMove, positionAfterMove, NODE_ID_GENERATOR.getAndIncrement());
-            id2Node.put(newFocusedNode.getId(), newFocusedNode);
-            focusedNode.addChild(newFocusedNode);
-            focusedNode = newFocusedNode;
+            focusedNode = addMove(focusedNode, packed);
         }
 
         @Override
         public Position getFocusedPosition() {
-            return focusedNode.getPosition();
+            return getPosition(focusedNode);
         }
 
         @Override
         public void focusInitialPosition() {
             log.info("Browsing game: Focusing initial position");
-            Node previous = focusedNode;
-            focusedNode = rootNode;
+            int previous = focusedNode;
+            focusedNode = CompactGameTree.ROOT;
             notifyListenersOfPositionChange(previous);
         }
 
         @Override
         public void focusNextPosition() {
-            if (focusedNode.children.size() > 0) {
+            int mainLine = tree.getFirstChild(focusedNode);
+            if (mainLine != CompactGameTree.NONE) {
                 log.info("Browsing game: focusing focusing next position on current main line");
-                Node previous = focusedNode;
-                focusedNode = focusedNode.getChildren().get(0);
+                int previous = focusedNode;
+                focusedNode = mainLine;
                 notifyListenersOfPositionChange(previous);
             } else {
                 log.info("Browsing game: can't focus child, we are already at the end of current line!");
@@ -156,10 +656,10 @@ public class GameImpl implements Game {
 
         @Override
         public void focusPreviousPosition() {
-            if (focusedNode.parent != null) { //we're currently not at root
+            if (focusedNode != CompactGameTree.ROOT) {
                 log.info("Browsing game: focusing previous position");
-                Node previous = focusedNode;
-                focusedNode = focusedNode.parent;
+                int previous = focusedNode;
+                focusedNode = tree.getParent(focusedNode);
                 notifyListenersOfPositionChange(previous);
             } else {
                 log.info("Browsing game: can't focus previous position, we are already at the initial position!");
@@ -168,19 +668,18 @@ public class GameImpl implements Game {
 
         @Override
         public void focusLastPosition() {
-            Node previous = focusedNode;
+            int previous = focusedNode;
             log.info("Browsing tree: moving to the end of the current line");
-            while (focusedNode.children.size() > 0) {
-                focusedNode = focusedNode.getChildren().get(0);
-            }
+            focusedNode = tree.getLastInMainLine(focusedNode);
             notifyListenersOfPositionChange(previous);
         }
 
         @Override
         public void focusPositionWithId(int id) {
             log.info("Browsing tree: focusing node with id = {}", id);
-            Node previous = focusedNode;
-            focusedNode = id2Node.get(id);
+            int previous = focusedNode;
+            tree.getParent(id); //fails for unknown ids
+            focusedNode = id;
             notifyListenersOfPositionChange(previous);
         }
 
@@ -191,112 +690,26 @@ public class GameImpl implements Game {
 
         @Override
         public void addGameListener(GameListener gl) {
-            gameListeners.add(gl);
+            dispatcher.addListener(gl);
         }
 
         @Override
         public void removeGameListener(GameListener gl) {
-            gameListeners.remove(gl);
+            dispatcher.removeListener(gl);
         }
 
         //----------------------- PRIVATE IMPLEMENTATION ---------------------------
-        private void notifyListenersOfPositionChange(Node previouslyFocusedNode) {
-            //TODO -focused node is null here, when new game is initialized with 
-            if (!focusedNode.equals(previouslyFocusedNode)) {
-                log.info("Focused Position has changed - notifying {} GameListener(s)", gameListeners.size());
-                GameBrowserChangedEvent change = new GameBrowserChangedEvent(previouslyFocusedNode.getPosition(), getFocusedPosition());
-
-                for (GameListener gameListener : gameListeners) {
-                    gameListener.gameChanged(change);
-                }
+        private void notifyListenersOfPositionChange(int previouslyFocusedNode) {
+            if (focusedNode != previouslyFocusedNode) {
+                focusChanged(focusedNode);
+                log.info("Focused Position has changed - notifying {} GameListener(s)", dispatcher.getListenerCount());
+                dispatcher.fire(getPosition(previouslyFocusedNode), getFocusedPosition());
             } else {
                 log.info("Focused position has not changed.");
             }
         }
         //
-        private final List<GameListener> gameListeners;
-        private final PositionFactory positionFactory;
+        private final GameEventDispatcher dispatcher = new GameEventDispatcher();
         private final Logger log = LoggerFactory.getLogger(getClass());
     }
-
-    /**
-     * Constituent part of a game tree - holds Position and information about
-     * parent / children positions.
-     */
-    private static class Node {
-
-        private static final Logger log = LoggerFactory.getLogger(Node.class);
-        //link to parent (to enable taking back of moves - moving to previous position)
-        private final Node parent;
-        //list of children
-        private final List<Node> children;
-        //Data
-        private final Move move;
-        private final Position position;
-        private final int ID; //Unique ID withing a game
-
-        public Node(Node parent, Move move, Position position, int id) {
-            this.parent = parent;
-            this.move = move;
-            this.position = position;
-            this.ID = id;
-            this.children = new ArrayList<>();
-
-        }
-
-        public Position getPosition() {
-            return position;
-        }
-
-        public Move getMove() {
-            return move;
-        }
-
-        public void addChild(Node child) {
-            log.debug("Adding new child node for move {}", child.getMove());
-            children.add(child);
-        }
-
-        public List<Node> getChildren() {
-            return children;
-        }
-
-        public Node getParent() {
-            return parent;
-        }
-
-        public int getId() {
-            return ID;
-        }
-
-        /**
-         * Takes the node and converts the move, that led to this node to Long
-         * Algebraic Notation (LAN).
-         *
-         * @return Long Algebraic Notation representation of the move
-         */
-        private String toLan() {
-            if (getParent() == null) {
-                throw new IllegalArgumentException("Cannot convert root node to LAN!");
-            }
-
-            StringBuilder result = new StringBuilder();
-
-            String fullMoveNumber = getPosition().isWhiteToMove() ? "" : getPosition().getFullmoveNumber() + ".";
-            String pieceLetter = move.getPiece().getSanName();
-            String fromSquare = move.getFrom().toString().toLowerCase();
-            boolean wasCapture = getParent().getPosition().getChessboard().getPiece(move.getTo()) != null;
-            String toSquare = move.getTo().toString().toLowerCase();
-            String promotion = (move instanceof Promotion) ? "=" + ((Promotion) move).getPromoPiece().getSanName() : "";
-
-            result.append(fullMoveNumber)
-                    .append(pieceLetter)
-                    .append(fromSquare)
-                    .append(wasCapture ? "x" : "-")
-                    .append(toSquare)
-                    .append(promotion);
-
-            return result.toString();
-        }
-    }
 }
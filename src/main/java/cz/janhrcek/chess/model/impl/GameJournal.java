@@ -0,0 +1,453 @@
+package cz.janhrcek.chess.model.impl;
+
+import cz.janhrcek.chess.FEN.InvalidFenException;
+import cz.janhrcek.chess.model.api.PositionFactory;
+import cz.janhrcek.chess.rules.IllegalMoveException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import static java.util.Objects.requireNonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only journal of the moves added to the tree of a {@link GameImpl},
+ * from which the game can be restored much faster than from PGN.
+ *
+ * Each move added to the game tree is recorded as 8 byte entry (the id of the
+ * parent node and the packed move). The entries are collected in memory and
+ * written to the file in groups (group commit): by {@link #commit()}, by
+ * background thread every commit interval, when many entries are waiting and
+ * when the journal is closed. Each group is written by single write and
+ * forced to the disk. When the file ends with incomplete entry (the write was
+ * interrupted), the incomplete entry is ignored.
+ *
+ * The file starts with header (FEN of the initial position) and snapshot of
+ * the whole tree, in which the parent of each node is encoded as variable
+ * length difference of the ids (just 1 byte for most nodes), followed by the
+ * entries appended since the snapshot. When a commit finds more entries than
+ * nodes in the snapshot (and at least {@value #MIN_ENTRIES_TO_COMPACT}), the
+ * journal is compacted: the file is rewritten as single snapshot (into
+ * temporary file, which then atomically replaces the journal).
+ * Compaction works with the file only, so it does not need to access the
+ * game.
+ *
+ * Instances are thread safe, but the game itself must still be modified by
+ * single thread at a time.
+ *
+ * @author jhrcek
+ */
+public final class GameJournal implements Closeable {
+
+    /**
+     * The default number of milliseconds between commits made by the
+     * background thread.
+     */
+    public static final long DEFAULT_COMMIT_INTERVAL = 200;
+
+    /**
+     * Opens journal of a game using default position factory, checkpoint
+     * interval and commit interval.
+     *
+     * @see #open(Path, String, PositionFactory, int, long)
+     */
+    public static GameJournal open(Path file, String initialPositionFen) throws IOException, InvalidFenException {
+        return open(file, initialPositionFen, new PositionFactoryImpl(new FIDERuleChecker()), 1, DEFAULT_COMMIT_INTERVAL);
+    }
+
+    /**
+     * Opens journal of a game. If the file exists, the game is restored from
+     * it, otherwise new game is created and the file is created with its
+     * initial position. The journal is set to the game (see
+     * {@link GameImpl#setJournal(GameJournal)}), so all moves subsequently
+     * added to the game are recorded.
+     *
+     * @param file the file of the journal
+     * @param initialPositionFen FEN of the initial position of the game (used
+     * only if the file does not exist yet)
+     * @param positionFactory the factory used to create positions of the game
+     * @param checkpointInterval see
+     * {@link GameImpl#GameImpl(String, PositionFactory, int)}
+     * @param commitIntervalMillis the number of milliseconds between commits
+     * made by background thread or 0 if the entries should be committed only
+     * explicitly (or when many of them are waiting)
+     * @return the journal, whose game is available via {@link #getGame()}
+     * @throws IOException if the file can't be read or written or it is not
+     * valid journal
+     * @throws InvalidFenException if the FEN of the initial position is
+     * invalid
+     */
+    public static GameJournal open(Path file, String initialPositionFen, PositionFactory positionFactory, int checkpointInterval, long commitIntervalMillis) throws IOException, InvalidFenException {
+        requireNonNull(file, "file must not be null!");
+        if (commitIntervalMillis < 0) {
+            throw new IllegalArgumentException("commitIntervalMillis must not be negative, but was " + commitIntervalMillis);
+        }
+        Contents contents;
+        boolean exists = Files.exists(file);
+        if (exists) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                contents = read(channel);
+            }
+        } else {
+            contents = new Contents(requireNonNull(initialPositionFen, "initialPositionFen must not be null!"));
+        }
+        GameImpl game = new GameImpl(contents.fen, positionFactory, checkpointInterval);
+        if (!exists) { //only after the FEN was validated, so that invalid FEN leaves no file behind
+            writeSnapshot(file, contents);
+        }
+        for (int i = 0; i < contents.size; i++) {
+            int node;
+            try {
+                node = game.addMove(contents.parents[i], contents.moves[i]);
+            } catch (PieceNotPresentException | IllegalMoveException | IllegalArgumentException ex) {
+                throw new IOException("The journal " + file + " contains illegal move in entry " + i, ex);
+            }
+            if (node != i + 1) {
+                throw new IOException("The journal " + file + " contains duplicate move in entry " + i);
+            }
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        GameJournal journal;
+        try {
+            channel.truncate(contents.validLength); //drop incomplete entry at the end
+            channel.position(contents.validLength);
+            journal = new GameJournal(file, channel, game, contents, commitIntervalMillis);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+        log.info("Restored game with {} moves from journal {}", contents.size, file);
+        game.setJournal(journal);
+        return journal;
+    }
+
+    /**
+     * @return the game recorded by this journal
+     */
+    public GameImpl getGame() {
+        return game;
+    }
+
+    /**
+     * Records move being added to the game tree. The entry is written to the
+     * file by the next commit. This method is called by the game before it
+     * changes the tree, so the move is not added, when this method fails.
+     *
+     * @param parent the id of the parent node of the new node
+     * @param move the packed move leading to the new node
+     * @throws IllegalStateException if the journal is closed or some previous
+     * commit failed
+     */
+    public void append(int parent, int move) {
+        boolean commitNow;
+        synchronized (this) {
+            checkWritable();
+            if (pending.remaining() < ENTRY_SIZE) {
+                ByteBuffer larger = ByteBuffer.allocate(2 * pending.capacity());
+                pending.flip();
+                larger.put(pending);
+                pending = larger;
+            }
+            pending.putInt(parent).putInt(move);
+            commitNow = pending.position() >= MAX_GROUP_SIZE * ENTRY_SIZE;
+        }
+        if (commitNow) {
+            try {
+                commit();
+            } catch (IOException ex) {
+                throw new IllegalStateException("The journal " + file + " can't be written", ex);
+            }
+        }
+    }
+
+    /**
+     * Writes all entries recorded so far to the file and forces them to the
+     * disk. Compacts the journal, if there are too many entries since the
+     * last snapshot.
+     *
+     * @throws IOException if writing fails (then the journal can't be used
+     * any more)
+     */
+    public void commit() throws IOException {
+        synchronized (commitLock) {
+            if (write() && entriesSinceSnapshot >= Math.max(MIN_ENTRIES_TO_COMPACT, snapshotSize)) {
+                compactFile();
+            }
+        }
+    }
+
+    /**
+     * Commits the recorded entries and rewrites the file as single snapshot
+     * of the game tree.
+     *
+     * @throws IOException if reading or writing the file fails
+     */
+    public void compact() throws IOException {
+        synchronized (commitLock) {
+            write();
+            compactFile();
+        }
+    }
+
+    /**
+     * Commits the recorded entries, stops the background thread and detaches
+     * the journal from the game.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (commitLock) {
+            if (closed) {
+                return;
+            }
+            if (committer != null) {
+                committer.shutdown();
+            }
+            try {
+                write();
+            } finally {
+                synchronized (this) {
+                    closed = true;
+                }
+                if (game.getJournal() == this) {
+                    game.setJournal(null);
+                }
+                channel.close();
+            }
+        }
+    }
+//--------------------------- PRIVATE IMPLEMENTATION ---------------------------
+    private static final Logger log = LoggerFactory.getLogger(GameJournal.class);
+    private static final int MAGIC = 0x474A4E4C; //"GJNL"
+    private static final int VERSION = 1;
+    private static final int ENTRY_SIZE = 8;
+    /**
+     * The number of waiting entries, which are committed immediately.
+     */
+    private static final int MAX_GROUP_SIZE = 4096;
+    private static final int MIN_ENTRIES_TO_COMPACT = 1024;
+    private final Path file;
+    private final GameImpl game;
+    private final Object commitLock = new Object();
+    private final ScheduledExecutorService committer;
+    //guarded by commitLock
+    private FileChannel channel;
+    private ByteBuffer spare = ByteBuffer.allocate(1024);
+    private int snapshotSize;
+    private int entriesSinceSnapshot;
+    //guarded by this
+    private ByteBuffer pending = ByteBuffer.allocate(1024);
+    private IOException failure;
+    private boolean closed;
+
+    private GameJournal(Path file, FileChannel channel, GameImpl game, Contents contents, long commitIntervalMillis) {
+        this.file = file;
+        this.channel = channel;
+        this.game = game;
+        this.snapshotSize = contents.snapshotSize;
+        this.entriesSinceSnapshot = contents.size - contents.snapshotSize;
+        if (commitIntervalMillis > 0) {
+            committer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "GameJournal committer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            committer.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        commit();
+                    } catch (IOException | RuntimeException ex) {
+                        log.error("Commit of the journal failed", ex);
+                    }
+                }
+            }, commitIntervalMillis, commitIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            committer = null;
+        }
+    }
+
+    private void checkWritable() {
+        if (closed) {
+            throw new IllegalStateException("The journal " + file + " is closed");
+        }
+        if (failure != null) {
+            throw new IllegalStateException("The journal " + file + " can't be written", failure);
+        }
+    }
+
+    /**
+     * Writes the waiting entries (must be called with commitLock held).
+     *
+     * @return true if some entries were written
+     */
+    private boolean write() throws IOException {
+        ByteBuffer group;
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            if (failure != null) {
+                throw new IOException("The journal " + file + " can't be written", failure);
+            }
+            if (pending.position() == 0) {
+                return false;
+            }
+            group = pending;
+            pending = spare;
+        }
+        group.flip();
+        int entries = group.remaining() / ENTRY_SIZE;
+        try {
+            while (group.hasRemaining()) {
+                channel.write(group);
+            }
+            channel.force(false);
+        } catch (IOException ex) {
+            synchronized (this) {
+                failure = ex;
+            }
+            throw ex;
+        }
+        group.clear();
+        spare = group;
+        entriesSinceSnapshot += entries;
+        return true;
+    }
+
+    /**
+     * Rewrites the file as single snapshot (must be called with commitLock
+     * held, after all waiting entries were written).
+     */
+    private void compactFile() throws IOException {
+        Contents contents = read(channel);
+        writeSnapshot(file, contents);
+        channel.close();
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        snapshotSize = contents.size;
+        entriesSinceSnapshot = 0;
+        log.info("Journal {} compacted to snapshot of {} moves", file, contents.size);
+    }
+
+    /**
+     * Writes the file consisting of header and snapshot of all the moves of
+     * the contents, replacing the existing file atomically.
+     */
+    private static void writeSnapshot(Path file, Contents contents) throws IOException {
+        byte[] fen = contents.fen.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(16 + fen.length + 9 * contents.size);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(fen.length).put(fen).putInt(contents.size);
+        for (int i = 0; i < contents.size; i++) {
+            putVarint(buffer, i + 1 - contents.parents[i]);
+            buffer.putInt(contents.moves[i]);
+        }
+        buffer.flip();
+        contents.validLength = buffer.limit();
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Contents read(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("The journal is too large: " + size + " bytes");
+        }
+        ByteBuffer data = ByteBuffer.allocate((int) size);
+        while (data.hasRemaining()) {
+            if (channel.read(data, data.position()) < 0) {
+                throw new IOException("The journal was truncated while being read");
+            }
+        }
+        data.flip();
+        try {
+            if (data.getInt() != MAGIC || data.getInt() != VERSION) {
+                throw new IOException("The file is not game journal of version " + VERSION);
+            }
+            byte[] fen = new byte[data.getInt()];
+            data.get(fen);
+            Contents contents = new Contents(new String(fen, StandardCharsets.UTF_8));
+            int snapshotSize = data.getInt();
+            for (int i = 0; i < snapshotSize; i++) {
+                contents.add(i + 1 - getVarint(data), data.getInt());
+            }
+            contents.snapshotSize = snapshotSize;
+            while (data.remaining() >= ENTRY_SIZE) {
+                contents.add(data.getInt(), data.getInt());
+            }
+            contents.validLength = data.position();
+            return contents;
+        } catch (RuntimeException ex) { //BufferUnderflowException, NegativeArraySizeException...
+            throw new IOException("The header or snapshot of the journal is corrupted", ex);
+        }
+    }
+
+    private static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed variable length number");
+    }
+
+    /**
+     * The moves stored in the journal file.
+     */
+    private static final class Contents {
+
+        private final String fen;
+        private int[] parents = new int[256];
+        private int[] moves = new int[256];
+        private int size;
+        private int snapshotSize;
+        private long validLength;
+
+        public Contents(String fen) {
+            this.fen = fen;
+        }
+
+        public void add(int parent, int move) throws IOException {
+            if (parent < 0 || parent > size) {
+                throw new IOException("The journal contains entry " + size + " with invalid parent " + parent);
+            }
+            if (size == moves.length) {
+                parents = Arrays.copyOf(parents, 2 * size);
+                moves = Arrays.copyOf(moves, 2 * size);
+            }
+            parents[size] = parent;
+            moves[size] = move;
+            size++;
+        }
+    }
+}
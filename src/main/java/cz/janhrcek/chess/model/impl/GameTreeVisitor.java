@@ -0,0 +1,32 @@
+package cz.janhrcek.chess.model.impl;
+
+import cz.janhrcek.chess.model.api.Position;
+
+/**
+ * Callback of {@link GameTreeWalker}, which is told about each node of the
+ * game tree when the walk enters it (pre-order) and when it leaves it after all
+ * its descendants (post-order).
+ *
+ * @author jhrcek
+ */
+public interface GameTreeVisitor {
+
+    /**
+     * Called when the walk enters the node, before any of its descendants.
+     *
+     * @param node the id of the node in the game tree
+     * @param position the position of the node
+     * @return true if the descendants of the node should be visited, false if
+     * the walk should skip them
+     */
+    boolean enterNode(int node, Position position);
+
+    /**
+     * Called when the walk leaves the node, after all its (not skipped)
+     * descendants.
+     *
+     * @param node the id of the node in the game tree
+     * @param position the position of the node
+     */
+    void leaveNode(int node, Position position);
+}
@@ -0,0 +1,282 @@
+package cz.janhrcek.chess.model.impl;
+
+import cz.janhrcek.chess.model.api.Position;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Walks the tree of moves of a {@link GameImpl}. Nodes are visited in
+ * pre-order (each node is followed by its main line and then by its
+ * variations, which is the order, in which the game is displayed) and the
+ * positions are reconstructed by replaying the moves along the walk, so each
+ * move is replayed at most once.
+ *
+ * The walks use explicit stack instead of recursion, so the depth of the tree
+ * is limited only by the memory. The subtrees of variations are independent of
+ * each other, so walk can be split among threads of {@link ForkJoinPool} (see
+ * {@link #walkInParallel(ForkJoinPool, int, GameTreeVisitor)}) for bulk
+ * analysis of large trees.
+ *
+ * The game must not be modified during the walk. Instances are thread safe as
+ * long as the game is not modified.
+ *
+ * @author jhrcek
+ */
+public final class GameTreeWalker {
+
+    /**
+     * A node visited by iterator of the walker: its id, the move leading to it
+     * and its position.
+     */
+    public static final class Entry {
+
+        private final int node;
+        private final int move;
+        private final Position position;
+
+        private Entry(int node, int move, Position position) {
+            this.node = node;
+            this.move = move;
+            this.position = position;
+        }
+
+        /**
+         * @return the id of the node in the game tree
+         */
+        public int getNode() {
+            return node;
+        }
+
+        /**
+         * @return the packed move leading to the node (0 for the root), see
+         * {@link cz.janhrcek.chess.model.api.Move#pack()}
+         */
+        public int getMove() {
+            return move;
+        }
+
+        public Position getPosition() {
+            return position;
+        }
+    }
+
+    public GameTreeWalker(GameImpl game) {
+        this.game = requireNonNull(game, "game must not be null!");
+        this.tree = game.getTree();
+    }
+
+    /**
+     * Walks the subtree of given node (including the node itself), telling
+     * the visitor about each node when entering and leaving it.
+     *
+     * @param node the id of the node, where the walk starts
+     * @param visitor the visitor of the nodes
+     */
+    public void walk(int node, GameTreeVisitor visitor) {
+        new SubtreeWalk(node, game.getPosition(node), visitor, false, false).compute();
+    }
+
+    /**
+     * Walks the main line continuing from given node (including the node
+     * itself), ignoring all variations.
+     *
+     * @param node the id of the node, where the walk starts
+     * @param visitor the visitor of the nodes
+     */
+    public void walkMainLine(int node, GameTreeVisitor visitor) {
+        new SubtreeWalk(node, game.getPosition(node), visitor, true, false).compute();
+    }
+
+    /**
+     * Walks the subtree of given node like {@link #walk(int, GameTreeVisitor)},
+     * but variations may be walked in parallel by the threads of given pool.
+     * Each node is still entered before its descendants and left after them,
+     * but nodes of different variations are visited in no particular order and
+     * the visitor must be thread safe. The method returns after all the nodes
+     * were visited.
+     *
+     * @param pool the pool walking the variations
+     * @param node the id of the node, where the walk starts
+     * @param visitor the (thread safe) visitor of the nodes
+     */
+    public void walkInParallel(ForkJoinPool pool, int node, GameTreeVisitor visitor) {
+        requireNonNull(pool, "pool must not be null!");
+        pool.invoke(new SubtreeWalk(node, game.getPosition(node), visitor, false, true));
+    }
+
+    /**
+     * @param node the id of the node, where the iteration starts
+     * @return iterator over the subtree of given node (including the node
+     * itself) in pre-order, positions are reconstructed lazily as the iterator
+     * advances
+     */
+    public Iterator<Entry> iterator(int node) {
+        return new PreOrderIterator(node, false);
+    }
+
+    /**
+     * @param node the id of the node, where the iteration starts
+     * @return iterator over the main line continuing from given node
+     * (including the node itself)
+     */
+    public Iterator<Entry> mainLineIterator(int node) {
+        return new PreOrderIterator(node, true);
+    }
+//--------------------------- PRIVATE IMPLEMENTATION ---------------------------
+    /**
+     * Variations are walked by new tasks only while there are less than this
+     * many tasks waiting in the queue of the current thread, otherwise the
+     * current task walks them itself.
+     */
+    private static final int MAX_SURPLUS_TASKS = 3;
+    private final GameImpl game;
+    private final CompactGameTree tree;
+
+    /**
+     * Walk of a subtree. Stack frame is kept for each ancestor of the current
+     * node, with the ancestor's position and the tasks walking its variations
+     * (if they were forked).
+     */
+    private final class SubtreeWalk extends RecursiveAction {
+
+        private final int start;
+        private final Position startPosition;
+        private final GameTreeVisitor visitor;
+        private final boolean mainLineOnly;
+        private final boolean parallel;
+
+        public SubtreeWalk(int start, Position startPosition, GameTreeVisitor visitor, boolean mainLineOnly, boolean parallel) {
+            this.start = start;
+            this.startPosition = startPosition;
+            this.visitor = requireNonNull(visitor, "visitor must not be null!");
+            this.mainLineOnly = mainLineOnly;
+            this.parallel = parallel;
+        }
+
+        @Override
+        protected void compute() {
+            Deque<Frame> frames = new ArrayDeque<>();
+            int node = start;
+            Position position = startPosition;
+            while (true) {
+                int mainLine = visitor.enterNode(node, position) ? tree.getFirstChild(node) : CompactGameTree.NONE;
+                if (mainLine != CompactGameTree.NONE) {
+                    Frame frame = new Frame(position);
+                    if (!mainLineOnly && tree.getNextSibling(mainLine) != CompactGameTree.NONE
+                            && parallel && getSurplusQueuedTaskCount() < MAX_SURPLUS_TASKS) {
+                        frame.forked = new ArrayList<>();
+                        for (int variation = tree.getNextSibling(mainLine); variation != CompactGameTree.NONE; variation = tree.getNextSibling(variation)) {
+                            SubtreeWalk task = new SubtreeWalk(variation, game.getChildPosition(position, variation), visitor, false, true);
+                            task.fork();
+                            frame.forked.add(task);
+                        }
+                    }
+                    frames.push(frame);
+                    node = mainLine;
+                    position = game.getChildPosition(position, mainLine);
+                    continue;
+                }
+                //leave nodes until one with next sibling to walk is found
+                while (true) {
+                    visitor.leaveNode(node, position);
+                    if (node == start) {
+                        return;
+                    }
+                    Frame parent = frames.peek();
+                    int sibling = mainLineOnly || parent.forked != null ? CompactGameTree.NONE : tree.getNextSibling(node);
+                    if (sibling != CompactGameTree.NONE) {
+                        node = sibling;
+                        position = game.getChildPosition(parent.position, sibling);
+                        break;
+                    }
+                    frames.pop();
+                    if (parent.forked != null) {
+                        for (SubtreeWalk task : parent.forked) {
+                            task.join();
+                        }
+                    }
+                    node = tree.getParent(node);
+                    position = parent.position;
+                }
+            }
+        }
+    }
+
+    private static final class Frame {
+
+        private final Position position;
+        private List<SubtreeWalk> forked;
+
+        public Frame(Position position) {
+            this.position = position;
+        }
+    }
+
+    private final class PreOrderIterator implements Iterator<Entry> {
+
+        private final int start;
+        private final boolean mainLineOnly;
+        /**
+         * The positions of the ancestors of the next node (up to the start).
+         */
+        private final Deque<Position> parentPositions = new ArrayDeque<>();
+        private int next;
+        private Position nextPosition;
+
+        public PreOrderIterator(int start, boolean mainLineOnly) {
+            this.nextPosition = game.getPosition(start);
+            this.start = start;
+            this.next = start;
+            this.mainLineOnly = mainLineOnly;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != CompactGameTree.NONE;
+        }
+
+        @Override
+        public Entry next() {
+            if (next == CompactGameTree.NONE) {
+                throw new NoSuchElementException();
+            }
+            Entry entry = new Entry(next, tree.getMove(next), nextPosition);
+            advance();
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("The game tree can't be modified by iterator");
+        }
+
+        private void advance() {
+            int mainLine = tree.getFirstChild(next);
+            if (mainLine != CompactGameTree.NONE) {
+                parentPositions.push(nextPosition);
+                next = mainLine;
+                nextPosition = game.getChildPosition(nextPosition, mainLine);
+                return;
+            }
+            while (next != start) {
+                int sibling = mainLineOnly ? CompactGameTree.NONE : tree.getNextSibling(next);
+                if (sibling != CompactGameTree.NONE) {
+                    next = sibling;
+                    nextPosition = game.getChildPosition(parentPositions.peek(), sibling);
+                    return;
+                }
+                parentPositions.pop();
+                next = tree.getParent(next);
+            }
+            next = CompactGameTree.NONE;
+            nextPosition = null;
+        }
+    }
+}
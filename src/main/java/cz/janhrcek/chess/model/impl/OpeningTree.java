@@ -0,0 +1,500 @@
+package cz.janhrcek.chess.model.impl;
+
+import cz.janhrcek.chess.model.api.Chessboard;
+import cz.janhrcek.chess.model.api.Move;
+import cz.janhrcek.chess.model.api.Position;
+import cz.janhrcek.chess.model.api.PositionFactory;
+import cz.janhrcek.chess.model.api.enums.Castling;
+import cz.janhrcek.chess.model.api.enums.Piece;
+import cz.janhrcek.chess.rules.Bitboards;
+import cz.janhrcek.chess.rules.IllegalMoveException;
+import cz.janhrcek.chess.rules.MoveFormatter;
+import java.util.Arrays;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Tree of openings built by merging many games starting from the same
+ * position. Each node counts the games which passed through it and their
+ * results, so the tree can be used as a repertoire or opening book.
+ *
+ * Like {@link CompactGameTree}, the nodes are identified by int ids and stored
+ * as struct of int arrays; the moves leading from a node are kept in a list of
+ * edges, which is searched by packed move (see {@link Move#pack()}). Nothing
+ * is stored per game, so the memory used is proportional to the number of
+ * unique nodes and edges (few tens of bytes each), not to the number of
+ * merged games.
+ *
+ * In the default mode the nodes form a tree: each node is a unique sequence of
+ * moves and the moves are not validated. When the transpositions are joined,
+ * each node is a unique position (piece placement, side to move, castling
+ * availabilities and en passant target, if en passant capture is possible)
+ * and different move orders leading to the same position end in the same node,
+ * so the nodes form a directed graph. The positions are identified by their
+ * 64 bit hash (collisions are practically impossible for any realistic number
+ * of positions), which requires replaying the moves of each merged game.
+ * Instances are not thread safe.
+ *
+ * @author jhrcek
+ */
+public final class OpeningTree {
+
+    /**
+     * The result of a merged game.
+     */
+    public enum Result {
+
+        WHITE_WINS, DRAW, BLACK_WINS, UNKNOWN;
+
+        /**
+         * @param pgnResult game termination marker of PGN ("1-0", "1/2-1/2",
+         * "0-1" or "*")
+         * @return the corresponding result ({@link #UNKNOWN} for unrecognized
+         * markers)
+         */
+        public static Result fromPgn(String pgnResult) {
+            switch (String.valueOf(pgnResult)) {
+                case "1-0":
+                    return WHITE_WINS;
+                case "1/2-1/2":
+                    return DRAW;
+                case "0-1":
+                    return BLACK_WINS;
+                default:
+                    return UNKNOWN;
+            }
+        }
+    }
+    /**
+     * The id of the root node (the initial position of all the games).
+     */
+    public static final int ROOT = 0;
+    /**
+     * Returned instead of id, when there is no such node or edge.
+     */
+    public static final int NONE = -1;
+
+    /**
+     * Creates tree, which does not join transpositions.
+     *
+     * @param rootPosition the initial position of the merged games
+     * @param positionFactory the factory used to replay moves
+     */
+    public OpeningTree(Position rootPosition, PositionFactory positionFactory) {
+        this(rootPosition, positionFactory, false);
+    }
+
+    /**
+     * @param rootPosition the initial position of the merged games
+     * @param positionFactory the factory used to replay moves
+     * @param joinTranspositions true if move orders leading to the same
+     * position should end in the same node
+     */
+    public OpeningTree(Position rootPosition, PositionFactory positionFactory, boolean joinTranspositions) {
+        this.rootPosition = requireNonNull(rootPosition, "rootPosition must not be null!");
+        this.positionFactory = requireNonNull(positionFactory, "positionFactory must not be null!");
+        this.joinTranspositions = joinTranspositions;
+        rootKey = positionKey(rootPosition);
+        firstEdges = new int[INITIAL_CAPACITY];
+        gameCounts = new int[INITIAL_CAPACITY];
+        whiteWins = new int[INITIAL_CAPACITY];
+        draws = new int[INITIAL_CAPACITY];
+        blackWins = new int[INITIAL_CAPACITY];
+        lastGames = new int[INITIAL_CAPACITY];
+        edgeMoves = new int[INITIAL_CAPACITY];
+        edgeTargets = new int[INITIAL_CAPACITY];
+        nextEdges = new int[INITIAL_CAPACITY];
+        firstEdges[ROOT] = NONE;
+        lastGames[ROOT] = NONE;
+        size = 1;
+        if (joinTranspositions) {
+            tableKeys = new long[INITIAL_CAPACITY * 2];
+            tableNodes = new int[INITIAL_CAPACITY * 2];
+            Arrays.fill(tableNodes, NONE);
+            putNode(rootKey, ROOT);
+        }
+    }
+
+    /**
+     * Merges the game given by its moves into the tree: follows the nodes of
+     * the moves already present in the tree, adds nodes for the rest and
+     * counts the game in all the nodes it passed through (once per node, even
+     * if the game repeats a position).
+     *
+     * @param moves the packed moves of the game, played from the root
+     * position
+     * @param length the number of moves of the game (the length of the used
+     * part of the array)
+     * @param result the result of the game
+     * @return the id of the node reached by the last move
+     * @throws IllegalArgumentException if transpositions are joined and some
+     * of the moves is illegal (the tree is not modified in that case)
+     */
+    public int addGame(int[] moves, int length, Result result) {
+        requireNonNull(moves, "moves must not be null!");
+        requireNonNull(result, "result must not be null!");
+        if (length < 0 || length > moves.length) {
+            throw new IllegalArgumentException("length must be between 0 and " + moves.length + ", but was " + length);
+        }
+        long[] keys = joinTranspositions ? replay(moves, length) : null;
+        games++;
+        int node = ROOT;
+        count(node, result);
+        for (int i = 0; i < length; i++) {
+            int edge = findEdge(node, moves[i]);
+            if (edge != NONE) {
+                node = edgeTargets[edge];
+            } else {
+                int target = keys != null ? getNode(keys[i]) : NONE;
+                if (target == NONE) {
+                    target = addNode();
+                    if (keys != null) {
+                        putNode(keys[i], target);
+                    }
+                } else {
+                    transpositions++;
+                }
+                addEdge(node, moves[i], target);
+                node = target;
+            }
+            count(node, result);
+        }
+        return node;
+    }
+
+    /**
+     * Merges the main line of given game into the tree.
+     *
+     * @param game the game starting from the root position of this tree
+     * @param result the result of the game
+     * @return the id of the node reached by the last move of the main line
+     * @throws IllegalArgumentException if the game starts from other
+     * position than the root of this tree
+     */
+    public int addGame(GameImpl game, Result result) {
+        CompactGameTree gameTree = game.getTree();
+        if (positionKey(gameTree.getCheckpoint(CompactGameTree.ROOT)) != rootKey) {
+            throw new IllegalArgumentException("The game doesn't start from the root position of the tree");
+        }
+        int[] moves = new int[gameTree.getPly(gameTree.getLastInMainLine(CompactGameTree.ROOT))];
+        int length = 0;
+        for (int node = gameTree.getFirstChild(CompactGameTree.ROOT); node != CompactGameTree.NONE; node = gameTree.getFirstChild(node)) {
+            moves[length++] = gameTree.getMove(node);
+        }
+        return addGame(moves, length, result);
+    }
+
+    /**
+     * @return true if the nodes are unique positions, false if they are
+     * unique sequences of moves
+     */
+    public boolean isJoiningTranspositions() {
+        return joinTranspositions;
+    }
+
+    public Position getRootPosition() {
+        return rootPosition;
+    }
+
+    /**
+     * @return the number of nodes (unique positions, if transpositions are
+     * joined)
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of edges (unique moves from unique nodes)
+     */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * @return the number of merged games
+     */
+    public int getGameCount() {
+        return games;
+    }
+
+    /**
+     * @return the number of times a game reached known position by new move
+     * order (always 0 if transpositions are not joined)
+     */
+    public int getTranspositionCount() {
+        return transpositions;
+    }
+
+    /**
+     * @param node the id of the node
+     * @param move the packed move
+     * @return the id of the node reached from given node by given move or
+     * {@link #NONE} if no merged game played the move there
+     */
+    public int findChild(int node, int move) {
+        int edge = findEdge(node, move);
+        return edge == NONE ? NONE : edgeTargets[edge];
+    }
+
+    /**
+     * @return the id of the first edge going from given node or {@link #NONE}
+     * if there is no such edge; edges are listed in the order, in which they
+     * were added
+     */
+    public int getFirstEdge(int node) {
+        checkNode(node);
+        return firstEdges[node];
+    }
+
+    /**
+     * @return the id of the next edge going from the same node as given edge
+     * or {@link #NONE} if it is the last one
+     */
+    public int getNextEdge(int edge) {
+        checkEdge(edge);
+        return nextEdges[edge];
+    }
+
+    /**
+     * @return the packed move of given edge
+     */
+    public int getEdgeMove(int edge) {
+        checkEdge(edge);
+        return edgeMoves[edge];
+    }
+
+    /**
+     * @return the id of the node given edge leads to
+     */
+    public int getEdgeTarget(int edge) {
+        checkEdge(edge);
+        return edgeTargets[edge];
+    }
+
+    /**
+     * @return the number of merged games, which passed through given node
+     */
+    public int getGameCount(int node) {
+        checkNode(node);
+        return gameCounts[node];
+    }
+
+    public int getWhiteWins(int node) {
+        checkNode(node);
+        return whiteWins[node];
+    }
+
+    public int getDraws(int node) {
+        checkNode(node);
+        return draws[node];
+    }
+
+    public int getBlackWins(int node) {
+        checkNode(node);
+        return blackWins[node];
+    }
+//--------------------------- PRIVATE IMPLEMENTATION ---------------------------
+    private static final int INITIAL_CAPACITY = 256;
+    private static final Piece[] PIECES = Piece.values();
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private final Position rootPosition;
+    private final PositionFactory positionFactory;
+    private final boolean joinTranspositions;
+    private final long rootKey;
+    //nodes
+    private int[] firstEdges;
+    private int[] gameCounts;
+    private int[] whiteWins;
+    private int[] draws;
+    private int[] blackWins;
+    /**
+     * The number of the last game counted in each node (to count game, which
+     * repeats a position, only once).
+     */
+    private int[] lastGames;
+    private int size;
+    //edges
+    private int[] edgeMoves;
+    private int[] edgeTargets;
+    private int[] nextEdges;
+    private int edgeCount;
+    /**
+     * Open addressing hash table from position keys to nodes (used only when
+     * transpositions are joined), empty slots have node NONE.
+     */
+    private long[] tableKeys;
+    private int[] tableNodes;
+    private int games;
+    private int transpositions;
+
+    private void count(int node, Result result) {
+        if (lastGames[node] == games) {
+            return;
+        }
+        lastGames[node] = games;
+        gameCounts[node]++;
+        switch (result) {
+            case WHITE_WINS:
+                whiteWins[node]++;
+                break;
+            case DRAW:
+                draws[node]++;
+                break;
+            case BLACK_WINS:
+                blackWins[node]++;
+                break;
+            default:
+                break;
+        }
+    }
+
+    private int findEdge(int node, int move) {
+        checkNode(node);
+        for (int edge = firstEdges[node]; edge != NONE; edge = nextEdges[edge]) {
+            if (edgeMoves[edge] == move) {
+                return edge;
+            }
+        }
+        return NONE;
+    }
+
+    private int addNode() {
+        if (size == firstEdges.length) {
+            int capacity = size + (size >> 1) + 1;
+            firstEdges = Arrays.copyOf(firstEdges, capacity);
+            gameCounts = Arrays.copyOf(gameCounts, capacity);
+            whiteWins = Arrays.copyOf(whiteWins, capacity);
+            draws = Arrays.copyOf(draws, capacity);
+            blackWins = Arrays.copyOf(blackWins, capacity);
+            lastGames = Arrays.copyOf(lastGames, capacity);
+        }
+        int node = size++;
+        firstEdges[node] = NONE;
+        lastGames[node] = NONE;
+        return node;
+    }
+
+    /**
+     * Adds edge as the last edge of given node.
+     */
+    private void addEdge(int node, int move, int target) {
+        if (edgeCount == edgeMoves.length) {
+            int capacity = edgeCount + (edgeCount >> 1) + 1;
+            edgeMoves = Arrays.copyOf(edgeMoves, capacity);
+            edgeTargets = Arrays.copyOf(edgeTargets, capacity);
+            nextEdges = Arrays.copyOf(nextEdges, capacity);
+        }
+        int edge = edgeCount++;
+        edgeMoves[edge] = move;
+        edgeTargets[edge] = target;
+        nextEdges[edge] = NONE;
+        int last = firstEdges[node];
+        if (last == NONE) {
+            firstEdges[node] = edge;
+        } else {
+            while (nextEdges[last] != NONE) {
+                last = nextEdges[last];
+            }
+            nextEdges[last] = edge;
+        }
+    }
+
+    /**
+     * @return the keys of the positions after each of the moves
+     */
+    private long[] replay(int[] moves, int length) {
+        long[] keys = new long[length];
+        Position position = rootPosition;
+        for (int i = 0; i < length; i++) {
+            try {
+                position = positionFactory.create(position, Move.unpack(moves[i]));
+            } catch (PieceNotPresentException | IllegalMoveException | IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Move " + (i + 1) + " (" + MoveFormatter.toUci(moves[i]) + ") of the game is illegal", ex);
+            }
+            keys[i] = positionKey(position);
+        }
+        return keys;
+    }
+
+    private int getNode(long key) {
+        int mask = tableKeys.length - 1;
+        for (int slot = (int) key & mask; tableNodes[slot] != NONE; slot = (slot + 1) & mask) {
+            if (tableKeys[slot] == key) {
+                return tableNodes[slot];
+            }
+        }
+        return NONE;
+    }
+
+    private void putNode(long key, int node) {
+        if (2 * size > tableKeys.length) { //keep the load factor under 1/2
+            long[] oldKeys = tableKeys;
+            int[] oldNodes = tableNodes;
+            tableKeys = new long[2 * oldKeys.length];
+            tableNodes = new int[2 * oldNodes.length];
+            Arrays.fill(tableNodes, NONE);
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldNodes[slot] != NONE) {
+                    insert(oldKeys[slot], oldNodes[slot]);
+                }
+            }
+        }
+        insert(key, node);
+    }
+
+    private void insert(long key, int node) {
+        int mask = tableKeys.length - 1;
+        int slot = (int) key & mask;
+        while (tableNodes[slot] != NONE) {
+            slot = (slot + 1) & mask;
+        }
+        tableKeys[slot] = key;
+        tableNodes[slot] = node;
+    }
+
+    /**
+     * @return 64 bit hash of the position, ignoring the move counters and en
+     * passant target, on which no pawn can capture
+     */
+    private static long positionKey(Position position) {
+        Chessboard board = position.getChessboard();
+        long key = position.isWhiteToMove() ? GOLDEN_GAMMA : 0L;
+        for (Piece piece : PIECES) {
+            key = mix(key + board.getBitboard(piece));
+        }
+        for (Castling castling : position.getCastlings()) {
+            key = mix(key + castling.ordinal() + 1);
+        }
+        if (position.getEnPassantTarget() != null) {
+            int target = position.getEnPassantTarget().index();
+            long pawns = board.getBitboard(position.isWhiteToMove() ? Piece.WHITE_PAWN : Piece.BLACK_PAWN);
+            if (Bitboards.contains(Bitboards.pawnAttacks(pawns, position.isWhiteToMove()), target)) {
+                key = mix(key + 64 + target);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Finalizer of MurmurHash3 (64 bit variant), preceded by adding golden
+     * ratio constant, so that zero does not map to zero.
+     */
+    private static long mix(long value) {
+        long h = value + GOLDEN_GAMMA;
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    private void checkNode(int node) {
+        if (node < 0 || node >= size) {
+            throw new IllegalArgumentException("There is no node with id " + node + " in the tree of " + size + " nodes");
+        }
+    }
+
+    private void checkEdge(int edge) {
+        if (edge < 0 || edge >= edgeCount) {
+            throw new IllegalArgumentException("There is no edge with id " + edge + " in the tree of " + edgeCount + " edges");
+        }
+    }
+}
@@ -26,19 +26,43 @@ public class PositionFactoryImpl implements PositionFactory {
 
     private static final Logger LOG = LoggerFactory.getLogger(PositionFactoryImpl.class);
     private RuleChecker ruleChecker;
+    private final PositionInterner interner;
+    private volatile SuccessorCache successorCache;
 
     public PositionFactoryImpl(RuleChecker rc) {
+        this(rc, null);
+    }
+
+    /**
+     * Creates factory, which returns canonical instances of positions from
+     * given interner, so that equal positions created by this factory (or by
+     * other factories sharing the same interner) are represented by the same
+     * instance.
+     *
+     * @param rc the rule checker used to check legality of moves
+     * @param interner the cache of canonical positions or null, if the
+     * positions should not be interned
+     */
+    public PositionFactoryImpl(RuleChecker rc, PositionInterner interner) {
         ruleChecker = rc;
+        this.interner = interner;
     }
 
     @Override
     public Position create(String fenStr) throws InvalidFenException {
-        return new Fen(fenStr).toPosition();
+        return intern(new Fen(fenStr).toPosition());
     }
 
     @Override
     public Position create(Position originPosition, Move move) throws PieceNotPresentException, IllegalMoveException {
-        LOG.info("Creating new Position using {}", move);
+        LOG.debug("Creating new Position using {}", move);
+        SuccessorCache cache = successorCache;
+        if (cache != null) {
+            Position cached = cache.get(originPosition, move);
+            if (cached != null) { //the move was already checked and applied to the position before
+                return cached;
+            }
+        }
         ruleChecker.checkLegality(move, originPosition);
         Chessboard p = originPosition.getChessboard().createNewPositionUsing(move);
         boolean wtm = !originPosition.isWhiteToMove(); //flip side to move
@@ -47,7 +71,26 @@ public class PositionFactoryImpl implements PositionFactory {
         int halfmove = shouldResetHalfmoveClock(originPosition, move)
                 ? 0 : originPosition.getHalfmoveClock() + 1;
         int fullmove = originPosition.getFullmoveNumber() + (wtm ? 1 : 0); //increment by one after black's move
-        return new PositionImpl(p, wtm, ca, ep, halfmove, fullmove);
+        Position result = intern(new PositionImpl(p, wtm, ca, ep, halfmove, fullmove));
+        if (cache != null) {
+            cache.put(originPosition, move, result);
+        }
+        return result;
+    }
+
+    /**
+     * Sets the cache, in which this factory looks up positions resulting from
+     * moves before computing them (and stores the computed ones). The cache
+     * may be shared by many factories used from different threads.
+     *
+     * @param successorCache the cache to use or null to disable caching
+     */
+    public void setSuccessorCache(SuccessorCache successorCache) {
+        this.successorCache = successorCache;
+    }
+
+    public SuccessorCache getSuccessorCache() {
+        return successorCache;
     }
 
     @Override
@@ -55,6 +98,10 @@ public class PositionFactoryImpl implements PositionFactory {
         throw new UnsupportedOperationException("Not supported yet.");
     }
 
+    private Position intern(Position position) {
+        return interner == null ? position : interner.intern(position);
+    }
+
     /**
      * En passant target square is a square behind a pawn which moves from it
      * starting position by 2 squares forward. For all other moves it is null.
@@ -150,6 +197,17 @@ public class PositionFactoryImpl implements PositionFactory {
             default:
                 break;
         }
+        //capturing rook on its initial square also disables the castling with it
+        Square to = move.getTo();
+        if (to.equals(A1)) {
+            newCa.remove(WHITE_QUEENSIDE);
+        } else if (to.equals(H1)) {
+            newCa.remove(WHITE_KINGSIDE);
+        } else if (to.equals(A8)) {
+            newCa.remove(BLACK_QUEENSIDE);
+        } else if (to.equals(H8)) {
+            newCa.remove(BLACK_KINGSIDE);
+        }
         if (oldCa.equals(newCa)) {
             LOG.debug("    CA: Unchanged");
         } else {
@@ -6,7 +6,9 @@ import cz.janhrcek.chess.model.api.Chessboard;
 import cz.janhrcek.chess.model.api.Position;
 import cz.janhrcek.chess.model.api.enums.Castling;
 import cz.janhrcek.chess.model.api.enums.Square;
+import cz.janhrcek.chess.rules.AttackInfo;
 import java.util.EnumSet;
+import java.util.Objects;
 
 /**
  * Represents state of the game. Provide all the necessary information to
@@ -24,6 +26,8 @@ public class PositionImpl implements Position {
     private final Square enPassantTargetSquare;
     private final int halfmoveClock;
     private final int fullmoveNumber;
+    private int hash;
+    private volatile AttackInfo attackInfo;
 
     /**
      * Creates new instance of Position which corresponds to initial position of
@@ -92,4 +96,48 @@ public class PositionImpl implements Position {
     public int getFullmoveNumber() {
         return fullmoveNumber;
     }
+
+    @Override
+    public AttackInfo getAttackInfo() {
+        AttackInfo info = attackInfo;
+        if (info == null) { //computed lazily - instances are immutable
+            info = new AttackInfo(this);
+            attackInfo = info;
+        }
+        return info;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) { //computed lazily - instances are immutable
+            h = 7;
+            h = 37 * h + Objects.hashCode(position);
+            h = 37 * h + (whiteToMove ? 1 : 0);
+            h = 37 * h + Objects.hashCode(castlingAvailabilities);
+            h = 37 * h + Objects.hashCode(enPassantTargetSquare);
+            h = 37 * h + halfmoveClock;
+            h = 37 * h + fullmoveNumber;
+            hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (other == null || getClass() != other.getClass()) {
+            return false;
+        }
+        PositionImpl otherPos = (PositionImpl) other;
+        return whiteToMove == otherPos.whiteToMove
+                && halfmoveClock == otherPos.halfmoveClock
+                && fullmoveNumber == otherPos.fullmoveNumber
+                && enPassantTargetSquare == otherPos.enPassantTargetSquare
+                && hashCode() == otherPos.hashCode()
+                && Objects.equals(castlingAvailabilities, otherPos.castlingAvailabilities)
+                && Objects.equals(position, otherPos.position);
+    }
 }
@@ -0,0 +1,114 @@
+package cz.janhrcek.chess.model.impl;
+
+import cz.janhrcek.chess.model.api.Chessboard;
+import cz.janhrcek.chess.model.api.Position;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Bounded cache of canonical Position and Chessboard instances. When lots of
+ * games are kept in memory, the same positions (especially in the opening)
+ * occur over and over again. Interning them makes all the games share single
+ * instance of each such position. Positions which differ only in counters
+ * (e.g. transpositions) at least share the instance of Chessboard.
+ *
+ * The cache holds at most given number of positions (and boards), the least
+ * recently used ones are evicted first, so that the memory used by the cache
+ * stays bounded. Instances of this class are thread safe and can be shared by
+ * many PositionFactories.
+ *
+ * @author jhrcek
+ */
+public class PositionInterner {
+
+    /**
+     * @param capacity maximal number of positions (and boards) kept in the
+     * cache
+     */
+    public PositionInterner(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive, but was " + capacity);
+        }
+        positions = new LruMap<>(capacity);
+        boards = new LruMap<>(capacity);
+    }
+
+    /**
+     * Returns canonical instance of given position. If equal position is in
+     * the cache, the cached instance is returned. Otherwise given position
+     * (possibly with its chessboard replaced by canonical instance) is put into
+     * the cache and returned.
+     *
+     * @param position the position to intern
+     * @return canonical instance equal to the position
+     */
+    public synchronized Position intern(Position position) {
+        requireNonNull(position, "position must not be null!");
+        Position canonical = positions.get(position);
+        if (canonical != null) {
+            hits++;
+            return canonical;
+        }
+        canonical = position;
+        Chessboard board = internBoard(position.getChessboard());
+        if (board != position.getChessboard()) {
+            canonical = new PositionImpl(board, position.isWhiteToMove(), position.getCastlings(),
+                    position.getEnPassantTarget(), position.getHalfmoveClock(), position.getFullmoveNumber());
+        }
+        positions.put(canonical, canonical);
+        return canonical;
+    }
+
+    /**
+     * @return the number of positions currently held in the cache
+     */
+    public synchronized int size() {
+        return positions.size();
+    }
+
+    /**
+     * @return the number of times {@link #intern(Position)} found equal
+     * position in the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized void clear() {
+        positions.clear();
+        boards.clear();
+    }
+//--------------------------- PRIVATE IMPLEMENTATION ---------------------------
+    private final Map<Position, Position> positions;
+    private final Map<Chessboard, Chessboard> boards;
+    private long hits;
+
+    private Chessboard internBoard(Chessboard board) {
+        Chessboard canonical = boards.get(board);
+        if (canonical == null) {
+            boards.put(board, board);
+            canonical = board;
+        }
+        return canonical;
+    }
+
+    /**
+     * LinkedHashMap in access order, which removes the least recently used
+     * entry when its capacity is exceeded.
+     */
+    static class LruMap<K, V> extends LinkedHashMap<K, V> {
+
+        private final int capacity;
+
+        public LruMap(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+}
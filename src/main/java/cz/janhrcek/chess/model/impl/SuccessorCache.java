@@ -0,0 +1,179 @@
+package cz.janhrcek.chess.model.impl;
+
+import cz.janhrcek.chess.model.api.Move;
+import cz.janhrcek.chess.model.api.Position;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Size-bounded cache of positions resulting from making given move in given
+ * position. Browsing games in GUI or importing the same games repeatedly
+ * produces the same (position, move) pairs again and again and this cache
+ * enables {@link PositionFactoryImpl} to skip recomputation of the resulting
+ * position for them.
+ *
+ * The cache is split into several independently locked segments, each of
+ * which evicts its least recently used entries when it gets full, so it can
+ * be used from many threads at once without much contention. The cache also
+ * counts hits and misses, to enable monitoring of its effectiveness.
+ *
+ * @author jhrcek
+ */
+public class SuccessorCache {
+
+    /**
+     * @param capacity maximal number of (position, move) pairs held in the
+     * cache
+     */
+    public SuccessorCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive, but was " + capacity);
+        }
+        int segmentCount = Math.min(MAX_SEGMENTS, Integer.highestOneBit(capacity));
+        int segmentCapacity = (capacity + segmentCount - 1) / segmentCount;
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    /**
+     * @param from the position in which the move is made
+     * @param move the move
+     * @return the position resulting from making the move in given position
+     * or null if it is not in the cache
+     */
+    public Position get(Position from, Move move) {
+        Key key = new Key(requireNonNull(from, "from must not be null!"), move.pack());
+        Segment segment = segmentFor(key);
+        Position result;
+        synchronized (segment) {
+            result = segment.get(key);
+        }
+        if (result == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Stores the position resulting from making the move in given position.
+     */
+    public void put(Position from, Move move, Position result) {
+        Key key = new Key(requireNonNull(from, "from must not be null!"), move.pack());
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, requireNonNull(result, "result must not be null!"));
+        }
+    }
+
+    /**
+     * @return the number of entries currently held in the cache
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return ratio of successful lookups to all lookups (0 if there were no
+     * lookups yet)
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SuccessorCache[size=%d, hits=%d, misses=%d, hitRate=%.3f]",
+                size(), getHits(), getMisses(), getHitRate());
+    }
+//--------------------------- PRIVATE IMPLEMENTATION ---------------------------
+    private static final int MAX_SEGMENTS = 16;
+    private final Segment[] segments;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private Segment segmentFor(Key key) {
+        int h = key.hash ^ (key.hash >>> 16);
+        return segments[h & (segments.length - 1)];
+    }
+
+    /**
+     * Part of the cache, which removes its least recently used entry when its
+     * capacity is exceeded (access to it must be synchronized on it).
+     */
+    private static final class Segment extends LinkedHashMap<Key, Position> {
+
+        private final int capacity;
+
+        public Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Position> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    /**
+     * Pair (position, packed move) used as key in the cache.
+     */
+    private static final class Key {
+
+        private final Position position;
+        private final int packedMove;
+        private final int hash;
+
+        public Key(Position position, int packedMove) {
+            this.position = position;
+            this.packedMove = packedMove;
+            this.hash = 31 * position.hashCode() + packedMove;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash
+                    && packedMove == other.packedMove
+                    && position.equals(other.position);
+        }
+    }
+}
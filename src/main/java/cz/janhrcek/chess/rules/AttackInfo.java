@@ -0,0 +1,206 @@
+package cz.janhrcek.chess.rules;
+
+import cz.janhrcek.chess.model.api.Chessboard;
+import cz.janhrcek.chess.model.api.Position;
+import static cz.janhrcek.chess.model.api.enums.Piece.*;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Answers to check-related questions about one position: which squares are
+ * attacked by each side, which pieces give check to the king of the side to
+ * move, which pieces of the side to move are pinned to their king etc. All
+ * the answers are represented by bitboards (see {@link Bitboards}), square
+ * indices are those of {@link cz.janhrcek.chess.model.api.enums.Square#index()}.
+ *
+ * Each value is computed lazily when it is first asked for and then
+ * remembered, so the instances should be obtained via
+ * {@link Position#getAttackInfo()}, which caches them with the (immutable)
+ * position. Instances are thread safe.
+ *
+ * @author jhrcek
+ */
+public final class AttackInfo {
+
+    /**
+     * Creates attack info of given position. Prefer
+     * {@link Position#getAttackInfo()}, which returns cached instance.
+     *
+     * @param position the position to be described by this instance
+     */
+    public AttackInfo(Position position) {
+        requireNonNull(position, "position must not be null!");
+        this.board = position.getChessboard();
+        this.whiteToMove = position.isWhiteToMove();
+    }
+
+    /**
+     * @param white the colour of the king
+     * @return index of the square of given king or -1 if there is no such king
+     * on the board
+     */
+    public int getKingSquare(boolean white) {
+        long king = board.getBitboard(white ? WHITE_KING : BLACK_KING);
+        return king == 0L ? -1 : Bitboards.first(king);
+    }
+
+    /**
+     * @return index of the square of the king of the side to move or -1 if
+     * there is no such king on the board
+     */
+    public int getKingSquare() {
+        return getKingSquare(whiteToMove);
+    }
+
+    /**
+     * @param byWhite the colour of the attacking pieces
+     * @return bitboard of all the squares attacked by pieces of given colour
+     */
+    public long getAttackedSquares(boolean byWhite) {
+        int flag = byWhite ? ATTACKED_BY_WHITE : ATTACKED_BY_BLACK;
+        if ((computed & flag) == 0) {
+            long attacked = attacks(board, byWhite, board.getOccupancy());
+            if (byWhite) {
+                attackedByWhite = attacked;
+            } else {
+                attackedByBlack = attacked;
+            }
+            computed |= flag;
+        }
+        return byWhite ? attackedByWhite : attackedByBlack;
+    }
+
+    /**
+     * @return true if the square with given index is attacked by pieces of
+     * given colour
+     */
+    public boolean isAttacked(int square, boolean byWhite) {
+        return (getAttackedSquares(byWhite) & (1L << square)) != 0L;
+    }
+
+    /**
+     * Returns the squares attacked by the opponent of the side to move, as if
+     * the king of the side to move was not on the board. These are the squares
+     * the king can't go to - unlike {@link #getAttackedSquares(boolean)} they
+     * include squares "behind" the king on the lines of checking sliders.
+     *
+     * @return bitboard of the squares forbidden to the king of the side to
+     * move
+     */
+    public long getKingDangerSquares() {
+        if ((computed & KING_DANGER) == 0) {
+            long occupancy = board.getOccupancy() & ~board.getBitboard(whiteToMove ? WHITE_KING : BLACK_KING);
+            kingDanger = attacks(board, !whiteToMove, occupancy);
+            computed |= KING_DANGER;
+        }
+        return kingDanger;
+    }
+
+    /**
+     * @return bitboard of the opponent's pieces giving check to the king of the
+     * side to move
+     */
+    public long getCheckers() {
+        computeCheckersAndPins();
+        return checkers;
+    }
+
+    /**
+     * @return true if the king of the side to move is in check
+     */
+    public boolean isCheck() {
+        return getCheckers() != 0L;
+    }
+
+    /**
+     * @return bitboard of the pieces of the side to move, which are pinned to
+     * their king (i.e. they can only move along the line between the king and
+     * the pinning piece)
+     */
+    public long getPinned() {
+        computeCheckersAndPins();
+        return pinned;
+    }
+
+    /**
+     * Returns bitboard of all the pieces of given colour which attack given
+     * square, on given board with given occupancy.
+     *
+     * @param board the board
+     * @param square the index of the attacked square
+     * @param byWhite colour of the attacking pieces
+     * @param occupancy bitboard of occupied squares, used for determining which
+     * sliding pieces are blocked (may differ from the board's occupancy, e.g.
+     * to test the position after a move without making it), pieces which are
+     * not in the occupancy don't attack
+     * @return bitboard of the attackers
+     */
+    public static long attackersOf(Chessboard board, int square, boolean byWhite, long occupancy) {
+        long queens = board.getBitboard(byWhite ? WHITE_QUEEN : BLACK_QUEEN);
+        long rooks = board.getBitboard(byWhite ? WHITE_ROOK : BLACK_ROOK) | queens;
+        long bishops = board.getBitboard(byWhite ? WHITE_BISHOP : BLACK_BISHOP) | queens;
+        long sq = 1L << square;
+        return occupancy & ((Bitboards.pawnAttacks(sq, !byWhite) & board.getBitboard(byWhite ? WHITE_PAWN : BLACK_PAWN))
+                | (Bitboards.knightAttacks(square) & board.getBitboard(byWhite ? WHITE_KNIGHT : BLACK_KNIGHT))
+                | (Bitboards.kingAttacks(square) & board.getBitboard(byWhite ? WHITE_KING : BLACK_KING))
+                | (Bitboards.rookAttacks(square, occupancy) & rooks)
+                | (Bitboards.bishopAttacks(square, occupancy) & bishops));
+    }
+//--------------------------- PRIVATE IMPLEMENTATION ---------------------------
+    private static final int ATTACKED_BY_WHITE = 1;
+    private static final int ATTACKED_BY_BLACK = 2;
+    private static final int KING_DANGER = 4;
+    private static final int CHECKERS_AND_PINS = 8;
+    private final Chessboard board;
+    private final boolean whiteToMove;
+    //the values are published by setting their flag in the volatile field
+    private volatile int computed;
+    private long attackedByWhite;
+    private long attackedByBlack;
+    private long kingDanger;
+    private long checkers;
+    private long pinned;
+
+    private void computeCheckersAndPins() {
+        if ((computed & CHECKERS_AND_PINS) != 0) {
+            return;
+        }
+        int king = getKingSquare(whiteToMove);
+        long checkersBB = 0L;
+        long pinnedBB = 0L;
+        if (king >= 0) {
+            long occupancy = board.getOccupancy();
+            checkersBB = attackersOf(board, king, !whiteToMove, occupancy);
+            long queens = board.getBitboard(whiteToMove ? BLACK_QUEEN : WHITE_QUEEN);
+            long snipers = (Bitboards.rookAttacks(king, 0L) & (board.getBitboard(whiteToMove ? BLACK_ROOK : WHITE_ROOK) | queens))
+                    | (Bitboards.bishopAttacks(king, 0L) & (board.getBitboard(whiteToMove ? BLACK_BISHOP : WHITE_BISHOP) | queens));
+            long own = board.getOccupancy(whiteToMove);
+            for (long bb = snipers; bb != 0L; bb = Bitboards.withoutFirst(bb)) {
+                long blockers = Bitboards.between(king, Bitboards.first(bb)) & occupancy;
+                if (blockers != 0L && !Bitboards.hasMoreThanOne(blockers)) {
+                    pinnedBB |= blockers & own;
+                }
+            }
+        }
+        checkers = checkersBB;
+        pinned = pinnedBB;
+        computed |= CHECKERS_AND_PINS;
+    }
+
+    private static long attacks(Chessboard board, boolean white, long occupancy) {
+        long attacked = Bitboards.pawnAttacks(board.getBitboard(white ? WHITE_PAWN : BLACK_PAWN), white);
+        for (long bb = board.getBitboard(white ? WHITE_KNIGHT : BLACK_KNIGHT); bb != 0L; bb = Bitboards.withoutFirst(bb)) {
+            attacked |= Bitboards.knightAttacks(Bitboards.first(bb));
+        }
+        long queens = board.getBitboard(white ? WHITE_QUEEN : BLACK_QUEEN);
+        for (long bb = board.getBitboard(white ? WHITE_BISHOP : BLACK_BISHOP) | queens; bb != 0L; bb = Bitboards.withoutFirst(bb)) {
+            attacked |= Bitboards.bishopAttacks(Bitboards.first(bb), occupancy);
+        }
+        for (long bb = board.getBitboard(white ? WHITE_ROOK : BLACK_ROOK) | queens; bb != 0L; bb = Bitboards.withoutFirst(bb)) {
+            attacked |= Bitboards.rookAttacks(Bitboards.first(bb), occupancy);
+        }
+        for (long bb = board.getBitboard(white ? WHITE_KING : BLACK_KING); bb != 0L; bb = Bitboards.withoutFirst(bb)) {
+            attacked |= Bitboards.kingAttacks(Bitboards.first(bb));
+        }
+        return attacked;
+    }
+}
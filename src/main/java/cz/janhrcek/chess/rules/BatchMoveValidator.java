@@ -0,0 +1,223 @@
+package cz.janhrcek.chess.rules;
+
+import cz.janhrcek.chess.FEN.Fen;
+import cz.janhrcek.chess.FEN.FenParser;
+import cz.janhrcek.chess.model.api.Move;
+import cz.janhrcek.chess.model.api.Position;
+import cz.janhrcek.chess.model.api.PositionFactory;
+import cz.janhrcek.chess.model.impl.FIDERuleChecker;
+import cz.janhrcek.chess.model.impl.PieceNotPresentException;
+import cz.janhrcek.chess.model.impl.PositionFactoryImpl;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Validates large batches of (FEN, move) pairs in parallel. For each pair it
+ * finds out whether the move (in UCI or SAN notation, see {@link MoveParser})
+ * is legal in the position and if so, computes FEN of the resulting position.
+ *
+ * The batch is split into chunks processed by {@link ForkJoinPool}. Positions
+ * are parsed by {@link FenParser} and shared through a hash lookup, so FEN
+ * records repeated within the batch are parsed only once. Malformed FEN
+ * records and moves are reported as {@link Legality#INVALID_POSITION} and
+ * {@link Legality#MALFORMED_MOVE} - no exceptions are thrown for bad input.
+ * Instances are thread safe.
+ *
+ * @author jhrcek
+ */
+public class BatchMoveValidator {
+
+    /**
+     * Results of validation of one batch, indexed the same way as the input
+     * arrays.
+     */
+    public static final class Result {
+
+        private final Legality[] legality;
+        private final String[] resultingFens;
+        private final int legalCount;
+
+        private Result(Legality[] legality, String[] resultingFens, int legalCount) {
+            this.legality = legality;
+            this.resultingFens = resultingFens;
+            this.legalCount = legalCount;
+        }
+
+        public int size() {
+            return legality.length;
+        }
+
+        /**
+         * @return {@link Legality#LEGAL} or the reason why i-th pair was
+         * rejected
+         */
+        public Legality getLegality(int i) {
+            return legality[i];
+        }
+
+        public boolean isLegal(int i) {
+            return legality[i] == Legality.LEGAL;
+        }
+
+        /**
+         * @return FEN of the position after i-th move or null if the move was
+         * rejected
+         */
+        public String getResultingFen(int i) {
+            return resultingFens[i];
+        }
+
+        /**
+         * @return the number of legal pairs in the batch
+         */
+        public int getLegalCount() {
+            return legalCount;
+        }
+    }
+
+    /**
+     * Creates validator using its own ForkJoinPool with as many threads as
+     * there are available processors.
+     */
+    public BatchMoveValidator() {
+        this(new ForkJoinPool());
+    }
+
+    /**
+     * @param pool the pool in which the batches are processed
+     */
+    public BatchMoveValidator(ForkJoinPool pool) {
+        this.pool = requireNonNull(pool, "pool must not be null!");
+    }
+
+    /**
+     * Validates batch of (FEN, move) pairs.
+     *
+     * @param fens FEN records of the positions (null elements are treated as
+     * invalid records)
+     * @param moves the moves in UCI or SAN notation (null elements are treated
+     * as malformed moves)
+     * @return the results of the validation
+     * @throws IllegalArgumentException if the arrays have different lengths
+     */
+    public Result validate(String[] fens, String[] moves) {
+        requireNonNull(fens, "fens must not be null!");
+        requireNonNull(moves, "moves must not be null!");
+        if (fens.length != moves.length) {
+            throw new IllegalArgumentException("There must be one move per FEN, but there were "
+                    + fens.length + " FENs and " + moves.length + " moves");
+        }
+        Batch batch = new Batch(fens, moves);
+        pool.invoke(new Chunk(batch, 0, fens.length));
+        return new Result(batch.legality, batch.resultingFens, batch.legalCount.get());
+    }
+//--------------------------- PRIVATE IMPLEMENTATION ---------------------------
+    /**
+     * The number of pairs processed sequentially by one task.
+     */
+    private static final int CHUNK_SIZE = 2048;
+    /**
+     * Maximal number of distinct positions remembered per batch, so that
+     * batches of unique positions don't fill the memory.
+     */
+    private static final int MAX_CACHED_POSITIONS = 1 << 16;
+    /**
+     * Marks invalid FEN records in the cache of positions.
+     */
+    private static final Object INVALID = new Object();
+    private final ForkJoinPool pool;
+
+    /**
+     * Input and output arrays of one batch, shared by all its chunks.
+     */
+    private static class Batch {
+
+        private final String[] fens;
+        private final String[] moves;
+        private final Legality[] legality;
+        private final String[] resultingFens;
+        private final ConcurrentHashMap<String, Object> positions = new ConcurrentHashMap<>();
+        private final AtomicInteger legalCount = new AtomicInteger();
+
+        public Batch(String[] fens, String[] moves) {
+            this.fens = fens;
+            this.moves = moves;
+            this.legality = new Legality[fens.length];
+            this.resultingFens = new String[fens.length];
+        }
+    }
+
+    /**
+     * Processes range of pairs of the batch, splitting it in halves while it
+     * is larger than CHUNK_SIZE.
+     */
+    private static class Chunk extends RecursiveAction {
+
+        private final Batch batch;
+        private final int from;
+        private final int to;
+
+        public Chunk(Batch batch, int from, int to) {
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CHUNK_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Chunk(batch, from, middle), new Chunk(batch, middle, to));
+                return;
+            }
+            //scratch objects of this chunk - the parsers are not thread safe
+            FenParser fenParser = new FenParser();
+            MoveParser moveParser = new MoveParser();
+            PositionFactory factory = new PositionFactoryImpl(new FIDERuleChecker());
+            StringBuilder sb = new StringBuilder(96);
+            int legal = 0;
+            for (int i = from; i < to; i++) {
+                Position position = position(fenParser, batch.fens[i]);
+                if (position == null) {
+                    batch.legality[i] = Legality.INVALID_POSITION;
+                    continue;
+                }
+                int move = moveParser.parse(position, batch.moves[i]);
+                if (move == MoveGenerator.NO_MOVE) {
+                    batch.legality[i] = moveParser.getLastError();
+                    continue;
+                }
+                try {
+                    Position result = factory.create(position, Move.unpack(move));
+                    sb.setLength(0);
+                    batch.resultingFens[i] = Fen.appendFen(result, sb).toString();
+                    batch.legality[i] = Legality.LEGAL;
+                    legal++;
+                } catch (IllegalMoveException ex) { //can't happen - the move was validated
+                    batch.legality[i] = ex.getReason();
+                } catch (PieceNotPresentException ex) {
+                    batch.legality[i] = Legality.NO_PIECE;
+                }
+            }
+            batch.legalCount.addAndGet(legal);
+        }
+
+        private Position position(FenParser parser, String fen) {
+            if (fen == null) {
+                return null;
+            }
+            Object cached = batch.positions.get(fen);
+            if (cached == null) {
+                Position parsed = parser.tryParse(fen);
+                cached = parsed == null ? INVALID : parsed;
+                if (batch.positions.size() < MAX_CACHED_POSITIONS) {
+                    batch.positions.putIfAbsent(fen, cached);
+                }
+            }
+            return cached == INVALID ? null : (Position) cached;
+        }
+    }
+}
@@ -51,6 +51,45 @@ public final class BitboardManager {
         }
     }
 
+    /**
+     * This method tells whether piece with given code can go from square with
+     * given index to another square on empty board.
+     *
+     * @param pieceCode code of the piece (see {@link Piece#code()})
+     * @param from index of the square on which the piece starts (see
+     * {@link Square#index()})
+     * @param to index of the target square
+     * @return true if given piece can move from given square to given square
+     * false otherwise
+     */
+    public static boolean canGo(int pieceCode, int from, int to) {
+        return (REACHABLE_SQUARES[pieceCode][from] & (1L << to)) != 0L;
+    }
+
+    /**
+     * Returns bitboard representing squares to which piece with given code
+     * can move from square with given index on the empty board.
+     *
+     * @param pieceCode code of the piece (see {@link Piece#code()})
+     * @param from index of the square that piece starts on (see
+     * {@link Square#index()})
+     * @return bitboard representing squares to which given piece can move from
+     * given square
+     */
+    public static long getReachableSquaresBB(int pieceCode, int from) {
+        return REACHABLE_SQUARES[pieceCode][from];
+    }
+
+    /**
+     * Returns bitboard representing square with given index.
+     *
+     * @param squareIndex index of the square (see {@link Square#index()})
+     * @return bitboard with only the bit of given square set
+     */
+    public static long getSquareBB(int squareIndex) {
+        return 1L << squareIndex;
+    }
+
     /**
      * Returns bitboard representing squares to which given piece can move from
      * the given square on the empty board.
@@ -69,49 +108,7 @@ public final class BitboardManager {
         if (from == null) {
             throw new NullPointerException("from can't be null!");
         }
-        long result = 0;
-
-        switch (piece) {
-            case WHITE_KING:
-                result =
-                        WHITE_KINGS_REACHABLE_SQUARES[from.getFile()][from.getRank()];
-                break;
-            case BLACK_KING:
-                result =
-                        BLACK_KINGS_REACHABLE_SQUARES[from.getFile()][from.getRank()];
-                break;
-            case WHITE_QUEEN:
-            case BLACK_QUEEN:
-                result =
-                        QUEENS_REACHABLE_SQUARES[from.getFile()][from.getRank()];
-                break;
-            case WHITE_ROOK:
-            case BLACK_ROOK:
-                result =
-                        ROOKS_REACHABLE_SQUARES[from.getFile()][from.getRank()];
-                break;
-            case WHITE_BISHOP:
-            case BLACK_BISHOP:
-                result =
-                        BISHOPS_REACHABLE_SQUARES[from.getFile()][from.getRank()];
-                break;
-            case WHITE_KNIGHT:
-            case BLACK_KNIGHT:
-                result =
-                        KNIGHTS_REACHABLE_SQUARES[from.getFile()][from.getRank()];
-                break;
-            case WHITE_PAWN:
-                result =
-                        W_PAWNS_REACHABLE_SQUARES[from.getFile()][from.getRank()];
-                break;
-            case BLACK_PAWN:
-                result =
-                        B_PAWNS_REACHABLE_SQUARES[from.getFile()][from.getRank()];
-                break;
-            default:
-                break;
-        }
-        return result;
+        return REACHABLE_SQUARES[piece.code()][from.index()];
     }
 
 ////////////PRIVATE IMPLEMENTATION
@@ -131,7 +128,7 @@ public final class BitboardManager {
         if (sq == null) {
             throw new NullPointerException("sq can't be null!");
         }
-        return SQUARES[sq.getFile()][sq.getRank()];
+        return 1L << sq.index();
     }
     /**
      * 64 bitboards representing squares, to which KNIGHT can move from given
@@ -832,87 +829,48 @@ public final class BitboardManager {
             0L, //H8
         },};
     /**
-     * 64 bitboards representing squares.
+     * The tables of reachable squares flattened into single table indexed by
+     * piece code and square index:
+     * REACHABLE_SQUARES[piece.code()][from.index()].
      */
-    private static final long[][] SQUARES = {
-        {
-            128L, //A1
-            32768L, //A2
-            8388608L, //A3
-            2147483648L, //A4
-            549755813888L, //A5
-            140737488355328L, //A6
-            36028797018963968L, //A7
-            -9223372036854775808L, //A8
-        },
-        {
-            64L, //B1
-            16384L, //B2
-            4194304L, //B3
-            1073741824L, //B4
-            274877906944L, //B5
-            70368744177664L, //B6
-            18014398509481984L, //B7
-            4611686018427387904L, //B8
-        },
-        {
-            32L, //C1
-            8192L, //C2
-            2097152L, //C3
-            536870912L, //C4
-            137438953472L, //C5
-            35184372088832L, //C6
-            9007199254740992L, //C7
-            2305843009213693952L, //C8
-        },
-        {
-            16L, //D1
-            4096L, //D2
-            1048576L, //D3
-            268435456L, //D4
-            68719476736L, //D5
-            17592186044416L, //D6
-            4503599627370496L, //D7
-            1152921504606846976L, //D8
-        },
-        {
-            8L, //E1
-            2048L, //E2
-            524288L, //E3
-            134217728L, //E4
-            34359738368L, //E5
-            8796093022208L, //E6
-            2251799813685248L, //E7
-            576460752303423488L, //E8
-        },
-        {
-            4L, //F1
-            1024L, //F2
-            262144L, //F3
-            67108864L, //F4
-            17179869184L, //F5
-            4398046511104L, //F6
-            1125899906842624L, //F7
-            288230376151711744L, //F8
-        },
-        {
-            2L, //G1
-            512L, //G2
-            131072L, //G3
-            33554432L, //G4
-            8589934592L, //G5
-            2199023255552L, //G6
-            562949953421312L, //G7
-            144115188075855872L, //G8
-        },
-        {
-            1L, //H1
-            256L, //H2
-            65536L, //H3
-            16777216L, //H4
-            4294967296L, //H5
-            1099511627776L, //H6
-            281474976710656L, //H7
-            72057594037927936L, //H8
-        },};
+    private static final long[][] REACHABLE_SQUARES = new long[12][64];
+
+    static {
+        for (Piece piece : Piece.values()) {
+            long[][] table;
+            switch (piece) {
+                case WHITE_KING:
+                    table = WHITE_KINGS_REACHABLE_SQUARES;
+                    break;
+                case BLACK_KING:
+                    table = BLACK_KINGS_REACHABLE_SQUARES;
+                    break;
+                case WHITE_QUEEN:
+                case BLACK_QUEEN:
+                    table = QUEENS_REACHABLE_SQUARES;
+                    break;
+                case WHITE_ROOK:
+                case BLACK_ROOK:
+                    table = ROOKS_REACHABLE_SQUARES;
+                    break;
+                case WHITE_BISHOP:
+                case BLACK_BISHOP:
+                    table = BISHOPS_REACHABLE_SQUARES;
+                    break;
+                case WHITE_KNIGHT:
+                case BLACK_KNIGHT:
+                    table = KNIGHTS_REACHABLE_SQUARES;
+                    break;
+                case WHITE_PAWN:
+                    table = W_PAWNS_REACHABLE_SQUARES;
+                    break;
+                default:
+                    table = B_PAWNS_REACHABLE_SQUARES;
+                    break;
+            }
+            for (Square sq : Square.values()) {
+                REACHABLE_SQUARES[piece.code()][sq.index()] = table[sq.getFile()][sq.getRank()];
+            }
+        }
+    }
 }
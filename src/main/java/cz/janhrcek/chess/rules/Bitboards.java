@@ -0,0 +1,320 @@
+package cz.janhrcek.chess.rules;
+
+import cz.janhrcek.chess.model.api.enums.Square;
+
+/**
+ * Low level toolkit for working with bitboards (see {@link BitboardManager}).
+ * Bits are mapped to squares in the same way as in BitboardManager, i.e. bit
+ * with index 8*rank + (7-file) represents the square with given file and rank
+ * (see {@link Square#index()}), so H1 is the lowest bit and A8 the highest.
+ *
+ * None of the methods allocates anything. The squares of bitboard can be
+ * iterated without creating any garbage like this:
+ * <pre>
+ * for (long bb = bitboard; bb != 0; bb = Bitboards.withoutFirst(bb)) {
+ *     int squareIndex = Bitboards.first(bb);
+ *     ...
+ * }
+ * </pre>
+ *
+ * @author jhrcek
+ */
+public final class Bitboards {
+
+    public static final long EMPTY = 0L;
+    public static final long ALL = -1L;
+    public static final long FILE_A = 0x8080808080808080L;
+    public static final long FILE_H = 0x0101010101010101L;
+    public static final long RANK_1 = 0x00000000000000FFL;
+    public static final long RANK_8 = 0xFF00000000000000L;
+    public static final long LIGHT_SQUARES = 0xAA55AA55AA55AA55L;
+    public static final long DARK_SQUARES = ~LIGHT_SQUARES;
+
+    /**
+     * @param file index of the file (0 = file A, ..., 7 = file H)
+     * @return bitboard of all the squares on given file
+     */
+    public static long file(int file) {
+        return FILE_H << (7 - file);
+    }
+
+    /**
+     * @param rank index of the rank (0 = 1st rank, ..., 7 = 8th rank)
+     * @return bitboard of all the squares on given rank
+     */
+    public static long rank(int rank) {
+        return RANK_1 << (8 * rank);
+    }
+
+    /**
+     * @return bitboard with only the bit of square with given index set
+     */
+    public static long square(int squareIndex) {
+        return 1L << squareIndex;
+    }
+
+    /**
+     * @return true if the square with given index is set in the bitboard
+     */
+    public static boolean contains(long bitboard, int squareIndex) {
+        return (bitboard & (1L << squareIndex)) != 0L;
+    }
+
+    /**
+     * @return the number of squares set in the bitboard
+     */
+    public static int popCount(long bitboard) {
+        return Long.bitCount(bitboard);
+    }
+
+    /**
+     * @return true if more than one square is set in the bitboard
+     */
+    public static boolean hasMoreThanOne(long bitboard) {
+        return (bitboard & (bitboard - 1)) != 0L;
+    }
+
+    /**
+     * @return index of the lowest square set in the bitboard (64 for empty
+     * bitboard)
+     */
+    public static int first(long bitboard) {
+        return Long.numberOfTrailingZeros(bitboard);
+    }
+
+    /**
+     * @return the bitboard without its lowest square
+     */
+    public static long withoutFirst(long bitboard) {
+        return bitboard & (bitboard - 1);
+    }
+
+    /**
+     * @return index of the highest square set in the bitboard (-1 for empty
+     * bitboard)
+     */
+    public static int last(long bitboard) {
+        return 63 - Long.numberOfLeadingZeros(bitboard);
+    }
+
+    /**
+     * Writes indices of all the squares set in the bitboard into given array,
+     * in ascending order.
+     *
+     * @param bitboard the bitboard
+     * @param target array to write indices into, it must be large enough
+     * (64 elements are always enough)
+     * @return the number of indices written
+     */
+    public static int toIndices(long bitboard, int[] target) {
+        int count = 0;
+        for (long bb = bitboard; bb != 0L; bb &= bb - 1) {
+            target[count++] = Long.numberOfTrailingZeros(bb);
+        }
+        return count;
+    }
+
+    //shifts by one square in given direction, squares leaving the board disappear
+    public static long north(long bitboard) {
+        return bitboard << 8;
+    }
+
+    public static long south(long bitboard) {
+        return bitboard >>> 8;
+    }
+
+    public static long east(long bitboard) {
+        return (bitboard >>> 1) & ~FILE_A;
+    }
+
+    public static long west(long bitboard) {
+        return (bitboard << 1) & ~FILE_H;
+    }
+
+    public static long northEast(long bitboard) {
+        return (bitboard << 7) & ~FILE_A;
+    }
+
+    public static long northWest(long bitboard) {
+        return (bitboard << 9) & ~FILE_H;
+    }
+
+    public static long southEast(long bitboard) {
+        return (bitboard >>> 9) & ~FILE_A;
+    }
+
+    public static long southWest(long bitboard) {
+        return (bitboard >>> 7) & ~FILE_H;
+    }
+
+    /**
+     * Returns squares lying strictly between two given squares, provided they
+     * are on the same rank, file or diagonal.
+     *
+     * @return bitboard of the squares between the two squares (empty if the
+     * squares don't lie on common line or are adjacent)
+     */
+    public static long between(int from, int to) {
+        return BETWEEN[from][to];
+    }
+
+    /**
+     * Returns the whole line (rank, file or diagonal) going through two given
+     * squares, from edge to edge of the board.
+     *
+     * @return bitboard of the line through both squares, including them (empty
+     * if the squares don't lie on common line or are identical)
+     */
+    public static long line(int first, int second) {
+        return LINE[first][second];
+    }
+
+    /**
+     * @return true if the three squares lie on common rank, file or diagonal
+     */
+    public static boolean aligned(int first, int second, int third) {
+        return (LINE[first][second] & (1L << third)) != 0L;
+    }
+
+    /**
+     * Returns squares attacked by rook from given square, taking blocking
+     * pieces into account. Squares of blocking pieces are included.
+     *
+     * @param square index of the rook's square
+     * @param occupancy bitboard of all the occupied squares
+     * @return bitboard of the attacked squares
+     */
+    public static long rookAttacks(int square, long occupancy) {
+        return rayAttacks(NORTH, square, occupancy) | rayAttacks(SOUTH, square, occupancy)
+                | rayAttacks(EAST, square, occupancy) | rayAttacks(WEST, square, occupancy);
+    }
+
+    /**
+     * Returns squares attacked by bishop from given square, taking blocking
+     * pieces into account. Squares of blocking pieces are included.
+     *
+     * @param square index of the bishop's square
+     * @param occupancy bitboard of all the occupied squares
+     * @return bitboard of the attacked squares
+     */
+    public static long bishopAttacks(int square, long occupancy) {
+        return rayAttacks(NORTH_EAST, square, occupancy) | rayAttacks(NORTH_WEST, square, occupancy)
+                | rayAttacks(SOUTH_EAST, square, occupancy) | rayAttacks(SOUTH_WEST, square, occupancy);
+    }
+
+    /**
+     * @return squares attacked by queen from given square
+     * @see #rookAttacks(int, long)
+     * @see #bishopAttacks(int, long)
+     */
+    public static long queenAttacks(int square, long occupancy) {
+        return rookAttacks(square, occupancy) | bishopAttacks(square, occupancy);
+    }
+
+    /**
+     * @return squares attacked by knight from square with given index
+     */
+    public static long knightAttacks(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    /**
+     * @return squares attacked by king from square with given index (castling
+     * is not an attack)
+     */
+    public static long kingAttacks(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    /**
+     * @return squares attacked by pawns of given colour standing on the squares
+     * of given bitboard
+     */
+    public static long pawnAttacks(long pawns, boolean white) {
+        return white
+                ? northEast(pawns) | northWest(pawns)
+                : southEast(pawns) | southWest(pawns);
+    }
+
+    /**
+     * Debugging helper - renders the bitboard as 8 lines of 0s and 1s, 8th
+     * rank first.
+     */
+    public static String toString(long bitboard) {
+        StringBuilder sb = new StringBuilder(72);
+        for (int sq = 63; sq >= 0; sq--) {
+            sb.append(contains(bitboard, sq) ? '1' : '0');
+            if ((sq & 7) == 0) {
+                sb.append('\n');
+            }
+        }
+        return sb.toString();
+    }
+//--------------------------- PRIVATE IMPLEMENTATION ---------------------------
+    //directions, rays of "positive" directions go towards higher square indices
+    private static final int NORTH = 0;
+    private static final int NORTH_WEST = 1;
+    private static final int WEST = 2;
+    private static final int NORTH_EAST = 3;
+    private static final int SOUTH = 4;
+    private static final int SOUTH_EAST = 5;
+    private static final int EAST = 6;
+    private static final int SOUTH_WEST = 7;
+    //file and rank increments of the directions
+    private static final int[] FILE_DELTA = {0, -1, -1, 1, 0, 1, 1, -1};
+    private static final int[] RANK_DELTA = {1, 1, 0, 1, -1, -1, 0, -1};
+    private static final long[][] RAYS = new long[8][64];
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+    private static final long[] KNIGHT_ATTACKS = new long[64];
+    private static final long[] KING_ATTACKS = new long[64];
+
+    /**
+     * This is utility class, and should not be instantiated.
+     */
+    private Bitboards() {
+    }
+
+    private static long rayAttacks(int direction, int square, long occupancy) {
+        long ray = RAYS[direction][square];
+        long blockers = ray & occupancy;
+        if (blockers == 0L) {
+            return ray;
+        }
+        int blocker = direction < SOUTH ? first(blockers) : last(blockers);
+        return ray ^ RAYS[direction][blocker];
+    }
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            int file = Square.fileOf(sq);
+            int rank = Square.rankOf(sq);
+            for (int dir = 0; dir < 8; dir++) {
+                long ray = 0L;
+                for (int f = file + FILE_DELTA[dir], r = rank + RANK_DELTA[dir];
+                        f >= 0 && f < 8 && r >= 0 && r < 8;
+                        f += FILE_DELTA[dir], r += RANK_DELTA[dir]) {
+                    ray |= 1L << Square.index(f, r);
+                }
+                RAYS[dir][sq] = ray;
+            }
+            long bb = 1L << sq;
+            KING_ATTACKS[sq] = north(bb) | south(bb) | east(bb) | west(bb)
+                    | northEast(bb) | northWest(bb) | southEast(bb) | southWest(bb);
+            KNIGHT_ATTACKS[sq] = north(northEast(bb)) | north(northWest(bb))
+                    | south(southEast(bb)) | south(southWest(bb))
+                    | east(northEast(bb)) | east(southEast(bb))
+                    | west(northWest(bb)) | west(southWest(bb));
+        }
+        for (int from = 0; from < 64; from++) {
+            for (int dir = 0; dir < 8; dir++) {
+                int opposite = (dir + 4) & 7;
+                for (long bb = RAYS[dir][from]; bb != 0L; bb &= bb - 1) {
+                    int to = first(bb);
+                    BETWEEN[from][to] = RAYS[dir][from] & RAYS[opposite][to];
+                    LINE[from][to] = RAYS[dir][from] | RAYS[opposite][from] | (1L << from);
+                }
+            }
+        }
+    }
+}
@@ -8,5 +8,23 @@ public class IllegalMoveException extends Exception {
 
     public IllegalMoveException(String msg) {
         super(msg);
+        this.reason = null;
     }
+
+    /**
+     * @param reason the reason why the move is illegal
+     * @param move description of the illegal move
+     */
+    public IllegalMoveException(Legality reason, Object move) {
+        super(reason.getDescription() + ": " + move);
+        this.reason = reason;
+    }
+
+    /**
+     * @return the reason why the move is illegal or null if it is not known
+     */
+    public Legality getReason() {
+        return reason;
+    }
+    private final Legality reason;
 }
@@ -0,0 +1,45 @@
+package cz.janhrcek.chess.rules;
+
+/**
+ * Result of checking legality of a move by {@link MoveValidator}: either
+ * {@link #LEGAL} or the reason why the move is illegal. The last few
+ * constants describe problems with the textual input of {@link MoveParser}
+ * and {@link BatchMoveValidator}.
+ *
+ * @author jhrcek
+ */
+public enum Legality {
+
+    LEGAL("The move is legal"),
+    NO_PIECE("The moving piece is not on the from square"),
+    WRONG_SIDE_TO_MOVE("The moving piece doesn't belong to the side to move"),
+    OWN_PIECE_ON_TARGET("The target square is occupied by piece of the side to move"),
+    UNREACHABLE("The piece can't move from the from square to the target square"),
+    BLOCKED("The path of the piece is blocked by another piece"),
+    NOTHING_TO_CAPTURE("Pawn can only move diagonally when it captures"),
+    PROMOTION_REQUIRED("Pawn reaching the last rank must be promoted"),
+    INVALID_PROMOTION("Only pawn reaching the last rank can be promoted, to queen, rook, bishop or knight of its colour"),
+    CASTLING_NOT_AVAILABLE("The castling is not available"),
+    CASTLING_BLOCKED("There are pieces between the king and the rook"),
+    CASTLING_THROUGH_CHECK("King can't castle out of, through or into check"),
+    KING_TO_ATTACKED_SQUARE("King can't move to attacked square"),
+    CHECK_NOT_RESOLVED("The move doesn't resolve the check"),
+    PINNED_PIECE("The piece is pinned to its king"),
+    LEAVES_KING_IN_CHECK("The move leaves the king in check"),
+    AMBIGUOUS_MOVE("The SAN move matches more than one legal move"),
+    MALFORMED_MOVE("The move is written neither in UCI nor in SAN notation"),
+    INVALID_POSITION("The position is not valid FEN record");
+
+    public String getDescription() {
+        return description;
+    }
+
+    public boolean isLegal() {
+        return this == LEGAL;
+    }
+
+    private Legality(String description) {
+        this.description = description;
+    }
+    private final String description;
+}
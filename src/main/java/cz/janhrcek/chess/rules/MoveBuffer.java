@@ -0,0 +1,90 @@
+package cz.janhrcek.chess.rules;
+
+import cz.janhrcek.chess.model.api.Move;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Growable list of packed moves (see {@link Move#pack()}) backed by array of
+ * primitive ints. It is intended to be created once and reused (after
+ * {@link #clear()}) for many positions, so that generating moves doesn't
+ * produce any garbage. Instances are not thread safe.
+ *
+ * @author jhrcek
+ */
+public final class MoveBuffer {
+
+    public MoveBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param initialCapacity the number of moves the buffer can hold before
+     * it has to grow
+     */
+    public MoveBuffer(int initialCapacity) {
+        if (initialCapacity < 1) {
+            throw new IllegalArgumentException("initialCapacity must be positive, but was " + initialCapacity);
+        }
+        moves = new int[initialCapacity];
+    }
+
+    public void add(int packedMove) {
+        if (size == moves.length) {
+            int[] bigger = new int[moves.length * 2];
+            System.arraycopy(moves, 0, bigger, 0, size);
+            moves = bigger;
+        }
+        moves[size++] = packedMove;
+    }
+
+    /**
+     * @param index index of the move in the buffer (0 to size() - 1)
+     * @return the packed move
+     */
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return moves[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int packedMove) {
+        for (int i = 0; i < size; i++) {
+            if (moves[i] == packedMove) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes all the moves, keeping the allocated array.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return new list of Move objects unpacked from this buffer
+     */
+    public List<Move> toMoves() {
+        List<Move> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(Move.unpack(moves[i]));
+        }
+        return result;
+    }
+//--------------------------- PRIVATE IMPLEMENTATION ---------------------------
+    private static final int DEFAULT_CAPACITY = 64;
+    private int[] moves;
+    private int size;
+}
@@ -0,0 +1,324 @@
+package cz.janhrcek.chess.rules;
+
+import cz.janhrcek.chess.model.api.Chessboard;
+import cz.janhrcek.chess.model.api.Move;
+import cz.janhrcek.chess.model.api.Position;
+import cz.janhrcek.chess.model.api.PositionFactory;
+import static cz.janhrcek.chess.model.api.enums.Piece.*;
+import cz.janhrcek.chess.model.api.enums.Square;
+import cz.janhrcek.chess.model.impl.FIDERuleChecker;
+import cz.janhrcek.chess.model.impl.PieceNotPresentException;
+import cz.janhrcek.chess.model.impl.PositionFactoryImpl;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Writes legal moves in Standard Algebraic Notation (SAN, e.g. "Nbd7",
+ * "exd8=Q+", "O-O"), Long Algebraic Notation (LAN, e.g. "Ng8-f6", "e7xd8=Q+")
+ * and UCI notation (e.g. "g8f6", "e7d8q") into caller supplied buffers. The
+ * text written in SAN can be read back by {@link MoveParser}.
+ *
+ * Moves are packed ints (see {@link Move#pack()}) and must be legal in the
+ * position, in which they are made. Squares are written using precomputed
+ * tables, disambiguation of SAN is computed from attack bitboards and check is
+ * detected without making the move - the position after the move is only
+ * created (unless it is supplied by the caller) when the move gives check, to
+ * find out whether it is a mate. Instances keep a reusable move generator and
+ * are NOT thread safe.
+ *
+ * @author jhrcek
+ */
+public final class MoveFormatter {
+
+    /**
+     * Creates formatter, which creates the positions after checking moves
+     * using FIDE rules.
+     */
+    public MoveFormatter() {
+        this(new PositionFactoryImpl(new FIDERuleChecker()));
+    }
+
+    /**
+     * @param positionFactory the factory used to create the positions after
+     * checking moves (to find out whether they are mates)
+     */
+    public MoveFormatter(PositionFactory positionFactory) {
+        this.positionFactory = requireNonNull(positionFactory, "positionFactory must not be null!");
+    }
+
+    /**
+     * Appends the move in SAN, including check (+) or mate (#) suffix.
+     *
+     * @param position the position in which the move is made
+     * @param move the packed legal move
+     * @param sb the buffer to append the move to
+     * @return the buffer
+     */
+    public StringBuilder appendSan(Position position, int move, StringBuilder sb) {
+        return appendSan(position, move, null, sb);
+    }
+
+    /**
+     * Appends the move in SAN, including check (+) or mate (#) suffix.
+     *
+     * @param position the position in which the move is made
+     * @param move the packed legal move
+     * @param after the position after the move (if the caller has it) or null
+     * @param sb the buffer to append the move to
+     * @return the buffer
+     */
+    public StringBuilder appendSan(Position position, int move, Position after, StringBuilder sb) {
+        Chessboard board = position.getChessboard();
+        int from = Move.fromOf(move);
+        int to = Move.toOf(move);
+        int code = Move.pieceOf(move);
+        int kind = kindOf(code);
+        if (kind == KING && Math.abs(from - to) == 2) {
+            sb.append(to < from ? "O-O" : "O-O-O");
+        } else {
+            boolean capture = isCapture(board, move);
+            if (kind == PAWN) {
+                if (capture) {
+                    sb.append(FILE_CHARS[from]);
+                }
+            } else {
+                sb.append(PIECE_CHARS[kind]);
+                if (kind != KING) {
+                    appendDisambiguation(position, move, sb);
+                }
+            }
+            if (capture) {
+                sb.append('x');
+            }
+            sb.append(FILE_CHARS[to]).append(RANK_CHARS[to]);
+            appendPromotion(move, sb);
+        }
+        return appendSuffix(position, move, after, sb);
+    }
+
+    /**
+     * Appends the move in LAN, including check (+) or mate (#) suffix.
+     *
+     * @param position the position in which the move is made
+     * @param move the packed legal move
+     * @param sb the buffer to append the move to
+     * @return the buffer
+     */
+    public StringBuilder appendLan(Position position, int move, StringBuilder sb) {
+        return appendLan(position, move, null, sb);
+    }
+
+    /**
+     * Appends the move in LAN, including check (+) or mate (#) suffix.
+     *
+     * @param position the position in which the move is made
+     * @param move the packed legal move
+     * @param after the position after the move (if the caller has it) or null
+     * @param sb the buffer to append the move to
+     * @return the buffer
+     */
+    public StringBuilder appendLan(Position position, int move, Position after, StringBuilder sb) {
+        int from = Move.fromOf(move);
+        int to = Move.toOf(move);
+        int kind = kindOf(Move.pieceOf(move));
+        if (kind == KING && Math.abs(from - to) == 2) {
+            sb.append(to < from ? "O-O" : "O-O-O");
+        } else {
+            if (kind != PAWN) {
+                sb.append(PIECE_CHARS[kind]);
+            }
+            sb.append(FILE_CHARS[from]).append(RANK_CHARS[from])
+                    .append(isCapture(position.getChessboard(), move) ? 'x' : '-')
+                    .append(FILE_CHARS[to]).append(RANK_CHARS[to]);
+            appendPromotion(move, sb);
+        }
+        return appendSuffix(position, move, after, sb);
+    }
+
+    /**
+     * Appends the move in UCI notation (castling is written as king's move).
+     *
+     * @param move the packed move
+     * @param sb the buffer to append the move to
+     * @return the buffer
+     */
+    public static StringBuilder appendUci(int move, StringBuilder sb) {
+        int from = Move.fromOf(move);
+        int to = Move.toOf(move);
+        sb.append(FILE_CHARS[from]).append(RANK_CHARS[from]).append(FILE_CHARS[to]).append(RANK_CHARS[to]);
+        if (Move.isPromotion(move)) {
+            sb.append(Character.toLowerCase(PIECE_CHARS[kindOf(Move.promoPieceOf(move))]));
+        }
+        return sb;
+    }
+
+    /**
+     * @return the move in SAN
+     */
+    public String toSan(Position position, int move) {
+        return appendSan(position, move, new StringBuilder(MAX_LENGTH)).toString();
+    }
+
+    /**
+     * @return the move in LAN
+     */
+    public String toLan(Position position, int move) {
+        return appendLan(position, move, new StringBuilder(MAX_LENGTH)).toString();
+    }
+
+    /**
+     * @return the move in UCI notation
+     */
+    public static String toUci(int move) {
+        return appendUci(move, new StringBuilder(5)).toString();
+    }
+
+    /**
+     * Appends lower case name of the square (e.g. "e4").
+     *
+     * @param squareIndex the index of the square (see {@link Square#index()})
+     * @param sb the buffer to append the name to
+     * @return the buffer
+     */
+    public static StringBuilder appendSquare(int squareIndex, StringBuilder sb) {
+        return sb.append(FILE_CHARS[squareIndex]).append(RANK_CHARS[squareIndex]);
+    }
+
+    /**
+     * Tests whether the move gives check, without making it.
+     *
+     * @param position the position in which the move is made
+     * @param move the packed legal move
+     * @return true if the side to move will be in check after the move
+     */
+    public static boolean givesCheck(Position position, int move) {
+        Chessboard board = position.getChessboard();
+        int code = Move.pieceOf(move);
+        boolean white = isWhite(code);
+        long enemyKing = board.getBitboard(white ? BLACK_KING : WHITE_KING);
+        if (enemyKing == 0L) {
+            return false;
+        }
+        int king = Bitboards.first(enemyKing);
+        int from = Move.fromOf(move);
+        int to = Move.toOf(move);
+        int kind = kindOf(code);
+        long occupancy = (board.getOccupancy() & ~(1L << from)) | (1L << to);
+        if (kind == PAWN && Square.fileOf(from) != Square.fileOf(to) && board.getPiece(to) == null) {
+            occupancy &= ~(1L << (to + (white ? -8 : 8))); //pawn captured en passant
+        }
+        int movedCode = Move.isPromotion(move) ? Move.promoPieceOf(move) : code;
+        if ((attacks(movedCode, to, occupancy) & enemyKing) != 0L) {
+            return true;
+        }
+        if (kind == KING && Math.abs(from - to) == 2) {
+            int rookFrom = to < from ? from - 3 : from + 4;
+            int rookTo = (from + to) >>> 1;
+            occupancy = (occupancy & ~(1L << rookFrom)) | (1L << rookTo);
+            if ((Bitboards.rookAttacks(rookTo, occupancy) & enemyKing) != 0L) {
+                return true;
+            }
+        }
+        //discovered check - the moved pieces left their squares in the occupancy, but block the lines through their
+        //new squares (a piece captured on the target square is not counted as attacker, it is of the other side)
+        return AttackInfo.attackersOf(board, king, white, occupancy) != 0L;
+    }
+//--------------------------- PRIVATE IMPLEMENTATION ---------------------------
+    /**
+     * Letters of piece kinds in SAN (pawns have none).
+     */
+    private static final char[] PIECE_CHARS = {'P', 'N', 'B', 'R', 'Q', 'K'};
+    /**
+     * Letters of files and digits of ranks of squares, indexed by square index.
+     */
+    private static final char[] FILE_CHARS = new char[64];
+    private static final char[] RANK_CHARS = new char[64];
+    /**
+     * Length of the longest move, e.g. "Qa1xb2+" or "b7xa8=Q#".
+     */
+    private static final int MAX_LENGTH = 8;
+    private final PositionFactory positionFactory;
+    private final MoveGenerator generator = new MoveGenerator();
+
+    static {
+        for (int i = 0; i < 64; i++) {
+            FILE_CHARS[i] = (char) ('a' + Square.fileOf(i));
+            RANK_CHARS[i] = (char) ('1' + Square.rankOf(i));
+        }
+    }
+
+    private static boolean isCapture(Chessboard board, int move) {
+        int to = Move.toOf(move);
+        return board.getPiece(to) != null
+                || (kindOf(Move.pieceOf(move)) == PAWN && Square.fileOf(Move.fromOf(move)) != Square.fileOf(to));
+    }
+
+    private static void appendPromotion(int move, StringBuilder sb) {
+        if (Move.isPromotion(move)) {
+            sb.append('=').append(PIECE_CHARS[kindOf(Move.promoPieceOf(move))]);
+        }
+    }
+
+    /**
+     * Appends file, rank or both of the from square, if other piece of the
+     * same kind and colour can legally move to the target square.
+     */
+    private static void appendDisambiguation(Position position, int move, StringBuilder sb) {
+        Chessboard board = position.getChessboard();
+        int from = Move.fromOf(move);
+        int to = Move.toOf(move);
+        int code = Move.pieceOf(move);
+        long others = board.getBitboard(fromCode(code)) & attacks(code, to, board.getOccupancy()) & ~(1L << from);
+        for (long bb = others; bb != 0L; bb = Bitboards.withoutFirst(bb)) {
+            int other = Bitboards.first(bb);
+            if (!MoveValidator.check(position, Move.pack(other, to, code)).isLegal()) { //e.g. pinned
+                others &= ~(1L << other);
+            }
+        }
+        if (others == 0L) {
+            return;
+        }
+        if ((others & Bitboards.file(Square.fileOf(from))) == 0L) {
+            sb.append(FILE_CHARS[from]);
+        } else if ((others & Bitboards.rank(Square.rankOf(from))) == 0L) {
+            sb.append(RANK_CHARS[from]);
+        } else {
+            sb.append(FILE_CHARS[from]).append(RANK_CHARS[from]);
+        }
+    }
+
+    /**
+     * @return bitboard of squares attacked by given piece from given square
+     */
+    private static long attacks(int code, int square, long occupancy) {
+        switch (kindOf(code)) {
+            case PAWN:
+                return Bitboards.pawnAttacks(1L << square, isWhite(code));
+            case KNIGHT:
+                return Bitboards.knightAttacks(square);
+            case BISHOP:
+                return Bitboards.bishopAttacks(square, occupancy);
+            case ROOK:
+                return Bitboards.rookAttacks(square, occupancy);
+            case QUEEN:
+                return Bitboards.queenAttacks(square, occupancy);
+            default:
+                return Bitboards.kingAttacks(square);
+        }
+    }
+
+    private StringBuilder appendSuffix(Position position, int move, Position after, StringBuilder sb) {
+        if (after == null) {
+            if (!givesCheck(position, move)) {
+                return sb;
+            }
+            try {
+                after = positionFactory.create(position, Move.unpack(move));
+            } catch (IllegalMoveException | PieceNotPresentException ex) {
+                throw new IllegalArgumentException("The move " + toUci(move) + " is not legal in the position", ex);
+            }
+        } else if (!after.getAttackInfo().isCheck()) {
+            return sb;
+        }
+        return sb.append(generator.hasLegalMove(after) ? '+' : '#');
+    }
+}
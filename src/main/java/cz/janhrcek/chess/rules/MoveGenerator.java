@@ -0,0 +1,306 @@
+package cz.janhrcek.chess.rules;
+
+import cz.janhrcek.chess.model.api.Chessboard;
+import cz.janhrcek.chess.model.api.Move;
+import cz.janhrcek.chess.model.api.Position;
+import static cz.janhrcek.chess.model.api.enums.Piece.*;
+import cz.janhrcek.chess.model.api.enums.Square;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Streaming generator of legal moves, an alternative to
+ * {@link cz.janhrcek.chess.model.api.RuleChecker#generateLegal(Position)} for
+ * consumers that often don't need all the moves (e.g. to find out whether
+ * there is any legal move at all or to try the most promising moves first).
+ *
+ * The moves are produced in stages: first the hash move (if one was given
+ * and it is legal in the position), then captures and promotions, then quiet
+ * moves. When the side to move is in check, the captures and quiets are
+ * replaced by single check evasion stage, which only generates moves capturing
+ * the checking piece, blocking the check or moving the king. The moves of
+ * each stage are generated as pseudo-legal into reusable {@link MoveBuffer}
+ * and each of them is tested for legality only when it is about to be
+ * returned from {@link #next()}.
+ *
+ * Moves are represented as packed ints (see {@link Move#pack()}). The
+ * generator is intended to be reused for many positions via
+ * {@link #reset(Position, int)}, in which case it produces no garbage.
+ * Instances are not thread safe.
+ * <pre>
+ * generator.reset(position, hashMove);
+ * for (int move = generator.next(); move != MoveGenerator.NO_MOVE; move = generator.next()) {
+ *     ...
+ * }
+ * </pre>
+ *
+ * @author jhrcek
+ */
+public final class MoveGenerator {
+
+    /**
+     * Returned by {@link #next()} when there are no more moves.
+     */
+    public static final int NO_MOVE = 0;
+    //the stages of generation
+    public static final int STAGE_HASH_MOVE = 0;
+    public static final int STAGE_CAPTURES = 1;
+    public static final int STAGE_QUIETS = 2;
+    public static final int STAGE_EVASIONS = 3;
+    public static final int STAGE_DONE = 4;
+
+    public MoveGenerator() {
+    }
+
+    /**
+     * Prepares the generator for generating moves of given position.
+     *
+     * @param position the position
+     */
+    public void reset(Position position) {
+        reset(position, NO_MOVE);
+    }
+
+    /**
+     * Prepares the generator for generating moves of given position, starting
+     * with given hash move.
+     *
+     * @param position the position
+     * @param hashMove packed move that should be returned first (if it is
+     * legal in the position) or {@link #NO_MOVE}
+     */
+    public void reset(Position position, int hashMove) {
+        this.position = requireNonNull(position, "position must not be null!");
+        this.board = position.getChessboard();
+        this.info = position.getAttackInfo();
+        this.white = position.isWhiteToMove();
+        Square ep = position.getEnPassantTarget();
+        this.epSquare = ep == null ? -1 : ep.index();
+        this.hashMove = hashMove;
+        this.stage = STAGE_HASH_MOVE;
+        this.currentStage = STAGE_HASH_MOVE;
+        buffer.clear();
+        cursor = 0;
+    }
+
+    /**
+     * @return the next legal move of the position (packed) or
+     * {@link #NO_MOVE} if there are no more legal moves
+     */
+    public int next() {
+        while (true) {
+            while (cursor < buffer.size()) {
+                int move = buffer.get(cursor++);
+                if (move != hashMove && isLegal(move)) { //hash move was already returned or is illegal
+                    return move;
+                }
+            }
+            currentStage = stage;
+            buffer.clear();
+            cursor = 0;
+            switch (stage) {
+                case STAGE_HASH_MOVE:
+                    stage = info.isCheck() ? STAGE_EVASIONS : STAGE_CAPTURES;
+                    if (hashMove != NO_MOVE && MoveValidator.check(position, hashMove).isLegal()) {
+                        return hashMove;
+                    }
+                    break;
+                case STAGE_CAPTURES:
+                    generateCaptures(Bitboards.ALL);
+                    stage = STAGE_QUIETS;
+                    break;
+                case STAGE_QUIETS:
+                    generateQuiets(Bitboards.ALL);
+                    stage = STAGE_DONE;
+                    break;
+                case STAGE_EVASIONS:
+                    long checkers = info.getCheckers();
+                    long mask = 0L; //in double check only the king can move
+                    if (!Bitboards.hasMoreThanOne(checkers)) {
+                        mask = checkers | Bitboards.between(info.getKingSquare(), Bitboards.first(checkers));
+                    }
+                    generateCaptures(mask);
+                    generateQuiets(mask);
+                    stage = STAGE_DONE;
+                    break;
+                default:
+                    return NO_MOVE;
+            }
+        }
+    }
+
+    /**
+     * @return the stage which produced the move last returned by
+     * {@link #next()} (one of the STAGE_* constants)
+     */
+    public int getStage() {
+        return currentStage;
+    }
+
+    /**
+     * Writes all the legal moves of given position into given buffer (which is
+     * not cleared before).
+     *
+     * @param position the position
+     * @param target the buffer to add the moves to
+     * @return the number of moves added
+     */
+    public int generateAll(Position position, MoveBuffer target) {
+        reset(position);
+        int count = 0;
+        for (int move = next(); move != NO_MOVE; move = next()) {
+            target.add(move);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return true if the side to move has at least one legal move in given
+     * position
+     */
+    public boolean hasLegalMove(Position position) {
+        reset(position);
+        return next() != NO_MOVE;
+    }
+
+    /**
+     * Tests whether pseudo-legal move (e.g. one generated by this generator)
+     * is legal, i.e. whether it doesn't leave own king in check.
+     *
+     * @param move the packed pseudo-legal move
+     * @return true if the move is legal
+     */
+    public boolean isLegal(int move) {
+        int from = Move.fromOf(move);
+        int to = Move.toOf(move);
+        int kind = kindOf(Move.pieceOf(move));
+        if (kind == KING && Math.abs(from - to) == 2) { //castlings were checked when they were generated
+            return true;
+        }
+        return MoveValidator.checkKingSafety(board, info, white, epSquare, from, to, kind).isLegal();
+    }
+//--------------------------- PRIVATE IMPLEMENTATION ---------------------------
+    private final MoveBuffer buffer = new MoveBuffer();
+    private Position position;
+    private Chessboard board;
+    private AttackInfo info;
+    private boolean white;
+    private int epSquare;
+    private int hashMove;
+    private int stage;
+    private int currentStage;
+    private int cursor;
+
+    /**
+     * Generates captures and promotions (including en passant).
+     *
+     * @param mask the squares non-king pieces may move to (used for check
+     * evasions)
+     */
+    private void generateCaptures(long mask) {
+        long them = board.getOccupancy(!white);
+        long empty = ~board.getOccupancy();
+        long pawns = board.getBitboard(white ? WHITE_PAWN : BLACK_PAWN);
+        long promotionRank = white ? Bitboards.RANK_8 : Bitboards.RANK_1;
+        if (white) {
+            addPawnMoves(Bitboards.northWest(pawns) & them & mask, 9);
+            addPawnMoves(Bitboards.northEast(pawns) & them & mask, 7);
+            addPawnMoves(Bitboards.north(pawns) & empty & promotionRank & mask, 8);
+        } else {
+            addPawnMoves(Bitboards.southWest(pawns) & them & mask, -7);
+            addPawnMoves(Bitboards.southEast(pawns) & them & mask, -9);
+            addPawnMoves(Bitboards.south(pawns) & empty & promotionRank & mask, -8);
+        }
+        if (epSquare >= 0) { //legality (including check evasion) is tested later
+            int pawnCode = white ? WHITE_PAWN.code() : BLACK_PAWN.code();
+            for (long bb = Bitboards.pawnAttacks(1L << epSquare, !white) & pawns; bb != 0L; bb = Bitboards.withoutFirst(bb)) {
+                buffer.add(Move.pack(Bitboards.first(bb), epSquare, pawnCode));
+            }
+        }
+        addPieceMoves(them & mask, them);
+    }
+
+    /**
+     * Generates non-capturing moves except for promotions.
+     *
+     * @param mask the squares non-king pieces may move to (used for check
+     * evasions)
+     */
+    private void generateQuiets(long mask) {
+        long empty = ~board.getOccupancy();
+        long pawns = board.getBitboard(white ? WHITE_PAWN : BLACK_PAWN);
+        if (white) {
+            long single = Bitboards.north(pawns) & empty;
+            addPawnMoves(single & ~Bitboards.RANK_8 & mask, 8);
+            addPawnMoves(Bitboards.north(single & Bitboards.rank(2)) & empty & mask, 16);
+        } else {
+            long single = Bitboards.south(pawns) & empty;
+            addPawnMoves(single & ~Bitboards.RANK_1 & mask, -8);
+            addPawnMoves(Bitboards.south(single & Bitboards.rank(5)) & empty & mask, -16);
+        }
+        addPieceMoves(empty & mask, empty);
+        if (!info.isCheck()) {
+            int kingCode = white ? WHITE_KING.code() : BLACK_KING.code();
+            for (int i = white ? 0 : 2, end = i + 2; i < end; i++) {
+                if (MoveValidator.checkCastling(position, info, i).isLegal()) {
+                    buffer.add(Move.pack(MoveValidator.CASTLING_KING_FROM[i], MoveValidator.CASTLING_KING_TO[i], kingCode));
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds pawn moves to given squares, coming from squares "delta" squares
+     * before them. Moves to the last rank are added as 4 promotions.
+     */
+    private void addPawnMoves(long targets, int delta) {
+        int pawnCode = white ? WHITE_PAWN.code() : BLACK_PAWN.code();
+        long promotionRank = white ? Bitboards.RANK_8 : Bitboards.RANK_1;
+        for (long bb = targets; bb != 0L; bb = Bitboards.withoutFirst(bb)) {
+            int to = Bitboards.first(bb);
+            int from = to - delta;
+            if ((promotionRank & (1L << to)) != 0L) {
+                int queen = white ? WHITE_QUEEN.code() : BLACK_QUEEN.code();
+                for (int promo = queen; promo > pawnCode; promo -= 2) { //queen, rook, bishop, knight
+                    buffer.add(Move.pack(from, to, pawnCode, promo));
+                }
+            } else {
+                buffer.add(Move.pack(from, to, pawnCode));
+            }
+        }
+    }
+
+    /**
+     * Adds moves of knights, bishops, rooks, queens (to pieceTargets) and
+     * king (to kingTargets).
+     */
+    private void addPieceMoves(long pieceTargets, long kingTargets) {
+        long occupancy = board.getOccupancy();
+        for (int code = white ? WHITE_KNIGHT.code() : BLACK_KNIGHT.code(); code <= BLACK_KING.code(); code += 2) {
+            for (long bb = board.getBitboard(fromCode(code)); bb != 0L; bb = Bitboards.withoutFirst(bb)) {
+                int from = Bitboards.first(bb);
+                long targets;
+                switch (kindOf(code)) {
+                    case KNIGHT:
+                        targets = Bitboards.knightAttacks(from) & pieceTargets;
+                        break;
+                    case BISHOP:
+                        targets = Bitboards.bishopAttacks(from, occupancy) & pieceTargets;
+                        break;
+                    case ROOK:
+                        targets = Bitboards.rookAttacks(from, occupancy) & pieceTargets;
+                        break;
+                    case QUEEN:
+                        targets = Bitboards.queenAttacks(from, occupancy) & pieceTargets;
+                        break;
+                    default:
+                        targets = Bitboards.kingAttacks(from) & kingTargets & ~info.getKingDangerSquares();
+                        break;
+                }
+                for (; targets != 0L; targets = Bitboards.withoutFirst(targets)) {
+                    buffer.add(Move.pack(from, Bitboards.first(targets), code));
+                }
+            }
+        }
+    }
+}
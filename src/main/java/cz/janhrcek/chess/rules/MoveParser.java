@@ -0,0 +1,237 @@
+package cz.janhrcek.chess.rules;
+
+import cz.janhrcek.chess.model.api.Move;
+import cz.janhrcek.chess.model.api.Position;
+import cz.janhrcek.chess.model.api.enums.Piece;
+import static cz.janhrcek.chess.model.api.enums.Piece.*;
+import cz.janhrcek.chess.model.api.enums.Square;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reads moves written in UCI (long algebraic notation without separators,
+ * e.g. "e2e4", "e7e8q", castling as king's move "e1g1") or in SAN (e.g. "e4",
+ * "Nbd7", "exd8=Q+", "O-O") and resolves them into legal packed moves (see
+ * {@link Move#pack()}) of given position.
+ *
+ * Nothing is thrown for malformed or illegal moves: the methods return
+ * {@link MoveGenerator#NO_MOVE} and the reason is available via
+ * {@link #getLastError()}. Instances keep reusable scratch state and are NOT
+ * thread safe - use one instance per thread.
+ *
+ * @author jhrcek
+ */
+public final class MoveParser {
+
+    /**
+     * Reads the move in UCI or SAN notation (UCI is tried first, because SAN
+     * never looks like UCI).
+     *
+     * @param position the position in which the move is made
+     * @param move the text of the move
+     * @return the packed legal move or {@link MoveGenerator#NO_MOVE}
+     */
+    public int parse(Position position, CharSequence move) {
+        requireNonNull(position, "position must not be null!");
+        if (move == null) {
+            return fail(Legality.MALFORMED_MOVE);
+        }
+        return looksLikeUci(move) ? parseUci(position, move) : parseSan(position, move);
+    }
+
+    /**
+     * @param position the position in which the move is made
+     * @param move the move in UCI notation
+     * @return the packed legal move or {@link MoveGenerator#NO_MOVE}
+     */
+    public int parseUci(Position position, CharSequence move) {
+        if (!looksLikeUci(move)) {
+            return fail(Legality.MALFORMED_MOVE);
+        }
+        int from = Square.index(move.charAt(0) - 'a', move.charAt(1) - '1');
+        int to = Square.index(move.charAt(2) - 'a', move.charAt(3) - '1');
+        Piece piece = position.getChessboard().getPiece(from);
+        if (piece == null) {
+            return fail(Legality.NO_PIECE);
+        }
+        int packed;
+        if (move.length() == 5) {
+            int promoKind = kindOfLetter(Character.toUpperCase(move.charAt(4)));
+            packed = Move.pack(from, to, piece.code(), 2 * promoKind + (piece.isWhite() ? 0 : 1));
+        } else {
+            packed = Move.pack(from, to, piece.code());
+        }
+        return check(position, packed);
+    }
+
+    /**
+     * @param position the position in which the move is made
+     * @param move the move in SAN notation (check, mate and annotation
+     * suffixes are ignored, castling may be written with zeros)
+     * @return the packed legal move or {@link MoveGenerator#NO_MOVE}
+     */
+    public int parseSan(Position position, CharSequence move) {
+        int end = move.length();
+        while (end > 0 && isSuffix(move.charAt(end - 1))) {
+            end--;
+        }
+        boolean white = position.isWhiteToMove();
+        int castling = castlingOf(move, end);
+        if (castling >= 0) {
+            int kingFrom = white ? Square.E1.index() : Square.E8.index();
+            int kingTo = kingFrom + (castling == KINGSIDE ? -2 : 2);
+            return check(position, Move.pack(kingFrom, kingTo, white ? Piece.WHITE_KING.code() : Piece.BLACK_KING.code()));
+        }
+        int start = 0;
+        int kind = PAWN;
+        if (end > 0 && kindOfLetter(move.charAt(0)) > PAWN) {
+            kind = kindOfLetter(move.charAt(0));
+            start = 1;
+        }
+        int promoKind = -1;
+        if (kind == PAWN && end - start > 2 && kindOfLetter(move.charAt(end - 1)) > PAWN) {
+            promoKind = kindOfLetter(move.charAt(end - 1));
+            end--;
+            if (move.charAt(end - 1) == '=') {
+                end--;
+            }
+        }
+        if (end - start < 2 || !isFile(move.charAt(end - 2)) || !isRank(move.charAt(end - 1))) {
+            return fail(Legality.MALFORMED_MOVE);
+        }
+        int to = Square.index(move.charAt(end - 2) - 'a', move.charAt(end - 1) - '1');
+        end -= 2;
+        if (end > start && (move.charAt(end - 1) == 'x' || move.charAt(end - 1) == ':')) {
+            end--;
+        }
+        int fromFile = -1;
+        int fromRank = -1;
+        for (int i = start; i < end; i++) {
+            char c = move.charAt(i);
+            if (isFile(c) && fromFile < 0 && fromRank < 0) {
+                fromFile = c - 'a';
+            } else if (isRank(c) && fromRank < 0) {
+                fromRank = c - '1';
+            } else {
+                return fail(Legality.MALFORMED_MOVE);
+            }
+        }
+        int pieceCode = 2 * kind + (white ? 0 : 1);
+        long candidates = position.getChessboard().getBitboard(Piece.fromCode(pieceCode));
+        if (fromFile >= 0) {
+            candidates &= Bitboards.file(fromFile);
+        } else if (kind == PAWN) { //pawn captures always name the file, so this is push
+            candidates &= Bitboards.file(Square.fileOf(to));
+        }
+        if (fromRank >= 0) {
+            candidates &= Bitboards.rank(fromRank);
+        }
+        int found = MoveGenerator.NO_MOVE;
+        Legality reason = Legality.NO_PIECE;
+        for (long bb = candidates; bb != 0L; bb = Bitboards.withoutFirst(bb)) {
+            int from = Bitboards.first(bb);
+            int packed = promoKind < 0
+                    ? Move.pack(from, to, pieceCode)
+                    : Move.pack(from, to, pieceCode, 2 * promoKind + (white ? 0 : 1));
+            Legality legality = MoveValidator.check(position, packed);
+            if (legality == Legality.LEGAL) {
+                if (found != MoveGenerator.NO_MOVE) {
+                    return fail(Legality.AMBIGUOUS_MOVE);
+                }
+                found = packed;
+            } else if (reason == Legality.NO_PIECE || reason == Legality.UNREACHABLE) {
+                reason = legality; //remember the most specific reason
+            }
+        }
+        if (found == MoveGenerator.NO_MOVE) {
+            return fail(reason);
+        }
+        lastError = null;
+        return found;
+    }
+
+    /**
+     * @return the reason why the last parsed move was rejected or null if it
+     * was accepted
+     */
+    public Legality getLastError() {
+        return lastError;
+    }
+//--------------------------- PRIVATE IMPLEMENTATION ---------------------------
+    private static final int KINGSIDE = 0;
+    private static final int QUEENSIDE = 1;
+    private Legality lastError;
+
+    private int check(Position position, int packed) {
+        Legality legality = MoveValidator.check(position, packed);
+        if (legality != Legality.LEGAL) {
+            return fail(legality);
+        }
+        lastError = null;
+        return packed;
+    }
+
+    private int fail(Legality reason) {
+        lastError = reason;
+        return MoveGenerator.NO_MOVE;
+    }
+
+    private static boolean looksLikeUci(CharSequence move) {
+        int length = move.length();
+        return (length == 4 || (length == 5 && kindOfLetter(Character.toUpperCase(move.charAt(4))) > PAWN
+                && Character.toUpperCase(move.charAt(4)) != 'K'))
+                && isFile(move.charAt(0)) && isRank(move.charAt(1))
+                && isFile(move.charAt(2)) && isRank(move.charAt(3));
+    }
+
+    /**
+     * @return KINGSIDE, QUEENSIDE or -1 if the move is not castling
+     */
+    private static int castlingOf(CharSequence move, int end) {
+        if (end != 3 && end != 5) {
+            return -1;
+        }
+        char zero = move.charAt(0);
+        if (zero != 'O' && zero != '0') {
+            return -1;
+        }
+        for (int i = 1; i < end; i++) {
+            if (move.charAt(i) != (i % 2 == 1 ? '-' : zero)) {
+                return -1;
+            }
+        }
+        return end == 3 ? KINGSIDE : QUEENSIDE;
+    }
+
+    /**
+     * @return kind of piece (see Piece.kindOf) denoted by SAN letter, PAWN
+     * for other characters
+     */
+    private static int kindOfLetter(char c) {
+        switch (c) {
+            case 'N':
+                return KNIGHT;
+            case 'B':
+                return BISHOP;
+            case 'R':
+                return ROOK;
+            case 'Q':
+                return QUEEN;
+            case 'K':
+                return KING;
+            default:
+                return PAWN;
+        }
+    }
+
+    private static boolean isFile(char c) {
+        return c >= 'a' && c <= 'h';
+    }
+
+    private static boolean isRank(char c) {
+        return c >= '1' && c <= '8';
+    }
+
+    private static boolean isSuffix(char c) {
+        return c == '+' || c == '#' || c == '!' || c == '?';
+    }
+}
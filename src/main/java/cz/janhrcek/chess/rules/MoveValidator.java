@@ -0,0 +1,202 @@
+package cz.janhrcek.chess.rules;
+
+import cz.janhrcek.chess.model.api.Chessboard;
+import cz.janhrcek.chess.model.api.Move;
+import cz.janhrcek.chess.model.api.Position;
+import cz.janhrcek.chess.model.api.enums.Castling;
+import cz.janhrcek.chess.model.api.enums.Piece;
+import static cz.janhrcek.chess.model.api.enums.Piece.*;
+import cz.janhrcek.chess.model.api.enums.Square;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Checks legality of single move directly, without generating all the moves
+ * of the position. The check consists of constant number of bitboard
+ * operations: ownership of the piece, reachability of the target square on
+ * empty board (see {@link BitboardManager}), test of blockers between the
+ * squares, special rules of pawns, castling and en passant and finally king
+ * safety using check and pin masks of {@link AttackInfo} (cached with the
+ * position).
+ *
+ * The methods don't throw exceptions for illegal moves, they return the
+ * reason of illegality instead, so they can be used for validating large
+ * amounts of moves. {@link cz.janhrcek.chess.model.impl.FIDERuleChecker}
+ * turns the reasons into {@link IllegalMoveException}s.
+ *
+ * @author jhrcek
+ */
+public final class MoveValidator {
+
+    /**
+     * @param position the position in which the move is made
+     * @param move the move
+     * @return {@link Legality#LEGAL} or the reason why the move is illegal
+     */
+    public static Legality check(Position position, Move move) {
+        requireNonNull(move, "move must not be null!");
+        return check(position, move.pack());
+    }
+
+    /**
+     * @param position the position in which the move is made
+     * @param move the packed move (see {@link Move#pack()})
+     * @return {@link Legality#LEGAL} or the reason why the move is illegal
+     */
+    public static Legality check(Position position, int move) {
+        requireNonNull(position, "position must not be null!");
+        Chessboard board = position.getChessboard();
+        boolean white = position.isWhiteToMove();
+        int from = Move.fromOf(move);
+        int to = Move.toOf(move);
+        int code = Move.pieceOf(move);
+        if (code > BLACK_KING.code() || board.getPiece(from) != Piece.fromCode(code)) {
+            return Legality.NO_PIECE;
+        }
+        if (Piece.isWhite(code) != white) {
+            return Legality.WRONG_SIDE_TO_MOVE;
+        }
+        long toBB = 1L << to;
+        if ((board.getOccupancy(white) & toBB) != 0L) {
+            return Legality.OWN_PIECE_ON_TARGET;
+        }
+        Square epTarget = position.getEnPassantTarget();
+        int epSquare = epTarget == null ? -1 : epTarget.index();
+        int kind = Piece.kindOf(code);
+        if (kind == PAWN) {
+            Legality pawnMove = checkPawnMove(board, white, epSquare, move);
+            if (pawnMove != Legality.LEGAL) {
+                return pawnMove;
+            }
+        } else {
+            if (Move.isPromotion(move)) {
+                return Legality.INVALID_PROMOTION;
+            }
+            if (kind == KING && (Bitboards.kingAttacks(from) & toBB) == 0L) {
+                for (int i = 0; i < 4; i++) {
+                    if (CASTLING_KING_FROM[i] == from && CASTLING_KING_TO[i] == to) {
+                        return checkCastling(position, position.getAttackInfo(), i);
+                    }
+                }
+                return Legality.UNREACHABLE;
+            }
+            if (!BitboardManager.canGo(code, from, to)) {
+                return Legality.UNREACHABLE;
+            }
+            if ((Bitboards.between(from, to) & board.getOccupancy()) != 0L) {
+                return Legality.BLOCKED;
+            }
+        }
+        return checkKingSafety(board, position.getAttackInfo(), white, epSquare, from, to, kind);
+    }
+//--------------------------- PRIVATE IMPLEMENTATION ---------------------------
+    //castling squares indexed by castling ordinal
+    static final int[] CASTLING_KING_FROM = {Square.E1.index(), Square.E1.index(), Square.E8.index(), Square.E8.index()};
+    static final int[] CASTLING_KING_TO = {Square.G1.index(), Square.C1.index(), Square.G8.index(), Square.C8.index()};
+    private static final int[] CASTLING_ROOK_FROM = {Square.H1.index(), Square.A1.index(), Square.H8.index(), Square.A8.index()};
+    private static final Castling[] CASTLINGS = Castling.values();
+
+    /**
+     * This is utility class, and should not be instantiated.
+     */
+    private MoveValidator() {
+    }
+
+    /**
+     * Checks pawn specific rules (pushes, captures, en passant, promotions) of
+     * move, whose piece was already checked.
+     */
+    private static Legality checkPawnMove(Chessboard board, boolean white, int epSquare, int move) {
+        int from = Move.fromOf(move);
+        int to = Move.toOf(move);
+        long toBB = 1L << to;
+        int up = white ? 8 : -8;
+        long occupancy = board.getOccupancy();
+        if (to == from + up) {
+            if ((occupancy & toBB) != 0L) {
+                return Legality.BLOCKED;
+            }
+        } else if (to == from + 2 * up && Square.rankOf(from) == (white ? 1 : 6)) {
+            if ((occupancy & ((1L << (from + up)) | toBB)) != 0L) {
+                return Legality.BLOCKED;
+            }
+        } else if ((Bitboards.pawnAttacks(1L << from, white) & toBB) != 0L) {
+            if ((board.getOccupancy(!white) & toBB) == 0L && to != epSquare) {
+                return Legality.NOTHING_TO_CAPTURE;
+            }
+        } else {
+            return Legality.UNREACHABLE;
+        }
+        boolean lastRank = (toBB & (white ? Bitboards.RANK_8 : Bitboards.RANK_1)) != 0L;
+        if (lastRank && !Move.isPromotion(move)) {
+            return Legality.PROMOTION_REQUIRED;
+        }
+        if (Move.isPromotion(move)) {
+            int promo = Move.promoPieceOf(move);
+            if (!lastRank || promo > BLACK_KING.code() || Piece.isWhite(promo) != white
+                    || Piece.kindOf(promo) == PAWN || Piece.kindOf(promo) == KING) {
+                return Legality.INVALID_PROMOTION;
+            }
+        }
+        return Legality.LEGAL;
+    }
+
+    /**
+     * Checks whether given castling is possible in the position.
+     *
+     * @param castling ordinal of the castling
+     */
+    static Legality checkCastling(Position position, AttackInfo info, int castling) {
+        boolean white = castling < 2;
+        Chessboard board = position.getChessboard();
+        int kingFrom = CASTLING_KING_FROM[castling];
+        int kingTo = CASTLING_KING_TO[castling];
+        int rookFrom = CASTLING_ROOK_FROM[castling];
+        if (white != position.isWhiteToMove()
+                || !position.getCastlings().contains(CASTLINGS[castling])
+                || board.getPiece(kingFrom) != (white ? WHITE_KING : BLACK_KING)
+                || board.getPiece(rookFrom) != (white ? WHITE_ROOK : BLACK_ROOK)) {
+            return Legality.CASTLING_NOT_AVAILABLE;
+        }
+        if ((Bitboards.between(kingFrom, rookFrom) & board.getOccupancy()) != 0L) {
+            return Legality.CASTLING_BLOCKED;
+        }
+        long kingPath = Bitboards.between(kingFrom, kingTo) | (1L << kingFrom) | (1L << kingTo);
+        if ((info.getAttackedSquares(!white) & kingPath) != 0L) {
+            return Legality.CASTLING_THROUGH_CHECK;
+        }
+        return Legality.LEGAL;
+    }
+
+    /**
+     * Checks whether pseudo-legal move (other than castling) doesn't leave own
+     * king in check.
+     */
+    static Legality checkKingSafety(Chessboard board, AttackInfo info, boolean white, int epSquare, int from, int to, int kind) {
+        int king = info.getKingSquare();
+        if (king < 0) { //position without king - nothing can be left in check
+            return Legality.LEGAL;
+        }
+        long toBB = 1L << to;
+        if (kind == KING) {
+            return (info.getKingDangerSquares() & toBB) == 0L ? Legality.LEGAL : Legality.KING_TO_ATTACKED_SQUARE;
+        }
+        if (kind == PAWN && to == epSquare) {
+            //the captured pawn disappears from the board - test the result directly
+            int captured = to + (white ? -8 : 8);
+            long occupancy = (board.getOccupancy() ^ (1L << from) ^ (1L << captured)) | toBB;
+            if (AttackInfo.attackersOf(board, king, !white, occupancy) == 0L) {
+                return Legality.LEGAL;
+            }
+            return info.isCheck() ? Legality.CHECK_NOT_RESOLVED : Legality.LEAVES_KING_IN_CHECK;
+        }
+        long checkers = info.getCheckers();
+        if (checkers != 0L && (Bitboards.hasMoreThanOne(checkers)
+                || ((checkers | Bitboards.between(king, Bitboards.first(checkers))) & toBB) == 0L)) {
+            return Legality.CHECK_NOT_RESOLVED;
+        }
+        if ((info.getPinned() & (1L << from)) != 0L && !Bitboards.aligned(king, from, to)) {
+            return Legality.PINNED_PIECE;
+        }
+        return Legality.LEGAL;
+    }
+}
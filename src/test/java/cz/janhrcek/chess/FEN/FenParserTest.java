@@ -1,7 +1,17 @@
 package cz.janhrcek.chess.FEN;
 
 import cz.janhrcek.chess.model.api.Position;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.fail;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -65,4 +75,138 @@ public class FenParserTest {
             {"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR KQk 5 3.5"}//with incorrect castling fullmove number                            
         };
     }
+
+    @Test
+    public void testFastParserAgreesWithFen() {
+        FenParser parser = new FenParser();
+        String[] fens = new String[]{
+            Fen.INITIAL_POSITION,
+            "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1",
+            "rnbqkbnr/pp1ppppp/8/2p5/4P3/8/PPPP1PPP/RNBQKBNR w KQkq c6 0 2",
+            "rnbqkbnr/pp1ppppp/8/2p5/4P3/5N2/PPPP1PPP/RNBQKB1R w kq - 10 20",
+            "5B2/6P1/1p6/8/1N6/kP6/2K5/8 w - - 0 1",};
+        try {
+            for (String s : fens) {
+                assertEquals(Fen.positionToFen(parser.parse(s)), s);
+                assertEquals(parser.normalize(s), s);
+                assertEquals(parser.parse(s).getChessboard(), new Fen(s).toChessboard());
+            }
+        } catch (InvalidFenException ife) {
+            fail("Fen parser should not have thrown an exception, but did!", ife);
+        }
+    }
+
+    @Test(dataProvider = "invalid-fens")
+    public void testFastParserRejectsInvalidFens(String fenString) {
+        FenParser parser = new FenParser();
+        assertNull(parser.tryParse(fenString), "Invalid FEN accepted: " + fenString);
+        assertNotNull(parser.getLastError());
+        assertNull(parser.tryNormalize(fenString));
+    }
+
+    /**
+     * Unlike new Fen(...), the fast parser is lenient and accepts these
+     * records (see its class description).
+     */
+    @Test(dataProvider = "lenient-fens")
+    public void testFastParserAcceptsLenientFens(String fenString, String normalized) throws InvalidFenException {
+        try {
+            new Fen(fenString);
+            fail("Fen should reject " + fenString);
+        } catch (InvalidFenException expected) {
+        }
+        FenParser parser = new FenParser();
+        assertNotNull(parser.tryParse(fenString), parser.getLastError());
+        assertEquals(parser.normalize(fenString), normalized);
+    }
+
+    @DataProvider(name = "lenient-fens")
+    public Object[][] lenientFenProvider() {
+        return new Object[][]{
+            {"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq -", Fen.INITIAL_POSITION}, //without counters (EPD)
+            {"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w qkQK - 0 1", Fen.INITIAL_POSITION}, //castlings in other order
+            {"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR  w\tKQkq - 0 1", Fen.INITIAL_POSITION}, //other blanks
+        };
+    }
+
+    @Test(dataProvider = "semantically-invalid-fens", expectedExceptions = InvalidFenException.class)
+    public void testFastParserRejectsImpossiblePositions(String fenString) throws InvalidFenException {
+        new FenParser().parse(fenString);
+    }
+
+    @DataProvider(name = "semantically-invalid-fens")
+    public Object[][] semanticallyInvalidFenProvider() {
+        return new Object[][]{
+            {"rnbq1bnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQ - 0 1"}, //black king missing
+            {"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBKKBNR w kq - 0 1"}, //two white kings
+            {"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNP w kq - 0 1"}, //pawn on 1st rank
+            {"rnbqkbnp/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQ - 0 1"}, //pawn on 8th rank
+            {"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq e3 0 1"}, //no pawn made double step
+            {"rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR w KQkq e3 0 1"}, //ep square on wrong rank for side to move
+            {"rnbqkbnr/pppppppp/pppppppp/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1"}, //too many black pawns
+        };
+    }
+
+    @Test
+    public void testNormalization() throws InvalidFenException {
+        FenParser parser = new FenParser();
+        assertEquals(parser.normalize("  rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR \t w  qkQK -  "), Fen.INITIAL_POSITION);
+        assertEquals(parser.normalize("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 0"), Fen.INITIAL_POSITION);
+        assertEquals(parser.normalize("4k3/8/8/8/8/8/8/R3K3 w KQkq - 3 40"), "4k3/8/8/8/8/8/8/R3K3 w Q - 3 40");
+    }
+
+    @Test
+    public void testPipelineKeepsOrderAndReportsErrors() throws IOException {
+        StringBuilder input = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            String fen = "4k3/8/8/8/8/8/8/4K3 w - - 0 " + (i + 1);
+            input.append(fen).append('\n');
+            expected.append(fen).append('\n');
+            if (i % 100 == 0) {
+                input.append("not a fen\n");
+            }
+        }
+        final List<Long> invalidLines = new ArrayList<>();
+        FenPipeline pipeline = new FenPipeline(3, 7);
+        pipeline.setErrorHandler(new FenPipeline.ErrorHandler() {
+            @Override
+            public void invalidFen(long lineNumber, String line, String reason) {
+                invalidLines.add(lineNumber);
+            }
+        });
+        StringWriter output = new StringWriter();
+        long valid = pipeline.process(new BufferedReader(new StringReader(input.toString())), output);
+
+        assertEquals(valid, 1000);
+        assertEquals(output.toString(), expected.toString());
+        assertEquals(invalidLines.size(), 10);
+        assertEquals(invalidLines.get(0), Long.valueOf(2));
+    }
+
+    @Test
+    public void testSerializingIntoCallerBuffers() throws InvalidFenException, IOException {
+        String[] fens = new String[]{
+            Fen.INITIAL_POSITION,
+            "rnbqkbnr/pp1ppppp/8/2p5/4P3/8/PPPP1PPP/RNBQKBNR w KQkq c6 0 2",
+            "rnbqkbnr/pp1ppppp/8/2p5/4P3/5N2/PPPP1PPP/RNBQKB1R w kq - 10 120",
+            "8/8/7p/3KNN1k/2p4p/8/3P2p1/8 w - - 0 1",};
+        StringBuilder sb = new StringBuilder();
+        StringWriter writer = new StringWriter();
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+        for (String fen : fens) {
+            Position position = new Fen(fen).toPosition();
+            sb.setLength(0);
+            assertEquals(Fen.appendFen(position, sb).toString(), fen);
+
+            writer.getBuffer().setLength(0);
+            Fen.appendFen(position, writer);
+            assertEquals(writer.toString(), fen);
+
+            buffer.clear();
+            Fen.writeFen(position, buffer);
+            buffer.flip();
+            assertEquals(StandardCharsets.US_ASCII.decode(buffer).toString(), fen);
+        }
+    }
 }
@@ -0,0 +1,66 @@
+package cz.janhrcek.chess.FEN;
+
+import cz.janhrcek.chess.model.api.Position;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author jhrcek
+ */
+public class PositionCodecTest {
+
+    private static final String[] FENS = new String[]{
+        Fen.INITIAL_POSITION,
+        "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1",
+        "rnbqkbnr/pp1ppppp/8/2p5/4P3/8/PPPP1PPP/RNBQKBNR w KQkq c6 0 2",
+        "rnbqkbnr/pp1ppppp/8/2p5/4P3/5N2/PPPP1PPP/RNBQKB1R b Kkq - 1 2",
+        "rnbqkbnr/pp1ppppp/8/2p5/4P3/5N2/PPPP1PPP/RNBQKB1R w kq - 10 20",
+        "8/8/7p/3KNN1k/2p4p/8/3P2p1/8 w - - 0 1",
+        "5B2/6P1/1p6/8/1N6/kP6/2K5/8 w - - 99 65535",};
+
+    @Test
+    public void testRoundTrip() throws InvalidFenException {
+        ByteBuffer buffer = ByteBuffer.allocate(FENS.length * PositionCodec.ENCODED_SIZE);
+        for (String fen : FENS) {
+            PositionCodec.encode(new Fen(fen).toPosition(), buffer);
+        }
+        assertEquals(buffer.remaining(), 0);
+        buffer.flip();
+        for (String fen : FENS) {
+            assertEquals(Fen.positionToFen(PositionCodec.decode(buffer)), fen);
+        }
+    }
+
+    @Test
+    public void testByteWiseComparison() throws InvalidFenException {
+        for (String first : FENS) {
+            byte[] a = PositionCodec.encode(new Fen(first).toPosition());
+            for (String second : FENS) {
+                byte[] b = PositionCodec.encode(new Fen(second).toPosition());
+                int expected = Integer.signum(compareUnsigned(a, b));
+                assertEquals(Integer.signum(PositionCodec.compare(a, b)), expected);
+                assertEquals(expected == 0, first.equals(second));
+            }
+        }
+    }
+
+    @Test
+    public void testEqualPositionsHaveEqualEncoding() throws InvalidFenException {
+        Position first = new Fen(Fen.INITIAL_POSITION).toPosition();
+        Position second = new FenParser().parse(Fen.INITIAL_POSITION);
+        assertTrue(Arrays.equals(PositionCodec.encode(first), PositionCodec.encode(second)));
+    }
+
+    private static int compareUnsigned(byte[] a, byte[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) {
+                return (a[i] & 0xFF) - (b[i] & 0xFF);
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,138 @@
+package cz.janhrcek.chess.gui;
+
+import cz.janhrcek.chess.FEN.Fen;
+import cz.janhrcek.chess.model.api.Move;
+import cz.janhrcek.chess.model.impl.GameImpl;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import javax.swing.SwingUtilities;
+import static cz.janhrcek.chess.model.api.enums.Piece.*;
+import static cz.janhrcek.chess.model.api.enums.Square.*;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author jhrcek
+ */
+public class ChessboardComponentTest {
+
+    private static final int SQUARE_SIZE = 30;
+    private static final int COMPONENT_SIZE = 8 * SQUARE_SIZE + 2 * 19;
+    private GameImpl game;
+
+    @BeforeMethod
+    public void createGame() throws Exception {
+        game = new GameImpl(Fen.INITIAL_POSITION);
+    }
+
+    @Test
+    public void testOnlyChangedSquaresAreRedrawn() throws Exception {
+        ChessboardComponent component = createComponent();
+        paint(component);
+        assertEquals(component.getRedrawnSquareCount(), 64);
+        paint(component);
+        assertEquals(component.getRedrawnSquareCount(), 64); //nothing has changed
+
+        ((MoveListener) game.getBrowser()).moveSelected(new Move(WHITE_PAWN, E2, E4));
+        paint(component);
+        assertEquals(component.getRedrawnSquareCount(), 66);
+        game.getBrowser().focusInitialPosition();
+        paint(component);
+        assertEquals(component.getRedrawnSquareCount(), 68);
+    }
+
+    @Test
+    public void testIncrementalRenderingMatchesFullRendering() throws Exception {
+        ChessboardComponent component = createComponent();
+        paint(component);
+        MoveListener moves = (MoveListener) game.getBrowser();
+        moves.moveSelected(new Move(WHITE_PAWN, E2, E4));
+        moves.moveSelected(new Move(BLACK_PAWN, D7, D5));
+        moves.moveSelected(new Move(WHITE_PAWN, E4, D5));
+        assertSameImages(paint(component), paint(createComponent()));
+    }
+
+    /**
+     * With asynchronous events the browser may be ahead of the events
+     * delivered. The board must show the position of the last event and end
+     * up in the focused position, even if the coalesced event has no changed
+     * squares.
+     */
+    @Test
+    public void testAsynchronousEvents() throws Exception {
+        final List<Runnable> tasks = new ArrayList<>();
+        game.setEventExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        });
+        ChessboardComponent component = createComponent();
+        paint(component);
+        ((MoveListener) game.getBrowser()).moveSelected(new Move(WHITE_PAWN, E2, E4));
+        runAll(tasks);
+        game.getBrowser().focusInitialPosition(); //the event is not delivered yet
+        paint(component);
+        game.getBrowser().focusPositionWithId(1); //coalesced into e4 -> e4
+        runAll(tasks);
+        assertSameImages(paint(component), paint(createComponent()));
+    }
+
+    @Test
+    public void testResizeRedrawsWholeBoard() throws Exception {
+        ChessboardComponent component = createComponent();
+        paint(component);
+        component.setSize(COMPONENT_SIZE + 80, COMPONENT_SIZE + 80);
+        flushEventQueue();
+        paint(component);
+        assertTrue(component.getRedrawnSquareCount() >= 128);
+    }
+
+    private ChessboardComponent createComponent() throws Exception {
+        ChessboardComponent component = new ChessboardComponent(game.getBrowser(), new SquareImageFactory(SQUARE_SIZE, 10, null));
+        component.setSize(COMPONENT_SIZE, COMPONENT_SIZE);
+        flushEventQueue();
+        return component;
+    }
+
+    /**
+     * Waits until the resize events posted by setSize are processed.
+     */
+    private static void flushEventQueue() throws Exception {
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+    }
+
+    private static void runAll(List<Runnable> tasks) {
+        while (!tasks.isEmpty()) {
+            tasks.remove(0).run();
+        }
+    }
+
+    private static void assertSameImages(BufferedImage actual, BufferedImage expected) {
+        for (int x = 0; x < actual.getWidth(); x++) {
+            for (int y = 0; y < actual.getHeight(); y++) {
+                if (actual.getRGB(x, y) != expected.getRGB(x, y)) {
+                    throw new AssertionError("Pixel " + x + ", " + y + " differs");
+                }
+            }
+        }
+    }
+
+    private static BufferedImage paint(ChessboardComponent component) {
+        BufferedImage image = new BufferedImage(component.getWidth(), component.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics g = image.createGraphics();
+        component.paint(g);
+        g.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,85 @@
+package cz.janhrcek.chess.gui;
+
+import cz.janhrcek.chess.FEN.Fen;
+import cz.janhrcek.chess.FEN.InvalidFenException;
+import cz.janhrcek.chess.model.api.Move;
+import cz.janhrcek.chess.model.impl.GameImpl;
+import javax.swing.text.Document;
+import javax.swing.text.StyleConstants;
+import static cz.janhrcek.chess.model.api.enums.Piece.*;
+import static cz.janhrcek.chess.model.api.enums.Square.*;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author jhrcek
+ */
+public class GameTreeDisplayerTest {
+
+    private GameImpl game;
+    private MoveListener moves;
+    private GameTreeDisplayer displayer;
+
+    @BeforeMethod
+    public void initializeGame() throws InvalidFenException {
+        game = new GameImpl(Fen.INITIAL_POSITION);
+        moves = (MoveListener) game.getBrowser();
+        displayer = new GameTreeDisplayer(game);
+    }
+
+    @Test
+    public void testMainLineAndVariations() {
+        moves.moveSelected(new Move(WHITE_PAWN, E2, E4));
+        moves.moveSelected(new Move(BLACK_PAWN, E7, E5));
+        moves.moveSelected(new Move(WHITE_KNIGHT, G1, F3));
+        game.getBrowser().focusPositionWithId(1);
+        moves.moveSelected(new Move(BLACK_PAWN, C7, C5));
+        moves.moveSelected(new Move(WHITE_KNIGHT, G1, F3));
+        game.getBrowser().focusInitialPosition();
+        moves.moveSelected(new Move(WHITE_PAWN, D2, D4));
+        game.getBrowser().focusPositionWithId(1);
+        moves.moveSelected(new Move(BLACK_PAWN, E7, E6));
+        moves.moveSelected(new Move(WHITE_PAWN, D2, D4));
+
+        String expected = " Start\n 1.e2-e4 e7-e5\n 2.Ng1-f3( c7-c5\n 2.Ng1-f3; e7-e6\n 2.d2-d4;)( 1.d2-d4;)";
+        assertEquals(displayer.getText(), expected);
+        assertEquals(new GameTreeDisplayer(game).getText(), expected); //the same as when built at once
+    }
+
+    @Test
+    public void testFocusChangeMovesHighlight() {
+        moves.moveSelected(new Move(WHITE_PAWN, E2, E4));
+        moves.moveSelected(new Move(BLACK_PAWN, E7, E5));
+        Document document = displayer.getDocument();
+        assertTrue(isBold(" e7-e5"));
+        assertFalse(isBold("e2-e4"));
+
+        game.getBrowser().focusPreviousPosition();
+        assertTrue(isBold("e2-e4"));
+        assertFalse(isBold(" e7-e5"));
+        assertSame(displayer.getDocument(), document, "focus change must not rebuild the document");
+    }
+
+    @Test
+    public void testSetGame() throws InvalidFenException {
+        moves.moveSelected(new Move(WHITE_PAWN, E2, E4));
+        GameImpl otherGame = new GameImpl(Fen.INITIAL_POSITION);
+        displayer.setGame(otherGame);
+        assertEquals(displayer.getText(), " Start\n");
+
+        moves.moveSelected(new Move(BLACK_PAWN, E7, E5)); //the old game is not shown any more
+        assertEquals(displayer.getText(), " Start\n");
+        ((MoveListener) otherGame.getBrowser()).moveSelected(new Move(WHITE_PAWN, D2, D4));
+        assertEquals(displayer.getText(), " Start\n 1.d2-d4");
+    }
+
+    private boolean isBold(String text) {
+        int offset = displayer.getText().indexOf(text) + text.length() - 1;
+        return StyleConstants.isBold(displayer.getStyledDocument().getCharacterElement(offset).getAttributes());
+    }
+}
@@ -0,0 +1,85 @@
+package cz.janhrcek.chess.gui;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.swing.ImageIcon;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author jhrcek
+ */
+public class SquareImageCacheTest {
+
+    private Path directory;
+    private SquareImageCache cache;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("squares");
+        cache = new SquareImageCache(directory.resolve("nested"));
+    }
+
+    @AfterMethod
+    public void deleteDirectory() throws IOException {
+        Path nested = directory.resolve("nested");
+        if (Files.isDirectory(nested)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(nested)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(nested);
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testStoreAndLoad() {
+        cache.store(8, "abc", new ImageIcon[]{icon(8, Color.RED), icon(8, Color.BLUE), icon(8, Color.GREEN)});
+        ImageIcon[] loaded = cache.load(8, "abc", 3);
+        assertEquals(loaded.length, 3);
+        assertEquals(loaded[1].getIconWidth(), 8);
+        assertEquals(loaded[1].getIconHeight(), 8);
+        assertEquals(((BufferedImage) loaded[1].getImage()).getRGB(4, 4), Color.BLUE.getRGB());
+        assertEquals(((BufferedImage) loaded[2].getImage()).getRGB(0, 7), Color.GREEN.getRGB());
+    }
+
+    @Test
+    public void testMisses() throws IOException {
+        assertNull(cache.load(8, "abc", 2)); //nothing stored yet
+        cache.store(8, "abc", new ImageIcon[]{icon(8, Color.RED), icon(8, Color.BLUE)});
+        assertNull(cache.load(8, "def", 2)); //the SVGs have changed
+        assertNull(cache.load(16, "abc", 2));
+        assertNull(cache.load(8, "abc", 3));
+
+        Files.write(directory.resolve("nested").resolve("squares-16-abc.png"), new byte[]{1, 2, 3});
+        assertNull(cache.load(16, "abc", 2)); //corrupted file
+    }
+
+    @Test
+    public void testIncompleteSetIsNotStored() {
+        cache.store(8, "abc", new ImageIcon[]{icon(8, Color.RED), null});
+        cache.store(8, "def", new ImageIcon[]{icon(8, Color.RED), icon(9, Color.RED)});
+        assertFalse(Files.exists(directory.resolve("nested")));
+    }
+
+    private static ImageIcon icon(int size, Color color) {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, size, size);
+        g.dispose();
+        return new ImageIcon(image);
+    }
+}
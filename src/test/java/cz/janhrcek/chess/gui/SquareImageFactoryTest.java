@@ -0,0 +1,149 @@
+package cz.janhrcek.chess.gui;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.ImageIcon;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import static cz.janhrcek.chess.model.api.enums.Piece.*;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author jhrcek
+ */
+public class SquareImageFactoryTest {
+
+    @Test
+    public void testInitialImages() {
+        SquareImageFactory factory = new SquareImageFactory(20, 10, null);
+        assertEquals(factory.getSquareImage(WHITE_KING, true).getIconWidth(), 20);
+        assertEquals(factory.getSquareImage(BLACK_PAWN, false).getIconWidth(), 20);
+        assertNotNull(factory.getSquareImage(null, false));
+        assertNotSame(factory.getSquareImage(null, true), factory.getSquareImage(null, false));
+    }
+
+    @Test
+    public void testScaledUntilRasterized() throws Exception {
+        final SquareImageFactory factory = new SquareImageFactory(20, 10, null);
+        final CountDownLatch ready = new CountDownLatch(1);
+        final ImageIcon initial = factory.getSquareImage(WHITE_QUEEN, true);
+        final ImageIcon placeholder = onEventDispatchThread(new Callable<ImageIcon>() {
+            @Override
+            public ImageIcon call() {
+                factory.addChangeListener(new ChangeListener() {
+                    @Override
+                    public void stateChanged(ChangeEvent e) {
+                        ready.countDown();
+                    }
+                });
+                factory.setImageSize(40);
+                return factory.getSquareImage(WHITE_QUEEN, true);
+            }
+        });
+        assertEquals(placeholder.getIconWidth(), 40);
+        assertTrue(ready.await(30, TimeUnit.SECONDS));
+
+        onEventDispatchThread(new Callable<Void>() {
+            @Override
+            public Void call() {
+                ImageIcon rasterized = factory.getSquareImage(WHITE_QUEEN, true);
+                assertEquals(rasterized.getIconWidth(), 40);
+                assertNotSame(rasterized, placeholder);
+                factory.setImageSize(20); //cached
+                assertSame(factory.getSquareImage(WHITE_QUEEN, true), initial);
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testResizesAreDebounced() throws Exception {
+        final SquareImageFactory factory = new SquareImageFactory(20, 200, null);
+        final CountDownLatch ready = new CountDownLatch(1);
+        final AtomicInteger changes = new AtomicInteger();
+        onEventDispatchThread(new Callable<Void>() {
+            @Override
+            public Void call() {
+                factory.addChangeListener(new ChangeListener() {
+                    @Override
+                    public void stateChanged(ChangeEvent e) {
+                        changes.incrementAndGet();
+                        ready.countDown();
+                    }
+                });
+                for (int size = 30; size <= 40; size++) { //dragging the edge of the window
+                    factory.setImageSize(size);
+                }
+                return null;
+            }
+        });
+        assertTrue(ready.await(30, TimeUnit.SECONDS));
+        Thread.sleep(300);
+        onEventDispatchThread(new Callable<Void>() {
+            @Override
+            public Void call() {
+                assertEquals(changes.get(), 1);
+                assertTrue(factory.isCached(40));
+                assertFalse(factory.isCached(35));
+                assertEquals(factory.getSquareImage(WHITE_ROOK, false).getIconWidth(), 40);
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testImagesAreReadFromDiskCache() throws Exception {
+        Path directory = Files.createTempDirectory("squares");
+        try {
+            SquareImageCache diskCache = new SquareImageCache(directory);
+            ImageIcon transcoded = new SquareImageFactory(24, 10, diskCache).getSquareImage(BLACK_KNIGHT, true);
+            assertEquals(listFiles(directory).size(), 1);
+            ImageIcon cached = new SquareImageFactory(24, 10, diskCache).getSquareImage(BLACK_KNIGHT, true);
+            assertEquals(cached.getIconWidth(), 24);
+            assertEquals(cached.getIconHeight(), transcoded.getIconHeight());
+        } finally {
+            for (Path file : listFiles(directory)) {
+                Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidSize() {
+        new SquareImageFactory(20, 10, null).setImageSize(0);
+    }
+
+    private static List<Path> listFiles(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    private static <T> T onEventDispatchThread(Callable<T> action) throws Exception {
+        FutureTask<T> task = new FutureTask<>(action);
+        SwingUtilities.invokeAndWait(task);
+        return task.get();
+    }
+}
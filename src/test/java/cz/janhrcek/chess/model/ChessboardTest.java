@@ -76,6 +76,32 @@ public class ChessboardTest {
         }
     }
 
+    @Test
+    public void testGetPieceByIndex() {
+        for (Square sq : Square.values()) {
+            assertEquals(initPosition.getPiece(sq.index()), initPosition.getPiece(sq), "Piece on " + sq);
+        }
+        Piece[] squares = new Piece[64];
+        squares[E4.index()] = WHITE_KING;
+        squares[E5.index()] = BLACK_KING;
+        Chessboard board = new ChessboardImpl(squares);
+        squares[E4.index()] = null; //the array is copied by the constructor
+        assertEquals(board.getPiece(E4), WHITE_KING);
+        assertEquals(board.getPiece(E5), BLACK_KING);
+        assertEquals(board.getPiece(E5.index()), BLACK_KING);
+    }
+
+    @Test
+    public void testPieceCodes() {
+        for (Piece p : Piece.values()) {
+            assertEquals(Piece.fromCode(p.code()), p);
+            assertEquals(Piece.codeOf(p.getFenLetter()), p.code());
+            assertEquals(Piece.isWhite(p.code()), p.isWhite());
+        }
+        assertEquals(Piece.codeOf('x'), Piece.NONE);
+        assertEquals(Piece.codeOf('\u20AC'), Piece.NONE);
+    }
+
     @Test
     public void testCreateNewPosition1() {
         Chessboard newPos = initPosition.createNewPositionUsing(new Move(WHITE_PAWN, E2, E4));
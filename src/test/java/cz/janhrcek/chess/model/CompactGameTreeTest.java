@@ -0,0 +1,89 @@
+package cz.janhrcek.chess.model;
+
+import cz.janhrcek.chess.model.api.Position;
+import static cz.janhrcek.chess.model.impl.CompactGameTree.*;
+import cz.janhrcek.chess.model.impl.CompactGameTree;
+import cz.janhrcek.chess.model.impl.PositionImpl;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author jhrcek
+ */
+public class CompactGameTreeTest {
+
+    @Test
+    public void testStructure() {
+        Position root = new PositionImpl();
+        CompactGameTree tree = new CompactGameTree(root, 2); //small capacity to test growing
+        assertEquals(tree.size(), 1);
+        assertSame(tree.getCheckpoint(ROOT), root);
+        assertEquals(tree.getParent(ROOT), NONE);
+        assertEquals(tree.getFirstChild(ROOT), NONE);
+
+        int a = tree.addChild(ROOT, 11, null);
+        int b = tree.addChild(ROOT, 12, root);
+        int a1 = tree.addChild(a, 21, null);
+        int c = tree.addChild(ROOT, 13, null);
+        assertEquals(tree.size(), 5);
+        assertEquals(new int[]{a, b, a1, c}, new int[]{1, 2, 3, 4});
+
+        assertEquals(tree.getFirstChild(ROOT), a);
+        assertEquals(tree.getNextSibling(a), b);
+        assertEquals(tree.getNextSibling(b), c);
+        assertEquals(tree.getNextSibling(c), NONE);
+        assertEquals(tree.getChildCount(ROOT), 3);
+        assertEquals(tree.getParent(a1), a);
+        assertEquals(tree.getPly(a1), 2);
+        assertEquals(tree.getMove(a1), 21);
+        assertNull(tree.getCheckpoint(a));
+        assertSame(tree.getCheckpoint(b), root);
+
+        assertEquals(tree.findChild(ROOT, 13), c);
+        assertEquals(tree.findChild(ROOT, 21), NONE);
+        assertEquals(tree.getLastInMainLine(ROOT), a1);
+        assertEquals(tree.getLastInMainLine(b), b);
+    }
+
+    @Test
+    public void testSnapshotHidesLaterNodes() {
+        CompactGameTree tree = new CompactGameTree(new PositionImpl(), 2);
+        int a = tree.addChild(ROOT, 11, null);
+        CompactGameTree snapshot = tree.snapshot();
+        int b = tree.addChild(ROOT, 12, null);
+        tree.addChild(a, 21, null);
+        assertEquals(snapshot.size(), 2);
+        assertEquals(snapshot.getFirstChild(ROOT), a);
+        assertEquals(snapshot.getNextSibling(a), NONE);
+        assertEquals(snapshot.getFirstChild(a), NONE);
+        assertEquals(snapshot.findChild(ROOT, 12), NONE);
+        assertEquals(snapshot.getLastInMainLine(ROOT), a);
+        assertEquals(tree.getNextSibling(a), b);
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testSnapshotIsReadOnly() {
+        new CompactGameTree(new PositionImpl()).snapshot().addChild(ROOT, 11, null);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownId() {
+        new CompactGameTree(new PositionImpl()).getMove(1);
+    }
+
+    @Test
+    public void testLargeTree() {
+        CompactGameTree tree = new CompactGameTree(new PositionImpl());
+        int node = ROOT;
+        for (int i = 1; i <= 1000000; i++) {
+            node = tree.addChild(i % 100 == 0 ? ROOT : node, i, null);
+        }
+        assertEquals(tree.size(), 1000001);
+        assertEquals(tree.getChildCount(ROOT), 10001);
+        assertEquals(tree.getPly(999999), 100);
+        assertEquals(tree.getMove(123456), 123456);
+    }
+}
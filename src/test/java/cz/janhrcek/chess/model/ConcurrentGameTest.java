@@ -0,0 +1,110 @@
+package cz.janhrcek.chess.model;
+
+import cz.janhrcek.chess.FEN.Fen;
+import cz.janhrcek.chess.model.api.GameBrowser;
+import cz.janhrcek.chess.model.api.Move;
+import cz.janhrcek.chess.model.api.Position;
+import static cz.janhrcek.chess.model.api.enums.Piece.*;
+import static cz.janhrcek.chess.model.api.enums.Square.*;
+import cz.janhrcek.chess.model.impl.CompactGameTree;
+import cz.janhrcek.chess.model.impl.ConcurrentGame;
+import cz.janhrcek.chess.model.impl.FIDERuleChecker;
+import cz.janhrcek.chess.model.impl.PositionFactoryImpl;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author jhrcek
+ */
+public class ConcurrentGameTest {
+
+    @Test
+    public void testIndependentBrowsers() throws Exception {
+        ConcurrentGame game = new ConcurrentGame(Fen.INITIAL_POSITION);
+        GameBrowser writer = game.getBrowser();
+        GameBrowser reader = game.newBrowser();
+        writer.makeMove(new Move(WHITE_PAWN, E2, E4));
+        writer.makeMove(new Move(BLACK_PAWN, E7, E5));
+        assertEquals(reader.getFocusedPosition().getChessboard().getPiece(E2), WHITE_PAWN);
+        reader.focusLastPosition();
+        assertEquals(reader.getFocusedPosition().getChessboard().getPiece(E5), BLACK_PAWN);
+        reader.focusPreviousPosition();
+        assertEquals(reader.getFocusedPosition().getChessboard().getPiece(E7), BLACK_PAWN);
+        assertEquals(writer.getFocusedPosition().getChessboard().getPiece(E7), null);
+
+        //the same move from the same node leads to the same node
+        reader.makeMove(new Move(BLACK_PAWN, E7, E5));
+        assertEquals(game.getSnapshot().size(), 3);
+        reader.focusPreviousPosition();
+        reader.makeMove(new Move(BLACK_PAWN, C7, C5));
+        assertEquals(game.getSnapshot().size(), 4);
+        assertEquals(game.getSnapshot().getNextSibling(game.getSnapshot().getFirstChild(1)), 3);
+    }
+
+    /**
+     * Readers browse the tree while single writer adds moves to it. Every
+     * snapshot must be consistent and every position must be reconstructible.
+     */
+    @Test
+    public void testConcurrentReaders() throws Exception {
+        final ConcurrentGame game = new ConcurrentGame(Fen.INITIAL_POSITION, new PositionFactoryImpl(new FIDERuleChecker()), 3);
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> readers = new ArrayList<>();
+            for (int r = 0; r < 3; r++) {
+                final long seed = r;
+                readers.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        Random random = new Random(seed);
+                        GameBrowser browser = game.newBrowser();
+                        int checked = 0;
+                        do {
+                            CompactGameTree snapshot = game.getSnapshot();
+                            for (int id = 1; id < snapshot.size(); id++) {
+                                int parent = snapshot.getParent(id);
+                                assertTrue(parent < id);
+                                assertEquals(snapshot.getPly(id), snapshot.getPly(parent) + 1);
+                                int child = snapshot.getFirstChild(id);
+                                assertTrue(child == CompactGameTree.NONE || child < snapshot.size());
+                            }
+                            browser.focusPositionWithId(random.nextInt(snapshot.size()));
+                            browser.focusLastPosition();
+                            browser.getFocusedPosition();
+                            checked++;
+                        } while (writing.get());
+                        return checked;
+                    }
+                }));
+            }
+            RandomGames.playRandomMoves(game.getBrowser(), 2000, 0, 42);
+            writing.set(false);
+            for (Future<Integer> reader : readers) {
+                assertTrue(reader.get() > 0);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        //all positions are equal to positions created by replaying the moves
+        CompactGameTree snapshot = game.getSnapshot();
+        GameBrowser browser = game.newBrowser();
+        PositionFactoryImpl factory = new PositionFactoryImpl(new FIDERuleChecker());
+        for (int id = 1; id < snapshot.size(); id += 37) {
+            browser.focusPositionWithId(snapshot.getParent(id));
+            Position expected = factory.create(browser.getFocusedPosition(), Move.unpack(snapshot.getMove(id)));
+            browser.focusPositionWithId(id);
+            assertEquals(Fen.positionToFen(browser.getFocusedPosition()), Fen.positionToFen(expected));
+        }
+    }
+}
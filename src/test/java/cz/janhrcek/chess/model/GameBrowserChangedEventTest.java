@@ -0,0 +1,52 @@
+package cz.janhrcek.chess.model;
+
+import cz.janhrcek.chess.FEN.FenParser;
+import cz.janhrcek.chess.model.api.GameBrowserChangedEvent;
+import cz.janhrcek.chess.model.api.Position;
+import cz.janhrcek.chess.model.api.enums.Square;
+import static cz.janhrcek.chess.model.api.enums.Square.*;
+import cz.janhrcek.chess.model.impl.PositionImpl;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author jhrcek
+ */
+public class GameBrowserChangedEventTest {
+
+    private final FenParser parser = new FenParser();
+
+    @Test
+    public void testChangedSquares() throws Exception {
+        Position initial = new PositionImpl();
+        Position afterE4 = parser.parse("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1");
+        GameBrowserChangedEvent event = new GameBrowserChangedEvent(initial, afterE4);
+        assertEquals(event.getChangedSquaresMask(), (1L << E2.index()) | (1L << E4.index()));
+        assertEquals(event.getChangedSquares(), Arrays.asList(E4, E2));
+
+        //the piece on the square changed, but the square stays occupied
+        Position capture = parser.parse("rnbqkbnr/ppp1pppp/8/3P4/8/8/PPPP1PPP/RNBQKBNR b KQkq - 0 2");
+        Position beforeCapture = parser.parse("rnbqkbnr/ppp1pppp/8/3p4/4P3/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 2");
+        assertEquals(new GameBrowserChangedEvent(beforeCapture, capture).getChangedSquares(), Arrays.asList(D5, E4));
+
+        assertTrue(new GameBrowserChangedEvent(initial, initial).getChangedSquares().isEmpty());
+    }
+
+    @Test
+    public void testAgreesWithSquareBySquareComparison() throws Exception {
+        Position first = parser.parse("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        Position second = parser.parse("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1");
+        List<Square> expected = new ArrayList<>();
+        for (Square square : Square.values()) {
+            if (first.getChessboard().getPiece(square) != second.getChessboard().getPiece(square)) {
+                expected.add(square);
+            }
+        }
+        assertEquals(new GameBrowserChangedEvent(first, second).getChangedSquares(), expected);
+    }
+}
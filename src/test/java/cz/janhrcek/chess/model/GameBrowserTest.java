@@ -7,8 +7,10 @@ import cz.janhrcek.chess.model.api.GameBrowser;
 import cz.janhrcek.chess.model.api.Position;
 import cz.janhrcek.chess.rules.IllegalMoveException;
 import cz.janhrcek.chess.model.api.Move;
+import cz.janhrcek.chess.model.impl.FIDERuleChecker;
 import cz.janhrcek.chess.model.impl.GameImpl;
 import cz.janhrcek.chess.model.impl.PieceNotPresentException;
+import cz.janhrcek.chess.model.impl.PositionFactoryImpl;
 import static cz.janhrcek.chess.model.api.enums.Piece.*;
 import static cz.janhrcek.chess.model.api.enums.Square.*;
 import static org.testng.Assert.assertEquals;
@@ -109,11 +111,64 @@ public class GameBrowserTest {
             Game game = new GameImpl("5B2/6P1/1p6/8/1N6/kP6/2K5/8 w - - 0 1");
             gameBrowser = game.getBrowser();
             
-            gameBrowser.makeMove(new Move(BLACK_KING, A3, B4));
+            gameBrowser.makeMove(new Move(WHITE_KNIGHT, B4, C6));
+            gameBrowser.makeMove(new Move(BLACK_KING, A3, A2));
+            assertEquals(gameBrowser.getFocusedPosition().getChessboard().getPiece(A2), BLACK_KING);
             gameBrowser.focusPositionWithId(0);
+            assertEquals(gameBrowser.getFocusedPosition().getChessboard().getPiece(B4), WHITE_KNIGHT);
         } catch (InvalidFenException | IllegalMoveException | PieceNotPresentException ex) {
             fail("Unexpected exception!", ex);
         } 
     }
+
+    @Test
+    public void testAppendFenLines() throws Exception {
+        gameBrowser.makeMove(MOVE_E4);
+        gameBrowser.makeMove(MOVE_NF6);
+        gameBrowser.focusPreviousPosition();
+        gameBrowser.makeMove(new Move(BLACK_PAWN, E7, E5));
+        StringBuilder sb = new StringBuilder();
+        ((GameImpl) game).appendFenLines(sb);
+        assertEquals(sb.toString(), Fen.INITIAL_POSITION + "\n"
+                + "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1\n"
+                + "rnbqkb1r/pppppppp/5n2/8/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - 1 2\n"
+                + "rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPP1PPP/RNBQKBNR w KQkq e6 0 2\n");
+    }
+
+    /**
+     * Game keeping only every 4th position must browse the same positions as
+     * game keeping all of them.
+     */
+    @Test
+    public void testCheckpoints() throws Exception {
+        GameImpl full = new GameImpl(Fen.INITIAL_POSITION);
+        GameImpl sparse = new GameImpl(Fen.INITIAL_POSITION, new PositionFactoryImpl(new FIDERuleChecker()), 4);
+        RandomGames.addRandomMoves(full, 30, 10, 1);
+        for (int id = 1; id < full.getTree().size(); id++) { //the same tree (with the same ids)
+            sparse.addMove(full.getTree().getParent(id), full.getTree().getMove(id));
+        }
+        full.getBrowser().focusLastPosition();
+        sparse.getBrowser().focusPositionWithId(full.getFocusedNode());
+        assertEquals(sparse.toString(), full.toString());
+        StringBuilder fullFens = new StringBuilder();
+        StringBuilder sparseFens = new StringBuilder();
+        full.appendFenLines(fullFens);
+        sparse.appendFenLines(sparseFens);
+        assertEquals(sparseFens.toString(), fullFens.toString());
+        for (int id = 30; id >= 0; id--) {
+            full.getBrowser().focusPositionWithId(id);
+            sparse.getBrowser().focusPositionWithId(id);
+            assertEquals(Fen.positionToFen(sparse.getBrowser().getFocusedPosition()),
+                    Fen.positionToFen(full.getBrowser().getFocusedPosition()), "Node " + id);
+        }
+        full.getBrowser().focusLastPosition();
+        sparse.getBrowser().focusLastPosition();
+        assertEquals(Fen.positionToFen(sparse.getBrowser().getFocusedPosition()),
+                Fen.positionToFen(full.getBrowser().getFocusedPosition()));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidCheckpointInterval() throws InvalidFenException {
+        new GameImpl(Fen.INITIAL_POSITION, new PositionFactoryImpl(new FIDERuleChecker()), 0);
+    }
 }
-    
\ No newline at end of file
@@ -0,0 +1,192 @@
+package cz.janhrcek.chess.model;
+
+import cz.janhrcek.chess.FEN.Fen;
+import cz.janhrcek.chess.model.api.GameBrowser;
+import cz.janhrcek.chess.model.api.GameBrowserChangedEvent;
+import cz.janhrcek.chess.model.api.GameListener;
+import cz.janhrcek.chess.model.api.Move;
+import cz.janhrcek.chess.model.api.Position;
+import static cz.janhrcek.chess.model.api.enums.Piece.*;
+import static cz.janhrcek.chess.model.api.enums.Square.*;
+import cz.janhrcek.chess.model.impl.GameEventDispatcher;
+import cz.janhrcek.chess.model.impl.GameImpl;
+import cz.janhrcek.chess.model.impl.PositionImpl;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author jhrcek
+ */
+public class GameEventDispatcherTest {
+
+    /**
+     * Executor, which runs the tasks only when asked to.
+     */
+    private static class ManualExecutor implements Executor {
+
+        private final Deque<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        public void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.poll().run();
+            }
+        }
+    }
+
+    private static class RecordingListener implements GameListener {
+
+        private final List<GameBrowserChangedEvent> events = new ArrayList<>();
+
+        @Override
+        public void gameChanged(GameBrowserChangedEvent event) {
+            events.add(event);
+        }
+    }
+
+    @Test
+    public void testSynchronous() {
+        GameEventDispatcher dispatcher = new GameEventDispatcher();
+        RecordingListener listener = new RecordingListener();
+        dispatcher.addListener(listener);
+        Position first = new PositionImpl();
+        Position second = new PositionImpl();
+        dispatcher.fire(first, second);
+        assertEquals(listener.events.size(), 1);
+        assertSame(listener.events.get(0).getPreviousPosition(), first);
+        assertSame(listener.events.get(0).getCurrentPosition(), second);
+
+        dispatcher.removeListener(listener);
+        assertEquals(dispatcher.getListenerCount(), 0);
+        dispatcher.fire(second, first);
+        assertEquals(listener.events.size(), 1);
+    }
+
+    @Test
+    public void testCoalescing() {
+        GameEventDispatcher dispatcher = new GameEventDispatcher();
+        ManualExecutor executor = new ManualExecutor();
+        dispatcher.setExecutor(executor);
+        RecordingListener listener = new RecordingListener();
+        dispatcher.addListener(listener);
+        Position[] positions = {new PositionImpl(), new PositionImpl(), new PositionImpl(), new PositionImpl()};
+        for (int i = 1; i < positions.length; i++) {
+            dispatcher.fire(positions[i - 1], positions[i]);
+        }
+        assertEquals(executor.tasks.size(), 1);
+        assertTrue(listener.events.isEmpty());
+        executor.runAll();
+        assertEquals(listener.events.size(), 1);
+        assertSame(listener.events.get(0).getPreviousPosition(), positions[0]);
+        assertSame(listener.events.get(0).getCurrentPosition(), positions[3]);
+
+        //next burst is delivered by new task
+        dispatcher.fire(positions[3], positions[0]);
+        executor.runAll();
+        assertEquals(listener.events.size(), 2);
+        assertSame(listener.events.get(1).getCurrentPosition(), positions[0]);
+    }
+
+    @Test
+    public void testRejectedTaskKeepsChangesOfOtherThreads() {
+        final GameEventDispatcher dispatcher = new GameEventDispatcher();
+        final Position[] positions = {new PositionImpl(), new PositionImpl(), new PositionImpl()};
+        final ManualExecutor accepting = new ManualExecutor();
+        dispatcher.setExecutor(new Executor() {
+            private boolean rejected;
+
+            @Override
+            public void execute(Runnable command) {
+                if (rejected) {
+                    accepting.execute(command);
+                    return;
+                }
+                rejected = true;
+                dispatcher.fire(positions[1], positions[2]); //another thread merges its change meanwhile
+                throw new RejectedExecutionException("full");
+            }
+        });
+        RecordingListener listener = new RecordingListener();
+        dispatcher.addListener(listener);
+        dispatcher.fire(positions[0], positions[1]);
+        accepting.runAll();
+        assertEquals(listener.events.size(), 1);
+        assertSame(listener.events.get(0).getCurrentPosition(), positions[2]);
+    }
+
+    @Test
+    public void testRejectedChangeIsDropped() {
+        GameEventDispatcher dispatcher = new GameEventDispatcher();
+        final ManualExecutor accepting = new ManualExecutor();
+        dispatcher.setExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException("shut down");
+            }
+        });
+        RecordingListener listener = new RecordingListener();
+        dispatcher.addListener(listener);
+        Position first = new PositionImpl();
+        Position second = new PositionImpl();
+        try {
+            dispatcher.fire(first, second);
+            throw new AssertionError("The rejection must be reported");
+        } catch (RejectedExecutionException expected) {
+        }
+        dispatcher.setExecutor(accepting);
+        dispatcher.fire(second, first);
+        accepting.runAll();
+        assertEquals(listener.events.size(), 1);
+        assertSame(listener.events.get(0).getPreviousPosition(), second);
+    }
+
+    @Test
+    public void testListenerRemovingItself() {
+        final GameEventDispatcher dispatcher = new GameEventDispatcher();
+        final RecordingListener other = new RecordingListener();
+        dispatcher.addListener(new GameListener() {
+            @Override
+            public void gameChanged(GameBrowserChangedEvent event) {
+                dispatcher.removeListener(this);
+            }
+        });
+        dispatcher.addListener(other);
+        dispatcher.fire(new PositionImpl(), new PositionImpl());
+        dispatcher.fire(new PositionImpl(), new PositionImpl());
+        assertEquals(other.events.size(), 2);
+        assertEquals(dispatcher.getListenerCount(), 1);
+    }
+
+    @Test
+    public void testGameWithExecutor() throws Exception {
+        GameImpl game = new GameImpl(Fen.INITIAL_POSITION);
+        ManualExecutor executor = new ManualExecutor();
+        game.setEventExecutor(executor);
+        RecordingListener listener = new RecordingListener();
+        GameBrowser browser = game.getBrowser();
+        browser.addGameListener(listener);
+        browser.makeMove(new Move(WHITE_PAWN, E2, E4));
+        browser.makeMove(new Move(BLACK_PAWN, E7, E5));
+        browser.focusInitialPosition();
+        browser.focusNextPosition();
+        browser.focusLastPosition();
+        executor.runAll();
+        assertEquals(listener.events.size(), 1);
+        GameBrowserChangedEvent event = listener.events.get(0);
+        assertEquals(Fen.positionToFen(event.getPreviousPosition()), Fen.positionToFen(browser.getFocusedPosition()));
+        assertSame(event.getCurrentPosition(), browser.getFocusedPosition());
+    }
+}
@@ -0,0 +1,166 @@
+package cz.janhrcek.chess.model;
+
+import cz.janhrcek.chess.FEN.Fen;
+import cz.janhrcek.chess.FEN.InvalidFenException;
+import cz.janhrcek.chess.model.api.Move;
+import cz.janhrcek.chess.model.impl.FIDERuleChecker;
+import cz.janhrcek.chess.model.impl.GameImpl;
+import cz.janhrcek.chess.model.impl.GameJournal;
+import cz.janhrcek.chess.model.impl.PositionFactoryImpl;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import static cz.janhrcek.chess.model.api.enums.Piece.*;
+import static cz.janhrcek.chess.model.api.enums.Square.*;
+import static cz.janhrcek.chess.model.RandomGames.addRandomMoves;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author jhrcek
+ */
+public class GameJournalTest {
+
+    private Path directory;
+    private Path file;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("journal");
+        file = directory.resolve("game.journal");
+    }
+
+    @AfterMethod
+    public void deleteDirectory() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(directory.resolve("game.journal.tmp"));
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testRestore() throws Exception {
+        String expected;
+        try (GameJournal journal = open()) {
+            addRandomMoves(journal.getGame(), 300, 10, 300);
+            expected = fenLines(journal.getGame());
+        }
+        try (GameJournal journal = open()) {
+            GameImpl restored = journal.getGame();
+            assertEquals(restored.getTree().size(), 301);
+            assertEquals(fenLines(restored), expected);
+            restored.getBrowser().makeMove(new Move(WHITE_PAWN, E2, E4)); //the journal continues
+        }
+        try (GameJournal journal = open()) {
+            assertEquals(journal.getGame().getTree().size(), 302);
+        }
+    }
+
+    @Test
+    public void testGroupCommit() throws Exception {
+        try (GameJournal journal = open()) {
+            long headerSize = Files.size(file);
+            journal.getGame().getBrowser().makeMove(new Move(WHITE_PAWN, E2, E4));
+            journal.getGame().getBrowser().makeMove(new Move(BLACK_PAWN, E7, E5));
+            assertEquals(Files.size(file), headerSize); //not committed yet
+            journal.commit();
+            assertEquals(Files.size(file), headerSize + 16);
+        }
+    }
+
+    @Test
+    public void testIncompleteEntryIsIgnored() throws Exception {
+        try (GameJournal journal = open()) {
+            journal.getGame().getBrowser().makeMove(new Move(WHITE_PAWN, E2, E4));
+        }
+        long size = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0})); //interrupted write
+        }
+        try (GameJournal journal = open()) {
+            assertEquals(journal.getGame().getTree().size(), 2);
+            assertEquals(Files.size(file), size);
+        }
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        String expected;
+        try (GameJournal journal = open()) {
+            addRandomMoves(journal.getGame(), 3000, 10, 3000); //compacted automatically on commit
+            journal.commit();
+            assertTrue(Files.size(file) < 3000 * 8, "Size " + Files.size(file));
+            addRandomMoves(journal.getGame(), 50, 10, 50);
+            journal.compact();
+            assertTrue(Files.size(file) < 3050 * 6, "Size " + Files.size(file));
+            expected = fenLines(journal.getGame());
+        }
+        try (GameJournal journal = open()) {
+            assertEquals(fenLines(journal.getGame()), expected);
+        }
+    }
+
+    @Test
+    public void testCloseDetachesJournal() throws Exception {
+        GameJournal journal = open();
+        journal.close();
+        assertNull(journal.getGame().getJournal());
+        journal.getGame().getBrowser().makeMove(new Move(WHITE_PAWN, E2, E4)); //not recorded any more
+        journal.close();
+        try (GameJournal reopened = open()) {
+            assertEquals(reopened.getGame().getTree().size(), 1);
+        }
+    }
+
+    @Test
+    public void testClosedJournalLeavesGameUnchanged() throws Exception {
+        GameJournal journal = open();
+        journal.close();
+        journal.getGame().setJournal(journal); //still attached by mistake
+        try {
+            journal.getGame().getBrowser().makeMove(new Move(WHITE_PAWN, E2, E4));
+            fail("The closed journal can't record the move");
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals(journal.getGame().getTree().size(), 1);
+        assertEquals(journal.getGame().getFocusedNode(), 0);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testInvalidFile() throws Exception {
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        open();
+    }
+
+    @Test
+    public void testInvalidFenLeavesNoFile() throws Exception {
+        try {
+            GameJournal.open(file, "not a FEN");
+            fail("Invalid FEN must be rejected");
+        } catch (InvalidFenException expected) {
+        }
+        assertFalse(Files.exists(file));
+        try (GameJournal journal = open()) { //the path is still usable
+            assertEquals(journal.getGame().getTree().size(), 1);
+        }
+    }
+
+    private GameJournal open() throws Exception {
+        return GameJournal.open(file, Fen.INITIAL_POSITION, new PositionFactoryImpl(new FIDERuleChecker()), 8, 0);
+    }
+
+    private static String fenLines(GameImpl game) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        game.appendFenLines(lines);
+        return lines.toString();
+    }
+}
@@ -0,0 +1,201 @@
+package cz.janhrcek.chess.model;
+
+import cz.janhrcek.chess.FEN.Fen;
+import cz.janhrcek.chess.model.api.Move;
+import cz.janhrcek.chess.model.api.Position;
+import cz.janhrcek.chess.model.impl.CompactGameTree;
+import cz.janhrcek.chess.model.impl.FIDERuleChecker;
+import cz.janhrcek.chess.model.impl.GameImpl;
+import cz.janhrcek.chess.model.impl.GameTreeVisitor;
+import cz.janhrcek.chess.model.impl.GameTreeWalker;
+import cz.janhrcek.chess.model.impl.PositionFactoryImpl;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import static cz.janhrcek.chess.model.api.enums.Piece.*;
+import static cz.janhrcek.chess.model.api.enums.Square.*;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author jhrcek
+ */
+public class GameTreeWalkerTest {
+
+    @Test
+    public void testPreOrderAndPostOrder() throws Exception {
+        GameImpl game = createGameWithVariations();
+        final List<Integer> entered = new ArrayList<>();
+        final List<Integer> left = new ArrayList<>();
+        new GameTreeWalker(game).walk(CompactGameTree.ROOT, new GameTreeVisitor() {
+            @Override
+            public boolean enterNode(int node, Position position) {
+                entered.add(node);
+                return true;
+            }
+
+            @Override
+            public void leaveNode(int node, Position position) {
+                left.add(node);
+            }
+        });
+        //the tree: 0 -> 1 (e4) -> 2 (e5) -> 3 (Nf3), 1 -> 4 (c5) -> 5 (Nf3), 0 -> 6 (d4)
+        assertEquals(entered, Arrays.asList(0, 1, 2, 3, 4, 5, 6));
+        assertEquals(left, Arrays.asList(3, 2, 5, 4, 1, 6, 0));
+    }
+
+    @Test
+    public void testSkippingSubtreeAndMainLine() throws Exception {
+        GameImpl game = createGameWithVariations();
+        final List<Integer> entered = new ArrayList<>();
+        final List<Integer> left = new ArrayList<>();
+        GameTreeVisitor skipE5 = new GameTreeVisitor() {
+            @Override
+            public boolean enterNode(int node, Position position) {
+                entered.add(node);
+                return node != 2;
+            }
+
+            @Override
+            public void leaveNode(int node, Position position) {
+                left.add(node);
+            }
+        };
+        new GameTreeWalker(game).walk(1, skipE5);
+        assertEquals(entered, Arrays.asList(1, 2, 4, 5));
+        assertEquals(left, Arrays.asList(2, 5, 4, 1));
+
+        entered.clear();
+        left.clear();
+        new GameTreeWalker(game).walkMainLine(CompactGameTree.ROOT, skipE5);
+        assertEquals(entered, Arrays.asList(0, 1, 2));
+        assertEquals(left, Arrays.asList(2, 1, 0));
+    }
+
+    @Test
+    public void testIterators() throws Exception {
+        GameImpl game = createRandomGame(4, 200);
+        StringBuilder expected = new StringBuilder();
+        game.appendFenLines(expected);
+        StringBuilder actual = new StringBuilder();
+        Iterator<GameTreeWalker.Entry> iterator = new GameTreeWalker(game).iterator(CompactGameTree.ROOT);
+        while (iterator.hasNext()) {
+            GameTreeWalker.Entry entry = iterator.next();
+            assertEquals(entry.getMove(), game.getTree().getMove(entry.getNode()));
+            Fen.appendFen(entry.getPosition(), actual);
+            actual.append('\n');
+        }
+        assertEquals(actual.toString(), expected.toString());
+
+        int node = CompactGameTree.ROOT;
+        iterator = new GameTreeWalker(game).mainLineIterator(CompactGameTree.ROOT);
+        while (node != CompactGameTree.NONE) {
+            GameTreeWalker.Entry entry = iterator.next();
+            assertEquals(entry.getNode(), node);
+            assertEquals(Fen.positionToFen(entry.getPosition()), Fen.positionToFen(game.getPosition(node)));
+            node = game.getTree().getFirstChild(node);
+        }
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testParallelWalk() throws Exception {
+        final GameImpl game = createRandomGame(1, 2000);
+        final ConcurrentMap<Integer, Position> entered = new ConcurrentHashMap<>();
+        final AtomicInteger errors = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            new GameTreeWalker(game).walkInParallel(pool, CompactGameTree.ROOT, new GameTreeVisitor() {
+                @Override
+                public boolean enterNode(int node, Position position) {
+                    int parent = game.getTree().getParent(node);
+                    if (entered.putIfAbsent(node, position) != null || (parent != CompactGameTree.NONE && !entered.containsKey(parent))) {
+                        errors.incrementAndGet();
+                    }
+                    return true;
+                }
+
+                @Override
+                public void leaveNode(int node, Position position) {
+                    for (int child = game.getTree().getFirstChild(node); child != CompactGameTree.NONE; child = game.getTree().getNextSibling(child)) {
+                        if (!entered.containsKey(child)) { //children must be visited before leaving the node
+                            errors.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(errors.get(), 0);
+        assertEquals(entered.size(), game.getTree().size());
+        for (int id : Arrays.asList(0, 1, 500, 1999)) {
+            assertEquals(entered.get(id), game.getPosition(id));
+        }
+    }
+
+    @Test
+    public void testDeepTree() throws Exception {
+        GameImpl game = new GameImpl(Fen.INITIAL_POSITION, new PositionFactoryImpl(new FIDERuleChecker()), 64);
+        List<Move> shuffle = Arrays.asList(new Move(WHITE_KNIGHT, G1, F3), new Move(BLACK_KNIGHT, G8, F6),
+                new Move(WHITE_KNIGHT, F3, G1), new Move(BLACK_KNIGHT, F6, G8));
+        for (int i = 0; i < 50000; i++) {
+            game.getBrowser().makeMove(shuffle.get(i % 4));
+        }
+        final AtomicInteger count = new AtomicInteger();
+        new GameTreeWalker(game).walk(CompactGameTree.ROOT, new GameTreeVisitor() {
+            @Override
+            public boolean enterNode(int node, Position position) {
+                count.incrementAndGet();
+                return true;
+            }
+
+            @Override
+            public void leaveNode(int node, Position position) {
+            }
+        });
+        assertEquals(count.get(), 50001);
+        assertTrue(game.toString().endsWith("Nf6-g8</a><br/></body></html>"));
+    }
+
+    @Test(expectedExceptions = NoSuchElementException.class)
+    public void testIteratorOfLeaf() throws Exception {
+        GameImpl game = createGameWithVariations();
+        Iterator<GameTreeWalker.Entry> iterator = new GameTreeWalker(game).iterator(6);
+        assertEquals(iterator.next().getNode(), 6);
+        assertFalse(iterator.hasNext());
+        iterator.next();
+    }
+
+    private static GameImpl createGameWithVariations() throws Exception {
+        GameImpl game = new GameImpl(Fen.INITIAL_POSITION);
+        game.getBrowser().makeMove(new Move(WHITE_PAWN, E2, E4));
+        game.getBrowser().makeMove(new Move(BLACK_PAWN, E7, E5));
+        game.getBrowser().makeMove(new Move(WHITE_KNIGHT, G1, F3));
+        game.getBrowser().focusPositionWithId(1);
+        game.getBrowser().makeMove(new Move(BLACK_PAWN, C7, C5));
+        game.getBrowser().makeMove(new Move(WHITE_KNIGHT, G1, F3));
+        game.getBrowser().focusInitialPosition();
+        game.getBrowser().makeMove(new Move(WHITE_PAWN, D2, D4));
+        return game;
+    }
+
+    /**
+     * @return game with random moves, which randomly returns few moves back to
+     * start new variations
+     */
+    private static GameImpl createRandomGame(int checkpointInterval, int size) throws Exception {
+        GameImpl game = new GameImpl(Fen.INITIAL_POSITION, new PositionFactoryImpl(new FIDERuleChecker()), checkpointInterval);
+        RandomGames.addRandomMoves(game, size - 1, 10, 7);
+        return game;
+    }
+}
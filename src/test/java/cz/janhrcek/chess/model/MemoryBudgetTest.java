@@ -0,0 +1,165 @@
+package cz.janhrcek.chess.model;
+
+import cz.janhrcek.chess.FEN.Fen;
+import cz.janhrcek.chess.model.api.Move;
+import cz.janhrcek.chess.model.impl.CompactGameTree;
+import cz.janhrcek.chess.model.impl.FIDERuleChecker;
+import cz.janhrcek.chess.model.impl.GameImpl;
+import cz.janhrcek.chess.model.impl.PositionFactoryImpl;
+import static cz.janhrcek.chess.model.api.enums.Piece.*;
+import static cz.janhrcek.chess.model.api.enums.Square.*;
+import static cz.janhrcek.chess.model.RandomGames.addRandomMoves;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author jhrcek
+ */
+public class MemoryBudgetTest {
+
+    private static final long BUDGET = 400_000;
+
+    @Test
+    public void testUsageStaysWithinBudget() throws Exception {
+        GameImpl game = createGame();
+        game.setMemoryBudget(BUDGET);
+        addRandomMoves(game, 2000, 5, 2000);
+        assertTrue(game.getEstimatedMemoryUsage() <= BUDGET, "Usage " + game.getEstimatedMemoryUsage());
+
+        int collapsedCount = 0;
+        for (int id = 0; id < game.getTree().size(); id++) {
+            if (game.isCollapsed(id)) {
+                collapsedCount++;
+            }
+        }
+        assertTrue(collapsedCount > 0);
+        for (int node = CompactGameTree.ROOT; node != CompactGameTree.NONE; node = game.getTree().getFirstChild(node)) {
+            assertNotNull(game.getTree().getCheckpoint(node)); //the main line is never collapsed
+        }
+        for (int node = game.getFocusedNode(); node != CompactGameTree.NONE; node = game.getTree().getParent(node)) {
+            assertNotNull(game.getTree().getCheckpoint(node)); //nor the focused line
+        }
+    }
+
+    @Test
+    public void testCollapsedPositionsAreRecomputed() throws Exception {
+        GameImpl unlimited = createGame();
+        addRandomMoves(unlimited, 2000, 5, 2000);
+        GameImpl budgeted = createGame();
+        budgeted.setMemoryBudget(BUDGET);
+        addRandomMoves(budgeted, 2000, 5, 2000);
+
+        StringBuilder expected = new StringBuilder();
+        unlimited.appendFenLines(expected);
+        StringBuilder actual = new StringBuilder();
+        budgeted.appendFenLines(actual);
+        assertEquals(actual.toString(), expected.toString());
+        for (int id = 0; id < budgeted.getTree().size(); id += 7) {
+            assertEquals(Fen.positionToFen(budgeted.getPosition(id)), Fen.positionToFen(unlimited.getPosition(id)));
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyVisitedVariationIsCollapsedFirst() throws Exception {
+        GameImpl game = createGame();
+        game.getBrowser().makeMove(new Move(WHITE_PAWN, E2, E4));
+        game.getBrowser().focusInitialPosition();
+        game.getBrowser().makeMove(new Move(WHITE_PAWN, D2, D4)); //node 2
+        game.getBrowser().focusInitialPosition();
+        game.getBrowser().makeMove(new Move(WHITE_PAWN, C2, C4)); //node 3
+        game.getBrowser().makeMove(new Move(BLACK_PAWN, E7, E5));
+        game.getBrowser().focusInitialPosition();
+        game.getBrowser().focusPositionWithId(2); //d4 is now more recent than c4
+        game.getBrowser().focusInitialPosition();
+
+        game.setMemoryBudget(game.getEstimatedMemoryUsage() - 300); //collapsing c4 e5 is enough
+        assertEquals(game.getTree().getCheckpointCount(), 3);
+        assertTrue(game.isCollapsed(3));
+        assertFalse(game.isCollapsed(2));
+        assertFalse(game.isCollapsed(1));
+
+        game.getBrowser().focusPositionWithId(3); //restored when visited again
+        assertFalse(game.isCollapsed(3));
+        assertNotNull(game.getTree().getCheckpoint(3));
+    }
+
+    @Test
+    public void testBrowsingCollapsedVariationsStaysWithinBudget() throws Exception {
+        GameImpl game = createGame();
+        game.setMemoryBudget(BUDGET);
+        addRandomMoves(game, 2000, 5, 2000);
+        int browsed = 0;
+        for (int id = game.getTree().size() - 1; id > 0 && browsed < 20; id--) {
+            if (game.isCollapsed(id)) {
+                game.getBrowser().focusPositionWithId(game.getTree().getLastInMainLine(id));
+                assertFalse(game.isCollapsed(id));
+                assertTrue(game.getEstimatedMemoryUsage() <= BUDGET, "Usage " + game.getEstimatedMemoryUsage());
+                browsed++;
+            }
+        }
+        assertEquals(browsed, 20);
+
+        game.getBrowser().focusInitialPosition();
+        for (int id = 1; id < game.getTree().size(); id++) { //makeMove onto existing child restores too
+            if (game.isCollapsed(id)) {
+                game.getBrowser().focusPositionWithId(game.getTree().getParent(id));
+                game.getBrowser().makeMove(Move.unpack(game.getTree().getMove(id)));
+                assertFalse(game.isCollapsed(id));
+                assertTrue(game.getEstimatedMemoryUsage() <= BUDGET, "Usage " + game.getEstimatedMemoryUsage());
+            }
+        }
+    }
+
+    @Test
+    public void testBrowsingDoesNotSearchTreeWhenNothingCanBeCollapsed() throws Exception {
+        GameImpl game = createGame();
+        addRandomMoves(game, 2000, 5, 2000);
+        game.getBrowser().focusInitialPosition();
+        long budget = game.getTree().size() * 10L; //less than the nodes alone
+        game.setMemoryBudget(budget);
+        assertTrue(game.getEstimatedMemoryUsage() > budget);
+        int passes = game.getEvictionPassCount();
+
+        for (int i = 0; i < 10; i++) {
+            game.getBrowser().focusLastPosition();
+            while (game.getFocusedNode() != CompactGameTree.ROOT) {
+                game.getBrowser().focusPreviousPosition();
+            }
+        }
+        assertEquals(game.getEvictionPassCount(), passes);
+
+        for (int id = game.getTree().size() - 1; id > 0; id--) { //restored variation can be collapsed again
+            if (game.isCollapsed(id)) {
+                game.getBrowser().focusPositionWithId(id);
+                game.getBrowser().focusInitialPosition();
+                break;
+            }
+        }
+        assertTrue(game.getEvictionPassCount() > passes);
+        passes = game.getEvictionPassCount();
+        game.getBrowser().focusLastPosition();
+        game.getBrowser().focusInitialPosition();
+        assertEquals(game.getEvictionPassCount(), passes);
+    }
+
+    @Test
+    public void testUnlimitedByDefault() throws Exception {
+        GameImpl game = createGame();
+        addRandomMoves(game, 500, 5, 500);
+        assertEquals(game.getMemoryBudget(), Long.MAX_VALUE);
+        assertEquals(game.getTree().getCheckpointCount(), game.getTree().size());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeBudget() throws Exception {
+        createGame().setMemoryBudget(-1);
+    }
+
+    private static GameImpl createGame() throws Exception {
+        return new GameImpl(Fen.INITIAL_POSITION, new PositionFactoryImpl(new FIDERuleChecker()), 1);
+    }
+}
@@ -1,6 +1,7 @@
 package cz.janhrcek.chess.model;
 
 import cz.janhrcek.chess.model.api.Move;
+import cz.janhrcek.chess.model.api.Promotion;
 import cz.janhrcek.chess.model.api.enums.Piece;
 import static cz.janhrcek.chess.model.api.enums.Piece.*;
 import cz.janhrcek.chess.model.api.enums.Square;
@@ -32,6 +33,22 @@ public class MoveTest {
         assertEquals(new Move(BLACK_KING, D1, C8).toString(), "Move[BLACK_KING from D1 to C8]");
     }
 
+    @Test
+    public void testPackAndUnpack() {
+        Move[] moves = new Move[]{
+            new Move(WHITE_PAWN, A2, A4),
+            new Move(BLACK_KING, H8, G8),
+            new Move(WHITE_KNIGHT, H1, A8),
+            new Promotion(WHITE_PAWN, B7, A8, WHITE_KNIGHT),
+            new Promotion(BLACK_PAWN, H2, H1, BLACK_QUEEN),};
+        for (Move m : moves) {
+            Move unpacked = Move.unpack(m.pack());
+            assertEquals(unpacked, m);
+            assertEquals(unpacked.pack(), m.pack());
+            assertEquals(unpacked.toString(), m.toString());
+        }
+    }
+
     @Test(dataProvider = "constructor-parameters", expectedExceptions = NullPointerException.class)
     public void testConstructorWithNull(Piece piece, Square from, Square to) {
         Move m = new Move(piece, from, to);
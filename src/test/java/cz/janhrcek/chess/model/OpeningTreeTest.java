@@ -0,0 +1,149 @@
+package cz.janhrcek.chess.model;
+
+import cz.janhrcek.chess.FEN.Fen;
+import cz.janhrcek.chess.model.api.Move;
+import cz.janhrcek.chess.model.api.Position;
+import cz.janhrcek.chess.model.api.PositionFactory;
+import cz.janhrcek.chess.model.impl.FIDERuleChecker;
+import cz.janhrcek.chess.model.impl.GameImpl;
+import cz.janhrcek.chess.model.impl.OpeningTree;
+import cz.janhrcek.chess.model.impl.OpeningTree.Result;
+import cz.janhrcek.chess.model.impl.PositionFactoryImpl;
+import static cz.janhrcek.chess.model.api.enums.Piece.*;
+import static cz.janhrcek.chess.model.api.enums.Square.*;
+import static cz.janhrcek.chess.model.impl.OpeningTree.NONE;
+import static cz.janhrcek.chess.model.impl.OpeningTree.ROOT;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author jhrcek
+ */
+public class OpeningTreeTest {
+
+    private static final int MOVE_E4 = new Move(WHITE_PAWN, E2, E4).pack();
+    private static final int MOVE_D4 = new Move(WHITE_PAWN, D2, D4).pack();
+    private static final int MOVE_E6 = new Move(BLACK_PAWN, E7, E6).pack();
+    private static final int MOVE_C5 = new Move(BLACK_PAWN, C7, C5).pack();
+    private static final int MOVE_NF3 = new Move(WHITE_KNIGHT, G1, F3).pack();
+    private static final int MOVE_NF6 = new Move(BLACK_KNIGHT, G8, F6).pack();
+    private static final int MOVE_NG1 = new Move(WHITE_KNIGHT, F3, G1).pack();
+    private static final int MOVE_NG8 = new Move(BLACK_KNIGHT, F6, G8).pack();
+    private PositionFactory factory;
+    private Position initialPosition;
+
+    @BeforeMethod
+    public void createFactory() throws Exception {
+        factory = new PositionFactoryImpl(new FIDERuleChecker());
+        initialPosition = factory.create(Fen.INITIAL_POSITION);
+    }
+
+    @Test
+    public void testMergingSharesPrefixes() {
+        OpeningTree tree = new OpeningTree(initialPosition, factory);
+        int french = tree.addGame(new int[]{MOVE_E4, MOVE_E6, MOVE_D4}, 3, Result.WHITE_WINS);
+        int sicilian = tree.addGame(new int[]{MOVE_E4, MOVE_C5}, 2, Result.BLACK_WINS);
+        int frenchAgain = tree.addGame(new int[]{MOVE_E4, MOVE_E6, MOVE_D4}, 3, Result.DRAW);
+        tree.addGame(new int[]{MOVE_D4, MOVE_E6, MOVE_E4}, 3, Result.UNKNOWN);
+
+        assertEquals(frenchAgain, french);
+        assertEquals(tree.getGameCount(), 4);
+        assertEquals(tree.size(), 8); //root, e4, e6, d4, c5 + d4, e6, e4 of the last game
+        assertEquals(tree.getEdgeCount(), 7);
+        assertEquals(tree.getTranspositionCount(), 0);
+
+        int e4 = tree.findChild(ROOT, MOVE_E4);
+        assertEquals(tree.getGameCount(ROOT), 4);
+        assertEquals(tree.getGameCount(e4), 3);
+        assertEquals(tree.getWhiteWins(e4), 1);
+        assertEquals(tree.getDraws(e4), 1);
+        assertEquals(tree.getBlackWins(e4), 1);
+        assertEquals(tree.getGameCount(french), 2);
+        assertEquals(tree.getBlackWins(sicilian), 1);
+        assertEquals(tree.findChild(e4, MOVE_D4), NONE);
+
+        int first = tree.getFirstEdge(e4);
+        assertEquals(tree.getEdgeMove(first), MOVE_E6);
+        assertEquals(tree.getEdgeMove(tree.getNextEdge(first)), MOVE_C5);
+        assertEquals(tree.getEdgeTarget(tree.getNextEdge(first)), sicilian);
+        assertEquals(tree.getNextEdge(tree.getNextEdge(first)), NONE);
+    }
+
+    @Test
+    public void testJoiningTranspositions() {
+        OpeningTree tree = new OpeningTree(initialPosition, factory, true);
+        int french = tree.addGame(new int[]{MOVE_E4, MOVE_E6, MOVE_D4}, 3, Result.WHITE_WINS);
+        int transposed = tree.addGame(new int[]{MOVE_D4, MOVE_E6, MOVE_E4}, 3, Result.DRAW);
+        assertEquals(transposed, french); //the en passant targets differ, but no pawn can capture there
+        assertEquals(tree.getTranspositionCount(), 1);
+        assertEquals(tree.size(), 6);
+        assertEquals(tree.getEdgeCount(), 6);
+        assertEquals(tree.getGameCount(french), 2);
+        assertEquals(tree.getDraws(french), 1);
+
+        int knights = tree.addGame(new int[]{MOVE_NF3, MOVE_NF6, MOVE_NG1, MOVE_NG8, MOVE_E4}, 5, Result.BLACK_WINS);
+        assertEquals(knights, tree.findChild(ROOT, MOVE_E4)); //back in the initial position after 4 moves
+        assertEquals(tree.getGameCount(ROOT), 3); //the repeated position is counted once per game
+        assertEquals(tree.getBlackWins(ROOT), 1);
+    }
+
+    @Test
+    public void testIllegalMoveLeavesTreeUnchanged() {
+        OpeningTree tree = new OpeningTree(initialPosition, factory, true);
+        tree.addGame(new int[]{MOVE_E4, MOVE_E6}, 2, Result.DRAW);
+        try {
+            tree.addGame(new int[]{MOVE_E4, MOVE_E6, MOVE_E6}, 3, Result.DRAW);
+            fail("Black can't play twice in a row");
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(tree.size(), 3);
+        assertEquals(tree.getGameCount(), 1);
+        assertEquals(tree.getGameCount(ROOT), 1);
+    }
+
+    @Test
+    public void testMemoryBoundedByUniqueNodes() {
+        OpeningTree tree = new OpeningTree(initialPosition, factory, true);
+        int[][] games = {{MOVE_E4, MOVE_E6, MOVE_D4}, {MOVE_D4, MOVE_E6, MOVE_E4}, {MOVE_E4, MOVE_C5, MOVE_NF3}, {MOVE_NF3, MOVE_NF6}};
+        for (int i = 0; i < 10000; i++) {
+            int[] game = games[i % games.length];
+            tree.addGame(game, game.length, Result.DRAW);
+        }
+        assertEquals(tree.getGameCount(), 10000);
+        assertEquals(tree.getGameCount(ROOT), 10000);
+        assertEquals(tree.size(), 10);
+        assertEquals(tree.getEdgeCount(), 10);
+    }
+
+    @Test
+    public void testAddGameImpl() throws Exception {
+        GameImpl game = new GameImpl(Fen.INITIAL_POSITION);
+        game.getBrowser().makeMove(Move.unpack(MOVE_E4));
+        game.getBrowser().makeMove(Move.unpack(MOVE_C5));
+        game.getBrowser().focusPreviousPosition();
+        game.getBrowser().makeMove(Move.unpack(MOVE_E6)); //variation is not merged
+        OpeningTree tree = new OpeningTree(initialPosition, factory);
+        int node = tree.addGame(game, Result.fromPgn("0-1"));
+        assertEquals(node, tree.findChild(tree.findChild(ROOT, MOVE_E4), MOVE_C5));
+        assertEquals(tree.size(), 3);
+        assertEquals(tree.getBlackWins(node), 1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testAddGameFromOtherPosition() throws Exception {
+        GameImpl game = new GameImpl("4k3/8/8/8/8/8/8/4K3 w - - 0 1");
+        new OpeningTree(initialPosition, factory).addGame(game, Result.DRAW);
+    }
+
+    @Test
+    public void testResultFromPgn() {
+        assertEquals(Result.fromPgn("1-0"), Result.WHITE_WINS);
+        assertEquals(Result.fromPgn("1/2-1/2"), Result.DRAW);
+        assertEquals(Result.fromPgn("0-1"), Result.BLACK_WINS);
+        assertEquals(Result.fromPgn("*"), Result.UNKNOWN);
+        assertEquals(Result.fromPgn(null), Result.UNKNOWN);
+    }
+}
@@ -12,12 +12,16 @@ import cz.janhrcek.chess.model.impl.ChessboardImpl;
 import cz.janhrcek.chess.model.impl.FIDERuleChecker;
 import cz.janhrcek.chess.model.impl.PieceNotPresentException;
 import cz.janhrcek.chess.model.impl.PositionFactoryImpl;
+import cz.janhrcek.chess.model.impl.PositionInterner;
+import cz.janhrcek.chess.model.impl.SuccessorCache;
 import static cz.janhrcek.chess.model.api.enums.Piece.*;
 import static cz.janhrcek.chess.model.api.enums.Square.*;
 import java.util.EnumSet;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 import org.testng.annotations.BeforeMethod;
@@ -93,4 +97,53 @@ public class PositionFactoryTest {
             fail("Unexpected exception was thrown!", ex);
         }
     }
+
+    @Test
+    public void testInterningPositions() throws Exception {
+        PositionInterner interner = new PositionInterner(100);
+        PositionFactory first = new PositionFactoryImpl(new FIDERuleChecker(), interner);
+        PositionFactory second = new PositionFactoryImpl(new FIDERuleChecker(), interner);
+        Move nf3 = new Move(WHITE_KNIGHT, G1, F3);
+        Move nf6 = new Move(BLACK_KNIGHT, G8, F6);
+        Move nc3 = new Move(WHITE_KNIGHT, B1, C3);
+
+        Position a = first.create(first.create(Fen.INITIAL_POSITION), nf3);
+        Position b = second.create(second.create(Fen.INITIAL_POSITION), nf3);
+        assertSame(a, b, "Equal positions should be represented by the same instance");
+        assertNotSame(positionFactory.create(positionFactory.create(Fen.INITIAL_POSITION), nf3), a,
+                "Factory without interner should not intern positions");
+
+        //Transposition 1. Nf3 Nf6 2. Nc3 vs 1. Nc3 Nf6 2. Nf3 - same board, same counters
+        Position c = first.create(first.create(a, nf6), nc3);
+        Position init = first.create(Fen.INITIAL_POSITION);
+        Position d = first.create(first.create(first.create(init, nc3), nf6), nf3);
+        assertSame(c, d);
+    }
+
+    @Test
+    public void testInternerIsBounded() throws Exception {
+        PositionInterner interner = new PositionInterner(2);
+        PositionFactory factory = new PositionFactoryImpl(new FIDERuleChecker(), interner);
+        Position init = factory.create(Fen.INITIAL_POSITION);
+        factory.create(init, new Move(WHITE_PAWN, E2, E4));
+        factory.create(init, new Move(WHITE_PAWN, D2, D4));
+        assertEquals(interner.size(), 2);
+    }
+
+    @Test
+    public void testSuccessorCache() throws Exception {
+        PositionFactoryImpl factory = new PositionFactoryImpl(new FIDERuleChecker());
+        SuccessorCache cache = new SuccessorCache(100);
+        factory.setSuccessorCache(cache);
+        Move e4 = new Move(WHITE_PAWN, E2, E4);
+
+        Position init = factory.create(Fen.INITIAL_POSITION);
+        Position first = factory.create(init, e4);
+        Position second = factory.create(factory.create(Fen.INITIAL_POSITION), e4);
+        assertSame(second, first, "The second lookup should be served from the cache");
+        assertEquals(cache.getHits(), 1);
+        assertEquals(cache.getMisses(), 1);
+        assertEquals(cache.getHitRate(), 0.5, 1e-9);
+        assertEquals(Fen.positionToFen(second), "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1");
+    }
 }
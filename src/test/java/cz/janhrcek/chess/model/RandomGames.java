@@ -0,0 +1,95 @@
+package cz.janhrcek.chess.model;
+
+import cz.janhrcek.chess.model.api.GameBrowser;
+import cz.janhrcek.chess.model.api.Move;
+import cz.janhrcek.chess.model.api.Position;
+import cz.janhrcek.chess.model.impl.GameImpl;
+import cz.janhrcek.chess.model.impl.PieceNotPresentException;
+import cz.janhrcek.chess.rules.IllegalMoveException;
+import cz.janhrcek.chess.rules.MoveBuffer;
+import cz.janhrcek.chess.rules.MoveGenerator;
+import java.util.Random;
+
+/**
+ * Test fixture playing random legal moves into games. Before some moves the
+ * browser goes few moves back, so the games get variations. When the focused
+ * position has no legal moves (or the game drags on without captures and
+ * pawn moves), the play continues from the initial position.
+ *
+ * @author jhrcek
+ */
+final class RandomGames {
+
+    private RandomGames() {
+    }
+
+    /**
+     * Plays random moves until the tree of the game has given number of new
+     * nodes.
+     *
+     * @param game the game to add the moves to
+     * @param count the number of nodes to add
+     * @param variationOdds on average one in variationOdds moves starts new
+     * variation (0 for no variations)
+     * @param seed the seed of the random moves
+     */
+    static void addRandomMoves(GameImpl game, int count, int variationOdds, long seed) throws PieceNotPresentException, IllegalMoveException {
+        Player player = new Player(variationOdds, seed);
+        int target = game.getTree().size() + count;
+        while (game.getTree().size() < target) {
+            player.play(game.getBrowser());
+        }
+    }
+
+    /**
+     * Plays given number of random moves (some of them may revisit moves
+     * already in the game).
+     *
+     * @param browser the browser of the game to play the moves in
+     * @param count the number of moves to play
+     * @param variationOdds on average one in variationOdds moves starts new
+     * variation (0 for no variations)
+     * @param seed the seed of the random moves
+     */
+    static void playRandomMoves(GameBrowser browser, int count, int variationOdds, long seed) throws PieceNotPresentException, IllegalMoveException {
+        Player player = new Player(variationOdds, seed);
+        for (int i = 0; i < count; i++) {
+            player.play(browser);
+        }
+    }
+
+//--------------------------- PRIVATE IMPLEMENTATION ---------------------------
+    /**
+     * The halfmove clock, at which the play restarts from the initial
+     * position.
+     */
+    private static final int MAX_HALFMOVE_CLOCK = 40;
+
+    private static final class Player {
+
+        private final MoveGenerator generator = new MoveGenerator();
+        private final MoveBuffer moves = new MoveBuffer();
+        private final int variationOdds;
+        private final Random random;
+
+        public Player(int variationOdds, long seed) {
+            this.variationOdds = variationOdds;
+            this.random = new Random(seed);
+        }
+
+        public void play(GameBrowser browser) throws PieceNotPresentException, IllegalMoveException {
+            if (variationOdds > 0 && random.nextInt(variationOdds) == 0) {
+                for (int back = random.nextInt(8); back > 0; back--) {
+                    browser.focusPreviousPosition();
+                }
+            }
+            moves.clear();
+            Position position = browser.getFocusedPosition();
+            if (generator.generateAll(position, moves) == 0 || position.getHalfmoveClock() > MAX_HALFMOVE_CLOCK) {
+                browser.focusInitialPosition();
+                return;
+            }
+            browser.makeMove(Move.unpack(moves.get(random.nextInt(moves.size()))));
+        }
+    }
+}
@@ -2,6 +2,7 @@ package cz.janhrcek.chess.model;
 
 import cz.janhrcek.chess.model.api.enums.Square;
 import cz.janhrcek.chess.rules.BitboardManager;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 import org.testng.annotations.Test;
@@ -31,4 +32,20 @@ public class SquareTest {
         }
 
     }
+
+    @Test
+    public void testIndex() {
+        assertEquals(Square.H1.index(), 0);
+        assertEquals(Square.A1.index(), 7);
+        assertEquals(Square.H8.index(), 56);
+        assertEquals(Square.A8.index(), 63);
+        for (Square s : Square.values()) {
+            assertEquals(Square.fromIndex(s.index()), s);
+            assertEquals(Square.index(s.getFile(), s.getRank()), s.index());
+            assertEquals(Square.fileOf(s.index()), s.getFile());
+            assertEquals(Square.rankOf(s.index()), s.getRank());
+            assertEquals(Square.isLight(s.index()), s.isLight(), "Colour of " + s);
+            assertEquals(BitboardManager.getSquareBB(s.index()), 1L << s.index());
+        }
+    }
 }
@@ -0,0 +1,80 @@
+package cz.janhrcek.chess.rules;
+
+import cz.janhrcek.chess.FEN.Fen;
+import cz.janhrcek.chess.FEN.InvalidFenException;
+import cz.janhrcek.chess.model.api.Position;
+import cz.janhrcek.chess.model.api.enums.Square;
+import static cz.janhrcek.chess.model.api.enums.Square.*;
+import cz.janhrcek.chess.model.impl.PositionImpl;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author jhrcek
+ */
+public class AttackInfoTest {
+
+    @Test
+    public void testInitialPosition() {
+        Position initial = new PositionImpl();
+        AttackInfo info = initial.getAttackInfo();
+        assertSame(initial.getAttackInfo(), info, "Attack info should be cached with the position");
+        assertEquals(info.getKingSquare(), E1.index());
+        assertEquals(info.getKingSquare(false), E8.index());
+        assertFalse(info.isCheck());
+        assertEquals(info.getPinned(), 0L);
+        //white attacks the whole 3rd rank, all pieces except rooks on A1 and H1
+        assertEquals(info.getAttackedSquares(true) & Bitboards.rank(2), Bitboards.rank(2));
+        assertEquals(info.getAttackedSquares(true) & Bitboards.RANK_1, Bitboards.RANK_1 & ~bb(A1, H1));
+        assertFalse(info.isAttacked(E4.index(), true));
+        assertTrue(info.isAttacked(F6.index(), false));
+    }
+
+    @Test
+    public void testCheckAndPins() throws InvalidFenException {
+        //white king on E1 checked by knight on D3, bishop on B4 pins pawn on D2 and rook on E8 pins knight on E2
+        Position position = new Fen("4r1k1/8/8/8/1b6/3n4/3PN3/4K3 w - - 0 1").toPosition();
+        AttackInfo info = position.getAttackInfo();
+        assertTrue(info.isCheck());
+        assertEquals(info.getCheckers(), bb(D3));
+        assertEquals(info.getPinned(), bb(D2, E2));
+    }
+
+    @Test
+    public void testDoubleCheck() throws InvalidFenException {
+        Position position = new Fen("4k3/8/8/8/8/5n2/8/r3K3 w - - 0 1").toPosition();
+        AttackInfo info = position.getAttackInfo();
+        assertEquals(info.getCheckers(), bb(A1, F3));
+        assertEquals(Bitboards.popCount(info.getCheckers()), 2);
+    }
+
+    @Test
+    public void testKingDangerSquares() throws InvalidFenException {
+        //rook on A1 checks king on E1 - F1 is attacked "through" the king
+        Position position = new Fen("4k3/8/8/8/8/8/8/r3K3 w - - 0 1").toPosition();
+        AttackInfo info = position.getAttackInfo();
+        assertFalse(info.isAttacked(F1.index(), false));
+        assertTrue((info.getKingDangerSquares() & bb(F1)) != 0L);
+        assertTrue((info.getKingDangerSquares() & bb(E2)) == 0L);
+    }
+
+    @Test
+    public void testNoPinWithTwoBlockers() throws InvalidFenException {
+        Position position = new Fen("4k3/4r3/8/8/4P3/4N3/8/4K3 w - - 0 1").toPosition();
+        AttackInfo info = position.getAttackInfo();
+        assertFalse(info.isCheck());
+        assertEquals(info.getPinned(), 0L);
+    }
+
+    private static long bb(Square... squares) {
+        long result = 0L;
+        for (Square s : squares) {
+            result |= 1L << s.index();
+        }
+        return result;
+    }
+}
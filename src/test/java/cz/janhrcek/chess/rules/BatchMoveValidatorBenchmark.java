@@ -0,0 +1,109 @@
+package cz.janhrcek.chess.rules;
+
+import cz.janhrcek.chess.FEN.Fen;
+import cz.janhrcek.chess.FEN.FenParser;
+import cz.janhrcek.chess.model.api.Move;
+import cz.janhrcek.chess.model.api.Position;
+import cz.janhrcek.chess.model.impl.FIDERuleChecker;
+import cz.janhrcek.chess.model.impl.PositionFactoryImpl;
+import java.util.Random;
+import static org.testng.Assert.assertTrue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+/**
+ * Throughput of {@link BatchMoveValidator} for batches of 1M (FEN, move)
+ * pairs. Not part of the default build, run it by "mvn test -Pbenchmark".
+ *
+ * @author jhrcek
+ */
+@Test(groups = "benchmark")
+public class BatchMoveValidatorBenchmark {
+
+    private static final int BATCH_SIZE = 1000000;
+    private static final int ROUNDS = 5;
+    private static final Logger log = LoggerFactory.getLogger(BatchMoveValidatorBenchmark.class);
+
+    /**
+     * Batch built from few hundred distinct positions (as in a burst of moves
+     * submitted in running games), each paired with its legal moves written
+     * in UCI and SAN, plus some illegal and malformed moves.
+     */
+    public void testRepeatedPositions() throws Exception {
+        String[] positions = randomGamePositions(300);
+        run("repeated positions", positions);
+    }
+
+    /**
+     * Batch in which (almost) every FEN is different.
+     */
+    public void testDistinctPositions() throws Exception {
+        String[] positions = randomGamePositions(BATCH_SIZE / 4);
+        run("distinct positions", positions);
+    }
+
+    private void run(String name, String[] positions) throws Exception {
+        String[] fens = new String[BATCH_SIZE];
+        String[] moves = new String[BATCH_SIZE];
+        Random random = new Random(42);
+        FenParser fenParser = new FenParser();
+        MoveGenerator generator = new MoveGenerator();
+        MoveFormatter formatter = new MoveFormatter();
+        MoveBuffer buffer = new MoveBuffer();
+        StringBuilder san = new StringBuilder();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            String fen = positions[random.nextInt(positions.length)];
+            fens[i] = fen;
+            Position position = fenParser.parse(fen);
+            buffer.clear();
+            generator.generateAll(position, buffer);
+            int kind = random.nextInt(10);
+            if (kind < 2 || buffer.isEmpty()) {
+                moves[i] = kind == 0 ? "Zz9" : "a1a1";
+            } else if (kind < 6) {
+                moves[i] = MoveFormatter.toUci(buffer.get(random.nextInt(buffer.size())));
+            } else {
+                san.setLength(0);
+                moves[i] = formatter.appendSan(position, buffer.get(random.nextInt(buffer.size())), san).toString();
+            }
+        }
+        BatchMoveValidator validator = new BatchMoveValidator();
+        validator.validate(fens, moves); //warm up
+        long best = Long.MAX_VALUE;
+        int legal = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            legal = validator.validate(fens, moves).getLegalCount();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        log.info("BatchMoveValidator, {}: {} pairs ({} legal) in {} ms, {} pairs/s",
+                name, BATCH_SIZE, legal, best / 1000000, String.format("%.0f", BATCH_SIZE * 1e9 / best));
+        assertTrue(legal > 0);
+    }
+
+    /**
+     * @return FEN records of positions reached by random legal moves from the
+     * initial position
+     */
+    private static String[] randomGamePositions(int count) throws Exception {
+        Random random = new Random(7);
+        PositionFactoryImpl factory = new PositionFactoryImpl(new FIDERuleChecker());
+        MoveGenerator generator = new MoveGenerator();
+        MoveBuffer buffer = new MoveBuffer();
+        String[] result = new String[count];
+        Position position = factory.create(Fen.INITIAL_POSITION);
+        for (int i = 0; i < count; i++) {
+            buffer.clear();
+            generator.generateAll(position, buffer);
+            if (buffer.isEmpty() || position.getHalfmoveClock() > 60) {
+                position = factory.create(Fen.INITIAL_POSITION);
+                buffer.clear();
+                generator.generateAll(position, buffer);
+            }
+            position = factory.create(position, Move.unpack(buffer.get(random.nextInt(buffer.size()))));
+            result[i] = Fen.positionToFen(position);
+        }
+        return result;
+    }
+}
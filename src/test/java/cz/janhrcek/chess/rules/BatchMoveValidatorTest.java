@@ -0,0 +1,70 @@
+package cz.janhrcek.chess.rules;
+
+import cz.janhrcek.chess.FEN.Fen;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author jhrcek
+ */
+public class BatchMoveValidatorTest {
+
+    private static final String AFTER_E4 = "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1";
+    private final BatchMoveValidator validator = new BatchMoveValidator();
+
+    @Test
+    public void testValidate() {
+        String[] fens = {Fen.INITIAL_POSITION, Fen.INITIAL_POSITION, Fen.INITIAL_POSITION, "not a FEN", null, AFTER_E4, Fen.INITIAL_POSITION};
+        String[] moves = {"e2e4", "e4", "e5", "e2e4", "e2e4", "Nf6", "Nf3?!"};
+        BatchMoveValidator.Result result = validator.validate(fens, moves);
+        assertEquals(result.size(), fens.length);
+        assertEquals(result.getLegalCount(), 4);
+
+        assertTrue(result.isLegal(0));
+        assertEquals(result.getResultingFen(0), AFTER_E4);
+        assertEquals(result.getResultingFen(1), AFTER_E4);
+        assertEquals(result.getLegality(2), Legality.UNREACHABLE);
+        assertNull(result.getResultingFen(2));
+        assertEquals(result.getLegality(3), Legality.INVALID_POSITION);
+        assertEquals(result.getLegality(4), Legality.INVALID_POSITION);
+        assertEquals(result.getResultingFen(5), "rnbqkb1r/pppppppp/5n2/8/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - 1 2");
+        assertEquals(result.getResultingFen(6), "rnbqkbnr/pppppppp/8/8/8/5N2/PPPPPPPP/RNBQKB1R b KQkq - 1 1");
+    }
+
+    /**
+     * Batch large enough to be split between several tasks.
+     */
+    @Test
+    public void testLargeBatch() {
+        int size = 10000;
+        String[] fens = new String[size];
+        String[] moves = new String[size];
+        for (int i = 0; i < size; i++) {
+            fens[i] = i % 3 == 0 ? AFTER_E4 : Fen.INITIAL_POSITION;
+            moves[i] = i % 2 == 0 ? "e4" : "e7e5";
+        }
+        BatchMoveValidator.Result result = validator.validate(fens, moves);
+        int legal = 0;
+        for (int i = 0; i < size; i++) {
+            boolean expected = (i % 3 == 0) == (i % 2 == 1);
+            assertEquals(result.isLegal(i), expected, "Pair " + i);
+            legal += expected ? 1 : 0;
+        }
+        assertEquals(result.getLegalCount(), legal);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testDifferentLengths() {
+        validator.validate(new String[2], new String[3]);
+    }
+
+    @Test
+    public void testEmptyBatch() {
+        BatchMoveValidator.Result result = validator.validate(new String[0], new String[0]);
+        assertEquals(result.size(), 0);
+        assertEquals(result.getLegalCount(), 0);
+    }
+}
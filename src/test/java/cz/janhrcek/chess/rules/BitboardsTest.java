@@ -0,0 +1,108 @@
+package cz.janhrcek.chess.rules;
+
+import cz.janhrcek.chess.model.api.enums.Piece;
+import cz.janhrcek.chess.model.api.enums.Square;
+import static cz.janhrcek.chess.model.api.enums.Square.*;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author jhrcek
+ */
+public class BitboardsTest {
+
+    @Test
+    public void testIteration() {
+        long bb = bb(A1, E4, H8, H1);
+        int[] indices = new int[64];
+        assertEquals(Bitboards.toIndices(bb, indices), 4);
+        assertEquals(indices[0], H1.index());
+        assertEquals(indices[1], A1.index());
+        assertEquals(indices[2], E4.index());
+        assertEquals(indices[3], H8.index());
+        assertEquals(Bitboards.popCount(bb), 4);
+        assertEquals(Bitboards.first(bb), H1.index());
+        assertEquals(Bitboards.last(bb), H8.index());
+        assertEquals(Bitboards.withoutFirst(bb), bb(A1, E4, H8));
+        assertTrue(Bitboards.hasMoreThanOne(bb));
+        assertFalse(Bitboards.hasMoreThanOne(bb(E4)));
+
+        long visited = 0L;
+        for (long b = bb; b != 0L; b = Bitboards.withoutFirst(b)) {
+            visited |= Bitboards.square(Bitboards.first(b));
+        }
+        assertEquals(visited, bb);
+    }
+
+    @Test
+    public void testSquaresOrder() {
+        Square[] squares = Square.getSquares(bb(H1, A8, E4));
+        assertEquals(squares, new Square[]{A8, E4, H1});
+    }
+
+    @Test
+    public void testShifts() {
+        assertEquals(Bitboards.north(bb(E4, A8)), bb(E5));
+        assertEquals(Bitboards.south(bb(E4, A1)), bb(E3));
+        assertEquals(Bitboards.east(bb(E4, H5)), bb(F4));
+        assertEquals(Bitboards.west(bb(E4, A5)), bb(D4));
+        assertEquals(Bitboards.northEast(bb(E4, H2)), bb(F5));
+        assertEquals(Bitboards.northWest(bb(E4, A2)), bb(D5));
+        assertEquals(Bitboards.southEast(bb(E4, H2)), bb(F3));
+        assertEquals(Bitboards.southWest(bb(E4, A2)), bb(D3));
+        assertEquals(Bitboards.file(0), Bitboards.FILE_A);
+        assertEquals(Bitboards.rank(7), Bitboards.RANK_8);
+        for (Square s : Square.values()) {
+            assertEquals(Bitboards.contains(Bitboards.LIGHT_SQUARES, s.index()), s.isLight(), "Colour of " + s);
+        }
+    }
+
+    @Test
+    public void testBetweenAndLine() {
+        assertEquals(Bitboards.between(A1.index(), A4.index()), bb(A2, A3));
+        assertEquals(Bitboards.between(H8.index(), C3.index()), bb(G7, F6, E5, D4));
+        assertEquals(Bitboards.between(B1.index(), H7.index()), bb(C2, D3, E4, F5, G6));
+        assertEquals(Bitboards.between(E4.index(), E5.index()), 0L);
+        assertEquals(Bitboards.between(E4.index(), F6.index()), 0L);
+        assertEquals(Bitboards.line(C1.index(), E1.index()), Bitboards.RANK_1);
+        assertEquals(Bitboards.line(B2.index(), G7.index()), bb(A1, B2, C3, D4, E5, F6, G7, H8));
+        assertEquals(Bitboards.line(E4.index(), F6.index()), 0L);
+        assertTrue(Bitboards.aligned(A1.index(), H8.index(), D4.index()));
+        assertFalse(Bitboards.aligned(A1.index(), H8.index(), D5.index()));
+        for (int a = 0; a < 64; a++) {
+            for (int b = 0; b < 64; b++) {
+                assertEquals(Bitboards.between(a, b), Bitboards.between(b, a));
+                assertEquals(Bitboards.line(a, b), Bitboards.line(b, a));
+            }
+        }
+    }
+
+    @Test
+    public void testAttacks() {
+        long occupancy = bb(E6, C4, E2);
+        assertEquals(Bitboards.rookAttacks(E4.index(), occupancy),
+                bb(E5, E6, E3, E2, D4, C4, F4, G4, H4));
+        assertEquals(Bitboards.bishopAttacks(A1.index(), bb(C3)), bb(B2, C3));
+        for (Square s : Square.values()) {
+            //on the empty board the sliders reach the same squares as in BitboardManager
+            assertEquals(Bitboards.queenAttacks(s.index(), 0L),
+                    BitboardManager.getReachableSquaresBB(Piece.WHITE_QUEEN, s), "Queen on " + s);
+            assertEquals(Bitboards.knightAttacks(s.index()),
+                    BitboardManager.getReachableSquaresBB(Piece.WHITE_KNIGHT, s), "Knight on " + s);
+        }
+        assertEquals(Bitboards.kingAttacks(A1.index()), bb(A2, B2, B1));
+        assertEquals(Bitboards.pawnAttacks(bb(A2, E4), true), bb(B3, D5, F5));
+        assertEquals(Bitboards.pawnAttacks(bb(H7), false), bb(G6));
+    }
+
+    private static long bb(Square... squares) {
+        long result = 0L;
+        for (Square s : squares) {
+            result |= 1L << s.index();
+        }
+        return result;
+    }
+}
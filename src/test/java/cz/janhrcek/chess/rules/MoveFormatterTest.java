@@ -0,0 +1,126 @@
+package cz.janhrcek.chess.rules;
+
+import cz.janhrcek.chess.FEN.FenParser;
+import cz.janhrcek.chess.FEN.InvalidFenException;
+import cz.janhrcek.chess.model.api.Move;
+import cz.janhrcek.chess.model.api.Position;
+import static cz.janhrcek.chess.model.api.enums.Piece.*;
+import static cz.janhrcek.chess.model.api.enums.Square.*;
+import cz.janhrcek.chess.model.impl.FIDERuleChecker;
+import cz.janhrcek.chess.model.impl.PositionFactoryImpl;
+import cz.janhrcek.chess.model.impl.PositionImpl;
+import static org.testng.Assert.assertEquals;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author jhrcek
+ */
+public class MoveFormatterTest {
+
+    private final FenParser fenParser = new FenParser();
+    private final MoveFormatter formatter = new MoveFormatter();
+    private final PositionFactoryImpl positionFactory = new PositionFactoryImpl(new FIDERuleChecker());
+
+    @Test
+    public void testSan() throws InvalidFenException {
+        Position initial = new PositionImpl();
+        assertEquals(formatter.toSan(initial, Move.pack(E2.index(), E4.index(), WHITE_PAWN.code())), "e4");
+        assertEquals(formatter.toSan(initial, Move.pack(G1.index(), F3.index(), WHITE_KNIGHT.code())), "Nf3");
+
+        Position position = fenParser.parse("r3k2r/8/8/3pP3/2P5/8/8/R3K2R w KQkq d6 0 1");
+        assertEquals(formatter.toSan(position, Move.pack(C4.index(), D5.index(), WHITE_PAWN.code())), "cxd5");
+        assertEquals(formatter.toSan(position, Move.pack(E5.index(), D6.index(), WHITE_PAWN.code())), "exd6");
+        assertEquals(formatter.toSan(position, Move.pack(E1.index(), G1.index(), WHITE_KING.code())), "O-O");
+        assertEquals(formatter.toSan(position, Move.pack(E1.index(), C1.index(), WHITE_KING.code())), "O-O-O");
+        assertEquals(formatter.toSan(position, Move.pack(A1.index(), A8.index(), WHITE_ROOK.code())), "Rxa8+");
+
+        Position promotion = fenParser.parse("1n2k3/P7/8/8/8/8/8/4K3 w - - 0 1");
+        assertEquals(formatter.toSan(promotion, Move.pack(A7.index(), A8.index(), WHITE_PAWN.code(), WHITE_QUEEN.code())), "a8=Q"); //the knight blocks the check
+        assertEquals(formatter.toSan(promotion, Move.pack(A7.index(), B8.index(), WHITE_PAWN.code(), WHITE_ROOK.code())), "axb8=R+");
+        assertEquals(formatter.toSan(promotion, Move.pack(A7.index(), B8.index(), WHITE_PAWN.code(), WHITE_KNIGHT.code())), "axb8=N");
+    }
+
+    @Test
+    public void testCheckAndMate() throws InvalidFenException {
+        Position backRank = fenParser.parse("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+        assertEquals(formatter.toSan(backRank, Move.pack(A1.index(), A8.index(), WHITE_ROOK.code())), "Ra8#");
+        assertEquals(formatter.toSan(backRank, Move.pack(A1.index(), A7.index(), WHITE_ROOK.code())), "Ra7");
+        //discovered check by the bishop, castling giving check by the rook
+        Position discovered = fenParser.parse("4k3/8/8/8/8/2N5/1B6/4K2R w K - 0 1");
+        assertEquals(formatter.toSan(discovered, Move.pack(C3.index(), E2.index(), WHITE_KNIGHT.code())), "Ne2");
+        Position discovered2 = fenParser.parse("7k/8/8/8/8/2N5/1B6/4K3 w - - 0 1");
+        assertEquals(formatter.toSan(discovered2, Move.pack(C3.index(), E4.index(), WHITE_KNIGHT.code())), "Ne4+");
+        //the moved piece blocks the line of its own queen
+        Position blocking = fenParser.parse("4k3/8/8/8/8/8/4P3/4Q2K w - - 0 1");
+        assertEquals(formatter.toSan(blocking, Move.pack(E2.index(), E4.index(), WHITE_PAWN.code())), "e4");
+        assertEquals(formatter.toLan(blocking, Move.pack(E2.index(), E4.index(), WHITE_PAWN.code())), "e2-e4");
+        Position castlingCheck = fenParser.parse("5k2/8/8/8/8/8/8/4K2R w K - 0 1");
+        assertEquals(formatter.toSan(castlingCheck, Move.pack(E1.index(), G1.index(), WHITE_KING.code())), "O-O+");
+    }
+
+    @Test
+    public void testDisambiguation() throws InvalidFenException {
+        Position knights = fenParser.parse("4k3/8/8/8/8/8/N3N3/R3K2R w - - 0 1");
+        assertEquals(formatter.toSan(knights, Move.pack(A2.index(), C3.index(), WHITE_KNIGHT.code())), "Nac3");
+        assertEquals(formatter.toSan(knights, Move.pack(E2.index(), G3.index(), WHITE_KNIGHT.code())), "Ng3");
+        Position rooks = fenParser.parse("7k/R7/8/8/8/8/8/R3K3 w - - 0 1");
+        assertEquals(formatter.toSan(rooks, Move.pack(A1.index(), A4.index(), WHITE_ROOK.code())), "R1a4");
+        Position queens = fenParser.parse("4k3/8/8/8/1Q5Q/8/8/K6Q w - - 0 1");
+        assertEquals(formatter.toSan(queens, Move.pack(H4.index(), E1.index(), WHITE_QUEEN.code())), "Qh4e1+");
+        //the knight on C3 is pinned, so the other one needs no disambiguation
+        Position pinned = fenParser.parse("4k3/8/8/b7/8/2N5/8/4K1N1 w - - 0 1");
+        assertEquals(formatter.toSan(pinned, Move.pack(G1.index(), E2.index(), WHITE_KNIGHT.code())), "Ne2");
+    }
+
+    @Test
+    public void testLanAndUci() throws InvalidFenException {
+        Position position = fenParser.parse("r3k2r/8/8/3pP3/2P5/8/8/R3K2R w KQkq d6 0 1");
+        int enPassant = Move.pack(E5.index(), D6.index(), WHITE_PAWN.code());
+        assertEquals(formatter.toLan(position, enPassant), "e5xd6");
+        assertEquals(formatter.toLan(position, Move.pack(A1.index(), A8.index(), WHITE_ROOK.code())), "Ra1xa8+");
+        assertEquals(formatter.toLan(position, Move.pack(A1.index(), B1.index(), WHITE_ROOK.code())), "Ra1-b1");
+        assertEquals(formatter.toLan(position, Move.pack(E1.index(), G1.index(), WHITE_KING.code())), "O-O");
+        assertEquals(MoveFormatter.toUci(enPassant), "e5d6");
+        assertEquals(MoveFormatter.toUci(Move.pack(E1.index(), G1.index(), WHITE_KING.code())), "e1g1");
+        assertEquals(MoveFormatter.toUci(Move.pack(B2.index(), A1.index(), BLACK_PAWN.code(), BLACK_KNIGHT.code())), "b2a1n");
+        StringBuilder sb = new StringBuilder("1.");
+        assertEquals(MoveFormatter.appendSquare(H8.index(), sb).toString(), "1.h8");
+    }
+
+    @DataProvider
+    public Object[][] positions() {
+        return new Object[][]{
+            {"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1"},
+            {"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1"},
+            {"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8"},
+            {"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1"},
+            {"2N5/8/8/8/8/8/k7/2N1K2N w - - 0 1"}
+        };
+    }
+
+    /**
+     * Every legal move written in SAN and UCI must be read back as the same
+     * move. The check suffix (ignored by the parser) must be the same as when
+     * it is computed from the position after the move.
+     */
+    @Test(dataProvider = "positions")
+    public void testRoundTrip(String fen) throws Exception {
+        Position position = fenParser.parse(fen);
+        MoveBuffer legal = new MoveBuffer();
+        new MoveGenerator().generateAll(position, legal);
+        MoveParser parser = new MoveParser();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < legal.size(); i++) {
+            int move = legal.get(i);
+            sb.setLength(0);
+            String san = formatter.appendSan(position, move, sb).toString();
+            assertEquals(parser.parseSan(position, san), move, san);
+            sb.setLength(0);
+            Position after = positionFactory.create(position, Move.unpack(move));
+            assertEquals(formatter.appendSan(position, move, after, sb).toString(), san);
+            assertEquals(parser.parseUci(position, MoveFormatter.toUci(move)), move, san);
+        }
+    }
+}
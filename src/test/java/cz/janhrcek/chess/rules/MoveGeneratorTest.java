@@ -0,0 +1,120 @@
+package cz.janhrcek.chess.rules;
+
+import cz.janhrcek.chess.FEN.FenParser;
+import cz.janhrcek.chess.FEN.InvalidFenException;
+import cz.janhrcek.chess.model.api.Move;
+import cz.janhrcek.chess.model.api.Position;
+import cz.janhrcek.chess.model.api.PositionFactory;
+import cz.janhrcek.chess.model.impl.FIDERuleChecker;
+import cz.janhrcek.chess.model.impl.PositionFactoryImpl;
+import java.util.HashSet;
+import java.util.Set;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Tests of the move generator, mainly by "perft" - counting leaf nodes of the
+ * move tree of well known positions to given depth.
+ *
+ * @author jhrcek
+ */
+public class MoveGeneratorTest {
+
+    private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+    private final PositionFactory factory = new PositionFactoryImpl(new FIDERuleChecker());
+    private final FenParser parser = new FenParser();
+
+    @DataProvider
+    public Object[][] perftPositions() {
+        return new Object[][]{
+            {"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", 3, 8902L},
+            {KIWIPETE, 2, 2039L},
+            {"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", 3, 2812L},
+            {"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", 3, 9467L},
+            {"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8", 2, 1486L}
+        };
+    }
+
+    @Test(dataProvider = "perftPositions")
+    public void testPerft(String fen, int depth, long expectedNodes) throws Exception {
+        assertEquals(perft(parser.parse(fen), depth), expectedNodes, "Perft(" + depth + ") of " + fen);
+    }
+
+    @Test
+    public void testStagesAndHashMove() throws InvalidFenException {
+        Position position = parser.parse(KIWIPETE);
+        MoveGenerator generator = new MoveGenerator();
+        MoveBuffer all = new MoveBuffer();
+        assertEquals(generator.generateAll(position, all), 48);
+
+        //captures (and promotions) come before quiet moves
+        generator.reset(position);
+        int lastStage = MoveGenerator.STAGE_HASH_MOVE;
+        int captures = 0;
+        for (int move = generator.next(); move != MoveGenerator.NO_MOVE; move = generator.next()) {
+            assertTrue(generator.getStage() >= lastStage, "Stages must not go back");
+            lastStage = generator.getStage();
+            if (generator.getStage() == MoveGenerator.STAGE_CAPTURES) {
+                captures++;
+            }
+        }
+        assertEquals(captures, 8);
+
+        //each legal move used as hash move is returned first and only once
+        for (int i = 0; i < all.size(); i++) {
+            int hashMove = all.get(i);
+            generator.reset(position, hashMove);
+            assertEquals(generator.next(), hashMove);
+            assertEquals(generator.getStage(), MoveGenerator.STAGE_HASH_MOVE);
+            Set<Integer> rest = new HashSet<>();
+            for (int move = generator.next(); move != MoveGenerator.NO_MOVE; move = generator.next()) {
+                assertTrue(rest.add(move), "Duplicate move " + Move.unpack(move));
+            }
+            assertEquals(rest.size(), 47);
+            assertFalse(rest.contains(hashMove));
+        }
+
+        //hash move which is not legal in the position is ignored
+        generator.reset(position, Move.pack(0, 63, 0)); //white "pawn" H1-A8
+        assertEquals(generator.getStage(), MoveGenerator.STAGE_HASH_MOVE);
+        int first = generator.next();
+        assertEquals(generator.getStage(), MoveGenerator.STAGE_CAPTURES, "First move was " + Move.unpack(first));
+    }
+
+    @Test
+    public void testEvasionsAndMate() throws InvalidFenException {
+        MoveGenerator generator = new MoveGenerator();
+        //white king checked by rook - can only move away or capture it
+        Position check = parser.parse("4k3/8/8/8/8/8/4r3/4K3 w - - 0 1");
+        MoveBuffer evasions = new MoveBuffer();
+        generator.generateAll(check, evasions);
+        assertEquals(evasions.size(), 3); //Kxe2, Kd1, Kf1 - d2 and f2 are attacked by the rook
+        generator.reset(check);
+        generator.next();
+        assertEquals(generator.getStage(), MoveGenerator.STAGE_EVASIONS);
+
+        //fool's mate
+        Position mate = parser.parse("rnb1kbnr/pppp1ppp/8/4p3/6Pq/5P2/PPPPP2P/RNBQKBNR w KQkq - 1 3");
+        assertFalse(generator.hasLegalMove(mate));
+        //stalemate
+        Position stalemate = parser.parse("7k/5Q2/8/8/8/8/8/K7 b - - 0 1");
+        assertFalse(generator.hasLegalMove(stalemate));
+        assertFalse(stalemate.getAttackInfo().isCheck());
+    }
+
+    private long perft(Position position, int depth) throws Exception {
+        MoveBuffer moves = new MoveBuffer();
+        int count = new MoveGenerator().generateAll(position, moves);
+        if (depth == 1) {
+            return count;
+        }
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            nodes += perft(factory.create(position, Move.unpack(moves.get(i))), depth - 1);
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,91 @@
+package cz.janhrcek.chess.rules;
+
+import cz.janhrcek.chess.FEN.FenParser;
+import cz.janhrcek.chess.FEN.InvalidFenException;
+import cz.janhrcek.chess.model.api.Move;
+import cz.janhrcek.chess.model.api.Position;
+import static cz.janhrcek.chess.model.api.enums.Piece.*;
+import static cz.janhrcek.chess.model.api.enums.Square.*;
+import cz.janhrcek.chess.model.impl.PositionImpl;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author jhrcek
+ */
+public class MoveParserTest {
+
+    private final FenParser fenParser = new FenParser();
+    private final MoveParser parser = new MoveParser();
+
+    @Test
+    public void testUci() throws InvalidFenException {
+        Position initial = new PositionImpl();
+        assertEquals(parser.parse(initial, "e2e4"), Move.pack(E2.index(), E4.index(), WHITE_PAWN.code()));
+        assertNull(parser.getLastError());
+        assertEquals(parser.parse(initial, "g1f3"), Move.pack(G1.index(), F3.index(), WHITE_KNIGHT.code()));
+        assertEquals(parser.parse(initial, "e2e5"), MoveGenerator.NO_MOVE);
+        assertEquals(parser.getLastError(), Legality.UNREACHABLE);
+        assertEquals(parser.parse(initial, "e4e5"), MoveGenerator.NO_MOVE);
+        assertEquals(parser.getLastError(), Legality.NO_PIECE);
+
+        Position promotion = fenParser.parse("1n2k3/P7/8/8/8/8/8/4K2R w K - 0 1");
+        assertEquals(parser.parse(promotion, "a7b8n"), Move.pack(A7.index(), B8.index(), WHITE_PAWN.code(), WHITE_KNIGHT.code()));
+        assertEquals(parser.parse(promotion, "a7a8Q"), Move.pack(A7.index(), A8.index(), WHITE_PAWN.code(), WHITE_QUEEN.code()));
+        assertEquals(parser.parse(promotion, "a7a8"), MoveGenerator.NO_MOVE);
+        assertEquals(parser.getLastError(), Legality.PROMOTION_REQUIRED);
+        assertEquals(parser.parse(promotion, "e1g1"), Move.pack(E1.index(), G1.index(), WHITE_KING.code()));
+    }
+
+    @Test
+    public void testSan() throws InvalidFenException {
+        Position initial = new PositionImpl();
+        assertEquals(parser.parse(initial, "e4"), Move.pack(E2.index(), E4.index(), WHITE_PAWN.code()));
+        assertEquals(parser.parse(initial, "Nf3"), Move.pack(G1.index(), F3.index(), WHITE_KNIGHT.code()));
+        assertEquals(parser.parse(initial, "Nc3!?"), Move.pack(B1.index(), C3.index(), WHITE_KNIGHT.code()));
+        assertEquals(parser.parse(initial, "e5"), MoveGenerator.NO_MOVE);
+        assertEquals(parser.getLastError(), Legality.UNREACHABLE);
+        assertEquals(parser.parse(initial, "Bc4"), MoveGenerator.NO_MOVE);
+        assertEquals(parser.getLastError(), Legality.BLOCKED);
+
+        Position captures = fenParser.parse("r3k2r/8/8/3p4/2P1P3/8/8/R3K2R w KQkq - 0 1");
+        assertEquals(parser.parse(captures, "cxd5"), Move.pack(C4.index(), D5.index(), WHITE_PAWN.code()));
+        assertEquals(parser.parse(captures, "exd5+"), Move.pack(E4.index(), D5.index(), WHITE_PAWN.code()));
+        assertEquals(parser.parse(captures, "O-O"), Move.pack(E1.index(), G1.index(), WHITE_KING.code()));
+        assertEquals(parser.parse(captures, "0-0-0"), Move.pack(E1.index(), C1.index(), WHITE_KING.code()));
+        assertEquals(parser.parse(captures, "Rd1"), Move.pack(A1.index(), D1.index(), WHITE_ROOK.code()));
+        assertEquals(parser.parse(captures, "Rf1"), Move.pack(H1.index(), F1.index(), WHITE_ROOK.code()));
+
+        Position promotion = fenParser.parse("1n2k3/P7/8/8/8/8/8/4K3 w - - 0 1");
+        assertEquals(parser.parse(promotion, "a8=Q"), Move.pack(A7.index(), A8.index(), WHITE_PAWN.code(), WHITE_QUEEN.code()));
+        assertEquals(parser.parse(promotion, "axb8R+"), Move.pack(A7.index(), B8.index(), WHITE_PAWN.code(), WHITE_ROOK.code()));
+        assertEquals(parser.parse(promotion, "a8"), MoveGenerator.NO_MOVE);
+        assertEquals(parser.getLastError(), Legality.PROMOTION_REQUIRED);
+    }
+
+    @Test
+    public void testDisambiguation() throws InvalidFenException {
+        Position position = fenParser.parse("4k3/8/8/8/8/8/N3N3/R3K2R w - - 0 1");
+        assertEquals(parser.parse(position, "Nc3"), MoveGenerator.NO_MOVE);
+        assertEquals(parser.getLastError(), Legality.AMBIGUOUS_MOVE);
+        assertEquals(parser.parse(position, "Nac3"), Move.pack(A2.index(), C3.index(), WHITE_KNIGHT.code()));
+        assertEquals(parser.parse(position, "Nec3"), Move.pack(E2.index(), C3.index(), WHITE_KNIGHT.code()));
+        assertEquals(parser.parse(position, "Ne2c3"), Move.pack(E2.index(), C3.index(), WHITE_KNIGHT.code()));
+        assertEquals(parser.parse(position, "Rf1"), Move.pack(H1.index(), F1.index(), WHITE_ROOK.code()));
+        assertEquals(parser.parse(position, "Rb1"), Move.pack(A1.index(), B1.index(), WHITE_ROOK.code()));
+    }
+
+    @Test
+    public void testMalformed() {
+        Position initial = new PositionImpl();
+        String[] malformed = {"", "x", "e9", "Ze4", "Nf3f3f3", "O-O-O-O", "i2i4", "e2-e4-e5"};
+        for (String move : malformed) {
+            assertEquals(parser.parse(initial, move), MoveGenerator.NO_MOVE, move);
+            assertEquals(parser.getLastError(), Legality.MALFORMED_MOVE, move);
+        }
+        assertEquals(parser.parse(initial, null), MoveGenerator.NO_MOVE);
+        assertEquals(parser.getLastError(), Legality.MALFORMED_MOVE);
+    }
+}
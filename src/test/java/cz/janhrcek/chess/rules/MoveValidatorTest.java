@@ -0,0 +1,128 @@
+package cz.janhrcek.chess.rules;
+
+import cz.janhrcek.chess.FEN.FenParser;
+import cz.janhrcek.chess.FEN.InvalidFenException;
+import cz.janhrcek.chess.model.api.Move;
+import cz.janhrcek.chess.model.api.Position;
+import cz.janhrcek.chess.model.api.Promotion;
+import cz.janhrcek.chess.model.api.enums.Piece;
+import static cz.janhrcek.chess.model.api.enums.Piece.*;
+import static cz.janhrcek.chess.model.api.enums.Square.*;
+import cz.janhrcek.chess.model.impl.FIDERuleChecker;
+import cz.janhrcek.chess.model.impl.PositionImpl;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author jhrcek
+ */
+public class MoveValidatorTest {
+
+    private final FenParser parser = new FenParser();
+
+    @Test
+    public void testReasons() throws InvalidFenException {
+        Position initial = new PositionImpl();
+        assertEquals(MoveValidator.check(initial, new Move(WHITE_PAWN, E2, E4)), Legality.LEGAL);
+        assertEquals(MoveValidator.check(initial, new Move(WHITE_KNIGHT, G1, F3)), Legality.LEGAL);
+        assertEquals(MoveValidator.check(initial, new Move(WHITE_KNIGHT, E4, F6)), Legality.NO_PIECE);
+        assertEquals(MoveValidator.check(initial, new Move(WHITE_BISHOP, B1, C3)), Legality.NO_PIECE);
+        assertEquals(MoveValidator.check(initial, new Move(BLACK_PAWN, E7, E5)), Legality.WRONG_SIDE_TO_MOVE);
+        assertEquals(MoveValidator.check(initial, new Move(WHITE_ROOK, A1, A2)), Legality.OWN_PIECE_ON_TARGET);
+        assertEquals(MoveValidator.check(initial, new Move(WHITE_KNIGHT, G1, G3)), Legality.UNREACHABLE);
+        assertEquals(MoveValidator.check(initial, new Move(WHITE_PAWN, E2, E5)), Legality.UNREACHABLE);
+        assertEquals(MoveValidator.check(initial, new Move(WHITE_ROOK, A1, A5)), Legality.BLOCKED);
+        assertEquals(MoveValidator.check(initial, new Move(WHITE_PAWN, E2, D3)), Legality.NOTHING_TO_CAPTURE);
+        assertEquals(MoveValidator.check(initial, new Move(WHITE_KING, E1, G1)), Legality.OWN_PIECE_ON_TARGET);
+        Position afterNf3 = parser.parse("rnbqkbnr/pppppppp/8/8/8/5N2/PPPPPPPP/RNBQKB1R w KQkq - 0 1");
+        assertEquals(MoveValidator.check(afterNf3, new Move(WHITE_KING, E1, G1)), Legality.CASTLING_BLOCKED);
+
+        Position promotion = parser.parse("1n2k3/P7/8/8/8/8/8/4K2R w K - 0 1");
+        assertEquals(MoveValidator.check(promotion, new Move(WHITE_PAWN, A7, A8)), Legality.PROMOTION_REQUIRED);
+        assertEquals(MoveValidator.check(promotion, new Promotion(WHITE_PAWN, A7, A8, WHITE_QUEEN)), Legality.LEGAL);
+        assertEquals(MoveValidator.check(promotion, new Promotion(WHITE_PAWN, A7, B8, WHITE_KNIGHT)), Legality.LEGAL);
+        //such promotions can't be created as Promotion objects, but they can come packed
+        assertEquals(MoveValidator.check(promotion, Move.pack(A7.index(), A8.index(), WHITE_PAWN.code(), BLACK_QUEEN.code())), Legality.INVALID_PROMOTION);
+        assertEquals(MoveValidator.check(promotion, Move.pack(A7.index(), A8.index(), WHITE_PAWN.code(), WHITE_KING.code())), Legality.INVALID_PROMOTION);
+        assertEquals(MoveValidator.check(promotion, new Move(WHITE_KING, E1, G1)), Legality.LEGAL);
+        assertEquals(MoveValidator.check(promotion, new Move(WHITE_KING, E1, C1)), Legality.CASTLING_NOT_AVAILABLE);
+
+        //black rook on F8 attacks F1, bishop on B4 pins the knight on C3 (pinned to E1)
+        Position checks = parser.parse("4kr2/8/8/8/1b6/2N5/8/4K2R w K - 0 1");
+        assertEquals(MoveValidator.check(checks, new Move(WHITE_KING, E1, G1)), Legality.CASTLING_THROUGH_CHECK);
+        assertEquals(MoveValidator.check(checks, new Move(WHITE_KING, E1, F1)), Legality.KING_TO_ATTACKED_SQUARE);
+        assertEquals(MoveValidator.check(checks, new Move(WHITE_KNIGHT, C3, E4)), Legality.PINNED_PIECE);
+
+        Position check = parser.parse("4k3/8/8/8/8/2N5/8/r3K3 w - - 0 1");
+        assertEquals(MoveValidator.check(check, new Move(WHITE_KNIGHT, C3, E4)), Legality.CHECK_NOT_RESOLVED);
+        assertEquals(MoveValidator.check(check, new Move(WHITE_KNIGHT, C3, D1)), Legality.LEGAL);
+        assertEquals(MoveValidator.check(check, new Move(WHITE_KNIGHT, C3, A2)), Legality.CHECK_NOT_RESOLVED);
+
+        //en passant capture would expose the king on the 5th rank to the rook
+        Position enPassant = parser.parse("8/8/8/K2pP2r/8/8/8/4k3 w - d6 0 1");
+        assertEquals(MoveValidator.check(enPassant, new Move(WHITE_PAWN, E5, D6)), Legality.LEAVES_KING_IN_CHECK);
+        assertEquals(MoveValidator.check(enPassant, new Move(WHITE_PAWN, E5, E6)), Legality.LEGAL);
+    }
+
+    @Test
+    public void testRuleCheckerThrowsWithReason() {
+        try {
+            new FIDERuleChecker().checkLegality(new Move(WHITE_ROOK, A1, A5), new PositionImpl());
+            fail("The move should be illegal");
+        } catch (IllegalMoveException ex) {
+            assertEquals(ex.getReason(), Legality.BLOCKED);
+            assertTrue(ex.getMessage().contains("A1"), ex.getMessage());
+        }
+    }
+
+    @DataProvider
+    public Object[][] positions() {
+        return new Object[][]{
+            {"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1"},
+            {"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1"},
+            {"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8"},
+            {"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1"},
+            {"rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3"},
+            {"4k3/8/8/8/8/5n2/8/r3K3 w - - 0 1"}
+        };
+    }
+
+    /**
+     * The validator must accept exactly the moves produced by the generator.
+     */
+    @Test(dataProvider = "positions")
+    public void testAgreesWithGenerator(String fen) throws InvalidFenException {
+        Position position = parser.parse(fen);
+        MoveBuffer legal = new MoveBuffer();
+        new MoveGenerator().generateAll(position, legal);
+        int legalCount = 0;
+        for (Piece piece : Piece.values()) {
+            for (int from = 0; from < 64; from++) {
+                for (int to = 0; to < 64; to++) {
+                    if (from == to) {
+                        continue;
+                    }
+                    legalCount += checkAgreement(position, legal, Move.pack(from, to, piece.code()));
+                    if (piece == WHITE_PAWN || piece == BLACK_PAWN) {
+                        for (Piece promo : Piece.values()) {
+                            legalCount += checkAgreement(position, legal, Move.pack(from, to, piece.code(), promo.code()));
+                        }
+                    }
+                }
+            }
+        }
+        assertEquals(legalCount, legal.size());
+    }
+
+    private static int checkAgreement(Position position, MoveBuffer legal, int move) {
+        boolean valid = MoveValidator.check(position, move).isLegal();
+        if (valid != legal.contains(move)) {
+            fail("Disagreement about packed move " + Integer.toHexString(move) + ", validator says " + valid);
+        }
+        return valid ? 1 : 0;
+    }
+}